@@ -1,10 +1,20 @@
 package com.petitcl.collections;
 
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Implementation of {@link Map} that is backed by a hash table
  * and that uses chaining (via a linked list) to handle collisions.
+ * When a chain becomes too long, it is converted to a red-black tree
+ * (also called a tree bin), which bounds the cost of operations on that chain
+ * to O(log n) even when many keys share the same hash.
+ * The table can either be resized at once, or incrementally (see {@link ResizeStrategy}).
  *
  * @param <K> type of the key
  * @param <V> type of the value
@@ -13,24 +23,76 @@ public class PcChainingHashMap<K, V> extends AbstractMap<K, V> {
 
 	public static final int DEFAULT_INITIAL_CAPACITY = 16;
 	public static final float DEFAULT_LOAD_FACTOR = 0.75f;
+	public static final int MAXIMUM_CAPACITY = 1 << 30;
+
+	/**
+	 * Number of nodes in a chain from which the chain is converted to a tree bin.
+	 */
+	public static final int TREEIFY_THRESHOLD = 8;
+
+	/**
+	 * Number of nodes in a tree bin under which the tree bin is converted back to a chain.
+	 */
+	public static final int UNTREEIFY_THRESHOLD = 6;
+
+	/**
+	 * Number of buckets of the old table that are migrated to the new table on each operation,
+	 * when using {@link ResizeStrategy#INCREMENTAL}.
+	 */
+	public static final int INCREMENTAL_RESIZE_STEP = 4;
+
+	/**
+	 * Strategy used when the table needs to grow.
+	 */
+	public enum ResizeStrategy {
+		/**
+		 * All the entries are moved to the new table during the operation that triggered the resize.
+		 */
+		FULL,
+		/**
+		 * The old table and the new table live side by side, and each following operation
+		 * migrates a bounded number of buckets from the old table to the new table.
+		 * This spreads the cost of a resize over many operations, avoiding latency spikes.
+		 *
+		 * While a resize is in progress, reads also modify the map: get, containsKey and getOrDefault
+		 * migrate buckets, and iterating completes the migration. Unlike {@link java.util.HashMap}
+		 * or {@link #FULL}, a map that is built then only read must not be shared between threads
+		 * without synchronization, even for reads.
+		 */
+		INCREMENTAL
+	}
 
 	public static class Node<K, V> implements Map.Entry<K, V> {
-		private final K key;
-		private V value;
-		private Node<K, V> next;
-
-		public Node(K key, V value) {
+		/**
+		 * Hash of the key, cached to avoid calling {@link Object#hashCode()} again,
+		 * and to avoid calling {@link Object#equals(Object)} on keys that have a different hash.
+		 */
+		final int hash;
+		final K key;
+		V value;
+		Node<K, V> next;
+
+		public Node(int hash, K key, V value) {
+			this.hash = hash;
 			this.key = key;
 			this.value = value;
 			this.next = null;
 		}
 
-		public Node(K key, V value, Node<K, V> next) {
+		public Node(int hash, K key, V value, Node<K, V> next) {
+			this.hash = hash;
 			this.key = key;
 			this.value = value;
 			this.next = next;
 		}
 
+		/**
+		 * Check if this node is the node of the given key, comparing hashes before keys.
+		 */
+		boolean matches(int hash, Object key) {
+			return this.hash == hash && (this.key == key || this.key.equals(key));
+		}
+
 		@Override
 		public K getKey() {
 			return key;
@@ -74,31 +136,132 @@ public class PcChainingHashMap<K, V> extends AbstractMap<K, V> {
 		public final String toString() { return key + "=" + value; }
 	}
 
+	/**
+	 * Node of a tree bin.
+	 * Tree nodes form a red-black tree, ordered by hash, then by natural order if the keys
+	 * are {@link Comparable}, and finally by an arbitrary (but consistent) tie break order.
+	 * Tree nodes are also linked together via {@link Node#next} (and {@link #prev}),
+	 * so that tree bins can still be traversed like a regular chain.
+	 * The head of the chain is usually the root of the tree.
+	 */
+	public static class TreeNode<K, V> extends Node<K, V> {
+		private TreeNode<K, V> parent;
+		private TreeNode<K, V> left;
+		private TreeNode<K, V> right;
+		private TreeNode<K, V> prev;
+		private boolean red;
+
+		public TreeNode(int hash, K key, V value, Node<K, V> next) {
+			super(hash, key, value, next);
+		}
+	}
+
 	private Node<K, V>[] table;
 	private int size;
 	private final float loadFactor;
+	private final ResizeStrategy resizeStrategy;
+
+	/**
+	 * Table being migrated to {@link #table} during an incremental resize, or null if no resize is in progress.
+	 * The buckets of this table that have already been migrated are null.
+	 */
+	private Node<K, V>[] oldTable;
+
+	/**
+	 * Index of the next bucket of {@link #oldTable} to migrate.
+	 */
+	private int migrationIndex;
+
+	/**
+	 * Number of nodes of the chain walked by the last call to {@link #getNodeForUpdate(int, Object)} that missed,
+	 * so that {@link #insertNode(int, Object, Object, int)} can decide to treeify the chain without walking it again.
+	 * Callers read it right after the lookup, as a mapping function may run another lookup.
+	 */
+	private int probedChainLength;
+
+	/**
+	 * Number of structural modifications of this map (insertions, removals and resizes),
+	 * used by iterators and spliterators to detect concurrent modifications.
+	 */
+	private int modCount;
+
+	private EntrySet entrySet;
+	private KeySet keySet;
+	private Values values;
 
 	@SuppressWarnings("unchecked")
 	public PcChainingHashMap() {
 		this.table = (Node<K, V>[]) new Node[DEFAULT_INITIAL_CAPACITY];
 		this.loadFactor = DEFAULT_LOAD_FACTOR;
+		this.resizeStrategy = ResizeStrategy.FULL;
 		this.size = 0;
 	}
 
 	@SuppressWarnings("unchecked")
 	public PcChainingHashMap(int initialCapacity, float loadFactor) {
-		this.table = (Node<K, V>[]) new Node[initialCapacity];
+		this.table = (Node<K, V>[]) new Node[tableSizeFor(initialCapacity)];
 		this.loadFactor = loadFactor;
+		this.resizeStrategy = ResizeStrategy.FULL;
+		this.size = 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	public PcChainingHashMap(int initialCapacity, float loadFactor, ResizeStrategy resizeStrategy) {
+		this.table = (Node<K, V>[]) new Node[tableSizeFor(initialCapacity)];
+		this.loadFactor = loadFactor;
+		this.resizeStrategy = Objects.requireNonNull(resizeStrategy);
 		this.size = 0;
 	}
 
 	@SuppressWarnings("unchecked")
 	public PcChainingHashMap(int initialCapacity) {
-		this.table = (Node<K, V>[]) new Node[initialCapacity];
+		this.table = (Node<K, V>[]) new Node[tableSizeFor(initialCapacity)];
 		this.loadFactor = DEFAULT_LOAD_FACTOR;
+		this.resizeStrategy = ResizeStrategy.FULL;
 		this.size = 0;
 	}
 
+	/**
+	 * Create a map with the same mappings as the given map.
+	 * If the given map is also a {@link PcChainingHashMap}, its load factor and resize strategy are kept,
+	 * and its table is copied bucket by bucket, without hashing or comparing keys again.
+	 */
+	@SuppressWarnings("unchecked")
+	public PcChainingHashMap(Map<? extends K, ? extends V> map) {
+		Objects.requireNonNull(map);
+
+		if (map instanceof PcChainingHashMap) {
+			final PcChainingHashMap<? extends K, ? extends V> other = (PcChainingHashMap<? extends K, ? extends V>) map;
+			this.loadFactor = other.loadFactor;
+			this.resizeStrategy = other.resizeStrategy;
+			other.completeMigration();
+			this.table = copyTable(other.table);
+			this.size = other.size;
+		} else {
+			this.loadFactor = DEFAULT_LOAD_FACTOR;
+			this.resizeStrategy = ResizeStrategy.FULL;
+			this.table = (Node<K, V>[]) new Node[Math.max(DEFAULT_INITIAL_CAPACITY, capacityFor(map.size()))];
+			this.size = 0;
+			putMapEntries(map);
+		}
+	}
+
+	/**
+	 * Create a map from the given entries.
+	 * The table is sized upfront for the number of entries, so that it is not resized while the entries are added.
+	 * If several entries have the same key, the last one wins.
+	 */
+	public static <K, V> PcChainingHashMap<K, V> fromEntries(Collection<? extends Entry<? extends K, ? extends V>> entries) {
+		Objects.requireNonNull(entries);
+
+		final PcChainingHashMap<K, V> map = new PcChainingHashMap<>();
+		map.ensureCapacity(entries.size());
+		for (Entry<? extends K, ? extends V> entry : entries) {
+			map.put(entry.getKey(), entry.getValue());
+		}
+		return map;
+	}
+
 	@Override
 	public int size() {
 		return size;
@@ -113,7 +276,7 @@ public class PcChainingHashMap<K, V> extends AbstractMap<K, V> {
 	public boolean containsKey(Object key) {
 		Objects.requireNonNull(key);
 
-		final Node<K, V> foundNode = getNodeForKey(this.table, key);
+		final Node<K, V> foundNode = getNodeForKey(key);
 		return foundNode != null;
 	}
 
@@ -144,7 +307,14 @@ public class PcChainingHashMap<K, V> extends AbstractMap<K, V> {
 		Objects.requireNonNull(key);
 		Objects.requireNonNull(value);
 
-		return putNodeForKey(key, value);
+		return putNodeForKey(hash(key), key, value);
+	}
+
+	@Override
+	public void putAll(Map<? extends K, ? extends V> map) {
+		Objects.requireNonNull(map);
+
+		putMapEntries(map);
 	}
 
 	@Override
@@ -155,9 +325,189 @@ public class PcChainingHashMap<K, V> extends AbstractMap<K, V> {
 		return removedNode != null ? removedNode.value : null;
 	}
 
+	/*
+	 * The following methods look up the key only once: its node is found in its bucket,
+	 * then it is updated in place, removed, or a new node is inserted at the head of the bucket.
+	 * The functions given to these methods must not modify this map,
+	 * otherwise a ConcurrentModificationException is thrown.
+	 */
+
+	@Override
+	public V getOrDefault(Object key, V defaultValue) {
+		Objects.requireNonNull(key);
+
+		final Node<K, V> foundNode = getNodeForKey(key);
+		return foundNode != null ? foundNode.value : defaultValue;
+	}
+
+	@Override
+	public V putIfAbsent(K key, V value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		this.resizeIfNeeded();
+		final int hash = hash(key);
+		final Node<K, V> foundNode = getNodeForUpdate(hash, key);
+		if (foundNode != null) {
+			return foundNode.value;
+		}
+		insertNode(hash, key, value, this.probedChainLength);
+		return null;
+	}
+
+	@Override
+	public boolean remove(Object key, Object value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		final int hash = hash(key);
+		final Node<K, V> foundNode = getNodeForUpdate(hash, key);
+		if (foundNode == null || !foundNode.value.equals(value)) {
+			return false;
+		}
+		removeNode(hash, key);
+		return true;
+	}
+
+	@Override
+	public boolean replace(K key, V oldValue, V newValue) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(oldValue);
+		Objects.requireNonNull(newValue);
+
+		final Node<K, V> foundNode = getNodeForUpdate(hash(key), key);
+		if (foundNode == null || !foundNode.value.equals(oldValue)) {
+			return false;
+		}
+		foundNode.value = newValue;
+		return true;
+	}
+
+	@Override
+	public V replace(K key, V value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		final Node<K, V> foundNode = getNodeForUpdate(hash(key), key);
+		return foundNode != null ? foundNode.setValue(value) : null;
+	}
+
+	@Override
+	public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(mappingFunction);
+
+		this.resizeIfNeeded();
+		final int hash = hash(key);
+		final Node<K, V> foundNode = getNodeForUpdate(hash, key);
+		if (foundNode != null) {
+			return foundNode.value;
+		}
+		final int chainLength = this.probedChainLength;
+		final int expectedModCount = this.modCount;
+		final V newValue = mappingFunction.apply(key);
+		checkForComodification(expectedModCount);
+		if (newValue != null) {
+			insertNode(hash, key, newValue, chainLength);
+		}
+		return newValue;
+	}
+
+	@Override
+	public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(remappingFunction);
+
+		final int hash = hash(key);
+		final Node<K, V> foundNode = getNodeForUpdate(hash, key);
+		if (foundNode == null) {
+			return null;
+		}
+		final int expectedModCount = this.modCount;
+		final V newValue = remappingFunction.apply(key, foundNode.value);
+		checkForComodification(expectedModCount);
+		updateOrRemoveNode(foundNode, hash, key, newValue);
+		return newValue;
+	}
+
+	@Override
+	public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(remappingFunction);
+
+		this.resizeIfNeeded();
+		final int hash = hash(key);
+		final Node<K, V> foundNode = getNodeForUpdate(hash, key);
+		final int chainLength = this.probedChainLength;
+		final int expectedModCount = this.modCount;
+		final V newValue = remappingFunction.apply(key, foundNode != null ? foundNode.value : null);
+		checkForComodification(expectedModCount);
+		if (foundNode != null) {
+			updateOrRemoveNode(foundNode, hash, key, newValue);
+		} else if (newValue != null) {
+			insertNode(hash, key, newValue, chainLength);
+		}
+		return newValue;
+	}
+
+	@Override
+	public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+		Objects.requireNonNull(remappingFunction);
+
+		this.resizeIfNeeded();
+		final int hash = hash(key);
+		final Node<K, V> foundNode = getNodeForUpdate(hash, key);
+		if (foundNode == null) {
+			insertNode(hash, key, value, this.probedChainLength);
+			return value;
+		}
+		final int expectedModCount = this.modCount;
+		final V newValue = remappingFunction.apply(foundNode.value, value);
+		checkForComodification(expectedModCount);
+		updateOrRemoveNode(foundNode, hash, key, newValue);
+		return newValue;
+	}
+
+	@Override
+	public void forEach(BiConsumer<? super K, ? super V> action) {
+		Objects.requireNonNull(action);
+
+		// entries must not move between tables while traversing
+		completeMigration();
+		final Node<K, V>[] table = this.table;
+		final int expectedModCount = this.modCount;
+		for (int i = 0; i < table.length && this.modCount == expectedModCount; i++) {
+			for (Node<K, V> node = table[i]; node != null; node = node.next) {
+				action.accept(node.key, node.value);
+			}
+		}
+		checkForComodification(expectedModCount);
+	}
+
+	@Override
+	public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+		Objects.requireNonNull(function);
+
+		// entries must not move between tables while traversing
+		completeMigration();
+		final Node<K, V>[] table = this.table;
+		final int expectedModCount = this.modCount;
+		for (int i = 0; i < table.length && this.modCount == expectedModCount; i++) {
+			for (Node<K, V> node = table[i]; node != null; node = node.next) {
+				node.value = Objects.requireNonNull(function.apply(node.key, node.value));
+			}
+		}
+		checkForComodification(expectedModCount);
+	}
+
 	@Override
 	public void clear() {
+		this.modCount++;
 		this.size = 0;
+		this.oldTable = null;
+		this.migrationIndex = 0;
 		if (this.table == null) {
 			return;
 		}
@@ -166,7 +516,10 @@ public class PcChainingHashMap<K, V> extends AbstractMap<K, V> {
 
 	@Override
 	public Set<Entry<K, V>> entrySet() {
-		return new EntrySet();
+		if (this.entrySet == null) {
+			this.entrySet = new EntrySet();
+		}
+		return this.entrySet;
 	}
 
 	public class EntrySet extends AbstractSet<Entry<K, V>> {
@@ -176,6 +529,11 @@ public class PcChainingHashMap<K, V> extends AbstractMap<K, V> {
 			return new EntrySetIterator();
 		}
 
+		@Override
+		public Spliterator<Entry<K, V>> spliterator() {
+			return new EntrySetSpliterator(null, 0, -1, 0, 0);
+		}
+
 		@Override
 		public int size() {
 			return size;
@@ -201,7 +559,10 @@ public class PcChainingHashMap<K, V> extends AbstractMap<K, V> {
 
 	@Override
 	public Set<K> keySet() {
-		return new KeySet();
+		if (this.keySet == null) {
+			this.keySet = new KeySet();
+		}
+		return this.keySet;
 	}
 
 	public class KeySet extends AbstractSet<K> {
@@ -211,6 +572,11 @@ public class PcChainingHashMap<K, V> extends AbstractMap<K, V> {
 			return new KeysIterator();
 		}
 
+		@Override
+		public Spliterator<K> spliterator() {
+			return new KeysSpliterator(null, 0, -1, 0, 0);
+		}
+
 		@Override
 		public int size() {
 			return size;
@@ -236,7 +602,10 @@ public class PcChainingHashMap<K, V> extends AbstractMap<K, V> {
 
 	@Override
 	public Collection<V> values() {
-		return new Values();
+		if (this.values == null) {
+			this.values = new Values();
+		}
+		return this.values;
 	}
 
 	public class Values extends AbstractCollection<V> {
@@ -246,6 +615,11 @@ public class PcChainingHashMap<K, V> extends AbstractMap<K, V> {
 			return new ValuesIterator();
 		}
 
+		@Override
+		public Spliterator<V> spliterator() {
+			return new ValuesSpliterator(null, 0, -1, 0, 0);
+		}
+
 		@Override
 		public int size() {
 			return size;
@@ -274,8 +648,12 @@ public class PcChainingHashMap<K, V> extends AbstractMap<K, V> {
 		private int indexInTable;
 		private Node<K, V> nextNode;
 		private Node<K, V> currentNode;
+		private int expectedModCount;
 
 		public BaseIterator() {
+			// entries must not move between tables while iterating
+			completeMigration();
+			this.expectedModCount = modCount;
 			final Node<K, V>[]table = PcChainingHashMap.this.table;
 			this.indexInTable = 0;
 			this.nextNode = null;
@@ -294,6 +672,7 @@ public class PcChainingHashMap<K, V> extends AbstractMap<K, V> {
 		}
 
 		protected Node<K, V> nextNode() {
+			checkForComodification(expectedModCount);
 			if (nextNode == null) {
 				throw new NoSuchElementException();
 			}
@@ -306,9 +685,11 @@ public class PcChainingHashMap<K, V> extends AbstractMap<K, V> {
 			if (currentNode == null) {
 				throw new IllegalStateException("next() has not been called yet, cannot use remove()");
 			}
+			checkForComodification(expectedModCount);
 			final Node<K, V> toRemove = currentNode;
 			currentNode = null;
-			removeNodeForKey(toRemove.key);
+			removeNodeForKey(toRemove.key, false);
+			expectedModCount = modCount;
 		}
 
 		private void computeNext() {
@@ -336,6 +717,161 @@ public class PcChainingHashMap<K, V> extends AbstractMap<K, V> {
 
 	}
 
+	/**
+	 * Base spliterator, that traverses a range of buckets of the table.
+	 * Splitting a spliterator splits its range of buckets in two halves.
+	 * The top level spliterator is bound to the table on first use, and is the only one to report {@link Spliterator#SIZED},
+	 * as the number of nodes in a range of buckets is not known.
+	 */
+	public abstract class BaseSpliterator<T> implements Spliterator<T> {
+
+		private Node<K, V>[] table;
+		private int indexInTable;
+		private int fence;
+		private int estimatedSize;
+		private int expectedModCount;
+		private Node<K, V> nextNode;
+
+		protected BaseSpliterator(Node<K, V>[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			this.table = table;
+			this.indexInTable = origin;
+			this.fence = fence;
+			this.estimatedSize = estimatedSize;
+			this.expectedModCount = expectedModCount;
+			this.nextNode = null;
+		}
+
+		protected abstract T extract(Node<K, V> node);
+
+		protected abstract BaseSpliterator<T> createSplit(Node<K, V>[] table, int origin, int fence, int estimatedSize, int expectedModCount);
+
+		private int getFence() {
+			if (this.fence < 0) {
+				// entries must not move between tables while traversing
+				completeMigration();
+				this.table = PcChainingHashMap.this.table;
+				this.estimatedSize = size;
+				this.expectedModCount = modCount;
+				this.fence = this.table.length;
+			}
+			return this.fence;
+		}
+
+		@Override
+		public Spliterator<T> trySplit() {
+			final int high = getFence();
+			final int low = this.indexInTable;
+			final int middle = (low + high) >>> 1;
+			if (low >= middle || this.nextNode != null) {
+				return null;
+			}
+			this.indexInTable = middle;
+			this.estimatedSize >>>= 1;
+			return createSplit(this.table, low, middle, this.estimatedSize, this.expectedModCount);
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super T> action) {
+			Objects.requireNonNull(action);
+
+			final int high = getFence();
+			while (this.nextNode != null || this.indexInTable < high) {
+				if (this.nextNode == null) {
+					this.nextNode = this.table[this.indexInTable++];
+				} else {
+					final Node<K, V> node = this.nextNode;
+					this.nextNode = node.next;
+					action.accept(extract(node));
+					checkForComodification(this.expectedModCount);
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super T> action) {
+			Objects.requireNonNull(action);
+
+			final int high = getFence();
+			// finish the current bucket, then traverse the remaining buckets
+			for (Node<K, V> node = this.nextNode; node != null; node = node.next) {
+				action.accept(extract(node));
+			}
+			this.nextNode = null;
+			while (this.indexInTable < high) {
+				for (Node<K, V> node = this.table[this.indexInTable++]; node != null; node = node.next) {
+					action.accept(extract(node));
+				}
+			}
+			checkForComodification(this.expectedModCount);
+		}
+
+		@Override
+		public long estimateSize() {
+			getFence();
+			return this.estimatedSize;
+		}
+
+		@Override
+		public int characteristics() {
+			return (this.fence < 0 || this.estimatedSize == size ? Spliterator.SIZED : 0)
+					| Spliterator.DISTINCT
+					| Spliterator.NONNULL;
+		}
+	}
+
+	public class EntrySetSpliterator extends BaseSpliterator<Entry<K, V>> {
+
+		public EntrySetSpliterator(Node<K, V>[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			super(table, origin, fence, estimatedSize, expectedModCount);
+		}
+
+		@Override
+		protected Entry<K, V> extract(Node<K, V> node) {
+			return node;
+		}
+
+		@Override
+		protected EntrySetSpliterator createSplit(Node<K, V>[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			return new EntrySetSpliterator(table, origin, fence, estimatedSize, expectedModCount);
+		}
+	}
+
+	public class KeysSpliterator extends BaseSpliterator<K> {
+
+		public KeysSpliterator(Node<K, V>[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			super(table, origin, fence, estimatedSize, expectedModCount);
+		}
+
+		@Override
+		protected K extract(Node<K, V> node) {
+			return node.key;
+		}
+
+		@Override
+		protected KeysSpliterator createSplit(Node<K, V>[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			return new KeysSpliterator(table, origin, fence, estimatedSize, expectedModCount);
+		}
+	}
+
+	public class ValuesSpliterator extends BaseSpliterator<V> {
+
+		public ValuesSpliterator(Node<K, V>[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			super(table, origin, fence, estimatedSize, expectedModCount);
+		}
+
+		@Override
+		protected V extract(Node<K, V> node) {
+			return node.value;
+		}
+
+		@Override
+		protected ValuesSpliterator createSplit(Node<K, V>[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			return new ValuesSpliterator(table, origin, fence, estimatedSize, expectedModCount);
+		}
+	}
+
 	public String getLayout() {
 		if (size == 0) {
 			return "EMPTY (size=0, capacity=" + this.table.length + ", loadFactor=0)\n";
@@ -348,6 +884,19 @@ public class PcChainingHashMap<K, V> extends AbstractMap<K, V> {
 				.append("), loadFactor=")
 				.append(size / (float)this.table.length)
 				.append("\n");
+		appendTableLayout(result, this.table);
+		if (this.oldTable != null) {
+			result.append("old table (migrated ")
+					.append(this.migrationIndex)
+					.append("/")
+					.append(this.oldTable.length)
+					.append(" buckets):\n");
+			appendTableLayout(result, this.oldTable);
+		}
+		return result.toString();
+	}
+
+	private void appendTableLayout(StringBuilder result, Node<K, V>[] table) {
 		for (int i = 0; i < table.length; ++i) {
 			Node<K, V> node = table[i];
 			if (node == null) {
@@ -370,54 +919,93 @@ public class PcChainingHashMap<K, V> extends AbstractMap<K, V> {
 						.append(i)
 						.append(" (")
 						.append(count)
-						.append(" nodes) : ")
+						.append(table[i] instanceof TreeNode ? " nodes, tree) : " : " nodes) : ")
 						.append(allNodes)
 						.append("\n");
 			}
 		}
-		return result.toString();
 	}
 
+	private void checkForComodification(int expectedModCount) {
+		if (this.modCount != expectedModCount) {
+			throw new ConcurrentModificationException();
+		}
+	}
+
+	/**
+	 * Compute the hash of the given key.
+	 * The high bits of the hash code are spread to the low bits, as only the low bits are used
+	 * to compute the index in the table: this prevents hash codes that only differ in their high bits
+	 * from always colliding.
+	 */
 	private int hash(Object key) {
-		return key.hashCode();
+		final int hashCode = key.hashCode();
+		return hashCode ^ (hashCode >>> 16);
 	}
 
-	private V putNodeForKey(K key, V value) {
-		this.resizeIfNeeded(this.size + 1);
-		final V oldValue = putNodeForKey(this.table, key, value);
+	private V putNodeForKey(int hash, K key, V value) {
+		this.resizeIfNeeded();
+		this.migrateKeyBucket(hash);
+		final V oldValue = putNodeForKey(this.table, hash, key, value);
 		if (oldValue == null) {
 			// if old value was null, it means we inserted a new element
 			this.size++;
+			this.modCount++;
 		}
 		return oldValue;
 	}
 
-	private V putNodeForKey(Node<K, V>[] target, K key, V value) {
-		// compute hash and index
-		final int hash = hash(key);
+	private V putNodeForKey(Node<K, V>[] target, int hash, K key, V value) {
+		// compute index
 		final int size = target.length;
 		final int index = (size - 1) & hash;
 
 		// get node at index
 		final Node<K, V> nodeAtIndex = target[index];
-		if (nodeAtIndex != null) {
-			// if node exists, replace or append to node
-			final Node<K, V > upsertedNode = updateOrAppendNode(nodeAtIndex, key);
+		if (nodeAtIndex instanceof TreeNode) {
+			// if the bin is a tree, replace or insert in the tree
+			final Node<K, V> upsertedNode = putTreeNode(target, index, hash, key);
 			return upsertedNode.setValue(value);
+		} else if (nodeAtIndex != null) {
+			// if node exists, replace or append to node, counting the nodes of the chain on the way
+			int chainLength = 1;
+			Node<K, V> current = nodeAtIndex;
+			while (!current.matches(hash, key)) {
+				if (current.next == null) {
+					current.next = new Node<>(hash, key, value);
+					if (chainLength + 1 >= TREEIFY_THRESHOLD) {
+						// if the chain became too long, convert it to a tree
+						treeifyBin(target, index);
+					}
+					return null;
+				}
+				current = current.next;
+				chainLength++;
+			}
+			return current.setValue(value);
 		} else {
 			// if node does not exist, simply put a new node at that index
-			target[index] = new Node<>(key, value);
+			target[index] = new Node<>(hash, key, value);
 			return null;
 		}
 	}
 
 	private Node<K, V> getNodeForKey(Object key) {
-		return getNodeForKey(this.table, key);
+		this.migrateStep();
+		final int hash = hash(key);
+		if (this.oldTable != null) {
+			// if a resize is in progress and the bucket of the key has not been migrated yet,
+			// the key can only be in the old table
+			final Node<K, V> nodeInOldTable = this.oldTable[(this.oldTable.length - 1) & hash];
+			if (nodeInOldTable != null) {
+				return getNodeForKey(this.oldTable, hash, key);
+			}
+		}
+		return getNodeForKey(this.table, hash, key);
 	}
 
-	private Node<K, V> getNodeForKey(Node<K, V>[] target, Object key) {
-		// compute hash and index
-		final int hash = hash(key);
+	private Node<K, V> getNodeForKey(Node<K, V>[] target, int hash, Object key) {
+		// compute index
 		final int size = target.length;
 		final int index = (size - 1) & hash;
 
@@ -428,30 +1016,115 @@ public class PcChainingHashMap<K, V> extends AbstractMap<K, V> {
 			return null;
 		} else {
 			// if there is a node at index, traverse it until we find it
-			return findNode(nodeAtIndex, key);
+			if (nodeAtIndex instanceof TreeNode) {
+				return findTreeNode(rootOf((TreeNode<K, V>) nodeAtIndex), hash, key);
+			}
+			return findNode(nodeAtIndex, hash, key);
 		}
 	}
 
 	private Node<K, V> removeNodeForKey(Object key) {
-		final Node<K, V> removedNode = removeNodeForKey(this.table, key);
+		return removeNodeForKey(key, true);
+	}
+
+	/**
+	 * Find the node of the given key, so that it can then be updated, removed or inserted in place.
+	 * If a resize is in progress, the bucket of the key is migrated first,
+	 * so that the key can only be in the current table.
+	 */
+	private Node<K, V> getNodeForUpdate(int hash, Object key) {
+		this.migrateKeyBucket(hash);
+		final Node<K, V>[] table = this.table;
+		final Node<K, V> nodeAtIndex = table[(table.length - 1) & hash];
+		if (nodeAtIndex instanceof TreeNode) {
+			return findTreeNode(rootOf((TreeNode<K, V>) nodeAtIndex), hash, key);
+		}
+		// count the nodes on the way, so that an insertion after a miss knows the length of the chain
+		int chainLength = 0;
+		for (Node<K, V> current = nodeAtIndex; current != null; current = current.next) {
+			if (current.matches(hash, key)) {
+				return current;
+			}
+			chainLength++;
+		}
+		this.probedChainLength = chainLength;
+		return null;
+	}
+
+	/**
+	 * Insert a new node for a key that {@link #getNodeForUpdate(int, Object)} did not find in the current table.
+	 * The node is put at the head of its bucket, and the given length of the chain is the one counted by the lookup,
+	 * so that the bucket does not need to be traversed again.
+	 */
+	private void insertNode(int hash, K key, V value, int chainLength) {
+		final Node<K, V>[] table = this.table;
+		final int index = (table.length - 1) & hash;
+		final Node<K, V> nodeAtIndex = table[index];
+		if (nodeAtIndex instanceof TreeNode) {
+			putTreeNode(table, index, hash, key).value = value;
+		} else {
+			table[index] = new Node<>(hash, key, value, nodeAtIndex);
+			if (chainLength + 1 >= TREEIFY_THRESHOLD) {
+				treeifyBin(table, index);
+			}
+		}
+		this.size++;
+		this.modCount++;
+	}
+
+	/**
+	 * Set the value of the given node of the current table, or remove the node if the new value is null.
+	 */
+	private void updateOrRemoveNode(Node<K, V> node, int hash, Object key, V newValue) {
+		if (newValue != null) {
+			node.value = newValue;
+		} else {
+			removeNode(hash, key);
+		}
+	}
+
+	private void removeNode(int hash, Object key) {
+		if (removeNodeForKey(this.table, hash, key, true) != null) {
+			this.size--;
+			this.modCount++;
+		}
+	}
+
+	/**
+	 * Remove the node for the given key.
+	 *
+	 * @param movable if false, the other nodes of the bin are not moved around,
+	 *                which is needed when removing while iterating
+	 */
+	private Node<K, V> removeNodeForKey(Object key, boolean movable) {
+		final int hash = hash(key);
+		this.migrateKeyBucket(hash);
+		final Node<K, V> removedNode = removeNodeForKey(this.table, hash, key, movable);
 		if (removedNode != null) {
 			// if old value was null, it means we removed an element
 			this.size--;
+			this.modCount++;
 		}
 		return removedNode;
 	}
 
-	private Node<K, V> removeNodeForKey(Node<K, V>[] target, Object key) {
-		// compute hash and index
-		final int hash = hash(key);
+	private Node<K, V> removeNodeForKey(Node<K, V>[] target, int hash, Object key, boolean movable) {
+		// compute index
 		final int size = target.length;
 		final int index = (size - 1) & hash;
 
 		// get node at index
 		final Node<K, V> nodeAtIndex = target[index];
-		if (nodeAtIndex != null) {
+		if (nodeAtIndex instanceof TreeNode) {
+			// if the bin is a tree, find the node in the tree and remove it
+			final TreeNode<K, V> removedNode = findTreeNode(rootOf((TreeNode<K, V>) nodeAtIndex), hash, key);
+			if (removedNode != null) {
+				removeTreeNode(target, index, removedNode, movable);
+			}
+			return removedNode;
+		} else if (nodeAtIndex != null) {
 			// if node exists, try to remove from node
-			final Node<K, V > removedNode = removeNodeForKey(nodeAtIndex, key);
+			final Node<K, V > removedNode = removeNodeForKey(nodeAtIndex, hash, key);
 			if (removedNode != null) {
 				// if removed value was not null, it means we deleted an element
 				if (removedNode == nodeAtIndex) {
@@ -468,14 +1141,14 @@ public class PcChainingHashMap<K, V> extends AbstractMap<K, V> {
 		}
 	}
 
-	private Node<K, V> removeNodeForKey(Node<K, V> head, Object key) {
+	private Node<K, V> removeNodeForKey(Node<K, V> head, int hash, Object key) {
 		if (head == null) {
 			return null;
 		}
 		Node<K, V> current = head;
 		Node<K, V> prev = null;
 		while (current != null) {
-			if (current.key.equals(key)) {
+			if (current.matches(hash, key)) {
 				if (prev != null) {
 					prev.next = current.next;
 				}
@@ -487,54 +1160,800 @@ public class PcChainingHashMap<K, V> extends AbstractMap<K, V> {
 		return null;
 	}
 
-	private Node<K, V> updateOrAppendNode(Node<K, V> head, K key) {
-		if (head == null) {
-			return new Node<>(key, null);
-		}
+	private Node<K, V> findNode(Node<K, V> head, int hash, Object key) {
 		Node<K, V> current = head;
-		Node<K, V> tail = head;
 		while (current != null) {
-			if (current.key.equals(key)) {
+			if (current.matches(hash, key)) {
 				return current;
 			}
-			if (current.next == null) {
-				tail = current;
-			}
 			current = current.next;
 		}
-		final Node<K, V> insertedNode = new Node<>(key, null);
-		tail.next = insertedNode;
+		return null;
+	}
+
+	/*
+	 * Tree bins
+	 */
+
+	/**
+	 * Convert the chain at the given index to a tree bin.
+	 */
+	private void treeifyBin(Node<K, V>[] target, int index) {
+		// replace all nodes of the chain with tree nodes, keeping the order of the chain
+		TreeNode<K, V> head = null;
+		TreeNode<K, V> tail = null;
+		for (Node<K, V> current = target[index]; current != null; current = current.next) {
+			final TreeNode<K, V> treeNode = new TreeNode<>(current.hash, current.key, current.value, null);
+			if (tail == null) {
+				head = treeNode;
+			} else {
+				treeNode.prev = tail;
+				tail.next = treeNode;
+			}
+			tail = treeNode;
+		}
+		target[index] = head;
+
+		// then build the tree from the chain
+		buildTree(target, index);
+	}
+
+	/**
+	 * Build the tree of the tree bin at the given index, from the chain of tree nodes of that bin.
+	 */
+	private void buildTree(Node<K, V>[] target, int index) {
+		TreeNode<K, V> root = null;
+		for (TreeNode<K, V> current = (TreeNode<K, V>) target[index]; current != null; current = (TreeNode<K, V>) current.next) {
+			root = insertIntoTree(root, current);
+		}
+		moveRootToFront(target, index, root);
+	}
+
+	/**
+	 * Convert the tree bin starting with the given node back to a regular chain.
+	 *
+	 * @return the head of the new chain
+	 */
+	private Node<K, V> untreeify(Node<K, V> first) {
+		Node<K, V> head = null;
+		Node<K, V> tail = null;
+		for (Node<K, V> current = first; current != null; current = current.next) {
+			final Node<K, V> node = new Node<>(current.hash, current.key, current.value);
+			if (tail == null) {
+				head = node;
+			} else {
+				tail.next = node;
+			}
+			tail = node;
+		}
+		return head;
+	}
+
+	/**
+	 * Find or insert the node with the given key in the tree bin at the given index.
+	 * If the node is inserted, its value is null.
+	 */
+	private TreeNode<K, V> putTreeNode(Node<K, V>[] target, int index, int hash, K key) {
+		final TreeNode<K, V> first = (TreeNode<K, V>) target[index];
+		final TreeNode<K, V> root = rootOf(first);
+		final TreeNode<K, V> foundNode = findTreeNode(root, hash, key);
+		if (foundNode != null) {
+			return foundNode;
+		}
+		// link the new node right after the head of the chain
+		final Node<K, V> firstNext = first.next;
+		final TreeNode<K, V> insertedNode = new TreeNode<>(hash, key, null, firstNext);
+		first.next = insertedNode;
+		insertedNode.prev = first;
+		if (firstNext != null) {
+			((TreeNode<K, V>) firstNext).prev = insertedNode;
+		}
+		moveRootToFront(target, index, insertIntoTree(root, insertedNode));
 		return insertedNode;
 	}
 
-	private Node<K, V> findNode(Node<K, V> head, Object key) {
-		Node<K, V> current = head;
+	/**
+	 * Remove the given node from the tree bin at the given index.
+	 * If the tree becomes too small, it is converted back to a chain.
+	 *
+	 * @param movable if false, the other nodes of the bin are not moved around in the chain
+	 */
+	private void removeTreeNode(Node<K, V>[] target, int index, TreeNode<K, V> node, boolean movable) {
+		final TreeNode<K, V> root = rootOf(node);
+
+		// unlink the node from the chain
+		final TreeNode<K, V> prev = node.prev;
+		final TreeNode<K, V> next = (TreeNode<K, V>) node.next;
+		if (prev == null) {
+			target[index] = next;
+		} else {
+			prev.next = next;
+		}
+		if (next != null) {
+			next.prev = prev;
+		}
+		if (target[index] == null) {
+			// the bin is now empty
+			return;
+		}
+
+		// then remove it from the tree
+		final TreeNode<K, V> newRoot = deleteFromTree(root, node);
+		if (movable) {
+			if (isTooSmallForTree(newRoot)) {
+				target[index] = untreeify(target[index]);
+			} else {
+				moveRootToFront(target, index, newRoot);
+			}
+		}
+	}
+
+	/**
+	 * Find the node with the given key in the given tree.
+	 */
+	private TreeNode<K, V> findTreeNode(TreeNode<K, V> root, int hash, Object key) {
+		Class<?> keyClass = null;
+		boolean keyClassResolved = false;
+		TreeNode<K, V> current = root;
 		while (current != null) {
-			if (current.key.equals(key)) {
+			if (current.hash > hash) {
+				current = current.left;
+			} else if (current.hash < hash) {
+				current = current.right;
+			} else if (key.equals(current.key)) {
 				return current;
+			} else if (current.left == null) {
+				current = current.right;
+			} else if (current.right == null) {
+				current = current.left;
+			} else {
+				if (!keyClassResolved) {
+					keyClass = comparableClassFor(key);
+					keyClassResolved = true;
+				}
+				final int direction = compareComparables(keyClass, key, current.key);
+				if (direction != 0) {
+					current = direction < 0 ? current.left : current.right;
+				} else {
+					// if the keys cannot be ordered, we have to search both sub trees
+					final TreeNode<K, V> foundNode = findTreeNode(current.right, hash, key);
+					if (foundNode != null) {
+						return foundNode;
+					}
+					current = current.left;
+				}
 			}
-			current = current.next;
 		}
 		return null;
 	}
 
+	/**
+	 * Insert the given node in the given tree, and rebalance the tree.
+	 * The node must not be present in the tree yet.
+	 *
+	 * @return the new root of the tree
+	 */
+	private static <K, V> TreeNode<K, V> insertIntoTree(TreeNode<K, V> root, TreeNode<K, V> node) {
+		node.left = null;
+		node.right = null;
+		if (root == null) {
+			node.parent = null;
+			node.red = false;
+			return node;
+		}
+		final Class<?> keyClass = comparableClassFor(node.key);
+		TreeNode<K, V> current = root;
+		while (true) {
+			int direction;
+			if (current.hash > node.hash) {
+				direction = -1;
+			} else if (current.hash < node.hash) {
+				direction = 1;
+			} else if ((direction = compareComparables(keyClass, node.key, current.key)) == 0) {
+				direction = tieBreakOrder(node.key, current.key);
+			}
+			final TreeNode<K, V> parent = current;
+			current = direction < 0 ? current.left : current.right;
+			if (current == null) {
+				node.parent = parent;
+				if (direction < 0) {
+					parent.left = node;
+				} else {
+					parent.right = node;
+				}
+				return balanceInsertion(root, node);
+			}
+		}
+	}
+
+	/**
+	 * Remove the given node from the given tree, and rebalance the tree.
+	 *
+	 * @return the new root of the tree
+	 */
+	private static <K, V> TreeNode<K, V> deleteFromTree(TreeNode<K, V> root, TreeNode<K, V> node) {
+		// the node that takes the place of the removed node, and its parent (as it may be null)
+		TreeNode<K, V> replacement;
+		TreeNode<K, V> replacementParent;
+		boolean removedRed = node.red;
+		if (node.left == null) {
+			replacement = node.right;
+			replacementParent = node.parent;
+			root = transplant(root, node, node.right);
+		} else if (node.right == null) {
+			replacement = node.left;
+			replacementParent = node.parent;
+			root = transplant(root, node, node.left);
+		} else {
+			// if the node has two children, it is replaced by its successor
+			TreeNode<K, V> successor = node.right;
+			while (successor.left != null) {
+				successor = successor.left;
+			}
+			removedRed = successor.red;
+			replacement = successor.right;
+			if (successor.parent == node) {
+				replacementParent = successor;
+			} else {
+				replacementParent = successor.parent;
+				root = transplant(root, successor, successor.right);
+				successor.right = node.right;
+				successor.right.parent = successor;
+			}
+			root = transplant(root, node, successor);
+			successor.left = node.left;
+			successor.left.parent = successor;
+			successor.red = node.red;
+		}
+		node.parent = null;
+		node.left = null;
+		node.right = null;
+		if (!removedRed) {
+			root = balanceDeletion(root, replacement, replacementParent);
+		}
+		return root;
+	}
+
+	/**
+	 * Replace the sub tree rooted at the given node with the sub tree rooted at the given replacement.
+	 *
+	 * @return the new root of the tree
+	 */
+	private static <K, V> TreeNode<K, V> transplant(TreeNode<K, V> root, TreeNode<K, V> node, TreeNode<K, V> replacement) {
+		final TreeNode<K, V> parent = node.parent;
+		if (parent == null) {
+			root = replacement;
+		} else if (parent.left == node) {
+			parent.left = replacement;
+		} else {
+			parent.right = replacement;
+		}
+		if (replacement != null) {
+			replacement.parent = parent;
+		}
+		return root;
+	}
+
+	private static <K, V> TreeNode<K, V> balanceInsertion(TreeNode<K, V> root, TreeNode<K, V> node) {
+		node.red = true;
+		TreeNode<K, V> current = node;
+		while (true) {
+			TreeNode<K, V> parent = current.parent;
+			if (parent == null) {
+				current.red = false;
+				return current;
+			}
+			if (!parent.red || parent.parent == null) {
+				return root;
+			}
+			final TreeNode<K, V> grandParent = parent.parent;
+			if (parent == grandParent.left) {
+				final TreeNode<K, V> uncle = grandParent.right;
+				if (uncle != null && uncle.red) {
+					uncle.red = false;
+					parent.red = false;
+					grandParent.red = true;
+					current = grandParent;
+				} else {
+					if (current == parent.right) {
+						current = parent;
+						root = rotateLeft(root, current);
+						parent = current.parent;
+					}
+					parent.red = false;
+					grandParent.red = true;
+					root = rotateRight(root, grandParent);
+				}
+			} else {
+				final TreeNode<K, V> uncle = grandParent.left;
+				if (uncle != null && uncle.red) {
+					uncle.red = false;
+					parent.red = false;
+					grandParent.red = true;
+					current = grandParent;
+				} else {
+					if (current == parent.left) {
+						current = parent;
+						root = rotateRight(root, current);
+						parent = current.parent;
+					}
+					parent.red = false;
+					grandParent.red = true;
+					root = rotateLeft(root, grandParent);
+				}
+			}
+		}
+	}
+
+	private static <K, V> TreeNode<K, V> balanceDeletion(TreeNode<K, V> root, TreeNode<K, V> node, TreeNode<K, V> parent) {
+		TreeNode<K, V> current = node;
+		TreeNode<K, V> currentParent = parent;
+		while (current != root && isBlack(current)) {
+			if (current == currentParent.left) {
+				TreeNode<K, V> sibling = currentParent.right;
+				if (sibling.red) {
+					sibling.red = false;
+					currentParent.red = true;
+					root = rotateLeft(root, currentParent);
+					sibling = currentParent.right;
+				}
+				if (isBlack(sibling.left) && isBlack(sibling.right)) {
+					sibling.red = true;
+					current = currentParent;
+					currentParent = current.parent;
+				} else {
+					if (isBlack(sibling.right)) {
+						sibling.left.red = false;
+						sibling.red = true;
+						root = rotateRight(root, sibling);
+						sibling = currentParent.right;
+					}
+					sibling.red = currentParent.red;
+					currentParent.red = false;
+					sibling.right.red = false;
+					root = rotateLeft(root, currentParent);
+					current = root;
+				}
+			} else {
+				TreeNode<K, V> sibling = currentParent.left;
+				if (sibling.red) {
+					sibling.red = false;
+					currentParent.red = true;
+					root = rotateRight(root, currentParent);
+					sibling = currentParent.left;
+				}
+				if (isBlack(sibling.left) && isBlack(sibling.right)) {
+					sibling.red = true;
+					current = currentParent;
+					currentParent = current.parent;
+				} else {
+					if (isBlack(sibling.left)) {
+						sibling.right.red = false;
+						sibling.red = true;
+						root = rotateLeft(root, sibling);
+						sibling = currentParent.left;
+					}
+					sibling.red = currentParent.red;
+					currentParent.red = false;
+					sibling.left.red = false;
+					root = rotateRight(root, currentParent);
+					current = root;
+				}
+			}
+		}
+		if (current != null) {
+			current.red = false;
+		}
+		return root;
+	}
+
+	private static <K, V> TreeNode<K, V> rotateLeft(TreeNode<K, V> root, TreeNode<K, V> node) {
+		final TreeNode<K, V> right = node.right;
+		if (right == null) {
+			return root;
+		}
+		node.right = right.left;
+		if (right.left != null) {
+			right.left.parent = node;
+		}
+		root = transplant(root, node, right);
+		right.left = node;
+		node.parent = right;
+		return root;
+	}
+
+	private static <K, V> TreeNode<K, V> rotateRight(TreeNode<K, V> root, TreeNode<K, V> node) {
+		final TreeNode<K, V> left = node.left;
+		if (left == null) {
+			return root;
+		}
+		node.left = left.right;
+		if (left.right != null) {
+			left.right.parent = node;
+		}
+		root = transplant(root, node, left);
+		left.right = node;
+		node.parent = left;
+		return root;
+	}
+
+	private static boolean isBlack(TreeNode<?, ?> node) {
+		return node == null || !node.red;
+	}
+
+	private static <K, V> TreeNode<K, V> rootOf(TreeNode<K, V> node) {
+		TreeNode<K, V> current = node;
+		while (current.parent != null) {
+			current = current.parent;
+		}
+		return current;
+	}
+
+	/**
+	 * Heuristic used to decide if a tree bin should be converted back to a chain.
+	 * This avoids counting the nodes of the bin on each removal.
+	 */
+	private static boolean isTooSmallForTree(TreeNode<?, ?> root) {
+		return root == null || root.right == null || root.left == null || root.left.left == null;
+	}
+
+	/**
+	 * Make sure that the root of the tree is the head of the chain, so that
+	 * it can be found without traversing the tree.
+	 */
+	private static <K, V> void moveRootToFront(Node<K, V>[] target, int index, TreeNode<K, V> root) {
+		final TreeNode<K, V> first = (TreeNode<K, V>) target[index];
+		if (root == first) {
+			return;
+		}
+		// unlink root from its current position in the chain
+		final TreeNode<K, V> rootPrev = root.prev;
+		final Node<K, V> rootNext = root.next;
+		rootPrev.next = rootNext;
+		if (rootNext != null) {
+			((TreeNode<K, V>) rootNext).prev = rootPrev;
+		}
+		// then link it at the head of the chain
+		root.next = first;
+		root.prev = null;
+		first.prev = root;
+		target[index] = root;
+	}
+
+	/**
+	 * Return the class of the given key if it is of the form "class C implements Comparable&lt;C&gt;",
+	 * or null otherwise.
+	 */
+	private static Class<?> comparableClassFor(Object key) {
+		if (!(key instanceof Comparable)) {
+			return null;
+		}
+		final Class<?> keyClass = key.getClass();
+		if (keyClass == String.class) {
+			return keyClass;
+		}
+		for (Type type : keyClass.getGenericInterfaces()) {
+			if (type instanceof ParameterizedType) {
+				final ParameterizedType parameterizedType = (ParameterizedType) type;
+				final Type[] typeArguments = parameterizedType.getActualTypeArguments();
+				if (parameterizedType.getRawType() == Comparable.class
+						&& typeArguments.length == 1
+						&& typeArguments[0] == keyClass) {
+					return keyClass;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Compare the given keys if the other key has the given comparable class, or return 0 otherwise.
+	 */
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	private static int compareComparables(Class<?> keyClass, Object key, Object otherKey) {
+		if (keyClass == null || otherKey == null || otherKey.getClass() != keyClass) {
+			return 0;
+		}
+		return ((Comparable) key).compareTo(otherKey);
+	}
+
+	/**
+	 * Arbitrary order used to insert keys that have the same hash and that are not comparable.
+	 * This never returns 0, as we only need a consistent order during an insertion.
+	 */
+	private static int tieBreakOrder(Object key, Object otherKey) {
+		int order = key.getClass().getName().compareTo(otherKey.getClass().getName());
+		if (order == 0) {
+			order = System.identityHashCode(key) <= System.identityHashCode(otherKey) ? -1 : 1;
+		}
+		return order;
+	}
+
+	/**
+	 * Put all the mappings of the given map, after growing the table once for all of them.
+	 * If the given map is also a {@link PcChainingHashMap}, the hashes cached in its nodes are reused.
+	 */
 	@SuppressWarnings("unchecked")
-	private void resizeIfNeeded(int newSize) {
+	private void putMapEntries(Map<? extends K, ? extends V> map) {
+		if (map.isEmpty()) {
+			return;
+		}
+		ensureCapacity(this.size + map.size());
+		if (map instanceof PcChainingHashMap) {
+			final PcChainingHashMap<? extends K, ? extends V> other = (PcChainingHashMap<? extends K, ? extends V>) map;
+			other.completeMigration();
+			for (Node<? extends K, ? extends V> head : other.table) {
+				for (Node<? extends K, ? extends V> node = head; node != null; node = node.next) {
+					putNodeForKey(node.hash, node.key, node.value);
+				}
+			}
+		} else {
+			for (Entry<? extends K, ? extends V> entry : map.entrySet()) {
+				put(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Copy the buckets of the given table, keeping the order of the nodes of each bucket.
+	 * Tree bins are copied as tree bins.
+	 */
+	@SuppressWarnings("unchecked")
+	private Node<K, V>[] copyTable(Node<? extends K, ? extends V>[] source) {
+		final Node<K, V>[] copy = (Node<K, V>[]) new Node[source.length];
+		for (int i = 0; i < source.length; i++) {
+			Node<K, V> tail = null;
+			for (Node<? extends K, ? extends V> node = source[i]; node != null; node = node.next) {
+				final Node<K, V> copiedNode = new Node<>(node.hash, node.key, node.value);
+				if (tail == null) {
+					copy[i] = copiedNode;
+				} else {
+					tail.next = copiedNode;
+				}
+				tail = copiedNode;
+			}
+			if (source[i] instanceof TreeNode) {
+				treeifyBin(copy, i);
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * Return the capacity of a table that can hold the given number of entries without being resized.
+	 */
+	private int capacityFor(int expectedSize) {
+		return tableSizeFor((int) Math.min(MAXIMUM_CAPACITY, (long) (expectedSize / this.loadFactor) + 1));
+	}
+
+	/**
+	 * Grow the table so that it can hold the given number of entries without being resized.
+	 * If the map is empty, the larger table is simply allocated.
+	 * Otherwise, the table is doubled as many times as needed, which splits the buckets without hashing keys again,
+	 * and regardless of the resize strategy.
+	 */
+	@SuppressWarnings("unchecked")
+	private void ensureCapacity(int expectedSize) {
+		final int capacity = capacityFor(expectedSize);
+		if (capacity <= this.table.length) {
+			return;
+		}
+		this.modCount++;
+		if (this.size == 0) {
+			this.oldTable = null;
+			this.migrationIndex = 0;
+			this.table = (Node<K, V>[]) new Node[capacity];
+			return;
+		}
+		completeMigration();
+		while (this.table.length < capacity) {
+			this.table = splitTable(this.table);
+		}
+	}
+
+	/**
+	 * Check if the threshold has been met to trigger a resize, and perform the resize if it was met.
+	 * The new table is twice as large as the current table, which allows to move
+	 * the existing nodes to the new table without allocating new nodes (see {@link #splitBucket}).
+	 * With {@link ResizeStrategy#FULL}, all the entries are moved to the new table right away.
+	 * With {@link ResizeStrategy#INCREMENTAL}, the current table becomes the old table,
+	 * and its buckets will be migrated by the following operations.
+	 */
+	@SuppressWarnings("unchecked")
+	private void resizeIfNeeded() {
 		final float currentLoadFactor = this.size / (float)this.table.length;
-		if (currentLoadFactor < loadFactor) {
+		if (currentLoadFactor < loadFactor || this.table.length >= MAXIMUM_CAPACITY) {
 			return;
 		}
-		final int nextPowerOfTwo = (32 - Integer.numberOfLeadingZeros(newSize - 1));
-		final int newCapacity = 1 << (nextPowerOfTwo + 1);
-		final Node<K, V>[] newTable = (Node<K, V>[]) new Node[newCapacity];
-		for (Node<K, V> kvNode : this.table) {
-			Node<K, V> current = kvNode;
-			while (current != null) {
-				putNodeForKey(newTable, current.key, current.value);
-				current = current.next;
+		// a previous incremental resize must be finished before starting a new one
+		completeMigration();
+		this.modCount++;
+		final Node<K, V>[] currentTable = this.table;
+		if (this.resizeStrategy == ResizeStrategy.INCREMENTAL) {
+			this.oldTable = currentTable;
+			this.migrationIndex = 0;
+			this.table = (Node<K, V>[]) new Node[currentTable.length << 1];
+			return;
+		}
+		this.table = splitTable(currentTable);
+	}
+
+	/**
+	 * Split all the buckets of the given table into a new table twice as large.
+	 */
+	@SuppressWarnings("unchecked")
+	private Node<K, V>[] splitTable(Node<K, V>[] currentTable) {
+		final Node<K, V>[] newTable = (Node<K, V>[]) new Node[currentTable.length << 1];
+		for (int i = 0; i < currentTable.length; i++) {
+			splitBucket(newTable, i, currentTable[i], currentTable.length);
+		}
+		return newTable;
+	}
+
+	/**
+	 * Move the nodes of the bucket at the given index of a table to a table twice as large.
+	 * As the capacity is doubled, each node either stays at the same index (the "lo" nodes),
+	 * or moves to index + oldCapacity (the "hi" nodes), depending on the bit of its hash
+	 * that is added to the mask by the growth.
+	 * The existing nodes are relinked and not copied, and their relative order is kept.
+	 * Both target buckets must be empty in the new table.
+	 */
+	private void splitBucket(Node<K, V>[] newTable, int index, Node<K, V> head, int oldCapacity) {
+		if (head instanceof TreeNode) {
+			splitTreeBin(newTable, index, (TreeNode<K, V>) head, oldCapacity);
+			return;
+		}
+		Node<K, V> loHead = null;
+		Node<K, V> loTail = null;
+		Node<K, V> hiHead = null;
+		Node<K, V> hiTail = null;
+		for (Node<K, V> current = head; current != null; current = current.next) {
+			if ((current.hash & oldCapacity) == 0) {
+				if (loTail == null) {
+					loHead = current;
+				} else {
+					loTail.next = current;
+				}
+				loTail = current;
+			} else {
+				if (hiTail == null) {
+					hiHead = current;
+				} else {
+					hiTail.next = current;
+				}
+				hiTail = current;
+			}
+		}
+		if (loTail != null) {
+			loTail.next = null;
+			newTable[index] = loHead;
+		}
+		if (hiTail != null) {
+			hiTail.next = null;
+			newTable[index + oldCapacity] = hiHead;
+		}
+	}
+
+	/**
+	 * Same as {@link #splitBucket}, for tree bins.
+	 * Each resulting half is either converted back to a chain if it is too small,
+	 * or its tree is rebuilt from the existing tree nodes.
+	 */
+	private void splitTreeBin(Node<K, V>[] newTable, int index, TreeNode<K, V> head, int oldCapacity) {
+		TreeNode<K, V> loHead = null;
+		TreeNode<K, V> loTail = null;
+		TreeNode<K, V> hiHead = null;
+		TreeNode<K, V> hiTail = null;
+		int loCount = 0;
+		int hiCount = 0;
+		for (TreeNode<K, V> current = head; current != null; current = (TreeNode<K, V>) current.next) {
+			if ((current.hash & oldCapacity) == 0) {
+				current.prev = loTail;
+				if (loTail == null) {
+					loHead = current;
+				} else {
+					loTail.next = current;
+				}
+				loTail = current;
+				loCount++;
+			} else {
+				current.prev = hiTail;
+				if (hiTail == null) {
+					hiHead = current;
+				} else {
+					hiTail.next = current;
+				}
+				hiTail = current;
+				hiCount++;
+			}
+		}
+		if (loTail != null) {
+			loTail.next = null;
+			placeSplitTreeBin(newTable, index, loHead, loCount, hiTail != null);
+		}
+		if (hiTail != null) {
+			hiTail.next = null;
+			placeSplitTreeBin(newTable, index + oldCapacity, hiHead, hiCount, loTail != null);
+		}
+	}
+
+	private void placeSplitTreeBin(Node<K, V>[] newTable, int index, TreeNode<K, V> head, int count, boolean wasSplit) {
+		if (count <= UNTREEIFY_THRESHOLD) {
+			newTable[index] = untreeify(head);
+		} else {
+			newTable[index] = head;
+			if (wasSplit) {
+				// if all the nodes went to the same bin, the tree is still valid
+				buildTree(newTable, index);
 			}
 		}
-		this.table = newTable;
+	}
+
+	/**
+	 * Return the smallest power of two that is greater or equal to the given capacity.
+	 */
+	private static int tableSizeFor(int capacity) {
+		if (capacity <= 1) {
+			return 1;
+		}
+		if (capacity >= MAXIMUM_CAPACITY) {
+			return MAXIMUM_CAPACITY;
+		}
+		return 1 << (32 - Integer.numberOfLeadingZeros(capacity - 1));
+	}
+
+	/**
+	 * Migrate at most {@link #INCREMENTAL_RESIZE_STEP} buckets of the old table, if a resize is in progress.
+	 */
+	private void migrateStep() {
+		final Node<K, V>[] oldTable = this.oldTable;
+		if (oldTable == null) {
+			return;
+		}
+		final int end = Math.min(this.migrationIndex + INCREMENTAL_RESIZE_STEP, oldTable.length);
+		for (int i = this.migrationIndex; i < end; i++) {
+			migrateBucket(oldTable, i);
+		}
+		this.migrationIndex = end;
+		if (end == oldTable.length) {
+			this.oldTable = null;
+		}
+	}
+
+	/**
+	 * Make progress on the resize in progress, if any, and make sure that the bucket
+	 * of the given hash has been migrated to the new table.
+	 */
+	private void migrateKeyBucket(int hash) {
+		this.migrateStep();
+		if (this.oldTable != null) {
+			migrateBucket(this.oldTable, (this.oldTable.length - 1) & hash);
+		}
+	}
+
+	/**
+	 * Migrate all the remaining buckets of the old table, if a resize is in progress.
+	 */
+	private void completeMigration() {
+		final Node<K, V>[] oldTable = this.oldTable;
+		if (oldTable == null) {
+			return;
+		}
+		for (int i = this.migrationIndex; i < oldTable.length; i++) {
+			migrateBucket(oldTable, i);
+		}
+		this.oldTable = null;
+	}
+
+	private void migrateBucket(Node<K, V>[] oldTable, int index) {
+		final Node<K, V> head = oldTable[index];
+		if (head == null) {
+			return;
+		}
+		// the buckets of the new table that receive the nodes of this bucket are still empty,
+		// as puts always migrate the bucket of their key first
+		splitBucket(this.table, index, head, oldTable.length);
+		oldTable[index] = null;
 	}
 
 }
@@ -0,0 +1,905 @@
+package com.petitcl.collections;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe implementation of {@link Map} that is backed by a hash table
+ * and that uses chaining (via a linked list) to handle collisions,
+ * like {@link PcChainingHashMap}.
+ *
+ * The buckets are guarded by a fixed number of locks (also called stripes):
+ * the bucket at index i is guarded by the stripe i modulo the number of stripes.
+ * As the number of stripes and the capacity are both powers of two, the stripe of a key
+ * only depends on its hash and does not change when the table is resized.
+ * Each stripe also counts the entries of its buckets, so that writers never contend on a single counter.
+ *
+ * Reads do not take any lock: the table and the nodes are read with volatile semantics.
+ *
+ * Resizes are cooperative: once a resize is started, any writer can help by claiming a stripe
+ * and moving all the buckets of that stripe to the new table. The moved buckets of the old table
+ * are replaced by a {@link ForwardingNode}, that redirects readers and writers to the new table.
+ *
+ * Iterators are weakly consistent: they never throw {@link ConcurrentModificationException},
+ * and may or may not reflect the modifications made after their creation.
+ *
+ * @param <K> type of the key
+ * @param <V> type of the value
+ */
+public class PcConcurrentChainingHashMap<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+
+	public static final int DEFAULT_INITIAL_CAPACITY = 16;
+	public static final float DEFAULT_LOAD_FACTOR = 0.75f;
+	public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+	public static final int MAXIMUM_CAPACITY = 1 << 30;
+
+	/**
+	 * Hash of forwarding nodes.
+	 * The hashes of regular nodes are always positive.
+	 */
+	private static final int MOVED = -1;
+
+	private static final VarHandle TABLE;
+	private static final VarHandle TABLE_ELEMENT = MethodHandles.arrayElementVarHandle(Node[].class);
+
+	static {
+		try {
+			TABLE = MethodHandles.lookup().findVarHandle(PcConcurrentChainingHashMap.class, "table", Node[].class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	public static class Node<K, V> implements Map.Entry<K, V> {
+		final int hash;
+		final K key;
+		volatile V value;
+		volatile Node<K, V> next;
+
+		public Node(int hash, K key, V value, Node<K, V> next) {
+			this.hash = hash;
+			this.key = key;
+			this.value = value;
+			this.next = next;
+		}
+
+		boolean matches(int hash, Object key) {
+			return this.hash == hash && (this.key == key || this.key.equals(key));
+		}
+
+		@Override
+		public K getKey() {
+			return key;
+		}
+
+		@Override
+		public V getValue() {
+			return value;
+		}
+
+		/**
+		 * Nodes cannot be updated without holding the lock of their stripe.
+		 * Entries returned by the iterators of this map write through to the map instead.
+		 */
+		@Override
+		public V setValue(V value) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public final int hashCode() {
+			return Objects.hashCode(key) ^ Objects.hashCode(value);
+		}
+
+		@Override
+		public final boolean equals(Object other) {
+			if (other == this) {
+				return true;
+			}
+			if (other == null) {
+				return false;
+			}
+			if ((other instanceof Map.Entry)) {
+				final Map.Entry that = (Map.Entry)other;
+				return Objects.equals(key, that.getKey()) &&
+						Objects.equals(value, that.getValue());
+			}
+			return false;
+		}
+
+		public final String toString() { return key + "=" + value; }
+	}
+
+	/**
+	 * Node that replaces a bucket of the old table once it has been moved to the new table.
+	 */
+	public static class ForwardingNode<K, V> extends Node<K, V> {
+		final Node<K, V>[] nextTable;
+
+		public ForwardingNode(Node<K, V>[] nextTable) {
+			super(MOVED, null, null, null);
+			this.nextTable = nextTable;
+		}
+	}
+
+	/**
+	 * Lock guarding a group of buckets, and number of entries in those buckets.
+	 */
+	private static class Stripe extends ReentrantLock {
+		/**
+		 * Only updated while holding the lock.
+		 */
+		private volatile int count;
+	}
+
+	/**
+	 * State of a resize in progress.
+	 */
+	private static class Transfer<K, V> {
+		private final Node<K, V>[] oldTable;
+		private final Node<K, V>[] newTable;
+		private final ForwardingNode<K, V> forwardingNode;
+		/**
+		 * Next stripe to be claimed by a thread helping with the resize.
+		 */
+		private final AtomicInteger nextStripe;
+		/**
+		 * Number of stripes that have not been moved to the new table yet.
+		 */
+		private final AtomicInteger remainingStripes;
+
+		@SuppressWarnings("unchecked")
+		private Transfer(Node<K, V>[] oldTable, int stripeCount) {
+			this.oldTable = oldTable;
+			this.newTable = (Node<K, V>[]) new Node[oldTable.length << 1];
+			this.forwardingNode = new ForwardingNode<>(this.newTable);
+			this.nextStripe = new AtomicInteger(0);
+			this.remainingStripes = new AtomicInteger(stripeCount);
+		}
+	}
+
+	private volatile Node<K, V>[] table;
+	private final Stripe[] stripes;
+	private final AtomicReference<Transfer<K, V>> transfer;
+	private final float loadFactor;
+
+	public PcConcurrentChainingHashMap() {
+		this(DEFAULT_INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR, DEFAULT_CONCURRENCY_LEVEL);
+	}
+
+	public PcConcurrentChainingHashMap(int initialCapacity) {
+		this(initialCapacity, DEFAULT_LOAD_FACTOR, DEFAULT_CONCURRENCY_LEVEL);
+	}
+
+	public PcConcurrentChainingHashMap(int initialCapacity, float loadFactor) {
+		this(initialCapacity, loadFactor, DEFAULT_CONCURRENCY_LEVEL);
+	}
+
+	/**
+	 * @param concurrencyLevel number of stripes, rounded up to a power of two
+	 */
+	@SuppressWarnings("unchecked")
+	public PcConcurrentChainingHashMap(int initialCapacity, float loadFactor, int concurrencyLevel) {
+		final int stripeCount = tableSizeFor(concurrencyLevel);
+		this.stripes = new Stripe[stripeCount];
+		for (int i = 0; i < stripeCount; i++) {
+			this.stripes[i] = new Stripe();
+		}
+		this.table = (Node<K, V>[]) new Node[tableSizeFor(Math.max(initialCapacity, stripeCount))];
+		this.transfer = new AtomicReference<>();
+		this.loadFactor = loadFactor;
+	}
+
+	@Override
+	public int size() {
+		long size = 0;
+		for (Stripe stripe : this.stripes) {
+			size += stripe.count;
+		}
+		return (int) Math.min(size, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		for (Stripe stripe : this.stripes) {
+			if (stripe.count != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		Objects.requireNonNull(key);
+
+		return getNodeForKey(key) != null;
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		Objects.requireNonNull(value);
+
+		final ValuesIterator iterator = new ValuesIterator();
+		while (iterator.hasNext()) {
+			final V nextValue = iterator.next();
+			if (nextValue.equals(value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public V get(Object key) {
+		Objects.requireNonNull(key);
+
+		final Node<K, V> foundNode = getNodeForKey(key);
+		return foundNode != null ? foundNode.value : null;
+	}
+
+	@Override
+	public V put(K key, V value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		return putNodeForKey(key, value, false);
+	}
+
+	@Override
+	public V putIfAbsent(K key, V value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		return putNodeForKey(key, value, true);
+	}
+
+	@Override
+	public V remove(Object key) {
+		Objects.requireNonNull(key);
+
+		return replaceNodeForKey(key, null, null);
+	}
+
+	@Override
+	public boolean remove(Object key, Object value) {
+		Objects.requireNonNull(key);
+
+		return value != null && replaceNodeForKey(key, null, value) != null;
+	}
+
+	@Override
+	public V replace(K key, V value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		return replaceNodeForKey(key, value, null);
+	}
+
+	@Override
+	public boolean replace(K key, V oldValue, V newValue) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(oldValue);
+		Objects.requireNonNull(newValue);
+
+		return replaceNodeForKey(key, newValue, oldValue) != null;
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < this.stripes.length; i++) {
+			final Stripe stripe = this.stripes[i];
+			stripe.lock();
+			try {
+				clearBuckets(this.table, i);
+				stripe.count = 0;
+			} finally {
+				stripe.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Clear the buckets of the given stripe in the given table, and in the tables it was forwarded to.
+	 * Must be called while holding the lock of the stripe.
+	 */
+	private void clearBuckets(Node<K, V>[] target, int stripeIndex) {
+		for (int i = stripeIndex; i < target.length; i += this.stripes.length) {
+			final Node<K, V> head = tabAt(target, i);
+			if (head instanceof ForwardingNode) {
+				clearBuckets(((ForwardingNode<K, V>) head).nextTable, stripeIndex);
+				return;
+			}
+			setTabAt(target, i, null);
+		}
+	}
+
+	@Override
+	public Set<Entry<K, V>> entrySet() {
+		return new EntrySet();
+	}
+
+	public class EntrySet extends AbstractSet<Entry<K, V>> {
+
+		@Override
+		public Iterator<Entry<K, V>> iterator() {
+			return new EntrySetIterator();
+		}
+
+		@Override
+		public int size() {
+			return PcConcurrentChainingHashMap.this.size();
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return PcConcurrentChainingHashMap.this.isEmpty();
+		}
+
+		@Override
+		public void clear() {
+			PcConcurrentChainingHashMap.this.clear();
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			if (o instanceof Map.Entry) {
+				final Map.Entry entry = (Map.Entry)o;
+				final Object key = entry.getKey();
+				final Object value = entry.getValue();
+				if (key == null || value == null) {
+					return false;
+				}
+				final V foundValue = PcConcurrentChainingHashMap.this.get(key);
+				return value.equals(foundValue);
+			}
+			return false;
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			if (o instanceof Map.Entry) {
+				final Map.Entry entry = (Map.Entry)o;
+				final Object key = entry.getKey();
+				return key != null && PcConcurrentChainingHashMap.this.remove(key, entry.getValue());
+			}
+			return false;
+		}
+	}
+
+	public class EntrySetIterator extends BaseIterator implements Iterator<Entry<K, V>> {
+		@Override
+		public Entry<K, V> next() {
+			final Node<K, V> node = nextNode();
+			return new MapEntry(node.key, node.value);
+		}
+	}
+
+	@Override
+	public Set<K> keySet() {
+		return new KeySet();
+	}
+
+	public class KeySet extends AbstractSet<K> {
+
+		@Override
+		public Iterator<K> iterator() {
+			return new KeysIterator();
+		}
+
+		@Override
+		public int size() {
+			return PcConcurrentChainingHashMap.this.size();
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return PcConcurrentChainingHashMap.this.isEmpty();
+		}
+
+		@Override
+		public void clear() {
+			PcConcurrentChainingHashMap.this.clear();
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return o != null && PcConcurrentChainingHashMap.this.containsKey(o);
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			return o != null && PcConcurrentChainingHashMap.this.remove(o) != null;
+		}
+	}
+
+	public class KeysIterator extends BaseIterator implements Iterator<K> {
+		@Override
+		public K next() {
+			return nextNode().key;
+		}
+	}
+
+	@Override
+	public Collection<V> values() {
+		return new Values();
+	}
+
+	public class Values extends AbstractCollection<V> {
+
+		@Override
+		public Iterator<V> iterator() {
+			return new ValuesIterator();
+		}
+
+		@Override
+		public int size() {
+			return PcConcurrentChainingHashMap.this.size();
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return PcConcurrentChainingHashMap.this.isEmpty();
+		}
+
+		@Override
+		public void clear() {
+			PcConcurrentChainingHashMap.this.clear();
+		}
+	}
+
+	public class ValuesIterator extends BaseIterator implements Iterator<V> {
+		@Override
+		public V next() {
+			return nextNode().value;
+		}
+	}
+
+	/**
+	 * Entry returned by the iterators of this map, that writes through to the map.
+	 */
+	public class MapEntry implements Map.Entry<K, V> {
+		private final K key;
+		private V value;
+
+		public MapEntry(K key, V value) {
+			this.key = key;
+			this.value = value;
+		}
+
+		@Override
+		public K getKey() {
+			return key;
+		}
+
+		@Override
+		public V getValue() {
+			return value;
+		}
+
+		@Override
+		public V setValue(V value) {
+			Objects.requireNonNull(value);
+
+			final V oldValue = this.value;
+			this.value = value;
+			PcConcurrentChainingHashMap.this.put(key, value);
+			return oldValue;
+		}
+
+		@Override
+		public final int hashCode() {
+			return Objects.hashCode(key) ^ Objects.hashCode(value);
+		}
+
+		@Override
+		public final boolean equals(Object other) {
+			if (other == this) {
+				return true;
+			}
+			if (other == null) {
+				return false;
+			}
+			if ((other instanceof Map.Entry)) {
+				final Map.Entry that = (Map.Entry)other;
+				return Objects.equals(key, that.getKey()) &&
+						Objects.equals(value, that.getValue());
+			}
+			return false;
+		}
+
+		public final String toString() { return key + "=" + value; }
+	}
+
+	/**
+	 * Base iterator, that traverses the buckets of the table that was current when it was created.
+	 * When a bucket has been moved to a new table, the 2 buckets of the new table
+	 * that received its nodes are traversed instead.
+	 */
+	public abstract class BaseIterator {
+
+		private final Node<K, V>[] baseTable;
+		private int indexInBaseTable;
+		/**
+		 * Buckets of forwarded tables that remain to be traversed.
+		 */
+		private final Deque<PendingBucket<K, V>> pendingBuckets;
+		private Node<K, V> nextNode;
+		private Node<K, V> currentNode;
+
+		public BaseIterator() {
+			this.baseTable = PcConcurrentChainingHashMap.this.table;
+			this.indexInBaseTable = 0;
+			this.pendingBuckets = new ArrayDeque<>();
+			this.nextNode = null;
+			this.currentNode = null;
+			advanceToNextBucket();
+		}
+
+		public boolean hasNext() {
+			return this.nextNode != null;
+		}
+
+		protected Node<K, V> nextNode() {
+			if (nextNode == null) {
+				throw new NoSuchElementException();
+			}
+			this.currentNode = nextNode;
+			this.nextNode = nextNode.next;
+			if (this.nextNode == null) {
+				advanceToNextBucket();
+			}
+			return this.currentNode;
+		}
+
+		public void remove() {
+			if (currentNode == null) {
+				throw new IllegalStateException("next() has not been called yet, cannot use remove()");
+			}
+			final Node<K, V> toRemove = currentNode;
+			currentNode = null;
+			PcConcurrentChainingHashMap.this.remove(toRemove.key);
+		}
+
+		private void advanceToNextBucket() {
+			while (true) {
+				final Node<K, V>[] target;
+				final int index;
+				if (!this.pendingBuckets.isEmpty()) {
+					final PendingBucket<K, V> pendingBucket = this.pendingBuckets.pop();
+					target = pendingBucket.table;
+					index = pendingBucket.index;
+				} else if (this.indexInBaseTable < this.baseTable.length) {
+					target = this.baseTable;
+					index = this.indexInBaseTable++;
+				} else {
+					this.nextNode = null;
+					return;
+				}
+				final Node<K, V> head = tabAt(target, index);
+				if (head instanceof ForwardingNode) {
+					// the nodes of this bucket are now in 2 buckets of the next table
+					final Node<K, V>[] nextTable = ((ForwardingNode<K, V>) head).nextTable;
+					this.pendingBuckets.push(new PendingBucket<>(nextTable, index + target.length));
+					this.pendingBuckets.push(new PendingBucket<>(nextTable, index));
+				} else if (head != null) {
+					this.nextNode = head;
+					return;
+				}
+			}
+		}
+	}
+
+	private static class PendingBucket<K, V> {
+		private final Node<K, V>[] table;
+		private final int index;
+
+		private PendingBucket(Node<K, V>[] table, int index) {
+			this.table = table;
+			this.index = index;
+		}
+	}
+
+	/**
+	 * Return a string representing the layout of the underlying table.
+	 * Useful for debugging, but not consistent when the map is modified concurrently.
+	 */
+	public String getLayout() {
+		final Node<K, V>[] table = this.table;
+		final int size = size();
+		if (size == 0) {
+			return "EMPTY (size=0, capacity=" + table.length + ", loadFactor=0)\n";
+		}
+		StringBuilder result = new StringBuilder();
+		result.append("NOT EMPTY (size=")
+				.append(size)
+				.append("), capacity=")
+				.append(table.length)
+				.append("), loadFactor=")
+				.append(size / (float)table.length)
+				.append("\n");
+		for (int i = 0; i < table.length; ++i) {
+			Node<K, V> node = tabAt(table, i);
+			if (node == null) {
+				result.append("index ").append(i).append(" : NULL").append("\n");
+			} else if (node instanceof ForwardingNode) {
+				result.append("index ").append(i).append(" : FORWARDED").append("\n");
+			} else {
+				int count = 0;
+				final StringBuilder allNodes = new StringBuilder();
+				while (node != null) {
+					allNodes.append("(key=")
+							.append(node.key)
+							.append(",value=")
+							.append(node.value)
+							.append(")");
+					allNodes.append("->");
+					count++;
+					node = node.next;
+				}
+				allNodes.append("NULL");
+				result.append("index " )
+						.append(i)
+						.append(" (")
+						.append(count)
+						.append(" nodes) : ")
+						.append(allNodes)
+						.append("\n");
+			}
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Compute the hash of the given key.
+	 * The high bits of the hash code are spread to the low bits, and the sign bit is cleared
+	 * so that regular nodes can never be mistaken for forwarding nodes.
+	 */
+	private static int hash(Object key) {
+		final int hashCode = key.hashCode();
+		return (hashCode ^ (hashCode >>> 16)) & Integer.MAX_VALUE;
+	}
+
+	private Stripe stripeFor(int hash) {
+		return this.stripes[hash & (this.stripes.length - 1)];
+	}
+
+	private Node<K, V> getNodeForKey(Object key) {
+		final int hash = hash(key);
+		Node<K, V>[] target = this.table;
+		while (true) {
+			Node<K, V> current = tabAt(target, (target.length - 1) & hash);
+			if (current instanceof ForwardingNode) {
+				// the bucket has been moved, look in the next table
+				target = ((ForwardingNode<K, V>) current).nextTable;
+				continue;
+			}
+			while (current != null) {
+				if (current.matches(hash, key)) {
+					return current;
+				}
+				current = current.next;
+			}
+			return null;
+		}
+	}
+
+	private V putNodeForKey(K key, V value, boolean onlyIfAbsent) {
+		final int hash = hash(key);
+		final Stripe stripe = stripeFor(hash);
+		V oldValue = null;
+		boolean inserted = false;
+		int stripeCount = 0;
+		stripe.lock();
+		try {
+			// holding the lock of the stripe guarantees that the buckets of the stripe
+			// cannot be moved, so we only need to follow forwarding nodes once
+			Node<K, V>[] target = this.table;
+			int index = (target.length - 1) & hash;
+			Node<K, V> head = tabAt(target, index);
+			while (head instanceof ForwardingNode) {
+				target = ((ForwardingNode<K, V>) head).nextTable;
+				index = (target.length - 1) & hash;
+				head = tabAt(target, index);
+			}
+			if (head == null) {
+				setTabAt(target, index, new Node<>(hash, key, value, null));
+				inserted = true;
+			} else {
+				Node<K, V> current = head;
+				while (true) {
+					if (current.matches(hash, key)) {
+						oldValue = current.value;
+						if (!onlyIfAbsent) {
+							current.value = value;
+						}
+						break;
+					}
+					if (current.next == null) {
+						current.next = new Node<>(hash, key, value, null);
+						inserted = true;
+						break;
+					}
+					current = current.next;
+				}
+			}
+			if (inserted) {
+				stripeCount = ++stripe.count;
+			}
+		} finally {
+			stripe.unlock();
+		}
+		if (inserted) {
+			resizeIfNeeded(stripeCount);
+		}
+		return oldValue;
+	}
+
+	/**
+	 * Replace the value of the given key, or remove the key if the new value is null.
+	 *
+	 * @param expectedValue if not null, only replace or remove if the current value is equal to this value
+	 * @return the previous value, or null if nothing was replaced or removed
+	 */
+	private V replaceNodeForKey(Object key, V newValue, Object expectedValue) {
+		final int hash = hash(key);
+		final Stripe stripe = stripeFor(hash);
+		stripe.lock();
+		try {
+			Node<K, V>[] target = this.table;
+			int index = (target.length - 1) & hash;
+			Node<K, V> head = tabAt(target, index);
+			while (head instanceof ForwardingNode) {
+				target = ((ForwardingNode<K, V>) head).nextTable;
+				index = (target.length - 1) & hash;
+				head = tabAt(target, index);
+			}
+			Node<K, V> prev = null;
+			for (Node<K, V> current = head; current != null; prev = current, current = current.next) {
+				if (current.matches(hash, key)) {
+					final V oldValue = current.value;
+					if (expectedValue != null && !expectedValue.equals(oldValue)) {
+						return null;
+					}
+					if (newValue != null) {
+						current.value = newValue;
+					} else {
+						// readers that are on the removed node can still continue to the next nodes
+						if (prev == null) {
+							setTabAt(target, index, current.next);
+						} else {
+							prev.next = current.next;
+						}
+						stripe.count--;
+					}
+					return oldValue;
+				}
+			}
+			return null;
+		} finally {
+			stripe.unlock();
+		}
+	}
+
+	/**
+	 * Help with the resize in progress, or start a resize if the given stripe has too many entries.
+	 * Must not be called while holding the lock of a stripe.
+	 */
+	private void resizeIfNeeded(int stripeCount) {
+		final Transfer<K, V> currentTransfer = this.transfer.get();
+		if (currentTransfer != null) {
+			helpTransfer(currentTransfer);
+			return;
+		}
+		final Node<K, V>[] currentTable = this.table;
+		final int bucketsPerStripe = currentTable.length / this.stripes.length;
+		if (stripeCount <= this.loadFactor * bucketsPerStripe || currentTable.length >= MAXIMUM_CAPACITY) {
+			return;
+		}
+		final Transfer<K, V> newTransfer = new Transfer<>(currentTable, this.stripes.length);
+		if (!this.transfer.compareAndSet(null, newTransfer)) {
+			// another thread started a resize in the meantime
+			return;
+		}
+		if (this.table != currentTable) {
+			// another resize completed between the check and the start of this resize
+			this.transfer.compareAndSet(newTransfer, null);
+			return;
+		}
+		helpTransfer(newTransfer);
+	}
+
+	/**
+	 * Claim and move stripes to the new table, until no stripe remains to be claimed.
+	 */
+	private void helpTransfer(Transfer<K, V> currentTransfer) {
+		while (true) {
+			final int stripeIndex = currentTransfer.nextStripe.getAndIncrement();
+			if (stripeIndex >= this.stripes.length) {
+				return;
+			}
+			transferStripe(currentTransfer, stripeIndex);
+			if (currentTransfer.remainingStripes.decrementAndGet() == 0) {
+				// the last stripe has been moved, the new table becomes the current table
+				TABLE.compareAndSet(this, currentTransfer.oldTable, currentTransfer.newTable);
+				this.transfer.compareAndSet(currentTransfer, null);
+			}
+		}
+	}
+
+	/**
+	 * Move all the buckets of the given stripe to the new table.
+	 * As the new table is twice as large, the nodes of a bucket either stay at the same index
+	 * (the "lo" nodes) or move to index + old capacity (the "hi" nodes).
+	 * As readers may still be traversing the old buckets, the nodes are copied,
+	 * except for the trailing nodes that all go to the same bucket, which are reused.
+	 */
+	private void transferStripe(Transfer<K, V> currentTransfer, int stripeIndex) {
+		final Stripe stripe = this.stripes[stripeIndex];
+		final Node<K, V>[] oldTable = currentTransfer.oldTable;
+		final Node<K, V>[] newTable = currentTransfer.newTable;
+		final int oldCapacity = oldTable.length;
+		stripe.lock();
+		try {
+			for (int i = stripeIndex; i < oldCapacity; i += this.stripes.length) {
+				final Node<K, V> head = tabAt(oldTable, i);
+				if (head instanceof ForwardingNode) {
+					// already moved, which can only happen when a stale resize was aborted
+					continue;
+				}
+				// find the trailing run of nodes that all go to the same bucket
+				Node<K, V> lastRun = head;
+				int lastRunBit = head != null ? head.hash & oldCapacity : 0;
+				for (Node<K, V> current = head; current != null; current = current.next) {
+					final int bit = current.hash & oldCapacity;
+					if (bit != lastRunBit) {
+						lastRunBit = bit;
+						lastRun = current;
+					}
+				}
+				Node<K, V> loHead = lastRunBit == 0 ? lastRun : null;
+				Node<K, V> hiHead = lastRunBit != 0 ? lastRun : null;
+				for (Node<K, V> current = head; current != lastRun; current = current.next) {
+					if ((current.hash & oldCapacity) == 0) {
+						loHead = new Node<>(current.hash, current.key, current.value, loHead);
+					} else {
+						hiHead = new Node<>(current.hash, current.key, current.value, hiHead);
+					}
+				}
+				setTabAt(newTable, i, loHead);
+				setTabAt(newTable, i + oldCapacity, hiHead);
+				setTabAt(oldTable, i, currentTransfer.forwardingNode);
+			}
+		} finally {
+			stripe.unlock();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <K, V> Node<K, V> tabAt(Node<K, V>[] target, int index) {
+		return (Node<K, V>) TABLE_ELEMENT.getVolatile(target, index);
+	}
+
+	private static <K, V> void setTabAt(Node<K, V>[] target, int index, Node<K, V> node) {
+		TABLE_ELEMENT.setVolatile(target, index, node);
+	}
+
+	/**
+	 * Return the smallest power of two that is greater or equal to the given capacity.
+	 */
+	private static int tableSizeFor(int capacity) {
+		if (capacity <= 1) {
+			return 1;
+		}
+		if (capacity >= MAXIMUM_CAPACITY) {
+			return MAXIMUM_CAPACITY;
+		}
+		return 1 << (32 - Integer.numberOfLeadingZeros(capacity - 1));
+	}
+
+}
@@ -0,0 +1,1205 @@
+package com.petitcl.collections;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Implementation of {@link Map} that is backed by an open addressing hash table,
+ * and uses <a href="https://en.wikipedia.org/wiki/Cuckoo_hashing">Cuckoo hashing</a> to handle collisions.
+ * The table is split in buckets of 4 slots, and each key has two candidate buckets, given by two hash functions.
+ * A key is always in one of its two buckets, or in a small stash, so a lookup reads at most
+ * two buckets and the stash, whatever the load factor.
+ * When both buckets of a new key are full, an entry of one of them is kicked out to its other bucket,
+ * which may in turn kick out another entry, and so on, for a bounded number of kicks.
+ * If the last kicked entry finds no room, it goes to the stash, and if the stash is full,
+ * the table is rebuilt with new hash functions, and doubled if it is too full.
+ * Rebuilds that fail are retried a bounded number of times (see {@link #MAX_SUCCESSIVE_RESIZES}).
+ * Removals never move entries.
+ *
+ * @param <K> type of the key
+ * @param <V> type of the value
+ */
+public class PcCuckooHashMap<K, V> extends AbstractMap<K, V> {
+
+	/**
+	 * Maximum number of successive rebuilds of the table that can occur during an insertion operation.
+	 * If more rebuilds than this constant should occur, a {@link TooManyHashMapResizeException} is thrown,
+	 * and the map is left unchanged.
+	 * This only happens when too many keys share their two buckets, for instance because they have the same hash code.
+	 */
+	public static final int MAX_SUCCESSIVE_RESIZES = 10;
+	public static final int DEFAULT_INITIAL_CAPACITY = 16;
+	public static final float DEFAULT_LOAD_FACTOR = 0.9f;
+
+	/**
+	 * Number of slots of a bucket.
+	 */
+	public static final int BUCKET_SIZE = 4;
+
+	/**
+	 * Number of slots of the stash.
+	 */
+	public static final int STASH_SIZE = 4;
+
+	/**
+	 * Maximum number of entries kicked out of their bucket by an insertion.
+	 */
+	private static final int MAX_KICKS = 64;
+
+	private static final int INITIAL_RANDOM = 0x2545F491;
+
+	/**
+	 * View of a mapping of the map, created when iterating on the entry set.
+	 * Setting the value of the entry writes through to the map while the key is still present.
+	 */
+	public class Entry implements Map.Entry<K, V> {
+		private final K key;
+		private V value;
+		private int slot;
+
+		public Entry(int slot) {
+			this.key = keyAt(slot);
+			this.value = valueAt(slot);
+			this.slot = slot;
+		}
+
+		@Override
+		public K getKey() {
+			return key;
+		}
+
+		@Override
+		public V getValue() {
+			if (locate()) {
+				this.value = valueAt(this.slot);
+			}
+			return value;
+		}
+
+		@Override
+		public V setValue(V value) {
+			Objects.requireNonNull(value);
+
+			final V oldValue = getValue();
+			this.value = value;
+			if (locate()) {
+				valueSlots[this.slot] = value;
+			}
+			return oldValue;
+		}
+
+		/**
+		 * Find the current slot of the key, which may have moved since the entry was created.
+		 *
+		 * @return true if the key is still present in the map
+		 */
+		private boolean locate() {
+			if (this.slot >= 0 && this.slot < keySlots.length && keySlots[this.slot] == this.key) {
+				return true;
+			}
+			this.slot = findSlot(hash(this.key), this.key);
+			return this.slot >= 0;
+		}
+
+		@Override
+		public final int hashCode() {
+			return Objects.hashCode(key) ^ Objects.hashCode(getValue());
+		}
+
+		@Override
+		public final boolean equals(Object other) {
+			if (other == this) {
+				return true;
+			}
+			if (other == null) {
+				return false;
+			}
+			if ((other instanceof Map.Entry)) {
+				final Map.Entry that = (Map.Entry) other;
+				return Objects.equals(key, that.getKey()) &&
+						Objects.equals(getValue(), that.getValue());
+			}
+			return false;
+		}
+
+		public final String toString() {
+			return key + "=" + getValue();
+		}
+	}
+
+	/**
+	 * Keys and values of the entries: the first slots are the buckets of the table, the last ones are the stash.
+	 */
+	private Object[] keySlots;
+	private Object[] valueSlots;
+	private int size;
+
+	/**
+	 * Number of slots of the table, excluding the stash.
+	 */
+	private int capacity;
+	private int stashSize;
+
+	/**
+	 * Seed of the hash functions, changed on each rebuild of the table.
+	 */
+	private int seed;
+
+	/**
+	 * State of the pseudo random generator that picks the entries to kick out, and the seeds.
+	 */
+	private int random;
+	private final float loadFactor;
+
+	/**
+	 * Number of structural modifications of this map (insertions, removals and resizes),
+	 * used by iterators and spliterators to detect concurrent modifications.
+	 */
+	private int modCount;
+
+	private EntrySet entrySet;
+	private KeySet keySet;
+	private Values values;
+
+	public PcCuckooHashMap() {
+		this(DEFAULT_INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR);
+	}
+
+	public PcCuckooHashMap(int initialCapacity) {
+		this(initialCapacity, DEFAULT_LOAD_FACTOR);
+	}
+
+	public PcCuckooHashMap(int initialCapacity, float loadFactor) {
+		this.loadFactor = loadFactor;
+		this.random = INITIAL_RANDOM;
+		allocate(tableSizeFor(initialCapacity), nextRandom());
+	}
+
+	/**
+	 * Create a map with the same mappings as the given map.
+	 * If the given map is also a {@link PcCuckooHashMap}, its load factor is kept,
+	 * and its tables are copied as is, without hashing or comparing keys again.
+	 */
+	public PcCuckooHashMap(Map<? extends K, ? extends V> map) {
+		Objects.requireNonNull(map);
+
+		if (map instanceof PcCuckooHashMap) {
+			final PcCuckooHashMap<? extends K, ? extends V> other = (PcCuckooHashMap<? extends K, ? extends V>) map;
+			this.loadFactor = other.loadFactor;
+			this.keySlots = other.keySlots.clone();
+			this.valueSlots = other.valueSlots.clone();
+			this.size = other.size;
+			this.capacity = other.capacity;
+			this.stashSize = other.stashSize;
+			this.seed = other.seed;
+			this.random = other.random;
+		} else {
+			this.loadFactor = DEFAULT_LOAD_FACTOR;
+			this.random = INITIAL_RANDOM;
+			allocate(Math.max(DEFAULT_INITIAL_CAPACITY, capacityFor(map.size())), nextRandom());
+			putMapEntries(map);
+		}
+	}
+
+	/**
+	 * Create a map from the given entries.
+	 * The table is sized upfront for the number of entries, so that it is not resized while the entries are added.
+	 * If several entries have the same key, the last one wins.
+	 */
+	public static <K, V> PcCuckooHashMap<K, V> fromEntries(Collection<? extends Map.Entry<? extends K, ? extends V>> entries) {
+		Objects.requireNonNull(entries);
+
+		final PcCuckooHashMap<K, V> map = new PcCuckooHashMap<>();
+		map.ensureCapacity(entries.size());
+		for (Map.Entry<? extends K, ? extends V> entry : entries) {
+			map.put(entry.getKey(), entry.getValue());
+		}
+		return map;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		Objects.requireNonNull(key);
+
+		return findSlot(hash(key), key) >= 0;
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		Objects.requireNonNull(value);
+
+		for (int i = 0; i < this.keySlots.length; i++) {
+			if (this.keySlots[i] != null && this.valueSlots[i].equals(value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public V get(Object key) {
+		Objects.requireNonNull(key);
+
+		final int slot = findSlot(hash(key), key);
+		return slot >= 0 ? valueAt(slot) : null;
+	}
+
+	@Override
+	public V put(K key, V value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		this.resizeIfNeeded();
+		final int hash = hash(key);
+		final int slot = findSlot(hash, key);
+		if (slot >= 0) {
+			// if the key is present, replace its value
+			return setValueAt(slot, value);
+		}
+		insertEntry(hash, key, value);
+		return null;
+	}
+
+	@Override
+	public void putAll(Map<? extends K, ? extends V> map) {
+		Objects.requireNonNull(map);
+
+		putMapEntries(map);
+	}
+
+	@Override
+	public V remove(Object key) {
+		Objects.requireNonNull(key);
+
+		final int slot = findSlot(hash(key), key);
+		if (slot < 0) {
+			// if no entry was found, the key was not there
+			return null;
+		}
+		final V removedValue = valueAt(slot);
+		removeEntryAt(slot);
+		return removedValue;
+	}
+
+	/*
+	 * The following methods look up the key only once: its slot is found in one of its two buckets or in the stash,
+	 * then the value is updated in place, removed, or inserted.
+	 * The functions given to these methods must not modify this map,
+	 * otherwise a ConcurrentModificationException is thrown.
+	 */
+
+	@Override
+	public V getOrDefault(Object key, V defaultValue) {
+		Objects.requireNonNull(key);
+
+		final int slot = findSlot(hash(key), key);
+		return slot >= 0 ? valueAt(slot) : defaultValue;
+	}
+
+	@Override
+	public V putIfAbsent(K key, V value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		this.resizeIfNeeded();
+		final int hash = hash(key);
+		final int slot = findSlot(hash, key);
+		if (slot >= 0) {
+			return valueAt(slot);
+		}
+		insertEntry(hash, key, value);
+		return null;
+	}
+
+	@Override
+	public boolean remove(Object key, Object value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		final int slot = findSlot(hash(key), key);
+		if (slot < 0 || !valueAt(slot).equals(value)) {
+			return false;
+		}
+		removeEntryAt(slot);
+		return true;
+	}
+
+	@Override
+	public boolean replace(K key, V oldValue, V newValue) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(oldValue);
+		Objects.requireNonNull(newValue);
+
+		final int slot = findSlot(hash(key), key);
+		if (slot < 0 || !valueAt(slot).equals(oldValue)) {
+			return false;
+		}
+		setValueAt(slot, newValue);
+		return true;
+	}
+
+	@Override
+	public V replace(K key, V value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		final int slot = findSlot(hash(key), key);
+		return slot >= 0 ? setValueAt(slot, value) : null;
+	}
+
+	@Override
+	public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(mappingFunction);
+
+		this.resizeIfNeeded();
+		final int hash = hash(key);
+		final int slot = findSlot(hash, key);
+		if (slot >= 0) {
+			return valueAt(slot);
+		}
+		final int expectedModCount = this.modCount;
+		final V newValue = mappingFunction.apply(key);
+		checkForComodification(expectedModCount);
+		if (newValue != null) {
+			insertEntry(hash, key, newValue);
+		}
+		return newValue;
+	}
+
+	@Override
+	public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(remappingFunction);
+
+		final int slot = findSlot(hash(key), key);
+		if (slot < 0) {
+			return null;
+		}
+		final int expectedModCount = this.modCount;
+		final V newValue = remappingFunction.apply(key, valueAt(slot));
+		checkForComodification(expectedModCount);
+		updateOrRemoveEntryAt(slot, newValue);
+		return newValue;
+	}
+
+	@Override
+	public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(remappingFunction);
+
+		this.resizeIfNeeded();
+		final int hash = hash(key);
+		final int slot = findSlot(hash, key);
+		final int expectedModCount = this.modCount;
+		final V newValue = remappingFunction.apply(key, slot >= 0 ? valueAt(slot) : null);
+		checkForComodification(expectedModCount);
+		if (slot >= 0) {
+			updateOrRemoveEntryAt(slot, newValue);
+		} else if (newValue != null) {
+			insertEntry(hash, key, newValue);
+		}
+		return newValue;
+	}
+
+	@Override
+	public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+		Objects.requireNonNull(remappingFunction);
+
+		this.resizeIfNeeded();
+		final int hash = hash(key);
+		final int slot = findSlot(hash, key);
+		if (slot < 0) {
+			insertEntry(hash, key, value);
+			return value;
+		}
+		final int expectedModCount = this.modCount;
+		final V newValue = remappingFunction.apply(valueAt(slot), value);
+		checkForComodification(expectedModCount);
+		updateOrRemoveEntryAt(slot, newValue);
+		return newValue;
+	}
+
+	@Override
+	public void forEach(BiConsumer<? super K, ? super V> action) {
+		Objects.requireNonNull(action);
+
+		final Object[] table = this.keySlots;
+		final int expectedModCount = this.modCount;
+		for (int i = 0; i < table.length && this.modCount == expectedModCount; i++) {
+			if (table[i] != null) {
+				action.accept(keyAt(i), valueAt(i));
+			}
+		}
+		checkForComodification(expectedModCount);
+	}
+
+	@Override
+	public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+		Objects.requireNonNull(function);
+
+		final Object[] table = this.keySlots;
+		final int expectedModCount = this.modCount;
+		for (int i = 0; i < table.length && this.modCount == expectedModCount; i++) {
+			if (table[i] != null) {
+				this.valueSlots[i] = Objects.requireNonNull(function.apply(keyAt(i), valueAt(i)));
+			}
+		}
+		checkForComodification(expectedModCount);
+	}
+
+	@Override
+	public void clear() {
+		this.modCount++;
+		this.size = 0;
+		this.stashSize = 0;
+		Arrays.fill(this.keySlots, null);
+		Arrays.fill(this.valueSlots, null);
+	}
+
+	@Override
+	public Set<Map.Entry<K, V>> entrySet() {
+		if (this.entrySet == null) {
+			this.entrySet = new EntrySet();
+		}
+		return this.entrySet;
+	}
+
+	public class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+
+		@Override
+		public Iterator<Map.Entry<K, V>> iterator() {
+			return new EntrySetIterator();
+		}
+
+		@Override
+		public Spliterator<Map.Entry<K, V>> spliterator() {
+			return new EntrySetSpliterator(null, 0, -1, 0, 0);
+		}
+
+		@Override
+		public int size() {
+			return PcCuckooHashMap.this.size;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return size() == 0;
+		}
+
+		@Override
+		public void clear() {
+			PcCuckooHashMap.this.clear();
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			if (o instanceof Map.Entry) {
+				final Map.Entry entry = (Map.Entry)o;
+				final V removed = PcCuckooHashMap.this.remove(entry.getKey());
+				return removed != null;
+			}
+			return false;
+		}
+
+	}
+
+	public class EntrySetIterator extends BaseIterator implements Iterator<Map.Entry<K, V>> {
+
+		@Override
+		public Map.Entry<K, V> next() {
+			return new Entry(nextSlot());
+		}
+
+	}
+
+	@Override
+	public Set<K> keySet() {
+		if (this.keySet == null) {
+			this.keySet = new KeySet();
+		}
+		return this.keySet;
+	}
+
+	public class KeySet extends AbstractSet<K> {
+
+		@Override
+		public Iterator<K> iterator() {
+			return new KeysIterator();
+		}
+
+		@Override
+		public Spliterator<K> spliterator() {
+			return new KeysSpliterator(null, 0, -1, 0, 0);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return size() == 0;
+		}
+
+		@Override
+		public void clear() {
+			PcCuckooHashMap.this.clear();
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			final V removed = PcCuckooHashMap.this.remove(o);
+			return removed != null;
+		}
+
+	}
+
+	public class KeysIterator extends BaseIterator implements Iterator<K> {
+
+		@Override
+		public K next() {
+			return keyAt(nextSlot());
+		}
+
+	}
+
+	@Override
+	public Collection<V> values() {
+		if (this.values == null) {
+			this.values = new Values();
+		}
+		return this.values;
+	}
+
+	public class Values extends AbstractCollection<V> {
+
+		@Override
+		public Iterator<V> iterator() {
+			return new ValuesIterator();
+		}
+
+		@Override
+		public Spliterator<V> spliterator() {
+			return new ValuesSpliterator(null, 0, -1, 0, 0);
+		}
+
+		@Override
+		public int size() {
+			return PcCuckooHashMap.this.size;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return size() == 0;
+		}
+
+		@Override
+		public void clear() {
+			PcCuckooHashMap.this.clear();
+		}
+
+	}
+
+	public class ValuesIterator extends BaseIterator implements Iterator<V> {
+
+		@Override
+		public V next() {
+			return valueAt(nextSlot());
+		}
+
+	}
+
+	public abstract class BaseIterator {
+
+		private int nextSlot;
+		private int currentSlot;
+		private int expectedModCount;
+
+		public BaseIterator() {
+			this.currentSlot = -1;
+			this.expectedModCount = modCount;
+			// initially advance to first entry
+			advanceFrom(0);
+		}
+
+		public boolean hasNext() {
+			return this.nextSlot != -1;
+		}
+
+		/**
+		 * Return the slot of the next entry, and advance to the following entry.
+		 */
+		protected int nextSlot() {
+			checkForComodification(this.expectedModCount);
+			if (this.nextSlot == -1) {
+				throw new NoSuchElementException();
+			}
+			this.currentSlot = this.nextSlot;
+			advanceFrom(this.nextSlot + 1);
+			return this.currentSlot;
+		}
+
+		public void remove() {
+			if (this.currentSlot == -1) {
+				throw new IllegalStateException("next() has not been called yet, cannot use remove()");
+			}
+			checkForComodification(this.expectedModCount);
+			// entries never move on removal, so the iteration is not affected
+			removeEntryAt(this.currentSlot);
+			this.currentSlot = -1;
+			this.expectedModCount = modCount;
+		}
+
+		/**
+		 * Advance nextSlot to the first full slot at or after the given slot, or to -1 at the end of the table.
+		 */
+		private void advanceFrom(int slot) {
+			final Object[] table = PcCuckooHashMap.this.keySlots;
+			for (int i = slot; i < table.length; i++) {
+				if (table[i] != null) {
+					this.nextSlot = i;
+					return;
+				}
+			}
+			this.nextSlot = -1;
+		}
+
+	}
+
+	/**
+	 * Base spliterator, that traverses a range of slots of the table.
+	 * Splitting a spliterator splits its range of slots in two halves.
+	 * The top level spliterator is bound to the table on first use, and is the only one to report {@link Spliterator#SIZED},
+	 * as the number of entries in a range of slots is not known.
+	 */
+	public abstract class BaseSpliterator<T> implements Spliterator<T> {
+
+		private Object[] table;
+		private int slot;
+		private int fence;
+		private int estimatedSize;
+		private int expectedModCount;
+
+		protected BaseSpliterator(Object[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			this.table = table;
+			this.slot = origin;
+			this.fence = fence;
+			this.estimatedSize = estimatedSize;
+			this.expectedModCount = expectedModCount;
+		}
+
+		protected abstract T extract(int slot);
+
+		protected abstract BaseSpliterator<T> createSplit(Object[] table, int origin, int fence, int estimatedSize, int expectedModCount);
+
+		private int getFence() {
+			if (this.fence < 0) {
+				this.table = PcCuckooHashMap.this.keySlots;
+				this.estimatedSize = size;
+				this.expectedModCount = modCount;
+				this.fence = this.table.length;
+			}
+			return this.fence;
+		}
+
+		@Override
+		public Spliterator<T> trySplit() {
+			final int high = getFence();
+			final int low = this.slot;
+			final int middle = (low + high) >>> 1;
+			if (low >= middle) {
+				return null;
+			}
+			this.slot = middle;
+			this.estimatedSize >>>= 1;
+			return createSplit(this.table, low, middle, this.estimatedSize, this.expectedModCount);
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super T> action) {
+			Objects.requireNonNull(action);
+
+			final int high = getFence();
+			while (this.slot < high) {
+				final int slot = this.slot++;
+				if (this.table[slot] != null) {
+					action.accept(extract(slot));
+					checkForComodification(this.expectedModCount);
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super T> action) {
+			Objects.requireNonNull(action);
+
+			final int high = getFence();
+			while (this.slot < high) {
+				final int slot = this.slot++;
+				if (this.table[slot] != null) {
+					action.accept(extract(slot));
+				}
+			}
+			checkForComodification(this.expectedModCount);
+		}
+
+		@Override
+		public long estimateSize() {
+			getFence();
+			return this.estimatedSize;
+		}
+
+		@Override
+		public int characteristics() {
+			return (this.fence < 0 || this.estimatedSize == size ? Spliterator.SIZED : 0)
+					| Spliterator.DISTINCT
+					| Spliterator.NONNULL;
+		}
+	}
+
+	public class EntrySetSpliterator extends BaseSpliterator<Map.Entry<K, V>> {
+
+		public EntrySetSpliterator(Object[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			super(table, origin, fence, estimatedSize, expectedModCount);
+		}
+
+		@Override
+		protected Map.Entry<K, V> extract(int slot) {
+			return new Entry(slot);
+		}
+
+		@Override
+		protected EntrySetSpliterator createSplit(Object[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			return new EntrySetSpliterator(table, origin, fence, estimatedSize, expectedModCount);
+		}
+	}
+
+	public class KeysSpliterator extends BaseSpliterator<K> {
+
+		public KeysSpliterator(Object[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			super(table, origin, fence, estimatedSize, expectedModCount);
+		}
+
+		@Override
+		protected K extract(int slot) {
+			return keyAt(slot);
+		}
+
+		@Override
+		protected KeysSpliterator createSplit(Object[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			return new KeysSpliterator(table, origin, fence, estimatedSize, expectedModCount);
+		}
+	}
+
+	public class ValuesSpliterator extends BaseSpliterator<V> {
+
+		public ValuesSpliterator(Object[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			super(table, origin, fence, estimatedSize, expectedModCount);
+		}
+
+		@Override
+		protected V extract(int slot) {
+			return valueAt(slot);
+		}
+
+		@Override
+		protected ValuesSpliterator createSplit(Object[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			return new ValuesSpliterator(table, origin, fence, estimatedSize, expectedModCount);
+		}
+	}
+
+	/**
+	 * Return a string representing the layout of the underlying table.
+	 * Useful for debugging.
+	 */
+	public String getLayout() {
+		if (size == 0) {
+			return "EMPTY (size=0, capacity=" + capacity + ", loadFactor=0)\n";
+		}
+		StringBuilder result = new StringBuilder();
+		result.append("NOT EMPTY (size=")
+				.append(size)
+				.append("), capacity=")
+				.append(capacity)
+				.append("), loadFactor=")
+				.append(size / (float) capacity)
+				.append(", stash=")
+				.append(stashSize)
+				.append("\n");
+		for (int i = 0; i < keySlots.length; ++i) {
+			if (i < capacity && i % BUCKET_SIZE == 0) {
+				result.append("bucket ").append(i / BUCKET_SIZE).append("\n");
+			} else if (i == capacity) {
+				result.append("stash").append("\n");
+			}
+			if (keySlots[i] == null) {
+				result.append("index ").append(i).append(" : NULL").append("\n");
+			} else {
+				result.append("index ").append(i).append(" : ")
+						.append("(key=")
+						.append(keySlots[i])
+						.append(",value=")
+						.append(valueSlots[i])
+						.append(i < capacity ? ",bucket=" + (i / BUCKET_SIZE == firstBucket(hash(keySlots[i])) ? 1 : 2) : "")
+						.append(")")
+						.append("\n");
+			}
+		}
+		return result.toString();
+	}
+
+	private void checkForComodification(int expectedModCount) {
+		if (this.modCount != expectedModCount) {
+			throw new ConcurrentModificationException();
+		}
+	}
+
+	/**
+	 * Compute the hash of the given key, mixed with the seed of the table (with the finalizer of MurmurHash3),
+	 * so that changing the seed moves the keys to other buckets.
+	 */
+	private int hash(Object key) {
+		int hash = key.hashCode() ^ this.seed;
+		hash ^= hash >>> 16;
+		hash *= 0x85EBCA6B;
+		hash ^= hash >>> 13;
+		hash *= 0xC2B2AE35;
+		hash ^= hash >>> 16;
+		return hash;
+	}
+
+	/**
+	 * Return the first bucket of a key, given by the low bits of its hash.
+	 */
+	private int firstBucket(int hash) {
+		return hash & ((this.capacity / BUCKET_SIZE) - 1);
+	}
+
+	/**
+	 * Return the second bucket of a key, given by the high bits of its hash.
+	 * It is always different from the first bucket, so that each key has two distinct buckets.
+	 */
+	private int secondBucket(int hash) {
+		final int bucketMask = (this.capacity / BUCKET_SIZE) - 1;
+		final int first = hash & bucketMask;
+		final int second = Integer.rotateLeft(hash, 16) & bucketMask;
+		return second != first ? second : first ^ 1;
+	}
+
+	/**
+	 * Return the next number of a xorshift pseudo random generator.
+	 */
+	private int nextRandom() {
+		int random = this.random;
+		random ^= random << 13;
+		random ^= random >>> 17;
+		random ^= random << 5;
+		this.random = random;
+		return random;
+	}
+
+	@SuppressWarnings("unchecked")
+	private K keyAt(int slot) {
+		return (K) this.keySlots[slot];
+	}
+
+	@SuppressWarnings("unchecked")
+	private V valueAt(int slot) {
+		return (V) this.valueSlots[slot];
+	}
+
+	/**
+	 * Set the value of the entry at the given slot, and return its previous value.
+	 */
+	private V setValueAt(int slot, V value) {
+		final V oldValue = valueAt(slot);
+		this.valueSlots[slot] = value;
+		return oldValue;
+	}
+
+	/**
+	 * Find the slot of the given key, in its first bucket, then in its second bucket, then in the stash if it is not empty.
+	 *
+	 * @return the index of the slot of the key if the key is present, otherwise -1
+	 */
+	private int findSlot(int hash, Object key) {
+		int slot = findSlotInBucket(firstBucket(hash), key);
+		if (slot >= 0) {
+			return slot;
+		}
+		slot = findSlotInBucket(secondBucket(hash), key);
+		if (slot >= 0 || this.stashSize == 0) {
+			return slot;
+		}
+		for (int i = this.capacity; i < this.keySlots.length; i++) {
+			if (key.equals(this.keySlots[i])) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private int findSlotInBucket(int bucket, Object key) {
+		final int start = bucket * BUCKET_SIZE;
+		for (int i = start; i < start + BUCKET_SIZE; i++) {
+			final Object keyAtSlot = this.keySlots[i];
+			if (keyAtSlot == key || key.equals(keyAtSlot)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Return the first free slot of the given bucket, or -1 if the bucket is full.
+	 */
+	private int freeSlotInBucket(int bucket) {
+		final int start = bucket * BUCKET_SIZE;
+		for (int i = start; i < start + BUCKET_SIZE; i++) {
+			if (this.keySlots[i] == null) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Insert a new entry for a key that is known to be absent from the table.
+	 * If it does not fit, the table is rebuilt with it.
+	 */
+	private void insertEntry(int hash, K key, V value) {
+		if (!tryInsert(hash, key, value)) {
+			rebuild(this.capacity, key, value);
+		}
+		this.size++;
+		this.modCount++;
+	}
+
+	/**
+	 * Try to insert an entry, kicking out other entries to their other bucket if both buckets of the key are full.
+	 * Entries to kick out are picked at random, to avoid cycles between buckets.
+	 * If the last kicked entry finds no room, it is put in the stash if the stash is not full.
+	 * Otherwise, the kicks are undone, and the table is left as it was.
+	 *
+	 * @return true if the entry was inserted, false if the table has to be rebuilt
+	 */
+	private boolean tryInsert(int hash, Object key, Object value) {
+		int bucket = firstBucket(hash);
+		int slot = freeSlotInBucket(bucket);
+		if (slot < 0) {
+			bucket = secondBucket(hash);
+			slot = freeSlotInBucket(bucket);
+		}
+		if (slot >= 0) {
+			this.keySlots[slot] = key;
+			this.valueSlots[slot] = value;
+			return true;
+		}
+
+		final int[] kickedSlots = new int[MAX_KICKS];
+		Object homelessKey = key;
+		Object homelessValue = value;
+		for (int kicks = 0; kicks < MAX_KICKS; kicks++) {
+			// swap the homeless entry with a random entry of the bucket, which becomes homeless
+			final int kickedSlot = bucket * BUCKET_SIZE + (nextRandom() & (BUCKET_SIZE - 1));
+			final Object kickedKey = this.keySlots[kickedSlot];
+			final Object kickedValue = this.valueSlots[kickedSlot];
+			this.keySlots[kickedSlot] = homelessKey;
+			this.valueSlots[kickedSlot] = homelessValue;
+			kickedSlots[kicks] = kickedSlot;
+			homelessKey = kickedKey;
+			homelessValue = kickedValue;
+
+			final int homelessHash = hash(homelessKey);
+			final int first = firstBucket(homelessHash);
+			bucket = bucket == first ? secondBucket(homelessHash) : first;
+			slot = freeSlotInBucket(bucket);
+			if (slot >= 0) {
+				this.keySlots[slot] = homelessKey;
+				this.valueSlots[slot] = homelessValue;
+				return true;
+			}
+		}
+
+		if (this.stashSize < STASH_SIZE) {
+			for (int i = this.capacity; i < this.keySlots.length; i++) {
+				if (this.keySlots[i] == null) {
+					this.keySlots[i] = homelessKey;
+					this.valueSlots[i] = homelessValue;
+					this.stashSize++;
+					return true;
+				}
+			}
+		}
+
+		// swapping the entries back in reverse order restores the table
+		for (int kicks = MAX_KICKS - 1; kicks >= 0; kicks--) {
+			final int kickedSlot = kickedSlots[kicks];
+			final Object kickedKey = this.keySlots[kickedSlot];
+			final Object kickedValue = this.valueSlots[kickedSlot];
+			this.keySlots[kickedSlot] = homelessKey;
+			this.valueSlots[kickedSlot] = homelessValue;
+			homelessKey = kickedKey;
+			homelessValue = kickedValue;
+		}
+		return false;
+	}
+
+	/**
+	 * Set the value of the entry at the given slot, or remove the entry if the new value is null.
+	 */
+	private void updateOrRemoveEntryAt(int slot, V newValue) {
+		if (newValue != null) {
+			setValueAt(slot, newValue);
+		} else {
+			removeEntryAt(slot);
+		}
+	}
+
+	/**
+	 * Remove the entry at the given slot.
+	 */
+	private void removeEntryAt(int slot) {
+		if (slot >= this.capacity) {
+			this.stashSize--;
+		}
+		this.keySlots[slot] = null;
+		this.valueSlots[slot] = null;
+		this.size--;
+		this.modCount++;
+	}
+
+	/**
+	 * Check if the threshold has been met to trigger a resize of the table, and perform the resize if it was met.
+	 * The threshold is when the load factor reaches the configured maximum load factor,
+	 * or when the next insertion would not fit in the table.
+	 */
+	private void resizeIfNeeded() {
+		final float currentLoadFactor = this.size / (float) this.capacity;
+		if (currentLoadFactor >= this.loadFactor || this.size + 1 > this.capacity) {
+			rebuild(this.capacity << 1, null, null);
+		}
+	}
+
+	/**
+	 * Put all the mappings of the given map, after growing the table once for all of them.
+	 */
+	private void putMapEntries(Map<? extends K, ? extends V> map) {
+		if (map.isEmpty()) {
+			return;
+		}
+		ensureCapacity(this.size + map.size());
+		for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+			put(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Return the capacity of a table that can hold the given number of entries without being resized.
+	 * The capacity is always greater than the number of entries, even when the load factor is greater than 1.
+	 */
+	private int capacityFor(int expectedSize) {
+		return tableSizeFor((int) Math.min(Integer.MAX_VALUE, Math.max((long) (expectedSize / this.loadFactor), expectedSize + 1L) + 1));
+	}
+
+	/**
+	 * Grow the table so that it can hold the given number of entries without being resized.
+	 */
+	private void ensureCapacity(int expectedSize) {
+		final int capacity = capacityFor(expectedSize);
+		if (capacity > this.capacity) {
+			rebuild(capacity, null, null);
+		}
+	}
+
+	private void allocate(int capacity, int seed) {
+		this.keySlots = new Object[capacity + STASH_SIZE];
+		this.valueSlots = new Object[capacity + STASH_SIZE];
+		this.capacity = capacity;
+		this.stashSize = 0;
+		this.seed = seed;
+	}
+
+	/**
+	 * Move all the entries of the table, and the given extra entry if its key is not null,
+	 * to a new table with the given capacity and a new seed.
+	 * If they do not fit, the rebuild is retried with a new seed and a doubled capacity,
+	 * up to {@link #MAX_SUCCESSIVE_RESIZES} times, after which the table is restored,
+	 * and a {@link TooManyHashMapResizeException} is thrown.
+	 */
+	private void rebuild(int newCapacity, Object extraKey, Object extraValue) {
+		final Object[] oldKeys = this.keySlots;
+		final Object[] oldValues = this.valueSlots;
+		final int oldCapacity = this.capacity;
+		final int oldStashSize = this.stashSize;
+		final int oldSeed = this.seed;
+		for (int i = 0; i < MAX_SUCCESSIVE_RESIZES; i++) {
+			allocate(newCapacity, nextRandom());
+			if (tryInsertAll(oldKeys, oldValues)
+					&& (extraKey == null || tryInsert(hash(extraKey), extraKey, extraValue))) {
+				this.modCount++;
+				return;
+			}
+			newCapacity <<= 1;
+		}
+		this.keySlots = oldKeys;
+		this.valueSlots = oldValues;
+		this.capacity = oldCapacity;
+		this.stashSize = oldStashSize;
+		this.seed = oldSeed;
+		throw new TooManyHashMapResizeException("Too many successive resizes");
+	}
+
+	private boolean tryInsertAll(Object[] keys, Object[] values) {
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != null && !tryInsert(hash(keys[i]), keys[i], values[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Return the smallest power of two that is greater or equal to the given capacity, and to the size of two buckets.
+	 * The number of buckets must be a power of two, so that the buckets of a hash can be computed with a mask,
+	 * and there must be at least two buckets, so that each key has two distinct buckets.
+	 */
+	private static int tableSizeFor(int capacity) {
+		if (capacity <= 2 * BUCKET_SIZE) {
+			return 2 * BUCKET_SIZE;
+		}
+		return 1 << (32 - Integer.numberOfLeadingZeros(capacity - 1));
+	}
+
+	/**
+	 * Exception that is thrown when the table is rebuilt more than {@link #MAX_SUCCESSIVE_RESIZES} times
+	 * during an insertion.
+	 * This is needed in order to prevent the operation to cause an out of memory error,
+	 * when the keys cannot be placed whatever the hash functions, for instance because they have the same hash code.
+	 * This should not happen in practice, as one rebuild is enough to handle most cases.
+	 */
+	public static class TooManyHashMapResizeException extends RuntimeException {
+		public TooManyHashMapResizeException(String message) {
+			super(message);
+		}
+	}
+}
@@ -1,19 +1,36 @@
 package com.petitcl.collections;
 
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Implementation of {@link Map} that is backed by a hash table
- * and that uses chaining (via a linked list) to handle collisions.
+ * and that uses chaining (via chains of indexes) to handle collisions.
  * This version manages 2 tables:
  * - a hash table that maps key hashes to indexes in the data table
  * - a data table that contains inserted entries. The order in this table is the insertion order.
  * This allows to maintain insertion order while iterating over the map.
  *
- * This class also uses tombstones: when a node is delete from the data table,
- * a tombstone node is left in the spot of the deleted node. This keeps intact
- * the chain of non null nodes, allowing to iterate on the data table until finding a null node,
- * thus lowering the number of steps needed to traverse the map.
+ * The data table is made of parallel arrays of keys, values, hashes and chain links, that share the same indexes.
+ * The hash table holds the index of the head of each chain, and the chain array holds, for each index of the data table,
+ * the index of the next entry of the same chain. Entries are not allocated as objects,
+ * so that an entry only costs two references and two ints, and iterating on the map is a linear scan of arrays.
+ *
+ * This class also uses tombstones: when an entry is deleted from the data table,
+ * its key and value are cleared, but its hash and its chain link are left in place. This keeps intact
+ * the chains that go through the deleted entry, and the order of the entries of the data table.
+ * When the data table is full, the tables are rebuilt with a capacity computed from the number of entries:
+ * if most slots are tombstones, the tombstones are dropped in place, without allocating new tables,
+ * and if almost all slots are tombstones, the tables shrink.
+ *
+ * Like {@link LinkedHashMap}, this map can be ordered by access instead of insertion:
+ * an access to an entry then replaces it with a tombstone and appends it again to the data table,
+ * so that the least recently accessed entry is always the first entry of the data table.
+ * {@link #removeEldestEntry(Map.Entry)} can be overridden to evict that entry after each insertion,
+ * which makes this map usable as a bounded cache (see {@link PcLruCache}).
  *
  * This method is also referred as Close Tables, after their inventor, Tyler Close.
  */
@@ -22,21 +39,19 @@ public class PcDeterministicHashMap<K, V> extends AbstractMap<K, V> {
 	public static final int DEFAULT_INITIAL_CAPACITY = 16;
 	public static final float DEFAULT_LOAD_FACTOR = 0.75f;
 
-	public static class Node<K, V> implements Entry<K, V> {
-		private K key;
+	/**
+	 * View of a mapping of the map, created when iterating on the entry set.
+	 * Setting the value of the entry writes through to the map while the key is still present.
+	 */
+	public class Entry implements Map.Entry<K, V> {
+		private final K key;
 		private V value;
-		private Node<K, V> next;
+		private int index;
 
-		public Node(K key, V value) {
-			this.key = key;
-			this.value = value;
-			this.next = null;
-		}
-
-		public Node(K key, V value, Node<K, V> next) {
-			this.key = key;
-			this.value = value;
-			this.next = next;
+		public Entry(int index) {
+			this.key = keyAt(index);
+			this.value = valueAt(index);
+			this.index = index;
 		}
 
 		@Override
@@ -46,6 +61,9 @@ public class PcDeterministicHashMap<K, V> extends AbstractMap<K, V> {
 
 		@Override
 		public V getValue() {
+			if (locate()) {
+				this.value = valueAt(this.index);
+			}
 			return value;
 		}
 
@@ -53,23 +71,31 @@ public class PcDeterministicHashMap<K, V> extends AbstractMap<K, V> {
 		public V setValue(V value) {
 			Objects.requireNonNull(value);
 
-			final V oldValue = this.value;
+			final V oldValue = getValue();
 			this.value = value;
+			if (locate()) {
+				valueSlots[this.index] = value;
+			}
 			return oldValue;
 		}
 
-		public void setTombstone() {
-			this.key = null;
-			this.value = null;
-		}
-
-		public boolean isTombstone() {
-			return this.key == null && this.value == null;
+		/**
+		 * Find the current index of the key, which may have moved since the entry was created,
+		 * if the tables were rebuilt.
+		 *
+		 * @return true if the key is still present in the map
+		 */
+		private boolean locate() {
+			if (this.index >= 0 && this.index < nextSlot && keySlots[this.index] == this.key) {
+				return true;
+			}
+			this.index = findIndex(hash(this.key), this.key);
+			return this.index >= 0;
 		}
 
 		@Override
 		public final int hashCode() {
-			return Objects.hashCode(key) ^ Objects.hashCode(value);
+			return Objects.hashCode(key) ^ Objects.hashCode(getValue());
 		}
 
 		@Override
@@ -81,26 +107,41 @@ public class PcDeterministicHashMap<K, V> extends AbstractMap<K, V> {
 				return false;
 			}
 			if ((other instanceof Map.Entry)) {
-				final Entry that = (Entry)other;
+				final Map.Entry that = (Map.Entry) other;
 				return Objects.equals(key, that.getKey()) &&
-						Objects.equals(value, that.getValue());
+						Objects.equals(getValue(), that.getValue());
 			}
 			return false;
 		}
 
 		@Override
-		public final String toString() { return key + "=" + value; }
+		public final String toString() {
+			return key + "=" + getValue();
+		}
 	}
 
+	/*
+	 * The data table: keys and values of the entries, in insertion order.
+	 * The key of a tombstone is null.
+	 */
+	private Object[] keySlots;
+	private Object[] valueSlots;
+
 	/**
-	 * Table of nodes.
+	 * Hashes of the keys, cached to avoid calling {@link Object#hashCode()} again,
+	 * and to avoid calling {@link Object#equals(Object)} on keys that have a different hash.
 	 */
-	private Node<K, V>[] dataTable;
+	private int[] hashes;
 
 	/**
-	 * Table of indexes of the nodes in the data table.
+	 * Index in the data table of the next entry of the same chain, or -1 at the end of the chain.
+	 */
+	private int[] chain;
+
+	/**
+	 * Table of indexes of the heads of the chains in the data table.
 	 * The indexes of this table are hashes (clamped to the table size).
-	 * The values of this table are indexes of nodes in the data table.
+	 * The values of this table are indexes of entries in the data table, or -1 if the chain is empty.
 	 */
 	private int[] hashTable;
 
@@ -109,37 +150,88 @@ public class PcDeterministicHashMap<K, V> extends AbstractMap<K, V> {
 	 */
 	private int nextSlot;
 
+	/**
+	 * Index of the data table before which all the slots are tombstones,
+	 * so that the eldest entry is found without scanning the tombstones left by evictions again.
+	 */
+	private int firstSlot;
+
 	private int size;
 	private final float loadFactor;
 
-	@SuppressWarnings("unchecked")
+	/**
+	 * True if the entries are ordered by access, false if they are ordered by insertion.
+	 */
+	private final boolean accessOrder;
+
+	/**
+	 * Number of structural modifications of this map (insertions, removals and resizes),
+	 * used by iterators and spliterators to detect concurrent modifications.
+	 */
+	private int modCount;
+
+	private EntrySet entrySet;
+	private KeySet keySet;
+	private Values values;
+
 	public PcDeterministicHashMap() {
-		this.dataTable = (Node<K, V>[]) new Node[DEFAULT_INITIAL_CAPACITY];
-		this.hashTable = new int[DEFAULT_INITIAL_CAPACITY];
-		Arrays.fill(this.hashTable, -1);
-		this.loadFactor = DEFAULT_LOAD_FACTOR;
-		this.nextSlot = 0;
-		this.size = 0;
+		this(DEFAULT_INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR);
 	}
 
-	@SuppressWarnings("unchecked")
 	public PcDeterministicHashMap(int initialCapacity, float loadFactor) {
-		this.dataTable = (Node<K, V>[]) new Node[initialCapacity];
-		this.hashTable = new int[initialCapacity];
-		Arrays.fill(this.hashTable, -1);
+		this(initialCapacity, loadFactor, false);
+	}
+
+	/**
+	 * Create a map ordered by access if accessOrder is true, or by insertion otherwise.
+	 * In access order, getting, putting, replacing or computing the value of a key moves its entry to the end of the map.
+	 */
+	public PcDeterministicHashMap(int initialCapacity, float loadFactor, boolean accessOrder) {
+		allocateTables(initialCapacity);
 		this.loadFactor = loadFactor;
+		this.accessOrder = accessOrder;
 		this.nextSlot = 0;
 		this.size = 0;
 	}
 
-	@SuppressWarnings("unchecked")
 	public PcDeterministicHashMap(int initialCapacity) {
-		this.dataTable = (Node<K, V>[]) new Node[initialCapacity];
-		this.hashTable = new int[initialCapacity];
-		Arrays.fill(this.hashTable, -1);
-		this.loadFactor = DEFAULT_LOAD_FACTOR;
+		this(initialCapacity, DEFAULT_LOAD_FACTOR);
+	}
+
+	/**
+	 * Create a map with the same mappings as the given map, in the same iteration order.
+	 * If the given map is also a {@link PcDeterministicHashMap}, its load factor is kept,
+	 * and its entries are copied without hashing or comparing keys again. Tombstones are not copied.
+	 * The new map is ordered by insertion, and {@link #removeEldestEntry(Map.Entry)} is not called while it is filled.
+	 */
+	@SuppressWarnings("unchecked")
+	public PcDeterministicHashMap(Map<? extends K, ? extends V> map) {
+		Objects.requireNonNull(map);
+
+		this.loadFactor = map instanceof PcDeterministicHashMap
+				? ((PcDeterministicHashMap<? extends K, ? extends V>) map).loadFactor
+				: DEFAULT_LOAD_FACTOR;
+		this.accessOrder = false;
+		allocateTables(Math.max(DEFAULT_INITIAL_CAPACITY, capacityFor(map.size())));
 		this.nextSlot = 0;
 		this.size = 0;
+		putMapEntries(map, false);
+	}
+
+	/**
+	 * Create a map from the given entries, in the order of the collection.
+	 * The tables are sized upfront for the number of entries, so that they are not resized while the entries are added.
+	 * If several entries have the same key, the last one wins, at the position of the first one.
+	 */
+	public static <K, V> PcDeterministicHashMap<K, V> fromEntries(Collection<? extends Map.Entry<? extends K, ? extends V>> entries) {
+		Objects.requireNonNull(entries);
+
+		final PcDeterministicHashMap<K, V> map = new PcDeterministicHashMap<>();
+		map.ensureCapacity(entries.size());
+		for (Map.Entry<? extends K, ? extends V> entry : entries) {
+			map.put(entry.getKey(), entry.getValue());
+		}
+		return map;
 	}
 
 	@Override
@@ -156,18 +248,17 @@ public class PcDeterministicHashMap<K, V> extends AbstractMap<K, V> {
 	public boolean containsKey(Object key) {
 		Objects.requireNonNull(key);
 
-		final Node<K, V> foundNode = getNodeForKey(key);
-		return foundNode != null;
+		return findIndex(hash(key), key) >= 0;
 	}
 
 	@Override
 	public boolean containsValue(Object value) {
 		Objects.requireNonNull(value);
 
-		final ValuesIterator iterator = new ValuesIterator();
-		while (iterator.hasNext()) {
-			final V nextValue = iterator.next();
-			if (nextValue.equals(value)) {
+		final Object[] keySlots = this.keySlots;
+		final Object[] valueSlots = this.valueSlots;
+		for (int i = 0; i < this.nextSlot; i++) {
+			if (keySlots[i] != null && valueSlots[i].equals(value)) {
 				return true;
 			}
 		}
@@ -178,8 +269,13 @@ public class PcDeterministicHashMap<K, V> extends AbstractMap<K, V> {
 	public V get(Object key) {
 		Objects.requireNonNull(key);
 
-		final Node<K, V> foundNode = getNodeForKey(key);
-		return foundNode != null ? foundNode.value : null;
+		final int index = findIndex(hash(key), key);
+		if (index < 0) {
+			return null;
+		}
+		final V value = valueAt(index);
+		afterAccess(index);
+		return value;
 	}
 
 	@Override
@@ -187,35 +283,300 @@ public class PcDeterministicHashMap<K, V> extends AbstractMap<K, V> {
 		Objects.requireNonNull(key);
 		Objects.requireNonNull(value);
 
-		return putNodeForKey(key, value);
+		final V oldValue = putEntryForKey(hash(key), key, value);
+		if (oldValue == null) {
+			afterInsertion();
+		}
+		return oldValue;
+	}
+
+	@Override
+	public void putAll(Map<? extends K, ? extends V> map) {
+		Objects.requireNonNull(map);
+
+		putMapEntries(map, true);
 	}
 
 	@Override
 	public V remove(Object key) {
 		Objects.requireNonNull(key);
 
-		return removeNodeForKey(key);
+		final int index = findIndex(hash(key), key);
+		if (index < 0) {
+			return null;
+		}
+		final V oldValue = valueAt(index);
+		removeEntryAt(index);
+		return oldValue;
+	}
+
+	/*
+	 * The following methods look up the key only once: its entry is found in its chain,
+	 * then it is updated in place, replaced by a tombstone, or a new entry is appended to the data table
+	 * and inserted at the head of its chain.
+	 * The functions given to these methods must not modify this map,
+	 * otherwise a ConcurrentModificationException is thrown.
+	 */
+
+	@Override
+	public V getOrDefault(Object key, V defaultValue) {
+		Objects.requireNonNull(key);
+
+		final int index = findIndex(hash(key), key);
+		if (index < 0) {
+			return defaultValue;
+		}
+		final V value = valueAt(index);
+		afterAccess(index);
+		return value;
+	}
+
+	@Override
+	public V putIfAbsent(K key, V value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		this.resizeIfNeeded(this.size + 1);
+		final int hash = hash(key);
+		final int index = findIndex(hash, key);
+		if (index >= 0) {
+			final V oldValue = valueAt(index);
+			afterAccess(index);
+			return oldValue;
+		}
+		insertEntry(hash, key, value);
+		afterInsertion();
+		return null;
+	}
+
+	@Override
+	public boolean remove(Object key, Object value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		final int index = findIndex(hash(key), key);
+		if (index < 0 || !this.valueSlots[index].equals(value)) {
+			return false;
+		}
+		removeEntryAt(index);
+		return true;
+	}
+
+	@Override
+	public boolean replace(K key, V oldValue, V newValue) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(oldValue);
+		Objects.requireNonNull(newValue);
+
+		final int index = findIndex(hash(key), key);
+		if (index < 0 || !this.valueSlots[index].equals(oldValue)) {
+			return false;
+		}
+		this.valueSlots[index] = newValue;
+		afterAccess(index);
+		return true;
+	}
+
+	@Override
+	public V replace(K key, V value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		final int index = findIndex(hash(key), key);
+		if (index < 0) {
+			return null;
+		}
+		final V oldValue = valueAt(index);
+		this.valueSlots[index] = value;
+		afterAccess(index);
+		return oldValue;
+	}
+
+	@Override
+	public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(mappingFunction);
+
+		this.resizeIfNeeded(this.size + 1);
+		final int hash = hash(key);
+		final int index = findIndex(hash, key);
+		if (index >= 0) {
+			final V value = valueAt(index);
+			afterAccess(index);
+			return value;
+		}
+		final int expectedModCount = this.modCount;
+		final V newValue = mappingFunction.apply(key);
+		checkForComodification(expectedModCount);
+		if (newValue != null) {
+			insertEntry(hash, key, newValue);
+			afterInsertion();
+		}
+		return newValue;
+	}
+
+	@Override
+	public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(remappingFunction);
+
+		final int index = findIndex(hash(key), key);
+		if (index < 0) {
+			return null;
+		}
+		final int expectedModCount = this.modCount;
+		final V newValue = remappingFunction.apply(key, valueAt(index));
+		checkForComodification(expectedModCount);
+		updateOrRemoveEntryAt(index, newValue);
+		if (newValue != null) {
+			afterAccess(index);
+		}
+		return newValue;
+	}
+
+	@Override
+	public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(remappingFunction);
+
+		this.resizeIfNeeded(this.size + 1);
+		final int hash = hash(key);
+		final int index = findIndex(hash, key);
+		final int expectedModCount = this.modCount;
+		final V newValue = remappingFunction.apply(key, index >= 0 ? valueAt(index) : null);
+		checkForComodification(expectedModCount);
+		if (index >= 0) {
+			updateOrRemoveEntryAt(index, newValue);
+			if (newValue != null) {
+				afterAccess(index);
+			}
+		} else if (newValue != null) {
+			insertEntry(hash, key, newValue);
+			afterInsertion();
+		}
+		return newValue;
+	}
+
+	@Override
+	public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+		Objects.requireNonNull(remappingFunction);
+
+		this.resizeIfNeeded(this.size + 1);
+		final int hash = hash(key);
+		final int index = findIndex(hash, key);
+		if (index < 0) {
+			insertEntry(hash, key, value);
+			afterInsertion();
+			return value;
+		}
+		final int expectedModCount = this.modCount;
+		final V newValue = remappingFunction.apply(valueAt(index), value);
+		checkForComodification(expectedModCount);
+		updateOrRemoveEntryAt(index, newValue);
+		if (newValue != null) {
+			afterAccess(index);
+		}
+		return newValue;
+	}
+
+	@Override
+	public void forEach(BiConsumer<? super K, ? super V> action) {
+		Objects.requireNonNull(action);
+
+		final Object[] keySlots = this.keySlots;
+		final int end = this.nextSlot;
+		final int expectedModCount = this.modCount;
+		for (int i = 0; i < end && this.modCount == expectedModCount; i++) {
+			if (keySlots[i] != null) {
+				action.accept(keyAt(i), valueAt(i));
+			}
+		}
+		checkForComodification(expectedModCount);
+	}
+
+	@Override
+	public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+		Objects.requireNonNull(function);
+
+		final Object[] keySlots = this.keySlots;
+		final Object[] valueSlots = this.valueSlots;
+		final int end = this.nextSlot;
+		final int expectedModCount = this.modCount;
+		for (int i = 0; i < end && this.modCount == expectedModCount; i++) {
+			if (keySlots[i] != null) {
+				valueSlots[i] = Objects.requireNonNull(function.apply(keyAt(i), valueAt(i)));
+			}
+		}
+		checkForComodification(expectedModCount);
 	}
 
 	@Override
 	public void clear() {
+		this.modCount++;
 		this.size = 0;
-		Arrays.fill(this.dataTable, null);
+		Arrays.fill(this.keySlots, 0, this.nextSlot, null);
+		Arrays.fill(this.valueSlots, 0, this.nextSlot, null);
 		Arrays.fill(this.hashTable, -1);
+		this.nextSlot = 0;
+		this.firstSlot = 0;
+	}
+
+	/**
+	 * Return true if the given eldest entry of the map must be removed.
+	 * This method is called after each insertion of a new entry, except while a map is created from another map,
+	 * with the first entry of the map: the least recently inserted one, or the least recently accessed one in access order.
+	 * It returns false by default, and can be overridden to bound the size of the map, as {@link PcLruCache} does.
+	 * If it returns true, the eldest entry is removed by the map: the method itself should not modify the map.
+	 */
+	protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+		return false;
+	}
+
+	/**
+	 * Return the first entry of the map, ie: the eldest one, or null if the map is empty.
+	 * Finding it is O(1) amortized, as the tombstones at the start of the data table are only skipped once.
+	 * This does not count as an access in access order.
+	 */
+	public Map.Entry<K, V> firstEntry() {
+		final int index = firstIndex();
+		return index >= 0 ? new Entry(index) : null;
+	}
+
+	/**
+	 * Remove and return the first entry of the map, ie: the eldest one, or return null if the map is empty.
+	 */
+	public Map.Entry<K, V> pollFirstEntry() {
+		final int index = firstIndex();
+		if (index < 0) {
+			return null;
+		}
+		final Map.Entry<K, V> entry = new Entry(index);
+		removeEntryAt(index);
+		return entry;
 	}
 
 	@Override
-	public Set<Entry<K, V>> entrySet() {
-		return new EntrySet();
+	public Set<Map.Entry<K, V>> entrySet() {
+		if (this.entrySet == null) {
+			this.entrySet = new EntrySet();
+		}
+		return this.entrySet;
 	}
 
-	public class EntrySet extends AbstractSet<Entry<K, V>> {
+	public class EntrySet extends AbstractSet<Map.Entry<K, V>> {
 
 		@Override
-		public Iterator<Entry<K, V>> iterator() {
+		public Iterator<Map.Entry<K, V>> iterator() {
 			return new EntrySetIterator();
 		}
 
+		@Override
+		public Spliterator<Map.Entry<K, V>> spliterator() {
+			return new EntrySetSpliterator(null, null, 0, -1, 0, 0);
+		}
+
 		@Override
 		public int size() {
 			return size;
@@ -232,16 +593,19 @@ public class PcDeterministicHashMap<K, V> extends AbstractMap<K, V> {
 		}
 	}
 
-	public class EntrySetIterator extends BaseIterator implements Iterator<Entry<K, V>> {
+	public class EntrySetIterator extends BaseIterator implements Iterator<Map.Entry<K, V>> {
 		@Override
-		public Entry<K, V> next() {
-			return nextNode();
+		public Map.Entry<K, V> next() {
+			return new Entry(nextIndex());
 		}
 	}
 
 	@Override
 	public Set<K> keySet() {
-		return new KeySet();
+		if (this.keySet == null) {
+			this.keySet = new KeySet();
+		}
+		return this.keySet;
 	}
 
 	public class KeySet extends AbstractSet<K> {
@@ -251,6 +615,11 @@ public class PcDeterministicHashMap<K, V> extends AbstractMap<K, V> {
 			return new KeysIterator();
 		}
 
+		@Override
+		public Spliterator<K> spliterator() {
+			return new KeysSpliterator(null, null, 0, -1, 0, 0);
+		}
+
 		@Override
 		public int size() {
 			return size;
@@ -270,13 +639,16 @@ public class PcDeterministicHashMap<K, V> extends AbstractMap<K, V> {
 	public class KeysIterator extends BaseIterator implements Iterator<K> {
 		@Override
 		public K next() {
-			return nextNode().getKey();
+			return keyAt(nextIndex());
 		}
 	}
 
 	@Override
 	public Collection<V> values() {
-		return new Values();
+		if (this.values == null) {
+			this.values = new Values();
+		}
+		return this.values;
 	}
 
 	public class Values extends AbstractCollection<V> {
@@ -286,6 +658,11 @@ public class PcDeterministicHashMap<K, V> extends AbstractMap<K, V> {
 			return new ValuesIterator();
 		}
 
+		@Override
+		public Spliterator<V> spliterator() {
+			return new ValuesSpliterator(null, null, 0, -1, 0, 0);
+		}
+
 		@Override
 		public int size() {
 			return size;
@@ -305,283 +682,540 @@ public class PcDeterministicHashMap<K, V> extends AbstractMap<K, V> {
 	public class ValuesIterator extends BaseIterator implements Iterator<V> {
 		@Override
 		public V next() {
-			return nextNode().getValue();
+			return valueAt(nextIndex());
 		}
 	}
 
+	/**
+	 * Base iterator, that scans the data table in insertion order, skipping tombstones.
+	 * Removing an entry through the iterator leaves a tombstone, so it does not move the entries that are not visited yet.
+	 */
 	public abstract class BaseIterator {
 
-		private int indexInDataTable;
-		private Node<K, V> nextNode;
-		private Node<K, V> currentNode;
+		private int nextIndex;
+		private int currentIndex;
+		private int expectedModCount;
 
 		public BaseIterator() {
-			this.indexInDataTable = 0;
-			this.nextNode = null;
-			this.currentNode = null;
-			// initially advance to first node
-			final Node<K, V>[] dataTable = PcDeterministicHashMap.this.dataTable;
-			while (indexInDataTable < dataTable.length && dataTable[indexInDataTable] != null && nextNode == null) {
-				final Node<K, V> current = dataTable[indexInDataTable];
-				if (!current.isTombstone()) {
-					nextNode = current;
-				} else {
-					indexInDataTable++;
-				}
-			}
+			this.expectedModCount = modCount;
+			this.currentIndex = -1;
+			// initially advance to first entry, all the slots before the first slot are tombstones
+			advanceFrom(firstSlot);
 		}
 
 		public boolean hasNext() {
-			return this.nextNode != null;
+			return this.nextIndex != -1;
 		}
 
-		protected Node<K, V> nextNode() {
-			if (nextNode == null) {
+		/**
+		 * Return the index of the next entry, and advance to the following entry.
+		 */
+		protected int nextIndex() {
+			checkForComodification(expectedModCount);
+			if (this.nextIndex == -1) {
 				throw new NoSuchElementException();
 			}
-			this.currentNode = nextNode;
-			computeNext();
-			return this.currentNode;
+			this.currentIndex = this.nextIndex;
+			advanceFrom(this.currentIndex + 1);
+			return this.currentIndex;
 		}
 
 		public void remove() {
-			if (currentNode == null) {
+			if (this.currentIndex == -1) {
 				throw new IllegalStateException("next() has not been called yet, cannot use remove()");
 			}
-			final Node<K, V> toRemove = currentNode;
-			currentNode = null;
-			removeNodeForKey(toRemove.key);
-		}
-
-		private void computeNext() {
-			final Node<K, V>[] dataTable = PcDeterministicHashMap.this.dataTable;
-			indexInDataTable++;
-			nextNode = null;
-			// advance index in data table
-			// stop iterating if we reached a null value
-			while (indexInDataTable < dataTable.length && dataTable[indexInDataTable] != null && nextNode == null) {
-				final Node<K, V> current = dataTable[indexInDataTable];
-				if (!current.isTombstone()) {
-					nextNode = current;
-				} else {
-					indexInDataTable++;
+			checkForComodification(expectedModCount);
+			removeEntryAt(this.currentIndex);
+			this.currentIndex = -1;
+			this.expectedModCount = modCount;
+		}
+
+		/**
+		 * Advance nextIndex to the first entry of the data table at or after the given index,
+		 * or to -1 at the end of the iteration.
+		 */
+		private void advanceFrom(int index) {
+			final Object[] keySlots = PcDeterministicHashMap.this.keySlots;
+			final int end = nextSlot;
+			int i = index;
+			while (i < end && keySlots[i] == null) {
+				i++;
+			}
+			this.nextIndex = i < end ? i : -1;
+		}
+	}
+
+	/**
+	 * Base spliterator, that traverses a range of the data table, in insertion order.
+	 * Splitting a spliterator splits its range of the data table in two halves.
+	 * The top level spliterator is bound to the data table on first use, and is the only one to report {@link Spliterator#SIZED},
+	 * as the number of tombstones in a range of the data table is not known.
+	 */
+	public abstract class BaseSpliterator<T> implements Spliterator<T> {
+
+		private Object[] keySlots;
+		private Object[] valueSlots;
+		private int indexInDataTable;
+		private int fence;
+		private int estimatedSize;
+		private int expectedModCount;
+
+		protected BaseSpliterator(Object[] keySlots, Object[] valueSlots, int origin, int fence, int estimatedSize, int expectedModCount) {
+			this.keySlots = keySlots;
+			this.valueSlots = valueSlots;
+			this.indexInDataTable = origin;
+			this.fence = fence;
+			this.estimatedSize = estimatedSize;
+			this.expectedModCount = expectedModCount;
+		}
+
+		protected abstract T extract(Object[] keySlots, Object[] valueSlots, int index);
+
+		protected abstract BaseSpliterator<T> createSplit(Object[] keySlots, Object[] valueSlots, int origin, int fence, int estimatedSize, int expectedModCount);
+
+		private int getFence() {
+			if (this.fence < 0) {
+				// slots after nextSlot have never been used
+				this.keySlots = PcDeterministicHashMap.this.keySlots;
+				this.valueSlots = PcDeterministicHashMap.this.valueSlots;
+				this.estimatedSize = size;
+				this.expectedModCount = modCount;
+				this.fence = nextSlot;
+			}
+			return this.fence;
+		}
+
+		@Override
+		public Spliterator<T> trySplit() {
+			final int high = getFence();
+			final int low = this.indexInDataTable;
+			final int middle = (low + high) >>> 1;
+			if (low >= middle) {
+				return null;
+			}
+			this.indexInDataTable = middle;
+			this.estimatedSize >>>= 1;
+			return createSplit(this.keySlots, this.valueSlots, low, middle, this.estimatedSize, this.expectedModCount);
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super T> action) {
+			Objects.requireNonNull(action);
+
+			final int high = getFence();
+			while (this.indexInDataTable < high) {
+				final int index = this.indexInDataTable++;
+				if (this.keySlots[index] != null) {
+					action.accept(extract(this.keySlots, this.valueSlots, index));
+					checkForComodification(this.expectedModCount);
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super T> action) {
+			Objects.requireNonNull(action);
+
+			final int high = getFence();
+			while (this.indexInDataTable < high) {
+				final int index = this.indexInDataTable++;
+				if (this.keySlots[index] != null) {
+					action.accept(extract(this.keySlots, this.valueSlots, index));
 				}
 			}
+			checkForComodification(this.expectedModCount);
+		}
+
+		@Override
+		public long estimateSize() {
+			getFence();
+			return this.estimatedSize;
+		}
+
+		@Override
+		public int characteristics() {
+			return (this.fence < 0 || this.estimatedSize == size ? Spliterator.SIZED : 0)
+					| Spliterator.ORDERED
+					| Spliterator.DISTINCT
+					| Spliterator.NONNULL;
+		}
+	}
+
+	public class EntrySetSpliterator extends BaseSpliterator<Map.Entry<K, V>> {
+
+		public EntrySetSpliterator(Object[] keySlots, Object[] valueSlots, int origin, int fence, int estimatedSize, int expectedModCount) {
+			super(keySlots, valueSlots, origin, fence, estimatedSize, expectedModCount);
+		}
+
+		@Override
+		protected Map.Entry<K, V> extract(Object[] keySlots, Object[] valueSlots, int index) {
+			return new Entry(index);
+		}
+
+		@Override
+		protected EntrySetSpliterator createSplit(Object[] keySlots, Object[] valueSlots, int origin, int fence, int estimatedSize, int expectedModCount) {
+			return new EntrySetSpliterator(keySlots, valueSlots, origin, fence, estimatedSize, expectedModCount);
+		}
+	}
+
+	public class KeysSpliterator extends BaseSpliterator<K> {
+
+		public KeysSpliterator(Object[] keySlots, Object[] valueSlots, int origin, int fence, int estimatedSize, int expectedModCount) {
+			super(keySlots, valueSlots, origin, fence, estimatedSize, expectedModCount);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		protected K extract(Object[] keySlots, Object[] valueSlots, int index) {
+			return (K) keySlots[index];
+		}
+
+		@Override
+		protected KeysSpliterator createSplit(Object[] keySlots, Object[] valueSlots, int origin, int fence, int estimatedSize, int expectedModCount) {
+			return new KeysSpliterator(keySlots, valueSlots, origin, fence, estimatedSize, expectedModCount);
+		}
+	}
+
+	public class ValuesSpliterator extends BaseSpliterator<V> {
+
+		public ValuesSpliterator(Object[] keySlots, Object[] valueSlots, int origin, int fence, int estimatedSize, int expectedModCount) {
+			super(keySlots, valueSlots, origin, fence, estimatedSize, expectedModCount);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		protected V extract(Object[] keySlots, Object[] valueSlots, int index) {
+			return (V) valueSlots[index];
+		}
+
+		@Override
+		protected ValuesSpliterator createSplit(Object[] keySlots, Object[] valueSlots, int origin, int fence, int estimatedSize, int expectedModCount) {
+			return new ValuesSpliterator(keySlots, valueSlots, origin, fence, estimatedSize, expectedModCount);
 		}
 	}
 
 	public String getLayout() {
+		final int capacity = this.hashTable.length;
 		if (size == 0) {
-			return "EMPTY (size=0, capacity=" + this.dataTable.length + ", loadFactor=0)\n";
+			return "EMPTY (size=0, capacity=" + capacity + ", loadFactor=0)\n";
 		}
 		StringBuilder result = new StringBuilder();
 		result.append("NOT EMPTY (size=")
 				.append(size)
 				.append("), capacity=")
-				.append(this.dataTable.length)
+				.append(capacity)
 				.append("), loadFactor=")
-				.append(size / (float)this.dataTable.length)
+				.append(size / (float) capacity)
 				.append("\n");
 		result.append("hashTable:\n");
 		for (int i = 0; i < hashTable.length; ++i) {
 			result.append("index ").append(i).append(" : ").append(hashTable[i]).append("\n");
 		}
 		result.append("dataTable:\n");
-		for (int i = 0; i < dataTable.length; ++i)  {
-			Node<K, V> node = dataTable[i];
-			if (node == null) {
+		for (int i = 0; i < capacity; ++i)  {
+			if (i >= this.nextSlot) {
 				result.append("index ").append(i).append(" : NULL").append("\n");
 			} else {
+				// print the chain that follows the entry, tombstones included
 				int count = 0;
-				final StringBuilder allNodes = new StringBuilder();
-				while (node != null) {
-					allNodes.append("(key=")
-							.append(node.key)
+				final StringBuilder allEntries = new StringBuilder();
+				for (int j = i; j != -1; j = this.chain[j]) {
+					allEntries.append("(key=")
+							.append(this.keySlots[j])
 							.append(",value=")
-							.append(node.value)
+							.append(this.valueSlots[j])
 							.append(")");
-					allNodes.append("->");
+					allEntries.append("->");
 					count++;
-					node = node.next;
 				}
-				allNodes.append("NULL");
+				allEntries.append("NULL");
 				result.append("index " )
 						.append(i)
 						.append(" (")
 						.append(count)
-						.append(" nodes) : ")
-						.append(allNodes)
+						.append(" entries) : ")
+						.append(allEntries)
 						.append("\n");
 			}
 		}
 		return result.toString();
 	}
 
+	private void checkForComodification(int expectedModCount) {
+		if (this.modCount != expectedModCount) {
+			throw new ConcurrentModificationException();
+		}
+	}
+
+	/**
+	 * Compute the hash of the given key.
+	 * The high bits of the hash code are spread to the low bits, as only the low bits are used
+	 * to compute the index in the hash table.
+	 */
 	private int hash(Object key) {
-		return key.hashCode();
+		final int hashCode = key.hashCode();
+		return hashCode ^ (hashCode >>> 16);
 	}
 
-	private V putNodeForKey(K key, V value) {
+	@SuppressWarnings("unchecked")
+	private K keyAt(int index) {
+		return (K) this.keySlots[index];
+	}
+
+	@SuppressWarnings("unchecked")
+	private V valueAt(int index) {
+		return (V) this.valueSlots[index];
+	}
+
+	private void allocateTables(int capacity) {
+		this.keySlots = new Object[capacity];
+		this.valueSlots = new Object[capacity];
+		this.hashes = new int[capacity];
+		this.chain = new int[capacity];
+		this.hashTable = new int[capacity];
+		Arrays.fill(this.hashTable, -1);
+	}
+
+	private V putEntryForKey(int hash, K key, V value) {
 		this.resizeIfNeeded(this.size + 1);
-		final V oldValue = putNodeForKey(this.dataTable, this.hashTable, this.nextSlot, key, value);
-		if (oldValue == null) {
-			// if old value was null, it means we inserted a new element
-			// so we increase size and next slot
-			this.size++;
-			this.nextSlot++;
+		final int index = findIndex(hash, key);
+		if (index >= 0) {
+			// if the key is present, replace its value
+			final V oldValue = valueAt(index);
+			this.valueSlots[index] = value;
+			afterAccess(index);
+			return oldValue;
 		}
-		return oldValue;
+		insertEntry(hash, key, value);
+		return null;
 	}
 
-	private V putNodeForKey(Node<K, V>[] targetDataTable, int[] targetHashTable, int nextSlot, K key, V value) {
-		// compute hash and index
-		final int hash = hash(key);
-		final int size = targetHashTable.length;
-		final int indexInHashTable = (size - 1) & hash;
-
-		// get node at index
-		final int indexInDataTable = targetHashTable[indexInHashTable];
-		if (indexInDataTable == -1 || targetDataTable[indexInDataTable] == null) {
-			// if the index in hash table is -1, the node does not exist yet
-			// we can simply create it and insert it in the data table at the next slot
-			// we also set the data table index in the hash table
-			targetDataTable[nextSlot] = new Node<>(key, value);
-			targetHashTable[indexInHashTable] = nextSlot;
-			return null;
-		} else {
-			// if the index in hash table is not -1, there are nodes at that index
-			// and we have to traverse those nodes until we find a node with the same key,
-			// or the end of the chain
-			final Node<K, V> nodeAtIndex = targetDataTable[indexInDataTable];
-			Node<K, V> current = nodeAtIndex;
-			Node<K, V> tail = nodeAtIndex;
-			// todo: find out if it's better to append or prepend
-			while (current != null) {
-				if (key.equals(current.key)) {
-					break;
-				}
-				if (current.next == null) {
-					tail = current;
-				}
-				current = current.next;
-			}
-			if (current == null) {
-				// if we reached the end, the key does not exist, so we append a new node to the tail
-				// we insert it in the data table at next slot
-				// we do no update the hash table, as it is already pointing to the head of the chain
-				final Node<K, V> upsertedNode = new Node<>(key, value);
-				if (tail != null) {
-					tail.next = upsertedNode;
+	/**
+	 * Find the index in the data table of the given key, by following its chain.
+	 * Keys are only compared when their cached hash is equal to the given hash, and tombstones never match any key.
+	 *
+	 * @return the index of the key, or -1 if the key is not present
+	 */
+	private int findIndex(int hash, Object key) {
+		final Object[] keySlots = this.keySlots;
+		final int[] hashes = this.hashes;
+		final int[] chain = this.chain;
+		int index = this.hashTable[(this.hashTable.length - 1) & hash];
+		while (index != -1) {
+			if (hashes[index] == hash) {
+				final Object keyAtIndex = keySlots[index];
+				if (keyAtIndex != null && (keyAtIndex == key || key.equals(keyAtIndex))) {
+					return index;
 				}
-				targetDataTable[nextSlot] = upsertedNode;
-				return null;
-			} else {
-				// if we found a node with the same key,
-				// we just update it without adding it to the hash table
-				return current.setValue(value);
 			}
+			index = chain[index];
 		}
+		return -1;
 	}
 
-	private Node<K, V> getNodeForKey(Object key) {
-		return getNodeForKey(this.dataTable, this.hashTable, key);
+	/**
+	 * Insert a new entry for a key that is known to be absent from the map.
+	 * The entry is appended to the data table, and inserted at the head of its chain,
+	 * so that the chain does not need to be traversed.
+	 * The data table must have a free slot.
+	 */
+	private void insertEntry(int hash, K key, V value) {
+		final int indexInHashTable = (this.hashTable.length - 1) & hash;
+		final int index = this.nextSlot;
+		this.keySlots[index] = key;
+		this.valueSlots[index] = value;
+		this.hashes[index] = hash;
+		this.chain[index] = this.hashTable[indexInHashTable];
+		this.hashTable[indexInHashTable] = index;
+		this.size++;
+		this.nextSlot++;
+		this.modCount++;
 	}
 
-	private Node<K, V> getNodeForKey(Node<K, V>[] targetDataTable, int[] targetHashTable, Object key) {
-		// compute hash and index
-		final int hash = hash(key);
-		final int size = targetHashTable.length;
-		final int indexInHashTable = (size - 1) & hash;
-
-		// get node at index
-		final int indexInDataTable = targetHashTable[indexInHashTable];
-		// if index in hash table is -1, it means no node was inserted for this index
-		if (indexInDataTable == -1) {
-			return null;
-		}
-		final Node<K, V> nodeAtIndex = targetDataTable[indexInDataTable];
-		if (nodeAtIndex == null) {
-			// if no node at index, return null
-			return null;
+	/**
+	 * Set the value of the entry at the given index, or replace it with a tombstone if the new value is null.
+	 */
+	private void updateOrRemoveEntryAt(int index, V newValue) {
+		if (newValue != null) {
+			this.valueSlots[index] = newValue;
 		} else {
-			// if there is a node at index, traverse it until we find it
-			return findNode(nodeAtIndex, key);
+			removeEntryAt(index);
 		}
 	}
 
-	private V removeNodeForKey(Object key) {
-		final V removedValue = removeNodeForKey(this.dataTable, this.hashTable, key);
-		if (removedValue != null) {
-			// if old value was null, it means we removed an element
-			this.size--;
+	/**
+	 * In access order, move the entry at the given index to the end of the data table:
+	 * the entry is replaced with a tombstone, and appended again at the head of its chain.
+	 * Nothing is moved if the entry is already the last one of the data table.
+	 */
+	private void afterAccess(int index) {
+		if (!this.accessOrder || index == this.nextSlot - 1) {
+			return;
 		}
-		return removedValue;
+		final K key = keyAt(index);
+		final V value = valueAt(index);
+		final int hash = this.hashes[index];
+		removeEntryAt(index);
+		if (this.nextSlot == this.hashTable.length) {
+			// the data table is full, so the tombstones are dropped first
+			resizeIfNeeded(this.size + 1);
+		}
+		insertEntry(hash, key, value);
 	}
 
-	private V removeNodeForKey(Node<K, V>[] targetDataTable, int[] targetHashTable, Object key) {
-		// compute hash and index
-		final int hash = hash(key);
-		final int size = targetHashTable.length;
-		final int indexInHashTable = (size - 1) & hash;
-
-		// get node at index
-		final int indexInDataTable = targetHashTable[indexInHashTable];
-		if (indexInDataTable == -1 || targetDataTable[indexInDataTable] == null) {
-			// if index is -1 or node does not exist, the key didn't exist
-			return null;
-		} else {
-			// if node exists, try to remove key from node chain
-			Node<K, V> head = targetDataTable[indexInDataTable];
-			Node<K, V> current = head;
-			while (current != null) {
-				if (key.equals(current.key) && !current.isTombstone()) {
-					final V oldValue = current.value;
-					// delete node by setting its key and value to null
-					// this is also called a tombstone
-					current.setTombstone();
-					return oldValue;
-				}
-				current = current.next;
-			}
-			return null;
+	/**
+	 * Remove the eldest entry of the map, ie: the first entry of the data table, if {@link #removeEldestEntry(Map.Entry)} requires it.
+	 */
+	private void afterInsertion() {
+		final int index = firstIndex();
+		if (index >= 0 && removeEldestEntry(new Entry(index))) {
+			removeEntryAt(index);
 		}
 	}
 
-	private Node<K, V> findNode(Node<K, V> head, Object key) {
-		Node<K, V> current = head;
-		while (current != null) {
-			if (key.equals(current.key)) {
-				return current;
-			}
-			current = current.next;
+	/**
+	 * Return the index of the first entry of the data table, or -1 if the map is empty.
+	 * The tombstones that precede it are skipped only once, as the first slot is moved past them.
+	 */
+	private int firstIndex() {
+		int index = this.firstSlot;
+		while (index < this.nextSlot && this.keySlots[index] == null) {
+			index++;
 		}
-		return null;
+		this.firstSlot = index;
+		return index < this.nextSlot ? index : -1;
 	}
 
-	@SuppressWarnings("unchecked")
+	/**
+	 * Replace the entry at the given index with a tombstone, by clearing its key and value.
+	 * Its hash and chain link are kept, so that the chain that goes through it stays intact.
+	 */
+	private void removeEntryAt(int index) {
+		this.keySlots[index] = null;
+		this.valueSlots[index] = null;
+		this.size--;
+		this.modCount++;
+	}
+
+	/**
+	 * Check if the tables must be rebuilt before inserting an entry, and rebuild them if needed:
+	 * when the load factor is reached, or when the data table has no free slot left.
+	 * The new capacity is twice the power of two above the given size, so the tables grow when they are full of entries,
+	 * keep their capacity when most slots are tombstones, and shrink when almost all slots are tombstones.
+	 */
 	private void resizeIfNeeded(int newSize) {
 		final float currentLoadFactor = this.size / (float)this.hashTable.length;
 		if (currentLoadFactor < this.loadFactor && this.nextSlot < this.hashTable.length) {
 			return;
 		}
 		final int nextPowerOfTwo = (32 - Integer.numberOfLeadingZeros(newSize - 1));
-		final int newCapacity = 1 << (nextPowerOfTwo + 1);
-		final Node<K, V>[] newDataTable = (Node<K, V>[]) new Node[newCapacity];
-		final int[] newHashTable = new int[newCapacity];
-		Arrays.fill(newHashTable, -1);
+		resize(1 << (nextPowerOfTwo + 1));
+	}
+
+	/**
+	 * Put all the mappings of the given map, after growing the tables once for all of them.
+	 * If the given map is also a {@link PcDeterministicHashMap}, the hashes cached in its data table are reused,
+	 * and if this map is empty, the entries are inserted without comparing keys, as they are known to be distinct.
+	 * If evict is false, {@link #removeEldestEntry(Map.Entry)} is not called, as the map is being created.
+	 */
+	@SuppressWarnings("unchecked")
+	private void putMapEntries(Map<? extends K, ? extends V> map, boolean evict) {
+		if (map.isEmpty()) {
+			return;
+		}
+		ensureCapacity(this.size + map.size());
+		if (map instanceof PcDeterministicHashMap) {
+			final PcDeterministicHashMap<? extends K, ? extends V> other = (PcDeterministicHashMap<? extends K, ? extends V>) map;
+			final boolean distinctKeys = this.size == 0;
+			for (int i = 0; i < other.nextSlot; i++) {
+				final K key = other.keyAt(i);
+				if (key == null) {
+					continue;
+				}
+				final boolean inserted;
+				if (distinctKeys) {
+					insertEntry(other.hashes[i], key, other.valueAt(i));
+					inserted = true;
+				} else {
+					inserted = putEntryForKey(other.hashes[i], key, other.valueAt(i)) == null;
+				}
+				if (inserted && evict) {
+					afterInsertion();
+				}
+			}
+		} else {
+			for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+				final K key = Objects.requireNonNull(entry.getKey());
+				final V value = Objects.requireNonNull(entry.getValue());
+				if (putEntryForKey(hash(key), key, value) == null && evict) {
+					afterInsertion();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Return the capacity of tables that can hold the given number of entries without being resized.
+	 */
+	private int capacityFor(int expectedSize) {
+		final long minimumCapacity = Math.max((long) (expectedSize / this.loadFactor), expectedSize) + 1;
+		return 1 << (32 - Integer.numberOfLeadingZeros((int) Math.min(Integer.MAX_VALUE, minimumCapacity) - 1));
+	}
+
+	/**
+	 * Grow the tables so that they can hold the given number of entries without being resized.
+	 * The tombstones are also dropped if the data table does not have enough free slots.
+	 */
+	private void ensureCapacity(int expectedSize) {
+		final int additionalSize = Math.max(0, expectedSize - this.size);
+		if (expectedSize < this.loadFactor * this.hashTable.length && this.nextSlot + additionalSize < this.hashTable.length) {
+			return;
+		}
+		resize(Math.max(this.hashTable.length, capacityFor(expectedSize)));
+	}
+
+	/**
+	 * Move all the entries that are not tombstones to tables with the given capacity, keeping their order,
+	 * and link them at the head of their chains, as if they were inserted again.
+	 * The hashes cached in the data table are reused, so keys are neither hashed nor compared.
+	 * If the capacity does not change, the tombstones are dropped in place:
+	 * entries are moved towards the front of the same arrays, and no memory is allocated.
+	 */
+	private void resize(int newCapacity) {
+		final Object[] keySlots = this.keySlots;
+		final Object[] valueSlots = this.valueSlots;
+		final int[] hashes = this.hashes;
+		final int oldNextSlot = this.nextSlot;
+		if (newCapacity != this.hashTable.length) {
+			allocateTables(newCapacity);
+		} else {
+			Arrays.fill(this.hashTable, -1);
+		}
+		final int mask = newCapacity - 1;
 		int newNextSlot = 0;
-		// we iterate on the table until we find a null node
-		// this means all remaining entries are also null
-		for (int i = 0; i < this.dataTable.length && this.dataTable[i] != null; i++) {
-			final Node<K, V> node = this.dataTable[i];
-			if (!node.isTombstone()) {
-				putNodeForKey(newDataTable, newHashTable, newNextSlot, node.key, node.value);
+		for (int i = 0; i < oldNextSlot; i++) {
+			final Object key = keySlots[i];
+			if (key != null) {
+				// entries only move towards the front, so an entry is never overwritten before being moved
+				final int hash = hashes[i];
+				final int indexInHashTable = mask & hash;
+				this.keySlots[newNextSlot] = key;
+				this.valueSlots[newNextSlot] = valueSlots[i];
+				this.hashes[newNextSlot] = hash;
+				this.chain[newNextSlot] = this.hashTable[indexInHashTable];
+				this.hashTable[indexInHashTable] = newNextSlot;
 				newNextSlot++;
 			}
 		}
-		this.dataTable = newDataTable;
-		this.hashTable = newHashTable;
+		if (this.keySlots == keySlots) {
+			Arrays.fill(keySlots, newNextSlot, oldNextSlot, null);
+			Arrays.fill(valueSlots, newNextSlot, oldNextSlot, null);
+		}
 		this.nextSlot = newNextSlot;
+		this.firstSlot = 0;
+		this.modCount++;
 	}
 
 }
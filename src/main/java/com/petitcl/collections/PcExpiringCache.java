@@ -0,0 +1,455 @@
+package com.petitcl.collections;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.LongSupplier;
+
+/**
+ * Cache whose entries expire after a time to live, without a background thread that scans the entries.
+ * Entries are stored in a {@link PcDeterministicHashMap}, and the order of its data table tracks their expiration:
+ * - {@link ExpirationPolicy#AFTER_WRITE}: entries expire a fixed time after they were last written.
+ * A write appends the entry to the end of the data table, so its first entry always expires first.
+ * - {@link ExpirationPolicy#AFTER_ACCESS}: entries expire a fixed time after they were last read or written.
+ * A read also appends the entry to the end of the data table, so its first entry is again the first one to expire.
+ * - {@link ExpirationPolicy#VARIABLE}: each entry has its own time to live, so the order of the data table
+ * does not follow the expirations anymore. Entries are then also scheduled in a hierarchical timer wheel.
+ *
+ * The timer wheel has 5 levels of buckets, each level covering a longer period with coarser buckets:
+ * 64 buckets of ~1s, 64 buckets of ~1m, 32 buckets of ~1h, 4 buckets of ~1.6d, and a single overflow bucket.
+ * Bucket spans are powers of two nanoseconds, so that the bucket of an entry is found with a shift and a mask.
+ * An entry is scheduled in the lowest level whose period contains its expiration time.
+ * When time advances, the buckets that were reached are moved to a pending list, in O(1) per bucket:
+ * their expired entries are removed, and the others are scheduled again in a lower level.
+ * An entry is removed at most one bucket of ~1s after it expires.
+ *
+ * Expired entries are reclaimed lazily: reads and writes never return an expired entry, and remove it if they find it.
+ * Each read and write also removes a few expired entries, so that the cache does not grow with the expired entries
+ * of keys that are not read again, and {@link #cleanUp()} removes more of them.
+ * The work done by each call is bounded, so that a burst of expirations does not cause a pause:
+ * {@link #size()} may still count expired entries that were not reclaimed yet.
+ *
+ * This class does not implement {@link Map}, as reads can remove entries.
+ */
+public class PcExpiringCache<K, V> {
+
+	public enum ExpirationPolicy {
+		AFTER_WRITE,
+		AFTER_ACCESS,
+		VARIABLE,
+	}
+
+	/**
+	 * Maximum number of entries examined by each read and write to remove expired entries.
+	 * This is more than the single entry inserted by a write, so that expired entries are reclaimed faster than they are created.
+	 */
+	public static final int OPERATION_CLEANUP_WORK = 4;
+
+	/**
+	 * Maximum number of entries examined by {@link #cleanUp()}.
+	 */
+	public static final int CLEANUP_WORK = 1024;
+
+	/**
+	 * Longest time to live, ie: ~146 years, so that expiration times can be compared without overflowing.
+	 */
+	public static final Duration MAXIMUM_TIME_TO_LIVE = Duration.ofNanos(Long.MAX_VALUE >>> 1);
+
+	/**
+	 * Number of buckets of each level of the timer wheel.
+	 */
+	private static final int[] BUCKETS = {64, 64, 32, 4, 1};
+
+	/**
+	 * Span of the buckets of each level of the timer wheel, as a shift of nanoseconds:
+	 * ~1.07s, ~1.14m, ~1.22h, ~1.63d, ~6.5d. Each level covers the span of a bucket of the next level.
+	 */
+	private static final int[] SHIFTS = {30, 36, 42, 47, 49};
+
+	/**
+	 * Entry of the cache, that is also a node of the doubly linked list of a bucket of the timer wheel.
+	 */
+	private static final class Node<K, V> {
+		private final K key;
+		private final V value;
+		private long expirationTime;
+		private Node<K, V> previous;
+		private Node<K, V> next;
+
+		private Node(K key, V value, long expirationTime) {
+			this.key = key;
+			this.value = value;
+			this.expirationTime = expirationTime;
+		}
+
+		/**
+		 * Create the sentinel of an empty list.
+		 */
+		private Node() {
+			this(null, null, 0);
+			this.previous = this;
+			this.next = this;
+		}
+	}
+
+	private final ExpirationPolicy policy;
+	private final long timeToLiveNanos;
+	private final LongSupplier ticker;
+	private final PcDeterministicHashMap<K, Node<K, V>> entries;
+
+	/**
+	 * Sentinels of the buckets of each level of the timer wheel, or null if the expiration is not variable.
+	 */
+	private final Node<K, V>[][] wheel;
+
+	/**
+	 * Sentinel of the list of the entries of the buckets reached by the timer wheel, that were not processed yet.
+	 */
+	private final Node<K, V> pending;
+
+	/**
+	 * Time up to which the timer wheel has advanced.
+	 */
+	private long wheelTime;
+
+	/**
+	 * Create a cache whose entries expire after the given time to live, that reads the time from {@link System#nanoTime()}.
+	 * With a variable expiration, this is the time to live of the entries written by {@link #put(Object, Object)}.
+	 */
+	public PcExpiringCache(ExpirationPolicy policy, Duration timeToLive) {
+		this(policy, timeToLive, System::nanoTime);
+	}
+
+	/**
+	 * Create a cache whose entries expire after the given time to live, that reads the time in nanoseconds from the given ticker.
+	 */
+	public PcExpiringCache(ExpirationPolicy policy, Duration timeToLive, LongSupplier ticker) {
+		this.policy = Objects.requireNonNull(policy);
+		this.timeToLiveNanos = toNanos(timeToLive);
+		this.ticker = Objects.requireNonNull(ticker);
+		this.entries = new PcDeterministicHashMap<>();
+		this.wheel = policy == ExpirationPolicy.VARIABLE ? createWheel() : null;
+		this.pending = new Node<>();
+		this.wheelTime = ticker.getAsLong();
+	}
+
+	public ExpirationPolicy getPolicy() {
+		return policy;
+	}
+
+	/**
+	 * Return the number of entries of the cache, including the expired entries that were not reclaimed yet.
+	 */
+	public int size() {
+		return this.entries.size();
+	}
+
+	public boolean isEmpty() {
+		return this.entries.isEmpty();
+	}
+
+	/**
+	 * Check if the given key has an entry that did not expire.
+	 * This is not an access: it neither extends the expiration of the entry, nor reclaims expired entries.
+	 */
+	public boolean containsKey(Object key) {
+		Objects.requireNonNull(key);
+
+		final Node<K, V> node = this.entries.get(key);
+		return node != null && !isExpired(node, this.ticker.getAsLong());
+	}
+
+	/**
+	 * Return the value of the given key, or null if the key is not in the cache or if its entry expired.
+	 * With {@link ExpirationPolicy#AFTER_ACCESS}, this extends the expiration of the entry.
+	 */
+	public V get(Object key) {
+		Objects.requireNonNull(key);
+
+		final long now = this.ticker.getAsLong();
+		expireEntries(now, OPERATION_CLEANUP_WORK);
+		final Node<K, V> node = this.entries.get(key);
+		if (node == null) {
+			return null;
+		}
+		if (isExpired(node, now)) {
+			removeNode(node);
+			return null;
+		}
+		if (this.policy == ExpirationPolicy.AFTER_ACCESS) {
+			// the map is not ordered by access, so that containsKey does not move entries
+			node.expirationTime = now + this.timeToLiveNanos;
+			this.entries.remove(key);
+			this.entries.put(node.key, node);
+		}
+		return node.value;
+	}
+
+	/**
+	 * Put the given value for the given key, that expires after the time to live of the cache,
+	 * and return the previous value of the key, or null if it was not in the cache or if it expired.
+	 */
+	public V put(K key, V value) {
+		return putNode(key, value, this.timeToLiveNanos);
+	}
+
+	/**
+	 * Put the given value for the given key, that expires after the given time to live,
+	 * and return the previous value of the key, or null if it was not in the cache or if it expired.
+	 *
+	 * @throws UnsupportedOperationException if the expiration of the cache is not {@link ExpirationPolicy#VARIABLE}
+	 */
+	public V put(K key, V value, Duration timeToLive) {
+		if (this.policy != ExpirationPolicy.VARIABLE) {
+			throw new UnsupportedOperationException("Time to live per entry requires a variable expiration: " + this.policy);
+		}
+		return putNode(key, value, toNanos(timeToLive));
+	}
+
+	/**
+	 * Remove the given key from the cache, and return its value, or null if it was not in the cache or if it expired.
+	 */
+	public V remove(Object key) {
+		Objects.requireNonNull(key);
+
+		final Node<K, V> node = this.entries.remove(key);
+		if (node == null) {
+			return null;
+		}
+		if (this.wheel != null) {
+			unlink(node);
+		}
+		return isExpired(node, this.ticker.getAsLong()) ? null : node.value;
+	}
+
+	public void clear() {
+		this.entries.clear();
+		if (this.wheel != null) {
+			for (Node<K, V>[] buckets : this.wheel) {
+				for (Node<K, V> sentinel : buckets) {
+					sentinel.previous = sentinel;
+					sentinel.next = sentinel;
+				}
+			}
+		}
+		this.pending.previous = this.pending;
+		this.pending.next = this.pending;
+	}
+
+	/**
+	 * Remove expired entries, examining at most {@link #CLEANUP_WORK} entries,
+	 * and return the number of removed entries. Calling this method periodically reclaims the expired entries
+	 * of a cache that is not used anymore, as reads and writes only reclaim a few expired entries each.
+	 */
+	public int cleanUp() {
+		return expireEntries(this.ticker.getAsLong(), CLEANUP_WORK);
+	}
+
+	/**
+	 * Return a string representing the keys of each non empty bucket of the timer wheel, and of the pending list.
+	 * Useful for debugging.
+	 */
+	public String getLayout() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("PcExpiringCache(size=").append(size())
+				.append(", policy=").append(this.policy)
+				.append(", wheelTime=").append(this.wheelTime)
+				.append(")\n");
+		if (this.wheel != null) {
+			for (int level = 0; level < this.wheel.length; level++) {
+				for (int bucket = 0; bucket < this.wheel[level].length; bucket++) {
+					final Node<K, V> sentinel = this.wheel[level][bucket];
+					if (sentinel.next != sentinel) {
+						sb.append("level ").append(level).append(", bucket ").append(bucket).append(" : ");
+						appendKeys(sb, sentinel);
+					}
+				}
+			}
+		}
+		if (this.pending.next != this.pending) {
+			sb.append("pending : ");
+			appendKeys(sb, this.pending);
+		}
+		return sb.toString();
+	}
+
+	private V putNode(K key, V value, long timeToLiveNanos) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		final long now = this.ticker.getAsLong();
+		expireEntries(now, OPERATION_CLEANUP_WORK);
+		final Node<K, V> node = new Node<>(key, value, now + timeToLiveNanos);
+		// removing the previous entry appends the new one to the end of the data table,
+		// so that it stays ordered by expiration with a fixed time to live
+		final Node<K, V> oldNode = this.entries.remove(key);
+		this.entries.put(key, node);
+		if (this.wheel != null) {
+			if (oldNode != null) {
+				unlink(oldNode);
+			}
+			schedule(node);
+		}
+		return oldNode == null || isExpired(oldNode, now) ? null : oldNode.value;
+	}
+
+	private void removeNode(Node<K, V> node) {
+		this.entries.remove(node.key);
+		if (this.wheel != null) {
+			unlink(node);
+		}
+	}
+
+	/**
+	 * Remove expired entries, examining at most the given number of entries, and return the number of removed entries.
+	 */
+	private int expireEntries(long now, int maximumWork) {
+		if (this.wheel == null) {
+			return expireFirstEntries(now, maximumWork);
+		}
+		advanceWheel(now);
+		return expirePendingEntries(now, maximumWork);
+	}
+
+	/**
+	 * Remove the expired entries at the start of the data table, that are ordered by expiration with a fixed time to live.
+	 */
+	private int expireFirstEntries(long now, int maximumWork) {
+		int expired = 0;
+		while (expired < maximumWork) {
+			final Map.Entry<K, Node<K, V>> first = this.entries.firstEntry();
+			if (first == null || !isExpired(first.getValue(), now)) {
+				break;
+			}
+			this.entries.pollFirstEntry();
+			expired++;
+		}
+		return expired;
+	}
+
+	/**
+	 * Move the entries of the buckets reached since the wheel last advanced to the pending list.
+	 * The bucket of the previous time is included, as entries may have been scheduled in it after it was reached.
+	 * A level only advances if the level below it wrapped, so this stops at the first level that did not advance.
+	 */
+	private void advanceWheel(long now) {
+		final long previousTime = this.wheelTime;
+		if (now - previousTime <= 0) {
+			return;
+		}
+		this.wheelTime = now;
+		for (int level = 0; level < this.wheel.length; level++) {
+			final long previousTicks = previousTime >> SHIFTS[level];
+			final long currentTicks = now >> SHIFTS[level];
+			if (currentTicks - previousTicks <= 0) {
+				break;
+			}
+			final Node<K, V>[] buckets = this.wheel[level];
+			final long steps = Math.min(currentTicks - previousTicks + 1, buckets.length);
+			for (long ticks = previousTicks; ticks < previousTicks + steps; ticks++) {
+				moveToPending(buckets[(int) (ticks & (buckets.length - 1))]);
+			}
+		}
+	}
+
+	/**
+	 * Remove the expired entries of the pending list, and schedule the others again,
+	 * processing at most the given number of entries.
+	 */
+	private int expirePendingEntries(long now, int maximumWork) {
+		int expired = 0;
+		for (int work = 0; work < maximumWork && this.pending.next != this.pending; work++) {
+			final Node<K, V> node = this.pending.next;
+			unlink(node);
+			if (isExpired(node, now)) {
+				this.entries.remove(node.key);
+				expired++;
+			} else {
+				schedule(node);
+			}
+		}
+		return expired;
+	}
+
+	/**
+	 * Add the given entry to the bucket of its expiration time, in the lowest level of the wheel whose current period
+	 * contains that time, or in the overflow bucket.
+	 */
+	private void schedule(Node<K, V> node) {
+		int level = 0;
+		while (level < this.wheel.length - 1
+				&& (node.expirationTime >> SHIFTS[level + 1]) != (this.wheelTime >> SHIFTS[level + 1])) {
+			level++;
+		}
+		final Node<K, V>[] buckets = this.wheel[level];
+		link(buckets[(int) ((node.expirationTime >> SHIFTS[level]) & (buckets.length - 1))], node);
+	}
+
+	/**
+	 * Append all the entries of the given bucket to the pending list, and empty the bucket.
+	 */
+	private void moveToPending(Node<K, V> sentinel) {
+		if (sentinel.next == sentinel) {
+			return;
+		}
+		final Node<K, V> first = sentinel.next;
+		final Node<K, V> last = sentinel.previous;
+		final Node<K, V> tail = this.pending.previous;
+		tail.next = first;
+		first.previous = tail;
+		last.next = this.pending;
+		this.pending.previous = last;
+		sentinel.previous = sentinel;
+		sentinel.next = sentinel;
+	}
+
+	private static <K, V> void link(Node<K, V> sentinel, Node<K, V> node) {
+		final Node<K, V> tail = sentinel.previous;
+		node.previous = tail;
+		node.next = sentinel;
+		tail.next = node;
+		sentinel.previous = node;
+	}
+
+	private static <K, V> void unlink(Node<K, V> node) {
+		node.previous.next = node.next;
+		node.next.previous = node.previous;
+		node.previous = null;
+		node.next = null;
+	}
+
+	private static boolean isExpired(Node<?, ?> node, long now) {
+		return now - node.expirationTime >= 0;
+	}
+
+	private static <K, V> void appendKeys(StringBuilder sb, Node<K, V> sentinel) {
+		sb.append('[');
+		for (Node<K, V> node = sentinel.next; node != sentinel; node = node.next) {
+			sb.append(node.key);
+			if (node.next != sentinel) {
+				sb.append(", ");
+			}
+		}
+		sb.append("]\n");
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <K, V> Node<K, V>[][] createWheel() {
+		final Node<K, V>[][] wheel = new Node[BUCKETS.length][];
+		for (int level = 0; level < BUCKETS.length; level++) {
+			wheel[level] = new Node[BUCKETS[level]];
+			for (int bucket = 0; bucket < BUCKETS[level]; bucket++) {
+				wheel[level][bucket] = new Node<>();
+			}
+		}
+		return wheel;
+	}
+
+	private static long toNanos(Duration timeToLive) {
+		Objects.requireNonNull(timeToLive);
+		if (timeToLive.isNegative() || timeToLive.isZero()) {
+			throw new IllegalArgumentException("Time to live must be positive: " + timeToLive);
+		}
+		return timeToLive.compareTo(MAXIMUM_TIME_TO_LIVE) > 0 ? MAXIMUM_TIME_TO_LIVE.toNanos() : timeToLive.toNanos();
+	}
+}
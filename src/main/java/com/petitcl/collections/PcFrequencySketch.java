@@ -0,0 +1,166 @@
+package com.petitcl.collections;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Probabilistic counter of the frequencies of keys, used by {@link PcTinyLfuCache} to decide which entries to keep.
+ * This is a <a href="https://en.wikipedia.org/wiki/Count%E2%80%93min_sketch">count-min sketch</a>:
+ * each key is counted by 4 counters, picked by 4 different hash functions, and its frequency is the minimum of them,
+ * so that collisions can only overestimate it.
+ * Counters are 4 bits wide and saturate at 15, and 16 of them are packed in each long, so that the sketch stays small.
+ * Once the number of increments reaches the sample size, all the counters are halved,
+ * so that the frequencies favour recent accesses, and keys that used to be popular eventually age out.
+ */
+public class PcFrequencySketch {
+
+	public static final int MAXIMUM_FREQUENCY = 15;
+
+	/**
+	 * Number of counters of a key, ie: the depth of the sketch.
+	 */
+	private static final int DEPTH = 4;
+
+	/**
+	 * Seeds of the hash functions that pick the counters of a key, one per row of the sketch.
+	 */
+	private static final long[] SEEDS = {
+			0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L
+	};
+
+	private static final long RESET_MASK = 0x7777777777777777L;
+	private static final long ONES_MASK = 0x1111111111111111L;
+
+	private final long[] table;
+
+	/**
+	 * Mask of the index of a counter, as the number of counters is a power of two.
+	 */
+	private final int counterMask;
+
+	/**
+	 * Number of increments after which the counters are halved.
+	 */
+	private final int sampleSize;
+
+	/**
+	 * Number of increments since the counters were last halved.
+	 */
+	private int additions;
+
+	/**
+	 * Create a sketch suited to a cache that holds the given number of entries:
+	 * it has at least as many counters as entries, shared by the 4 hash functions,
+	 * and it ages every 10 times that number of increments.
+	 */
+	public PcFrequencySketch(int expectedSize) {
+		this(expectedSize, (int) Math.min(Integer.MAX_VALUE, 10L * Math.max(expectedSize, 1)));
+	}
+
+	/**
+	 * Create a sketch with at least as many counters as the given expected size,
+	 * that ages every time the given number of increments is reached.
+	 */
+	public PcFrequencySketch(int expectedSize, int sampleSize) {
+		if (sampleSize <= 0) {
+			throw new IllegalArgumentException("Sample size must be positive: " + sampleSize);
+		}
+		final int counters = tableSizeFor(Math.max(expectedSize, 16));
+		this.table = new long[counters >>> 4];
+		this.counterMask = counters - 1;
+		this.sampleSize = sampleSize;
+	}
+
+	/**
+	 * Return the estimated frequency of the given key, between 0 and {@link #MAXIMUM_FREQUENCY}.
+	 */
+	public int frequency(Object key) {
+		Objects.requireNonNull(key);
+
+		final int hash = spread(key.hashCode());
+		int frequency = MAXIMUM_FREQUENCY;
+		for (int i = 0; i < DEPTH; i++) {
+			frequency = Math.min(frequency, counterAt(indexOf(hash, i)));
+		}
+		return frequency;
+	}
+
+	/**
+	 * Increment the counters of the given key, unless they are saturated, and halve all the counters
+	 * if the sample size is reached.
+	 */
+	public void increment(Object key) {
+		Objects.requireNonNull(key);
+
+		final int hash = spread(key.hashCode());
+		boolean incremented = false;
+		for (int i = 0; i < DEPTH; i++) {
+			incremented |= incrementAt(indexOf(hash, i));
+		}
+		if (incremented && ++this.additions >= this.sampleSize) {
+			reset();
+		}
+	}
+
+	public void clear() {
+		Arrays.fill(this.table, 0);
+		this.additions = 0;
+	}
+
+	/**
+	 * Halve all the counters, by shifting each long and clearing the bits that moved across counters.
+	 * The number of increments is halved too, minus the increments lost by halving odd counters.
+	 */
+	private void reset() {
+		int oddCounters = 0;
+		for (int i = 0; i < this.table.length; i++) {
+			oddCounters += Long.bitCount(this.table[i] & ONES_MASK);
+			this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+		}
+		this.additions = (this.additions - (oddCounters >>> 2)) >>> 1;
+	}
+
+	private int counterAt(int index) {
+		return (int) ((this.table[index >>> 4] >>> ((index & 15) << 2)) & 0xF);
+	}
+
+	/**
+	 * Increment the counter at the given index, unless it is saturated.
+	 *
+	 * @return true if the counter was incremented
+	 */
+	private boolean incrementAt(int index) {
+		final int shift = (index & 15) << 2;
+		final long mask = 0xFL << shift;
+		final long word = this.table[index >>> 4];
+		if ((word & mask) == mask) {
+			return false;
+		}
+		this.table[index >>> 4] = word + (1L << shift);
+		return true;
+	}
+
+	/**
+	 * Return the index of the counter of the given row for the given hash.
+	 */
+	private int indexOf(int hash, int row) {
+		long index = (hash + SEEDS[row]) * SEEDS[row];
+		index += index >>> 32;
+		return (int) index & this.counterMask;
+	}
+
+	/**
+	 * Spread the bits of the hash code, so that keys with close hash codes do not share counters.
+	 */
+	private static int spread(int hashCode) {
+		final int hash = hashCode * 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Return the smallest power of two that is greater or equal to the given capacity.
+	 */
+	private static int tableSizeFor(int capacity) {
+		return 1 << (32 - Integer.numberOfLeadingZeros(Math.min(capacity, 1 << 30) - 1));
+	}
+}
@@ -0,0 +1,1156 @@
+package com.petitcl.collections;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Implementation of {@link Map} that is backed by an open addressing hash table,
+ * and uses <a href="https://en.wikipedia.org/wiki/Hopscotch_hashing">Hopscotch hashing</a> to handle collisions.
+ * Each key is stored within a fixed neighborhood of its home slot (the slot of its hash):
+ * the home slot keeps a hop bitmap, whose bit i is set when slot home + i holds one of its keys.
+ * Lookups only visit the slots of the bitmap, which are close to each other, even at high load factors.
+ * When the free slot found for a new key is out of its neighborhood,
+ * entries are moved towards it until it falls into the neighborhood.
+ * If no entry can be moved, the table is doubled, unless doubling would not split the neighborhood
+ * (for instance, because too many keys have the same hash), in which case the key is put in an overflow area,
+ * at the end of the table, that is searched linearly.
+ * Removals never move entries, so they need neither tombstones nor shifts.
+ *
+ * @param <K> type of the key
+ * @param <V> type of the value
+ */
+public class PcHopscotchHashMap<K, V> extends AbstractMap<K, V> {
+
+	public static final int DEFAULT_INITIAL_CAPACITY = 16;
+	public static final float DEFAULT_LOAD_FACTOR = 0.9f;
+
+	/**
+	 * Number of slots of the neighborhood of a home slot, ie: the number of bits of the hop bitmap.
+	 */
+	public static final int NEIGHBORHOOD_SIZE = 31;
+
+	/**
+	 * Minimum load factor under which the table is not doubled to make room in a neighborhood,
+	 * and keys go to the overflow area instead.
+	 */
+	private static final float MIN_LOAD_FACTOR_FOR_GROWTH = 0.1f;
+
+	private static final int NEIGHBORHOOD_BITS = (1 << NEIGHBORHOOD_SIZE) - 1;
+
+	/**
+	 * Flag of the hop bitmap, set when a key of the home slot may be in the overflow area.
+	 */
+	private static final int OVERFLOW_BIT = 1 << NEIGHBORHOOD_SIZE;
+
+	private static final int MIN_OVERFLOW_CAPACITY = 4;
+
+	/**
+	 * View of a mapping of the map, created when iterating on the entry set.
+	 * Setting the value of the entry writes through to the map while the key is still present.
+	 */
+	public class Entry implements Map.Entry<K, V> {
+		private final K key;
+		private V value;
+		private int slot;
+
+		public Entry(int slot) {
+			this.key = keyAt(slot);
+			this.value = valueAt(slot);
+			this.slot = slot;
+		}
+
+		@Override
+		public K getKey() {
+			return key;
+		}
+
+		@Override
+		public V getValue() {
+			if (locate()) {
+				this.value = valueAt(this.slot);
+			}
+			return value;
+		}
+
+		@Override
+		public V setValue(V value) {
+			Objects.requireNonNull(value);
+
+			final V oldValue = getValue();
+			this.value = value;
+			if (locate()) {
+				valueSlots[this.slot] = value;
+			}
+			return oldValue;
+		}
+
+		/**
+		 * Find the current slot of the key, which may have moved since the entry was created.
+		 *
+		 * @return true if the key is still present in the map
+		 */
+		private boolean locate() {
+			if (this.slot >= 0 && this.slot < keySlots.length && keySlots[this.slot] == this.key) {
+				return true;
+			}
+			this.slot = findSlot(hash(this.key), this.key);
+			return this.slot >= 0;
+		}
+
+		@Override
+		public final int hashCode() {
+			return Objects.hashCode(key) ^ Objects.hashCode(getValue());
+		}
+
+		@Override
+		public final boolean equals(Object other) {
+			if (other == this) {
+				return true;
+			}
+			if (other == null) {
+				return false;
+			}
+			if ((other instanceof Map.Entry)) {
+				final Map.Entry that = (Map.Entry) other;
+				return Objects.equals(key, that.getKey()) &&
+						Objects.equals(getValue(), that.getValue());
+			}
+			return false;
+		}
+
+		public final String toString() {
+			return key + "=" + getValue();
+		}
+	}
+
+	/**
+	 * Hop bitmaps of the slots of the table.
+	 * Its length is the capacity of the table.
+	 */
+	private int[] hops;
+
+	/**
+	 * Keys and values of the entries: the first slots are the table, the remaining ones are the overflow area.
+	 */
+	private Object[] keySlots;
+	private Object[] valueSlots;
+	private int size;
+
+	/**
+	 * Index after the last used slot of the overflow area.
+	 */
+	private int overflowEnd;
+	private final float loadFactor;
+
+	/**
+	 * Number of structural modifications of this map (insertions, removals and resizes),
+	 * used by iterators and spliterators to detect concurrent modifications.
+	 */
+	private int modCount;
+
+	private EntrySet entrySet;
+	private KeySet keySet;
+	private Values values;
+
+	public PcHopscotchHashMap() {
+		this(DEFAULT_INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR);
+	}
+
+	public PcHopscotchHashMap(int initialCapacity) {
+		this(initialCapacity, DEFAULT_LOAD_FACTOR);
+	}
+
+	public PcHopscotchHashMap(int initialCapacity, float loadFactor) {
+		this.loadFactor = loadFactor;
+		allocate(tableSizeFor(initialCapacity));
+	}
+
+	/**
+	 * Create a map with the same mappings as the given map.
+	 * If the given map is also a {@link PcHopscotchHashMap}, its load factor is kept,
+	 * and its tables are copied as is, without hashing or comparing keys again.
+	 */
+	public PcHopscotchHashMap(Map<? extends K, ? extends V> map) {
+		Objects.requireNonNull(map);
+
+		if (map instanceof PcHopscotchHashMap) {
+			final PcHopscotchHashMap<? extends K, ? extends V> other = (PcHopscotchHashMap<? extends K, ? extends V>) map;
+			this.loadFactor = other.loadFactor;
+			this.hops = other.hops.clone();
+			this.keySlots = other.keySlots.clone();
+			this.valueSlots = other.valueSlots.clone();
+			this.size = other.size;
+			this.overflowEnd = other.overflowEnd;
+		} else {
+			this.loadFactor = DEFAULT_LOAD_FACTOR;
+			allocate(Math.max(DEFAULT_INITIAL_CAPACITY, capacityFor(map.size())));
+			putMapEntries(map);
+		}
+	}
+
+	/**
+	 * Create a map from the given entries.
+	 * The table is sized upfront for the number of entries, so that it is not resized while the entries are added.
+	 * If several entries have the same key, the last one wins.
+	 */
+	public static <K, V> PcHopscotchHashMap<K, V> fromEntries(Collection<? extends Map.Entry<? extends K, ? extends V>> entries) {
+		Objects.requireNonNull(entries);
+
+		final PcHopscotchHashMap<K, V> map = new PcHopscotchHashMap<>();
+		map.ensureCapacity(entries.size());
+		for (Map.Entry<? extends K, ? extends V> entry : entries) {
+			map.put(entry.getKey(), entry.getValue());
+		}
+		return map;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		Objects.requireNonNull(key);
+
+		return findSlot(hash(key), key) >= 0;
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		Objects.requireNonNull(value);
+
+		for (int i = 0; i < this.keySlots.length; i++) {
+			if (this.keySlots[i] != null && this.valueSlots[i].equals(value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public V get(Object key) {
+		Objects.requireNonNull(key);
+
+		final int slot = findSlot(hash(key), key);
+		return slot >= 0 ? valueAt(slot) : null;
+	}
+
+	@Override
+	public V put(K key, V value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		this.resizeIfNeeded();
+		final int hash = hash(key);
+		final int slot = findSlot(hash, key);
+		if (slot >= 0) {
+			// if the key is present, replace its value
+			return setValueAt(slot, value);
+		}
+		insertEntry(hash, key, value);
+		return null;
+	}
+
+	@Override
+	public void putAll(Map<? extends K, ? extends V> map) {
+		Objects.requireNonNull(map);
+
+		putMapEntries(map);
+	}
+
+	@Override
+	public V remove(Object key) {
+		Objects.requireNonNull(key);
+
+		final int slot = findSlot(hash(key), key);
+		if (slot < 0) {
+			// if no entry was found, the key was not there
+			return null;
+		}
+		final V removedValue = valueAt(slot);
+		removeEntryAt(slot);
+		return removedValue;
+	}
+
+	/*
+	 * The following methods look up the key only once: its slot is found in the neighborhood of its home slot,
+	 * then the value is updated in place, removed, or inserted in a free slot of the neighborhood.
+	 * The functions given to these methods must not modify this map,
+	 * otherwise a ConcurrentModificationException is thrown.
+	 */
+
+	@Override
+	public V getOrDefault(Object key, V defaultValue) {
+		Objects.requireNonNull(key);
+
+		final int slot = findSlot(hash(key), key);
+		return slot >= 0 ? valueAt(slot) : defaultValue;
+	}
+
+	@Override
+	public V putIfAbsent(K key, V value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		this.resizeIfNeeded();
+		final int hash = hash(key);
+		final int slot = findSlot(hash, key);
+		if (slot >= 0) {
+			return valueAt(slot);
+		}
+		insertEntry(hash, key, value);
+		return null;
+	}
+
+	@Override
+	public boolean remove(Object key, Object value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		final int slot = findSlot(hash(key), key);
+		if (slot < 0 || !valueAt(slot).equals(value)) {
+			return false;
+		}
+		removeEntryAt(slot);
+		return true;
+	}
+
+	@Override
+	public boolean replace(K key, V oldValue, V newValue) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(oldValue);
+		Objects.requireNonNull(newValue);
+
+		final int slot = findSlot(hash(key), key);
+		if (slot < 0 || !valueAt(slot).equals(oldValue)) {
+			return false;
+		}
+		setValueAt(slot, newValue);
+		return true;
+	}
+
+	@Override
+	public V replace(K key, V value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		final int slot = findSlot(hash(key), key);
+		return slot >= 0 ? setValueAt(slot, value) : null;
+	}
+
+	@Override
+	public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(mappingFunction);
+
+		this.resizeIfNeeded();
+		final int hash = hash(key);
+		final int slot = findSlot(hash, key);
+		if (slot >= 0) {
+			return valueAt(slot);
+		}
+		final int expectedModCount = this.modCount;
+		final V newValue = mappingFunction.apply(key);
+		checkForComodification(expectedModCount);
+		if (newValue != null) {
+			insertEntry(hash, key, newValue);
+		}
+		return newValue;
+	}
+
+	@Override
+	public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(remappingFunction);
+
+		final int slot = findSlot(hash(key), key);
+		if (slot < 0) {
+			return null;
+		}
+		final int expectedModCount = this.modCount;
+		final V newValue = remappingFunction.apply(key, valueAt(slot));
+		checkForComodification(expectedModCount);
+		updateOrRemoveEntryAt(slot, newValue);
+		return newValue;
+	}
+
+	@Override
+	public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(remappingFunction);
+
+		this.resizeIfNeeded();
+		final int hash = hash(key);
+		final int slot = findSlot(hash, key);
+		final int expectedModCount = this.modCount;
+		final V newValue = remappingFunction.apply(key, slot >= 0 ? valueAt(slot) : null);
+		checkForComodification(expectedModCount);
+		if (slot >= 0) {
+			updateOrRemoveEntryAt(slot, newValue);
+		} else if (newValue != null) {
+			insertEntry(hash, key, newValue);
+		}
+		return newValue;
+	}
+
+	@Override
+	public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+		Objects.requireNonNull(remappingFunction);
+
+		this.resizeIfNeeded();
+		final int hash = hash(key);
+		final int slot = findSlot(hash, key);
+		if (slot < 0) {
+			insertEntry(hash, key, value);
+			return value;
+		}
+		final int expectedModCount = this.modCount;
+		final V newValue = remappingFunction.apply(valueAt(slot), value);
+		checkForComodification(expectedModCount);
+		updateOrRemoveEntryAt(slot, newValue);
+		return newValue;
+	}
+
+	@Override
+	public void forEach(BiConsumer<? super K, ? super V> action) {
+		Objects.requireNonNull(action);
+
+		final Object[] table = this.keySlots;
+		final int expectedModCount = this.modCount;
+		for (int i = 0; i < table.length && this.modCount == expectedModCount; i++) {
+			if (table[i] != null) {
+				action.accept(keyAt(i), valueAt(i));
+			}
+		}
+		checkForComodification(expectedModCount);
+	}
+
+	@Override
+	public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+		Objects.requireNonNull(function);
+
+		final Object[] table = this.keySlots;
+		final int expectedModCount = this.modCount;
+		for (int i = 0; i < table.length && this.modCount == expectedModCount; i++) {
+			if (table[i] != null) {
+				this.valueSlots[i] = Objects.requireNonNull(function.apply(keyAt(i), valueAt(i)));
+			}
+		}
+		checkForComodification(expectedModCount);
+	}
+
+	@Override
+	public void clear() {
+		this.modCount++;
+		this.size = 0;
+		this.overflowEnd = this.hops.length;
+		Arrays.fill(this.hops, 0);
+		Arrays.fill(this.keySlots, null);
+		Arrays.fill(this.valueSlots, null);
+	}
+
+	@Override
+	public Set<Map.Entry<K, V>> entrySet() {
+		if (this.entrySet == null) {
+			this.entrySet = new EntrySet();
+		}
+		return this.entrySet;
+	}
+
+	public class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+
+		@Override
+		public Iterator<Map.Entry<K, V>> iterator() {
+			return new EntrySetIterator();
+		}
+
+		@Override
+		public Spliterator<Map.Entry<K, V>> spliterator() {
+			return new EntrySetSpliterator(null, 0, -1, 0, 0);
+		}
+
+		@Override
+		public int size() {
+			return PcHopscotchHashMap.this.size;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return size() == 0;
+		}
+
+		@Override
+		public void clear() {
+			PcHopscotchHashMap.this.clear();
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			if (o instanceof Map.Entry) {
+				final Map.Entry entry = (Map.Entry)o;
+				final V removed = PcHopscotchHashMap.this.remove(entry.getKey());
+				return removed != null;
+			}
+			return false;
+		}
+
+	}
+
+	public class EntrySetIterator extends BaseIterator implements Iterator<Map.Entry<K, V>> {
+
+		@Override
+		public Map.Entry<K, V> next() {
+			return new Entry(nextSlot());
+		}
+
+	}
+
+	@Override
+	public Set<K> keySet() {
+		if (this.keySet == null) {
+			this.keySet = new KeySet();
+		}
+		return this.keySet;
+	}
+
+	public class KeySet extends AbstractSet<K> {
+
+		@Override
+		public Iterator<K> iterator() {
+			return new KeysIterator();
+		}
+
+		@Override
+		public Spliterator<K> spliterator() {
+			return new KeysSpliterator(null, 0, -1, 0, 0);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return size() == 0;
+		}
+
+		@Override
+		public void clear() {
+			PcHopscotchHashMap.this.clear();
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			final V removed = PcHopscotchHashMap.this.remove(o);
+			return removed != null;
+		}
+
+	}
+
+	public class KeysIterator extends BaseIterator implements Iterator<K> {
+
+		@Override
+		public K next() {
+			return keyAt(nextSlot());
+		}
+
+	}
+
+	@Override
+	public Collection<V> values() {
+		if (this.values == null) {
+			this.values = new Values();
+		}
+		return this.values;
+	}
+
+	public class Values extends AbstractCollection<V> {
+
+		@Override
+		public Iterator<V> iterator() {
+			return new ValuesIterator();
+		}
+
+		@Override
+		public Spliterator<V> spliterator() {
+			return new ValuesSpliterator(null, 0, -1, 0, 0);
+		}
+
+		@Override
+		public int size() {
+			return PcHopscotchHashMap.this.size;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return size() == 0;
+		}
+
+		@Override
+		public void clear() {
+			PcHopscotchHashMap.this.clear();
+		}
+
+	}
+
+	public class ValuesIterator extends BaseIterator implements Iterator<V> {
+
+		@Override
+		public V next() {
+			return valueAt(nextSlot());
+		}
+
+	}
+
+	public abstract class BaseIterator {
+
+		private int nextSlot;
+		private int currentSlot;
+		private int expectedModCount;
+
+		public BaseIterator() {
+			this.currentSlot = -1;
+			this.expectedModCount = modCount;
+			// initially advance to first entry
+			advanceFrom(0);
+		}
+
+		public boolean hasNext() {
+			return this.nextSlot != -1;
+		}
+
+		/**
+		 * Return the slot of the next entry, and advance to the following entry.
+		 */
+		protected int nextSlot() {
+			checkForComodification(this.expectedModCount);
+			if (this.nextSlot == -1) {
+				throw new NoSuchElementException();
+			}
+			this.currentSlot = this.nextSlot;
+			advanceFrom(this.nextSlot + 1);
+			return this.currentSlot;
+		}
+
+		public void remove() {
+			if (this.currentSlot == -1) {
+				throw new IllegalStateException("next() has not been called yet, cannot use remove()");
+			}
+			checkForComodification(this.expectedModCount);
+			// entries never move on removal, so the iteration is not affected
+			removeEntryAt(this.currentSlot);
+			this.currentSlot = -1;
+			this.expectedModCount = modCount;
+		}
+
+		/**
+		 * Advance nextSlot to the first full slot at or after the given slot, or to -1 at the end of the table.
+		 */
+		private void advanceFrom(int slot) {
+			final Object[] table = PcHopscotchHashMap.this.keySlots;
+			for (int i = slot; i < table.length; i++) {
+				if (table[i] != null) {
+					this.nextSlot = i;
+					return;
+				}
+			}
+			this.nextSlot = -1;
+		}
+
+	}
+
+	/**
+	 * Base spliterator, that traverses a range of slots of the table.
+	 * Splitting a spliterator splits its range of slots in two halves.
+	 * The top level spliterator is bound to the table on first use, and is the only one to report {@link Spliterator#SIZED},
+	 * as the number of entries in a range of slots is not known.
+	 */
+	public abstract class BaseSpliterator<T> implements Spliterator<T> {
+
+		private Object[] table;
+		private int slot;
+		private int fence;
+		private int estimatedSize;
+		private int expectedModCount;
+
+		protected BaseSpliterator(Object[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			this.table = table;
+			this.slot = origin;
+			this.fence = fence;
+			this.estimatedSize = estimatedSize;
+			this.expectedModCount = expectedModCount;
+		}
+
+		protected abstract T extract(int slot);
+
+		protected abstract BaseSpliterator<T> createSplit(Object[] table, int origin, int fence, int estimatedSize, int expectedModCount);
+
+		private int getFence() {
+			if (this.fence < 0) {
+				this.table = PcHopscotchHashMap.this.keySlots;
+				this.estimatedSize = size;
+				this.expectedModCount = modCount;
+				this.fence = this.table.length;
+			}
+			return this.fence;
+		}
+
+		@Override
+		public Spliterator<T> trySplit() {
+			final int high = getFence();
+			final int low = this.slot;
+			final int middle = (low + high) >>> 1;
+			if (low >= middle) {
+				return null;
+			}
+			this.slot = middle;
+			this.estimatedSize >>>= 1;
+			return createSplit(this.table, low, middle, this.estimatedSize, this.expectedModCount);
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super T> action) {
+			Objects.requireNonNull(action);
+
+			final int high = getFence();
+			while (this.slot < high) {
+				final int slot = this.slot++;
+				if (this.table[slot] != null) {
+					action.accept(extract(slot));
+					checkForComodification(this.expectedModCount);
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super T> action) {
+			Objects.requireNonNull(action);
+
+			final int high = getFence();
+			while (this.slot < high) {
+				final int slot = this.slot++;
+				if (this.table[slot] != null) {
+					action.accept(extract(slot));
+				}
+			}
+			checkForComodification(this.expectedModCount);
+		}
+
+		@Override
+		public long estimateSize() {
+			getFence();
+			return this.estimatedSize;
+		}
+
+		@Override
+		public int characteristics() {
+			return (this.fence < 0 || this.estimatedSize == size ? Spliterator.SIZED : 0)
+					| Spliterator.DISTINCT
+					| Spliterator.NONNULL;
+		}
+	}
+
+	public class EntrySetSpliterator extends BaseSpliterator<Map.Entry<K, V>> {
+
+		public EntrySetSpliterator(Object[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			super(table, origin, fence, estimatedSize, expectedModCount);
+		}
+
+		@Override
+		protected Map.Entry<K, V> extract(int slot) {
+			return new Entry(slot);
+		}
+
+		@Override
+		protected EntrySetSpliterator createSplit(Object[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			return new EntrySetSpliterator(table, origin, fence, estimatedSize, expectedModCount);
+		}
+	}
+
+	public class KeysSpliterator extends BaseSpliterator<K> {
+
+		public KeysSpliterator(Object[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			super(table, origin, fence, estimatedSize, expectedModCount);
+		}
+
+		@Override
+		protected K extract(int slot) {
+			return keyAt(slot);
+		}
+
+		@Override
+		protected KeysSpliterator createSplit(Object[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			return new KeysSpliterator(table, origin, fence, estimatedSize, expectedModCount);
+		}
+	}
+
+	public class ValuesSpliterator extends BaseSpliterator<V> {
+
+		public ValuesSpliterator(Object[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			super(table, origin, fence, estimatedSize, expectedModCount);
+		}
+
+		@Override
+		protected V extract(int slot) {
+			return valueAt(slot);
+		}
+
+		@Override
+		protected ValuesSpliterator createSplit(Object[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			return new ValuesSpliterator(table, origin, fence, estimatedSize, expectedModCount);
+		}
+	}
+
+	/**
+	 * Return a string representing the layout of the underlying table.
+	 * Useful for debugging.
+	 */
+	public String getLayout() {
+		final int capacity = this.hops.length;
+		if (size == 0) {
+			return "EMPTY (size=0, capacity=" + capacity + ", loadFactor=0)\n";
+		}
+		StringBuilder result = new StringBuilder();
+		result.append("NOT EMPTY (size=")
+				.append(size)
+				.append("), capacity=")
+				.append(capacity)
+				.append("), loadFactor=")
+				.append(size / (float) capacity)
+				.append(", overflow=")
+				.append(overflowSize())
+				.append("\n");
+		for (int i = 0; i < keySlots.length; ++i) {
+			final String hopsString = i < capacity ? ",hops=" + Integer.toBinaryString(hops[i]) : "";
+			if (keySlots[i] == null) {
+				result.append("index ").append(i).append(" : NULL").append(hopsString).append("\n");
+			} else {
+				result.append("index ").append(i).append(" : ")
+						.append("(key=")
+						.append(keySlots[i])
+						.append(",value=")
+						.append(valueSlots[i])
+						.append(i < capacity ? ",distance=" + ((i - (hash(keySlots[i]) & (capacity - 1))) & (capacity - 1)) : ",overflow")
+						.append(")")
+						.append(hopsString)
+						.append("\n");
+			}
+		}
+		return result.toString();
+	}
+
+	private void checkForComodification(int expectedModCount) {
+		if (this.modCount != expectedModCount) {
+			throw new ConcurrentModificationException();
+		}
+	}
+
+	private static int hash(Object key) {
+		final int hashCode = key.hashCode();
+		return hashCode ^ (hashCode >>> 16);
+	}
+
+	@SuppressWarnings("unchecked")
+	private K keyAt(int slot) {
+		return (K) this.keySlots[slot];
+	}
+
+	@SuppressWarnings("unchecked")
+	private V valueAt(int slot) {
+		return (V) this.valueSlots[slot];
+	}
+
+	/**
+	 * Set the value of the entry at the given slot, and return its previous value.
+	 */
+	private V setValueAt(int slot, V value) {
+		final V oldValue = valueAt(slot);
+		this.valueSlots[slot] = value;
+		return oldValue;
+	}
+
+	/**
+	 * Return the number of slots used in the overflow area, including the slots of removed entries.
+	 */
+	private int overflowSize() {
+		return this.overflowEnd - this.hops.length;
+	}
+
+	/**
+	 * Find the slot of the given key.
+	 * Only the slots of the hop bitmap of the home slot are visited,
+	 * then the overflow area if the overflow flag of the home slot is set.
+	 *
+	 * @return the index of the slot of the key if the key is present, otherwise -1
+	 */
+	private int findSlot(int hash, Object key) {
+		final int mask = this.hops.length - 1;
+		final int home = hash & mask;
+		final int hopBitmap = this.hops[home];
+		for (int bits = hopBitmap & NEIGHBORHOOD_BITS; bits != 0; bits &= bits - 1) {
+			final int slot = (home + Integer.numberOfTrailingZeros(bits)) & mask;
+			final Object keyAtSlot = this.keySlots[slot];
+			if (keyAtSlot == key || key.equals(keyAtSlot)) {
+				return slot;
+			}
+		}
+		if ((hopBitmap & OVERFLOW_BIT) != 0) {
+			for (int slot = this.hops.length; slot < this.overflowEnd; slot++) {
+				if (key.equals(this.keySlots[slot])) {
+					return slot;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Insert a new entry for a key that is known to be absent from the table.
+	 */
+	private void insertEntry(int hash, K key, V value) {
+		placeEntry(hash, key, value, true);
+		this.size++;
+		this.modCount++;
+	}
+
+	/**
+	 * Place an entry in the neighborhood of its home slot, growing the table if needed and allowed.
+	 * When the neighborhood cannot be freed, the entry is put in the overflow area.
+	 */
+	private void placeEntry(int hash, Object key, Object value, boolean allowGrowth) {
+		while (true) {
+			final int mask = this.hops.length - 1;
+			final int home = hash & mask;
+			final int slot = freeSlotInNeighborhood(home);
+			if (slot >= 0) {
+				this.keySlots[slot] = key;
+				this.valueSlots[slot] = value;
+				this.hops[home] |= 1 << ((slot - home) & mask);
+				return;
+			}
+			if (!allowGrowth
+					|| this.size < this.hops.length * MIN_LOAD_FACTOR_FOR_GROWTH
+					|| !willNeighborhoodChangeOnGrowth(home)) {
+				putInOverflow(home, key, value);
+				return;
+			}
+			resize(this.hops.length << 1);
+		}
+	}
+
+	/**
+	 * Find a free slot in the neighborhood of the given home slot.
+	 * The first free slot after the home slot is found by linear probing, then, while it is out of the neighborhood,
+	 * an entry that sits before it, and whose own neighborhood includes it, is moved to it.
+	 *
+	 * @return the index of the free slot, or -1 if the table is full or no entry could be moved
+	 */
+	private int freeSlotInNeighborhood(int home) {
+		final int mask = this.hops.length - 1;
+		int freeSlot = home;
+		int distance = 0;
+		while (this.keySlots[freeSlot] != null) {
+			freeSlot = (freeSlot + 1) & mask;
+			if (++distance > mask) {
+				return -1;
+			}
+		}
+		while (distance >= NEIGHBORHOOD_SIZE) {
+			final int movedSlot = moveEntryTo(freeSlot);
+			if (movedSlot < 0) {
+				return -1;
+			}
+			freeSlot = movedSlot;
+			distance = (freeSlot - home) & mask;
+		}
+		return freeSlot;
+	}
+
+	/**
+	 * Move to the given free slot the farthest entry before it that can be moved there,
+	 * ie: that stays in the neighborhood of its home slot.
+	 * Candidate home slots are visited from the farthest one, so that the free slot moves back as much as possible.
+	 *
+	 * @return the slot that was freed, or -1 if no entry can be moved
+	 */
+	private int moveEntryTo(int freeSlot) {
+		final int mask = this.hops.length - 1;
+		for (int distance = NEIGHBORHOOD_SIZE - 1; distance > 0; distance--) {
+			final int home = (freeSlot - distance) & mask;
+			// only the entries of this home slot that are before the free slot can be moved
+			final int candidates = this.hops[home] & ((1 << distance) - 1);
+			if (candidates != 0) {
+				final int hop = Integer.numberOfTrailingZeros(candidates);
+				final int movedSlot = (home + hop) & mask;
+				this.keySlots[freeSlot] = this.keySlots[movedSlot];
+				this.valueSlots[freeSlot] = this.valueSlots[movedSlot];
+				this.keySlots[movedSlot] = null;
+				this.valueSlots[movedSlot] = null;
+				this.hops[home] = (this.hops[home] & ~(1 << hop)) | (1 << distance);
+				return movedSlot;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Check if doubling the table would move some entries out of the neighborhood of the given home slot.
+	 * Otherwise, for instance when all its keys have the same hash, doubling the table would not help.
+	 */
+	private boolean willNeighborhoodChangeOnGrowth(int home) {
+		final int mask = this.hops.length - 1;
+		final int newMask = (this.hops.length << 1) - 1;
+		for (int i = 0; i < NEIGHBORHOOD_SIZE && i <= mask; i++) {
+			final Object key = this.keySlots[(home + i) & mask];
+			if (key != null) {
+				final int hash = hash(key);
+				if ((hash & newMask) != (hash & mask)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Append an entry to the overflow area, growing it if it is full, and flag its home slot.
+	 */
+	private void putInOverflow(int home, Object key, Object value) {
+		if (this.overflowEnd == this.keySlots.length) {
+			final int newLength = this.hops.length + Math.max(MIN_OVERFLOW_CAPACITY, overflowSize() << 1);
+			this.keySlots = Arrays.copyOf(this.keySlots, newLength);
+			this.valueSlots = Arrays.copyOf(this.valueSlots, newLength);
+		}
+		this.keySlots[this.overflowEnd] = key;
+		this.valueSlots[this.overflowEnd] = value;
+		this.overflowEnd++;
+		this.hops[home] |= OVERFLOW_BIT;
+	}
+
+	/**
+	 * Set the value of the entry at the given slot, or remove the entry if the new value is null.
+	 */
+	private void updateOrRemoveEntryAt(int slot, V newValue) {
+		if (newValue != null) {
+			setValueAt(slot, newValue);
+		} else {
+			removeEntryAt(slot);
+		}
+	}
+
+	/**
+	 * Remove the entry at the given slot.
+	 * In the table, the bit of the slot is cleared from the hop bitmap of its home slot.
+	 * In the overflow area, the slot is left empty until the next resize, except at the end of the area,
+	 * and the overflow flag of the home slot is kept, as other keys of the home slot may be in the overflow area.
+	 */
+	private void removeEntryAt(int slot) {
+		final int capacity = this.hops.length;
+		if (slot < capacity) {
+			final int mask = capacity - 1;
+			final int home = hash(this.keySlots[slot]) & mask;
+			this.hops[home] &= ~(1 << ((slot - home) & mask));
+		}
+		this.keySlots[slot] = null;
+		this.valueSlots[slot] = null;
+		while (this.overflowEnd > capacity && this.keySlots[this.overflowEnd - 1] == null) {
+			this.overflowEnd--;
+		}
+		this.size--;
+		this.modCount++;
+	}
+
+	/**
+	 * Check if the threshold has been met to trigger a resize of the table, and perform the resize if it was met.
+	 * The threshold is when the load factor reaches the configured maximum load factor,
+	 * or when the next insertion would fill the last free slot of the table.
+	 */
+	private void resizeIfNeeded() {
+		final int capacity = this.hops.length;
+		final float currentLoadFactor = this.size / (float) capacity;
+		if (currentLoadFactor >= this.loadFactor || this.size + 1 >= capacity) {
+			resize(capacity << 1);
+		}
+	}
+
+	/**
+	 * Put all the mappings of the given map, after growing the table once for all of them.
+	 */
+	private void putMapEntries(Map<? extends K, ? extends V> map) {
+		if (map.isEmpty()) {
+			return;
+		}
+		ensureCapacity(this.size + map.size());
+		for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+			put(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Return the capacity of a table that can hold the given number of entries without being resized.
+	 * The capacity is always greater than the number of entries, even when the load factor is greater than 1.
+	 */
+	private int capacityFor(int expectedSize) {
+		return tableSizeFor((int) Math.min(Integer.MAX_VALUE, Math.max((long) (expectedSize / this.loadFactor), expectedSize + 1L) + 1));
+	}
+
+	/**
+	 * Grow the table so that it can hold the given number of entries without being resized.
+	 */
+	private void ensureCapacity(int expectedSize) {
+		final int capacity = capacityFor(expectedSize);
+		if (capacity > this.hops.length) {
+			resize(capacity);
+		}
+	}
+
+	private void allocate(int capacity) {
+		this.hops = new int[capacity];
+		this.keySlots = new Object[capacity];
+		this.valueSlots = new Object[capacity];
+		this.overflowEnd = capacity;
+	}
+
+	/**
+	 * Move all the entries of the table and of the overflow area to a new table with the given capacity.
+	 * Keys that do not fit in their neighborhood of the new table go to its overflow area:
+	 * the table is not grown again while it is being resized.
+	 */
+	private void resize(int newCapacity) {
+		final Object[] oldKeys = this.keySlots;
+		final Object[] oldValues = this.valueSlots;
+		final int oldEnd = this.overflowEnd;
+		allocate(newCapacity);
+		for (int i = 0; i < oldEnd; i++) {
+			if (oldKeys[i] != null) {
+				placeEntry(hash(oldKeys[i]), oldKeys[i], oldValues[i], false);
+			}
+		}
+		this.modCount++;
+	}
+
+	/**
+	 * Return the smallest power of two that is greater or equal to the given capacity.
+	 * The capacity of the table must be a power of two, so that indexes can be computed with a mask.
+	 */
+	private static int tableSizeFor(int capacity) {
+		if (capacity <= 2) {
+			return 2;
+		}
+		return 1 << (32 - Integer.numberOfLeadingZeros(capacity - 1));
+	}
+}
@@ -0,0 +1,450 @@
+package com.petitcl.collections;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Objects;
+import java.util.function.IntFunction;
+
+/**
+ * Hash map from primitive int keys to object values,
+ * that uses the same algorithm as {@link PcLinearProbingHashMap}: linear probing that wraps around the end of the table,
+ * and removals that shift entries back instead of leaving tombstones.
+ * Keys are stored in an int array, and values in a parallel array, so that keys are not boxed,
+ * and probing only reads the keys.
+ * A slot is empty when its key is 0. The key 0 itself is not stored in the table,
+ * but in a dedicated field, so that all the int values can be used as keys.
+ * Like other maps of this library, it does not support null values, so methods return null for absent keys.
+ * This class does not implement {@link java.util.Map}, as that would box the keys.
+ *
+ * @param <V> type of the value
+ */
+public class PcIntObjectHashMap<V> {
+
+	public static final int DEFAULT_INITIAL_CAPACITY = 16;
+	public static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+	/**
+	 * Operation that accepts a key and a value of the map.
+	 */
+	@FunctionalInterface
+	public interface IntObjectConsumer<V> {
+		void accept(int key, V value);
+	}
+
+	private int[] keys;
+	private Object[] values;
+
+	/**
+	 * Number of entries of the map, including the entry of the key 0.
+	 */
+	private int size;
+	private V zeroKeyValue;
+	private final float loadFactor;
+
+	/**
+	 * Number of structural modifications of this map (insertions, removals and resizes),
+	 * used by {@link #forEach(IntObjectConsumer)} to detect concurrent modifications.
+	 */
+	private int modCount;
+
+	public PcIntObjectHashMap() {
+		this(DEFAULT_INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR);
+	}
+
+	public PcIntObjectHashMap(int initialCapacity) {
+		this(initialCapacity, DEFAULT_LOAD_FACTOR);
+	}
+
+	public PcIntObjectHashMap(int initialCapacity, float loadFactor) {
+		final int capacity = tableSizeFor(Math.max(initialCapacity, 2));
+		this.keys = new int[capacity];
+		this.values = new Object[capacity];
+		this.loadFactor = loadFactor;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public boolean containsKey(int key) {
+		if (key == 0) {
+			return this.zeroKeyValue != null;
+		}
+		return findSlot(this.keys, key) >= 0;
+	}
+
+	/**
+	 * Return the value of the given key, or null if the key is absent.
+	 */
+	public V get(int key) {
+		return getOrDefault(key, null);
+	}
+
+	public V getOrDefault(int key, V defaultValue) {
+		if (key == 0) {
+			return this.zeroKeyValue != null ? this.zeroKeyValue : defaultValue;
+		}
+		final int slot = findSlot(this.keys, key);
+		return slot >= 0 ? valueAt(slot) : defaultValue;
+	}
+
+	/**
+	 * Associate the given value to the given key.
+	 *
+	 * @return the previous value of the key, or null if the key was absent
+	 */
+	public V put(int key, V value) {
+		Objects.requireNonNull(value);
+
+		if (key == 0) {
+			final V oldValue = this.zeroKeyValue;
+			if (oldValue == null) {
+				this.size++;
+				this.modCount++;
+			}
+			this.zeroKeyValue = value;
+			return oldValue;
+		}
+		this.resizeIfNeeded();
+		final int slot = findSlot(this.keys, key);
+		if (slot >= 0) {
+			// if the key is present, replace its value
+			final V oldValue = valueAt(slot);
+			this.values[slot] = value;
+			return oldValue;
+		}
+		insertEntry(slot, key, value);
+		return null;
+	}
+
+	/**
+	 * Return the value of the given key, after computing it with the given function and putting it if the key is absent.
+	 * If the function returns null, nothing is put.
+	 * The function must not modify this map, otherwise a ConcurrentModificationException is thrown.
+	 */
+	public V computeIfAbsent(int key, IntFunction<? extends V> mappingFunction) {
+		Objects.requireNonNull(mappingFunction);
+
+		final V value = get(key);
+		if (value != null) {
+			return value;
+		}
+		final int expectedModCount = this.modCount;
+		final V newValue = mappingFunction.apply(key);
+		if (this.modCount != expectedModCount) {
+			throw new ConcurrentModificationException();
+		}
+		if (newValue != null) {
+			put(key, newValue);
+		}
+		return newValue;
+	}
+
+	/**
+	 * Remove the given key.
+	 *
+	 * @return the value of the key, or null if the key was absent
+	 */
+	public V remove(int key) {
+		if (key == 0) {
+			final V oldValue = this.zeroKeyValue;
+			if (oldValue != null) {
+				this.zeroKeyValue = null;
+				this.size--;
+				this.modCount++;
+			}
+			return oldValue;
+		}
+		final int slot = findSlot(this.keys, key);
+		if (slot < 0) {
+			// if no entry was found, the key was not there
+			return null;
+		}
+		final V oldValue = valueAt(slot);
+		removeEntryAt(slot);
+		return oldValue;
+	}
+
+	public void clear() {
+		this.modCount++;
+		this.size = 0;
+		this.zeroKeyValue = null;
+		Arrays.fill(this.keys, 0);
+		Arrays.fill(this.values, null);
+	}
+
+	/**
+	 * Perform the given action for each entry of the map.
+	 * The action must not modify this map, otherwise a ConcurrentModificationException is thrown.
+	 */
+	public void forEach(IntObjectConsumer<? super V> action) {
+		Objects.requireNonNull(action);
+
+		final int expectedModCount = this.modCount;
+		if (this.zeroKeyValue != null) {
+			action.accept(0, this.zeroKeyValue);
+		}
+		final int[] keys = this.keys;
+		for (int i = 0; i < keys.length && this.modCount == expectedModCount; i++) {
+			if (keys[i] != 0) {
+				action.accept(keys[i], valueAt(i));
+			}
+		}
+		if (this.modCount != expectedModCount) {
+			throw new ConcurrentModificationException();
+		}
+	}
+
+	/**
+	 * Return the keys of the map, in no particular order.
+	 */
+	public int[] keys() {
+		final int[] result = new int[this.size];
+		int index = 0;
+		if (this.zeroKeyValue != null) {
+			result[index++] = 0;
+		}
+		for (int key : this.keys) {
+			if (key != 0) {
+				result[index++] = key;
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (other == this) {
+			return true;
+		}
+		if (!(other instanceof PcIntObjectHashMap)) {
+			return false;
+		}
+		final PcIntObjectHashMap<?> that = (PcIntObjectHashMap<?>) other;
+		if (that.size() != size() || !Objects.equals(this.zeroKeyValue, that.zeroKeyValue)) {
+			return false;
+		}
+		for (int i = 0; i < this.keys.length; i++) {
+			if (this.keys[i] != 0) {
+				final int slot = findSlot(that.keys, this.keys[i]);
+				if (slot < 0 || !this.values[i].equals(that.values[slot])) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Return the hash code of the map, computed as {@link java.util.Map#hashCode()} would for the boxed entries.
+	 */
+	@Override
+	public int hashCode() {
+		int hashCode = this.zeroKeyValue != null ? this.zeroKeyValue.hashCode() : 0;
+		for (int i = 0; i < this.keys.length; i++) {
+			if (this.keys[i] != 0) {
+				hashCode += this.keys[i] ^ this.values[i].hashCode();
+			}
+		}
+		return hashCode;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder result = new StringBuilder("{");
+		forEach((key, value) -> {
+			if (result.length() > 1) {
+				result.append(", ");
+			}
+			result.append(key).append('=').append(value);
+		});
+		return result.append('}').toString();
+	}
+
+	/**
+	 * Return a string representing the layout of the underlying table.
+	 * Useful for debugging.
+	 */
+	public String getLayout() {
+		final int capacity = this.keys.length;
+		if (size == 0) {
+			return "EMPTY (size=0, capacity=" + capacity + ", loadFactor=0)\n";
+		}
+		StringBuilder result = new StringBuilder();
+		result.append("NOT EMPTY (size=")
+				.append(size)
+				.append("), capacity=")
+				.append(capacity)
+				.append("), loadFactor=")
+				.append(size / (float) capacity)
+				.append(", zeroKey=")
+				.append(this.zeroKeyValue != null ? this.zeroKeyValue : "NULL")
+				.append("\n");
+		for (int i = 0; i < capacity; ++i) {
+			if (this.keys[i] == 0) {
+				result.append("index ").append(i).append(" : NULL").append("\n");
+			} else {
+				result.append("index ").append(i).append(" : ")
+						.append("(key=")
+						.append(this.keys[i])
+						.append(",value=")
+						.append(this.values[i])
+						.append(")")
+						.append("\n");
+			}
+		}
+		return result.toString();
+	}
+
+	@SuppressWarnings("unchecked")
+	private V valueAt(int slot) {
+		return (V) this.values[slot];
+	}
+
+	/**
+	 * Compute the hash of the given key, by multiplying it by the golden ratio and folding its high bits,
+	 * so that consecutive keys are spread over the table.
+	 */
+	private static int hash(int key) {
+		final int hash = key * 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Find the slot of the given non zero key in the given keys.
+	 * The probe sequence starts at the index of the hash, and wraps around the end of the table.
+	 * It always stops, as the table always has at least one empty slot.
+	 *
+	 * @return the index of the slot of the key if the key is present,
+	 * otherwise (-(insertion index) - 1), where the insertion index is the first empty slot of the probe sequence.
+	 */
+	private static int findSlot(int[] keys, int key) {
+		final int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		int keyAtIndex;
+		while ((keyAtIndex = keys[i]) != 0) {
+			if (keyAtIndex == key) {
+				return i;
+			}
+			i = (i + 1) & mask;
+		}
+		return -i - 1;
+	}
+
+	/**
+	 * Insert a new entry for a key that is known to be absent from the table,
+	 * at the insertion index returned by {@link #findSlot(int[], int)}.
+	 */
+	private void insertEntry(int slot, int key, V value) {
+		final int index = -slot - 1;
+		this.keys[index] = key;
+		this.values[index] = value;
+		this.size++;
+		this.modCount++;
+	}
+
+	/**
+	 * Remove the entry at the given slot.
+	 * The entries of the cluster that follows the slot are shifted back to fill the emptied slot,
+	 * so that they remain reachable from their ideal slot without using tombstones.
+	 */
+	private void removeEntryAt(int slot) {
+		this.keys[slot] = 0;
+		this.values[slot] = null;
+		int emptiedIndex = slot;
+		do {
+			emptiedIndex = fillEntryIfPossible(emptiedIndex);
+		} while (emptiedIndex != -1);
+		this.size--;
+		this.modCount++;
+	}
+
+	/**
+	 * Move into the given empty slot the first following entry of its cluster that can be moved there,
+	 * ie: the first entry whose ideal slot is not between the empty slot (excluded) and its current slot (included),
+	 * taking into account that the cluster can wrap around the end of the table.
+	 *
+	 * @return the index of the slot that was emptied by the move, or -1 if no entry could be moved
+	 */
+	private int fillEntryIfPossible(int emptyIndex) {
+		final int mask = this.keys.length - 1;
+		int i = (emptyIndex + 1) & mask;
+		while (this.keys[i] != 0) {
+			final int desiredPosition = hash(this.keys[i]) & mask;
+			if (!isCyclicallyBetween(desiredPosition, emptyIndex, i)) {
+				this.keys[emptyIndex] = this.keys[i];
+				this.values[emptyIndex] = this.values[i];
+				this.keys[i] = 0;
+				this.values[i] = null;
+				return i;
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Check if the given index is between the lower bound (excluded) and the upper bound (included),
+	 * when going forward from the lower bound and wrapping around the end of the table.
+	 */
+	private static boolean isCyclicallyBetween(int index, int lowerBound, int upperBound) {
+		if (lowerBound <= upperBound) {
+			return lowerBound < index && index <= upperBound;
+		}
+		return lowerBound < index || index <= upperBound;
+	}
+
+	/**
+	 * Check if the threshold has been met to trigger a resize, and perform the resize if it was met.
+	 * The threshold is when the current load factor is more than the configured maximum load factor,
+	 * or when the next insertion would fill the last empty slot of the table:
+	 * probe sequences rely on empty slots to stop.
+	 */
+	private void resizeIfNeeded() {
+		final int capacity = this.keys.length;
+		final float currentLoadFactor = this.size / (float) capacity;
+		if (currentLoadFactor < this.loadFactor && this.size + 1 < capacity) {
+			return;
+		}
+		resize(capacity << 1);
+	}
+
+	/**
+	 * Move all the entries of the table to a new table with the given capacity.
+	 * As keys are distinct, each entry is put in the first empty slot of its probe sequence without comparing keys.
+	 */
+	private void resize(int newCapacity) {
+		final int[] newKeys = new int[newCapacity];
+		final Object[] newValues = new Object[newCapacity];
+		final int mask = newCapacity - 1;
+		final int[] keys = this.keys;
+		for (int j = 0; j < keys.length; j++) {
+			if (keys[j] != 0) {
+				int i = hash(keys[j]) & mask;
+				while (newKeys[i] != 0) {
+					i = (i + 1) & mask;
+				}
+				newKeys[i] = keys[j];
+				newValues[i] = this.values[j];
+			}
+		}
+		this.keys = newKeys;
+		this.values = newValues;
+		this.modCount++;
+	}
+
+	/**
+	 * Return the smallest power of two that is greater or equal to the given capacity.
+	 * The capacity of the table must be a power of two, so that indexes can be computed with a mask.
+	 */
+	private static int tableSizeFor(int capacity) {
+		if (capacity <= 1) {
+			return 1;
+		}
+		return 1 << (32 - Integer.numberOfLeadingZeros(capacity - 1));
+	}
+}
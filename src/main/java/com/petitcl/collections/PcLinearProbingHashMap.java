@@ -1,35 +1,78 @@
 package com.petitcl.collections;
 
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Implementation of {@link Map} that is backed by a hash table
  * and that uses linear probing to handle collisions.
- * This implementation does not use any tombstones: if an element is deleted,
- * its spot will be filled with an out of place entry if such an entry exists.
+ * Probe sequences wrap around the end of the table, and the table always keeps at least one empty slot,
+ * so that it only grows when the configured load factor is reached.
+ * By default, this implementation does not use any tombstones: if an element is deleted,
+ * its spot will be filled with an out of place entry if such an entry exists (see {@link DeletionStrategy}).
+ * Keys and values are stored next to each other in a single array (the key of a slot at index 2 * slot,
+ * and its value at index 2 * slot + 1), so that probing reads contiguous memory,
+ * and no object is allocated per entry: entries are only created when iterating on the entry set.
+ * The hash of each key is stored in a parallel array, so that probing only compares keys whose hashes are equal,
+ * and so that removals and resizes never call {@link Object#hashCode()} again.
  *
  * @param <K> type of the key
  * @param <V> type of the value
  */
 public class PcLinearProbingHashMap<K, V> extends AbstractMap<K, V> {
 
-	/**
-	 * Maximum number of successive resizes that can occur
-	 * during an insertion operation.
-	 * If more resizes that this constant should occur,
-	 * a
-	 */
-	public static final int MAX_SUCCESSIVE_RESIZES = 10;
 	public static final int DEFAULT_INITIAL_CAPACITY = 16;
 	public static final float DEFAULT_LOAD_FACTOR = 0.75f;
 
-	public static class Entry<K, V> implements Map.Entry<K, V> {
+	/**
+	 * Ratio of tombstones to the capacity of the table above which tombstones start being compacted.
+	 */
+	public static final float TOMBSTONE_COMPACTION_THRESHOLD = 0.1f;
+
+	/**
+	 * Number of slots of the table that are compacted by each insertion, while a compaction is in progress.
+	 */
+	public static final int COMPACTED_SLOTS_PER_INSERTION = 16;
+
+	/**
+	 * Marker of the key of a slot whose entry was removed, with the {@link DeletionStrategy#TOMBSTONES} strategy.
+	 */
+	private static final Object TOMBSTONE = new Object();
+
+	/**
+	 * How entries are removed from the table.
+	 */
+	public enum DeletionStrategy {
+		/**
+		 * The entries that follow a removed entry in its cluster are shifted back to fill its slot.
+		 * The table never has tombstones, but a removal can move many entries.
+		 */
+		BACKWARD_SHIFT,
+		/**
+		 * A removed entry is replaced by a tombstone, unless it is at the end of its cluster,
+		 * so that removals never move entries. Insertions reuse tombstones.
+		 * When tombstones reach {@link #TOMBSTONE_COMPACTION_THRESHOLD} of the table, subsequent insertions
+		 * each compact {@link #COMPACTED_SLOTS_PER_INSERTION} slots, until the whole table has been swept once.
+		 */
+		TOMBSTONES
+	}
+
+	/**
+	 * View of a mapping of the map, created when iterating on the entry set.
+	 * Setting the value of the entry writes through to the map while the key is still present.
+	 */
+	public class Entry implements Map.Entry<K, V> {
 		private final K key;
 		private V value;
+		private int slot;
 
-		public Entry(K key, V value) {
-			this.key = key;
-			this.value = value;
+		public Entry(int slot) {
+			this.key = keyAt(table, slot);
+			this.value = valueAt(table, slot);
+			this.slot = slot;
 		}
 
 		@Override
@@ -39,6 +82,9 @@ public class PcLinearProbingHashMap<K, V> extends AbstractMap<K, V> {
 
 		@Override
 		public V getValue() {
+			if (locate()) {
+				this.value = valueAt(table, this.slot);
+			}
 			return value;
 		}
 
@@ -46,14 +92,30 @@ public class PcLinearProbingHashMap<K, V> extends AbstractMap<K, V> {
 		public V setValue(V value) {
 			Objects.requireNonNull(value);
 
-			final V oldValue = this.value;
+			final V oldValue = getValue();
 			this.value = value;
+			if (locate()) {
+				table[(this.slot << 1) + 1] = value;
+			}
 			return oldValue;
 		}
 
+		/**
+		 * Find the current slot of the key, which may have moved since the entry was created.
+		 *
+		 * @return true if the key is still present in the map
+		 */
+		private boolean locate() {
+			if (this.slot >= 0 && (this.slot << 1) < table.length && table[this.slot << 1] == this.key) {
+				return true;
+			}
+			this.slot = findSlot(hash(this.key), this.key);
+			return this.slot >= 0;
+		}
+
 		@Override
 		public final int hashCode() {
-			return Objects.hashCode(key) ^ Objects.hashCode(value);
+			return Objects.hashCode(key) ^ Objects.hashCode(getValue());
 		}
 
 		@Override
@@ -67,41 +129,119 @@ public class PcLinearProbingHashMap<K, V> extends AbstractMap<K, V> {
 			if ((other instanceof Map.Entry)) {
 				final Map.Entry that = (Map.Entry) other;
 				return Objects.equals(key, that.getKey()) &&
-						Objects.equals(value, that.getValue());
+						Objects.equals(getValue(), that.getValue());
 			}
 			return false;
 		}
 
 		public final String toString() {
-			return key + "=" + value;
+			return key + "=" + getValue();
 		}
 	}
 
-	private Entry<K, V>[] table;
+	/**
+	 * Keys and values of the map: the key of a slot is at index 2 * slot, and its value at index 2 * slot + 1.
+	 * An empty slot has a null key.
+	 */
+	private Object[] table;
+
+	/**
+	 * Hashes of the keys of the table, by slot. The hash of an empty slot is meaningless.
+	 */
+	private int[] hashes;
 	private int size;
 	private final float loadFactor;
+	private final DeletionStrategy deletionStrategy;
+	private int tombstones;
+
+	/**
+	 * Next slot to compact, or -1 if no compaction is in progress.
+	 */
+	private int compactionCursor = -1;
+
+	/**
+	 * Number of structural modifications of this map (insertions, removals and resizes),
+	 * used by iterators and spliterators to detect concurrent modifications.
+	 */
+	private int modCount;
+
+	private EntrySet entrySet;
+	private KeySet keySet;
+	private Values values;
 
-	@SuppressWarnings("unchecked")
 	public PcLinearProbingHashMap() {
-		this.table = (Entry<K, V>[]) new Entry[DEFAULT_INITIAL_CAPACITY];
+		this.table = new Object[DEFAULT_INITIAL_CAPACITY << 1];
+		this.hashes = new int[DEFAULT_INITIAL_CAPACITY];
 		this.loadFactor = DEFAULT_LOAD_FACTOR;
+		this.deletionStrategy = DeletionStrategy.BACKWARD_SHIFT;
 		this.size = 0;
 	}
 
-	@SuppressWarnings("unchecked")
 	public PcLinearProbingHashMap(int initialCapacity, float loadFactor) {
-		this.table = (Entry<K, V>[]) new Entry[initialCapacity];
+		this(initialCapacity, loadFactor, DeletionStrategy.BACKWARD_SHIFT);
+	}
+
+	public PcLinearProbingHashMap(int initialCapacity, float loadFactor, DeletionStrategy deletionStrategy) {
+		Objects.requireNonNull(deletionStrategy);
+
+		this.table = new Object[tableSizeFor(Math.max(initialCapacity, 2)) << 1];
+		this.hashes = new int[this.table.length >> 1];
 		this.loadFactor = loadFactor;
+		this.deletionStrategy = deletionStrategy;
 		this.size = 0;
 	}
 
-	@SuppressWarnings("unchecked")
 	public PcLinearProbingHashMap(int initialCapacity) {
-		this.table = (Entry<K, V>[]) new Entry[initialCapacity];
+		this.table = new Object[tableSizeFor(Math.max(initialCapacity, 2)) << 1];
+		this.hashes = new int[this.table.length >> 1];
 		this.loadFactor = DEFAULT_LOAD_FACTOR;
+		this.deletionStrategy = DeletionStrategy.BACKWARD_SHIFT;
 		this.size = 0;
 	}
 
+	/**
+	 * Create a map with the same mappings as the given map.
+	 * If the given map is also a {@link PcLinearProbingHashMap}, its load factor and deletion strategy are kept,
+	 * and its table is copied as is, without hashing or comparing keys again.
+	 */
+	public PcLinearProbingHashMap(Map<? extends K, ? extends V> map) {
+		Objects.requireNonNull(map);
+
+		if (map instanceof PcLinearProbingHashMap) {
+			final PcLinearProbingHashMap<? extends K, ? extends V> other = (PcLinearProbingHashMap<? extends K, ? extends V>) map;
+			this.loadFactor = other.loadFactor;
+			this.deletionStrategy = other.deletionStrategy;
+			this.table = other.table.clone();
+			this.hashes = other.hashes.clone();
+			this.size = other.size;
+			this.tombstones = other.tombstones;
+			this.compactionCursor = other.compactionCursor;
+		} else {
+			this.loadFactor = DEFAULT_LOAD_FACTOR;
+			this.deletionStrategy = DeletionStrategy.BACKWARD_SHIFT;
+			this.table = new Object[Math.max(DEFAULT_INITIAL_CAPACITY, capacityFor(map.size())) << 1];
+			this.hashes = new int[this.table.length >> 1];
+			this.size = 0;
+			putMapEntries(map);
+		}
+	}
+
+	/**
+	 * Create a map from the given entries.
+	 * The table is sized upfront for the number of entries, so that it is not resized while the entries are added.
+	 * If several entries have the same key, the last one wins.
+	 */
+	public static <K, V> PcLinearProbingHashMap<K, V> fromEntries(Collection<? extends Map.Entry<? extends K, ? extends V>> entries) {
+		Objects.requireNonNull(entries);
+
+		final PcLinearProbingHashMap<K, V> map = new PcLinearProbingHashMap<>();
+		map.ensureCapacity(entries.size());
+		for (Map.Entry<? extends K, ? extends V> entry : entries) {
+			map.put(entry.getKey(), entry.getValue());
+		}
+		return map;
+	}
+
 	@Override
 	public int size() {
 		return size;
@@ -116,18 +256,16 @@ public class PcLinearProbingHashMap<K, V> extends AbstractMap<K, V> {
 	public boolean containsKey(Object key) {
 		Objects.requireNonNull(key);
 
-		final Entry<K, V> foundEntry = getEntryForKey(key);
-		return foundEntry != null;
+		return findSlot(hash(key), key) >= 0;
 	}
 
 	@Override
 	public boolean containsValue(Object value) {
 		Objects.requireNonNull(value);
 
-		final ValuesIterator iterator = new ValuesIterator();
-		while (iterator.hasNext()) {
-			final V nextValue = iterator.next();
-			if (nextValue.equals(value)) {
+		final Object[] table = this.table;
+		for (int i = 0; i < table.length; i += 2) {
+			if (isEntry(table[i]) && table[i + 1].equals(value)) {
 				return true;
 			}
 		}
@@ -138,8 +276,8 @@ public class PcLinearProbingHashMap<K, V> extends AbstractMap<K, V> {
 	public V get(Object key) {
 		Objects.requireNonNull(key);
 
-		final Entry<K, V> foundEntry = getEntryForKey(key);
-		return foundEntry != null ? foundEntry.value : null;
+		final int slot = findSlot(hash(key), key);
+		return slot >= 0 ? valueAt(this.table, slot) : null;
 	}
 
 	@Override
@@ -150,23 +288,213 @@ public class PcLinearProbingHashMap<K, V> extends AbstractMap<K, V> {
 		return putEntryForKey(key, value);
 	}
 
+	@Override
+	public void putAll(Map<? extends K, ? extends V> map) {
+		Objects.requireNonNull(map);
+
+		putMapEntries(map);
+	}
+
 	@Override
 	public V remove(Object key) {
 		Objects.requireNonNull(key);
 
-		final Entry<K, V> removedEntry = removeEntryForKey(key);
-		return removedEntry != null ? removedEntry.value : null;
+		final int slot = findSlot(hash(key), key);
+		if (slot < 0) {
+			// if no entry was found, the key was not there
+			return null;
+		}
+		final V removedValue = valueAt(this.table, slot);
+		removeEntryAt(slot);
+		return removedValue;
+	}
+
+	/*
+	 * The following methods look up the key only once: its slot is found by probing the table,
+	 * then the value is updated in place, removed, or inserted in the first empty slot of the probe sequence.
+	 * The functions given to these methods must not modify this map,
+	 * otherwise a ConcurrentModificationException is thrown.
+	 */
+
+	@Override
+	public V getOrDefault(Object key, V defaultValue) {
+		Objects.requireNonNull(key);
+
+		final int slot = findSlot(hash(key), key);
+		return slot >= 0 ? valueAt(this.table, slot) : defaultValue;
+	}
+
+	@Override
+	public V putIfAbsent(K key, V value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		this.resizeIfNeeded();
+		final int hash = hash(key);
+		final int slot = findSlot(hash, key);
+		if (slot >= 0) {
+			return valueAt(this.table, slot);
+		}
+		insertEntry(slot, hash, key, value);
+		return null;
+	}
+
+	@Override
+	public boolean remove(Object key, Object value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		final int slot = findSlot(hash(key), key);
+		if (slot < 0 || !valueAt(this.table, slot).equals(value)) {
+			return false;
+		}
+		removeEntryAt(slot);
+		return true;
+	}
+
+	@Override
+	public boolean replace(K key, V oldValue, V newValue) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(oldValue);
+		Objects.requireNonNull(newValue);
+
+		final int slot = findSlot(hash(key), key);
+		if (slot < 0 || !valueAt(this.table, slot).equals(oldValue)) {
+			return false;
+		}
+		setValueAt(slot, newValue);
+		return true;
+	}
+
+	@Override
+	public V replace(K key, V value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		final int slot = findSlot(hash(key), key);
+		return slot >= 0 ? setValueAt(slot, value) : null;
+	}
+
+	@Override
+	public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(mappingFunction);
+
+		this.resizeIfNeeded();
+		final int hash = hash(key);
+		final int slot = findSlot(hash, key);
+		if (slot >= 0) {
+			return valueAt(this.table, slot);
+		}
+		final int expectedModCount = this.modCount;
+		final V newValue = mappingFunction.apply(key);
+		checkForComodification(expectedModCount);
+		if (newValue != null) {
+			insertEntry(slot, hash, key, newValue);
+		}
+		return newValue;
+	}
+
+	@Override
+	public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(remappingFunction);
+
+		final int slot = findSlot(hash(key), key);
+		if (slot < 0) {
+			return null;
+		}
+		final int expectedModCount = this.modCount;
+		final V newValue = remappingFunction.apply(key, valueAt(this.table, slot));
+		checkForComodification(expectedModCount);
+		updateOrRemoveEntryAt(slot, newValue);
+		return newValue;
+	}
+
+	@Override
+	public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(remappingFunction);
+
+		this.resizeIfNeeded();
+		final int hash = hash(key);
+		final int slot = findSlot(hash, key);
+		final int expectedModCount = this.modCount;
+		final V newValue = remappingFunction.apply(key, slot >= 0 ? valueAt(this.table, slot) : null);
+		checkForComodification(expectedModCount);
+		if (slot >= 0) {
+			updateOrRemoveEntryAt(slot, newValue);
+		} else if (newValue != null) {
+			insertEntry(slot, hash, key, newValue);
+		}
+		return newValue;
+	}
+
+	@Override
+	public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+		Objects.requireNonNull(remappingFunction);
+
+		this.resizeIfNeeded();
+		final int hash = hash(key);
+		final int slot = findSlot(hash, key);
+		if (slot < 0) {
+			insertEntry(slot, hash, key, value);
+			return value;
+		}
+		final int expectedModCount = this.modCount;
+		final V newValue = remappingFunction.apply(valueAt(this.table, slot), value);
+		checkForComodification(expectedModCount);
+		updateOrRemoveEntryAt(slot, newValue);
+		return newValue;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void forEach(BiConsumer<? super K, ? super V> action) {
+		Objects.requireNonNull(action);
+
+		final Object[] table = this.table;
+		final int expectedModCount = this.modCount;
+		for (int i = 0; i < table.length && this.modCount == expectedModCount; i += 2) {
+			if (isEntry(table[i])) {
+				action.accept((K) table[i], (V) table[i + 1]);
+			}
+		}
+		checkForComodification(expectedModCount);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+		Objects.requireNonNull(function);
+
+		final Object[] table = this.table;
+		final int expectedModCount = this.modCount;
+		for (int i = 0; i < table.length && this.modCount == expectedModCount; i += 2) {
+			if (isEntry(table[i])) {
+				table[i + 1] = Objects.requireNonNull(function.apply((K) table[i], (V) table[i + 1]));
+			}
+		}
+		checkForComodification(expectedModCount);
 	}
 
 	@Override
 	public void clear() {
+		this.modCount++;
 		this.size = 0;
+		this.tombstones = 0;
+		this.compactionCursor = -1;
 		Arrays.fill(this.table, null);
 	}
 
 	@Override
 	public Set<Map.Entry<K, V>> entrySet() {
-		return new EntrySet();
+		if (this.entrySet == null) {
+			this.entrySet = new EntrySet();
+		}
+		return this.entrySet;
 	}
 
 	public class EntrySet extends AbstractSet<Map.Entry<K, V>> {
@@ -176,6 +504,11 @@ public class PcLinearProbingHashMap<K, V> extends AbstractMap<K, V> {
 			return new EntrySetIterator();
 		}
 
+		@Override
+		public Spliterator<Map.Entry<K, V>> spliterator() {
+			return new EntrySetSpliterator(null, 0, -1, 0, 0);
+		}
+
 		@Override
 		public int size() {
 			return PcLinearProbingHashMap.this.size;
@@ -207,14 +540,17 @@ public class PcLinearProbingHashMap<K, V> extends AbstractMap<K, V> {
 
 		@Override
 		public Map.Entry<K, V> next() {
-			return nextEntry();
+			return new Entry(nextSlot());
 		}
 
 	}
 
 	@Override
 	public Set<K> keySet() {
-		return new KeySet();
+		if (this.keySet == null) {
+			this.keySet = new KeySet();
+		}
+		return this.keySet;
 	}
 
 	public class KeySet extends AbstractSet<K> {
@@ -224,6 +560,11 @@ public class PcLinearProbingHashMap<K, V> extends AbstractMap<K, V> {
 			return new KeysIterator();
 		}
 
+		@Override
+		public Spliterator<K> spliterator() {
+			return new KeysSpliterator(null, 0, -1, 0, 0);
+		}
+
 		@Override
 		public int size() {
 			return size;
@@ -251,14 +592,17 @@ public class PcLinearProbingHashMap<K, V> extends AbstractMap<K, V> {
 
 		@Override
 		public K next() {
-			return nextEntry().getKey();
+			return keyAt(table, nextSlot());
 		}
 
 	}
 
 	@Override
 	public Collection<V> values() {
-		return new Values();
+		if (this.values == null) {
+			this.values = new Values();
+		}
+		return this.values;
 	}
 
 	public class Values extends AbstractCollection<V> {
@@ -268,6 +612,11 @@ public class PcLinearProbingHashMap<K, V> extends AbstractMap<K, V> {
 			return new ValuesIterator();
 		}
 
+		@Override
+		public Spliterator<V> spliterator() {
+			return new ValuesSpliterator(null, 0, -1, 0, 0);
+		}
+
 		@Override
 		public int size() {
 			return PcLinearProbingHashMap.this.size;
@@ -289,70 +638,238 @@ public class PcLinearProbingHashMap<K, V> extends AbstractMap<K, V> {
 
 		@Override
 		public V next() {
-			return nextEntry().getValue();
+			return valueAt(table, nextSlot());
 		}
 
 	}
 
+	/**
+	 * Base iterator, that traverses the table once, starting from an empty slot and wrapping around the end of the table.
+	 * As clusters never span over an empty slot, the entries that are shifted back when an entry is removed
+	 * are always moved to slots that have not been visited yet.
+	 */
 	public abstract class BaseIterator {
 
-		private int indexInTable;
-		private Entry<K, V> nextEntry;
-		private Entry<K, V> currentEntry;
+		private final int startSlot;
+		private int offset;
+		private int nextSlot;
+		private int currentOffset;
+		private int expectedModCount;
 
 		public BaseIterator() {
-			final Entry<K, V>[] table = PcLinearProbingHashMap.this.table;
-			this.indexInTable = 0;
-			this.nextEntry = null;
-			this.currentEntry = null;
+			this.startSlot = findEmptySlot();
+			this.currentOffset = -1;
+			this.expectedModCount = modCount;
 			// initially advance to first entry
-			while (this.nextEntry == null && this.indexInTable < table.length) {
-				this.nextEntry = table[this.indexInTable];
-				if (this.nextEntry == null) {
-					this.indexInTable++;
-				}
-			}
+			advanceFrom(0);
 		}
 
 		public boolean hasNext() {
-			return this.nextEntry != null;
+			return this.nextSlot != -1;
 		}
 
-		protected Entry<K, V> nextEntry() {
-			if (this.nextEntry == null) {
+		/**
+		 * Return the slot of the next entry, and advance to the following entry.
+		 */
+		protected int nextSlot() {
+			checkForComodification(this.expectedModCount);
+			if (this.nextSlot == -1) {
 				throw new NoSuchElementException();
 			}
-			this.currentEntry = this.nextEntry;
-			computeNext();
-			return this.currentEntry;
+			final int slot = this.nextSlot;
+			this.currentOffset = this.offset;
+			advanceFrom(this.offset + 1);
+			return slot;
 		}
 
 		public void remove() {
-			if (this.currentEntry == null) {
+			if (this.currentOffset == -1) {
 				throw new IllegalStateException("next() has not been called yet, cannot use remove()");
 			}
-			PcLinearProbingHashMap.this.remove(this.currentEntry.key);
-			this.currentEntry = null;
+			checkForComodification(this.expectedModCount);
+			removeEntryAt(slotAt(this.currentOffset));
+			// the backward shift may have moved entries that were not visited yet
+			// into the emptied slot, so iteration resumes from that slot
+			advanceFrom(this.currentOffset);
+			this.currentOffset = -1;
+			this.expectedModCount = modCount;
 		}
 
-		private void computeNext() {
-			// advance to the next spot
-			if (this.nextEntry != null) {
-				this.nextEntry = null;
-				this.indexInTable++;
+		/**
+		 * Advance nextSlot to the first entry of the table at or after the given offset from the start slot,
+		 * or to -1 at the end of the iteration.
+		 */
+		private void advanceFrom(int offset) {
+			final Object[] table = PcLinearProbingHashMap.this.table;
+			final int capacity = table.length >> 1;
+			this.offset = offset;
+			this.nextSlot = -1;
+			while (this.offset < capacity) {
+				final int slot = slotAt(this.offset);
+				if (isEntry(table[slot << 1])) {
+					this.nextSlot = slot;
+					return;
+				}
+				this.offset++;
 			}
+		}
 
-			final Entry<K, V>[] table = PcLinearProbingHashMap.this.table;
-			// advance nextEntry to the next entry in the table
-			// or to the beginning of the table
-			while (this.nextEntry == null && this.indexInTable < table.length) {
-				this.nextEntry = table[indexInTable];
-				if (this.nextEntry == null) {
-					this.indexInTable++;
+		private int slotAt(int offset) {
+			return (this.startSlot + offset) & ((table.length >> 1) - 1);
+		}
+
+		private int findEmptySlot() {
+			int i = 0;
+			while (table[i << 1] != null) {
+				i++;
+			}
+			return i;
+		}
+
+	}
+
+	/**
+	 * Base spliterator, that traverses a range of slots of the table.
+	 * Splitting a spliterator splits its range of slots in two halves.
+	 * The top level spliterator is bound to the table on first use, and is the only one to report {@link Spliterator#SIZED},
+	 * as the number of entries in a range of slots is not known.
+	 */
+	public abstract class BaseSpliterator<T> implements Spliterator<T> {
+
+		private Object[] table;
+		private int slot;
+		private int fence;
+		private int estimatedSize;
+		private int expectedModCount;
+
+		protected BaseSpliterator(Object[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			this.table = table;
+			this.slot = origin;
+			this.fence = fence;
+			this.estimatedSize = estimatedSize;
+			this.expectedModCount = expectedModCount;
+		}
+
+		protected abstract T extract(Object[] table, int slot);
+
+		protected abstract BaseSpliterator<T> createSplit(Object[] table, int origin, int fence, int estimatedSize, int expectedModCount);
+
+		private int getFence() {
+			if (this.fence < 0) {
+				this.table = PcLinearProbingHashMap.this.table;
+				this.estimatedSize = size;
+				this.expectedModCount = modCount;
+				this.fence = this.table.length >> 1;
+			}
+			return this.fence;
+		}
+
+		@Override
+		public Spliterator<T> trySplit() {
+			final int high = getFence();
+			final int low = this.slot;
+			final int middle = (low + high) >>> 1;
+			if (low >= middle) {
+				return null;
+			}
+			this.slot = middle;
+			this.estimatedSize >>>= 1;
+			return createSplit(this.table, low, middle, this.estimatedSize, this.expectedModCount);
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super T> action) {
+			Objects.requireNonNull(action);
+
+			final int high = getFence();
+			while (this.slot < high) {
+				final int slot = this.slot++;
+				if (isEntry(this.table[slot << 1])) {
+					action.accept(extract(this.table, slot));
+					checkForComodification(this.expectedModCount);
+					return true;
 				}
 			}
+			return false;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super T> action) {
+			Objects.requireNonNull(action);
+
+			final int high = getFence();
+			while (this.slot < high) {
+				final int slot = this.slot++;
+				if (isEntry(this.table[slot << 1])) {
+					action.accept(extract(this.table, slot));
+				}
+			}
+			checkForComodification(this.expectedModCount);
+		}
+
+		@Override
+		public long estimateSize() {
+			getFence();
+			return this.estimatedSize;
+		}
+
+		@Override
+		public int characteristics() {
+			return (this.fence < 0 || this.estimatedSize == size ? Spliterator.SIZED : 0)
+					| Spliterator.DISTINCT
+					| Spliterator.NONNULL;
+		}
+	}
+
+	public class EntrySetSpliterator extends BaseSpliterator<Map.Entry<K, V>> {
+
+		public EntrySetSpliterator(Object[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			super(table, origin, fence, estimatedSize, expectedModCount);
+		}
+
+		@Override
+		protected Map.Entry<K, V> extract(Object[] table, int slot) {
+			return new Entry(slot);
+		}
+
+		@Override
+		protected EntrySetSpliterator createSplit(Object[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			return new EntrySetSpliterator(table, origin, fence, estimatedSize, expectedModCount);
+		}
+	}
+
+	public class KeysSpliterator extends BaseSpliterator<K> {
+
+		public KeysSpliterator(Object[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			super(table, origin, fence, estimatedSize, expectedModCount);
+		}
+
+		@Override
+		protected K extract(Object[] table, int slot) {
+			return keyAt(table, slot);
+		}
+
+		@Override
+		protected KeysSpliterator createSplit(Object[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			return new KeysSpliterator(table, origin, fence, estimatedSize, expectedModCount);
+		}
+	}
+
+	public class ValuesSpliterator extends BaseSpliterator<V> {
+
+		public ValuesSpliterator(Object[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			super(table, origin, fence, estimatedSize, expectedModCount);
 		}
 
+		@Override
+		protected V extract(Object[] table, int slot) {
+			return valueAt(table, slot);
+		}
+
+		@Override
+		protected ValuesSpliterator createSplit(Object[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			return new ValuesSpliterator(table, origin, fence, estimatedSize, expectedModCount);
+		}
 	}
 
 	/**
@@ -360,27 +877,31 @@ public class PcLinearProbingHashMap<K, V> extends AbstractMap<K, V> {
 	 * Useful for debugging.
 	 */
 	public String getLayout() {
+		final int capacity = this.table.length >> 1;
 		if (size == 0) {
-			return "EMPTY (size=0, capacity=" + this.table.length + ", loadFactor=0)\n";
+			return "EMPTY (size=0, capacity=" + capacity + ", loadFactor=0)\n";
 		}
 		StringBuilder result = new StringBuilder();
 		result.append("NOT EMPTY (size=")
 				.append(size)
 				.append("), capacity=")
-				.append(this.table.length)
+				.append(capacity)
 				.append("), loadFactor=")
-				.append(size / (float) this.table.length)
+				.append(size / (float) capacity)
+				.append(", tombstones=")
+				.append(tombstones)
 				.append("\n");
-		for (int i = 0; i < table.length; ++i) {
-			Entry<K, V> entry = table[i];
-			if (entry == null) {
+		for (int i = 0; i < capacity; ++i) {
+			if (table[i << 1] == null) {
 				result.append("index ").append(i).append(" : NULL").append("\n");
+			} else if (table[i << 1] == TOMBSTONE) {
+				result.append("index ").append(i).append(" : TOMBSTONE").append("\n");
 			} else {
 				result.append("index ").append(i).append(" : ")
 						.append("(key=")
-						.append(entry.key)
+						.append(table[i << 1])
 						.append(",value=")
-						.append(entry.value)
+						.append(table[(i << 1) + 1])
 						.append(")")
 						.append("\n");
 			}
@@ -388,189 +909,322 @@ public class PcLinearProbingHashMap<K, V> extends AbstractMap<K, V> {
 		return result.toString();
 	}
 
+	private void checkForComodification(int expectedModCount) {
+		if (this.modCount != expectedModCount) {
+			throw new ConcurrentModificationException();
+		}
+	}
+
+	/**
+	 * Check if the given key of a slot is the key of an entry, ie: if the slot is neither empty nor a tombstone.
+	 */
+	private static boolean isEntry(Object keyAtSlot) {
+		return keyAtSlot != null && keyAtSlot != TOMBSTONE;
+	}
+
 	private int hash(Object key) {
 		final int hashCode = key.hashCode();
 		return hashCode ^ (hashCode >>> 16);
 	}
 
-	private V putEntryForKey(K key, V value) throws TooManyHashMapResizeException {
-		this.resizeIfNeeded(false);
-
-		for (int i = 0; i < MAX_SUCCESSIVE_RESIZES; i++) {
-			try {
-				final V oldValue = putEntryForKey(this.table, key, value);
-				if (oldValue == null) {
-					// if old value was null, it means we inserted a new element
-					this.size++;
-				}
-				return oldValue;
-			} catch (HashMapNeedResizeException e) {
-				this.resizeIfNeeded(true);
-			}
-		}
-		throw new TooManyHashMapResizeException("Too many successive resizes");
+	@SuppressWarnings("unchecked")
+	private K keyAt(Object[] target, int slot) {
+		return (K) target[slot << 1];
 	}
 
-	private V putEntryForKey(Entry<K, V>[] target, K key, V value) throws HashMapNeedResizeException {
-		// compute hash and index
-		final int hash = hash(key);
-		final int size = target.length;
-		final int index = (size - 1) & hash;
-
-		// get entry at index
-		Entry<K, V> entryAtIndex = null;
-		int i = index;
-		while (i < target.length && target[i] != null) {
-			// if there in an entry at index, traverse adjacent entries
-			// until find an entry with the same key or no entry
-			entryAtIndex = target[i];
-			if (Objects.equals(entryAtIndex.getKey(), key)) {
-				// if entry exists and is the same key, replace it
-				target[i] = new Entry<>(key, value);
-				return entryAtIndex.value;
-			}
-			i++;
-		}
-		if (i < target.length && target[i] == null) {
-			// if no entry at index, use that spot to store new key
-			target[i] = new Entry<>(key, value);
-			return null;
-		} else {
-			throw new HashMapNeedResizeException("Hash Map need resize");
-		}
+	@SuppressWarnings("unchecked")
+	private V valueAt(Object[] target, int slot) {
+		return (V) target[(slot << 1) + 1];
 	}
 
-	private Entry<K, V> getEntryForKey(Object key) {
-		return getEntryForKey(this.table, key);
+	/**
+	 * Set the value of the entry at the given slot, and return its previous value.
+	 */
+	private V setValueAt(int slot, V value) {
+		final V oldValue = valueAt(this.table, slot);
+		this.table[(slot << 1) + 1] = value;
+		return oldValue;
 	}
 
-	private Entry<K, V> getEntryForKey(Entry<K, V>[] target, Object key) {
-		// compute hash and index
+	private V putEntryForKey(K key, V value) {
+		this.resizeIfNeeded();
 		final int hash = hash(key);
-		final int size = target.length;
-		final int index = (size - 1) & hash;
+		final int slot = findSlot(hash, key);
+		if (slot >= 0) {
+			// if the key is present, replace its value
+			return setValueAt(slot, value);
+		}
+		insertEntry(slot, hash, key, value);
+		return null;
+	}
 
-		// get entry at index
-		Entry<K, V> entryAtIndex = null;
-		int i = index;
-		while (i < target.length && target[i] != null) {
+	/**
+	 * Find the slot of the given key.
+	 * The probe sequence starts at the index of the hash, and wraps around the end of the table.
+	 * Keys are only compared when their stored hash is equal to the given hash.
+	 * It always stops, as the table always has at least one empty slot.
+	 *
+	 * @return the index of the slot of the key if the key is present,
+	 * otherwise (-(insertion index) - 1), where the insertion index is the first tombstone or empty slot
+	 * of the probe sequence.
+	 */
+	private int findSlot(int hash, Object key) {
+		final Object[] table = this.table;
+		final int[] hashes = this.hashes;
+		final int mask = hashes.length - 1;
+		int i = hash & mask;
+		int firstTombstone = -1;
+		Object keyAtIndex;
+		while ((keyAtIndex = table[i << 1]) != null) {
 			// if there is an entry at index,
 			// traverse adjacent entries until finding the desired key or no entry
-			entryAtIndex = target[i];
-			if (Objects.equals(key, entryAtIndex.key)) {
-				return entryAtIndex;
+			if (hashes[i] == hash && (keyAtIndex == key || key.equals(keyAtIndex))) {
+				return i;
+			}
+			if (keyAtIndex == TOMBSTONE && firstTombstone < 0) {
+				firstTombstone = i;
 			}
-			i++;
+			i = (i + 1) & mask;
 		}
 		// if no entry was found, the key is not present
-		return null;
+		return -(firstTombstone >= 0 ? firstTombstone : i) - 1;
 	}
 
-	private Entry<K, V> removeEntryForKey(Object key) {
-		final Entry<K, V> removedNode = removeEntryForKey(this.table, key);
-		if (removedNode != null) {
-			// if old value was null, it means we removed an element
-			this.size--;
+	/**
+	 * Insert a new entry for a key that is known to be absent from the table,
+	 * at the insertion index returned by {@link #findSlot(int, Object)}.
+	 */
+	private void insertEntry(int slot, int hash, K key, V value) {
+		final int index = (-slot - 1) << 1;
+		if (this.table[index] == TOMBSTONE) {
+			// reuse the tombstone
+			this.tombstones--;
+		}
+		this.table[index] = key;
+		this.table[index + 1] = value;
+		this.hashes[-slot - 1] = hash;
+		this.size++;
+		this.modCount++;
+		if (this.deletionStrategy == DeletionStrategy.TOMBSTONES) {
+			compactTombstonesIfNeeded();
 		}
-		return removedNode;
 	}
 
-	private Entry<K, V> removeEntryForKey(Entry<K, V>[] target, Object key) {
-		// compute hash and index
-		final int hash = hash(key);
-		final int size = target.length;
-		final int index = (size - 1) & hash;
-
-		// get node at index
-		Entry<K, V> entryAtIndex = null;
-		Entry<K, V> deletedEntry = null;
-		int i = index;
-		while (i < target.length && target[i] != null) {
-			// if there is an entry at index,
-			// traverse adjacent entries until finding the desired key or no entry
-			entryAtIndex = target[i];
-			if (Objects.equals(key, entryAtIndex.key)) {
-				// delete from here
-				deletedEntry = entryAtIndex;
-				target[i] = null;
-				break;
-			}
-			i++;
+	/**
+	 * Set the value of the entry at the given slot, or remove the entry if the new value is null.
+	 */
+	private void updateOrRemoveEntryAt(int slot, V newValue) {
+		if (newValue != null) {
+			setValueAt(slot, newValue);
+		} else {
+			removeEntryAt(slot);
 		}
-		if (deletedEntry == null) {
-			// if no entry was found, the key was not there
-			return null;
+	}
+
+	/**
+	 * Remove the entry at the given slot, according to the deletion strategy.
+	 * With {@link DeletionStrategy#BACKWARD_SHIFT}, the entries of the cluster that follows the slot
+	 * are shifted back to fill the emptied slot, so that they remain reachable from their ideal slot.
+	 * With {@link DeletionStrategy#TOMBSTONES}, the slot is marked as a tombstone, and no entry is moved.
+	 */
+	private void removeEntryAt(int slot) {
+		if (this.deletionStrategy == DeletionStrategy.TOMBSTONES) {
+			putTombstoneAt(slot);
 		} else {
-			int emptiedIndex = i;
-			do {
-				emptiedIndex = fillEntryIfPossible(target, emptiedIndex);
-			} while (emptiedIndex != -1);
-			return deletedEntry;
-		}
-	}
-
-	private int fillEntryIfPossible(Entry<K, V>[] target, int emptyIndex) {
-		int i = emptyIndex + 1;
-		Entry<K, V> entryAtIndex;
-		while (i < target.length && target[i] != null) {
-			entryAtIndex = target[i];
-			final int currentHash = hash(entryAtIndex.key);
-			final int desiredPosition = (target.length - 1) & currentHash;
-			if (desiredPosition <= emptyIndex) {
-				target[emptyIndex] = target[i];
-				target[i] = null;
+			this.table[slot << 1] = null;
+			this.table[(slot << 1) + 1] = null;
+			shiftBackInto(slot);
+		}
+		this.size--;
+		this.modCount++;
+	}
+
+	/**
+	 * Shift back the entries of the cluster that follows the given emptied slot, until the end of the cluster.
+	 */
+	private void shiftBackInto(int emptiedSlot) {
+		int emptiedIndex = emptiedSlot;
+		do {
+			emptiedIndex = fillEntryIfPossible(emptiedIndex);
+		} while (emptiedIndex != -1);
+	}
+
+	/**
+	 * Replace the entry at the given slot with a tombstone.
+	 * If the slot is at the end of its cluster, no probe sequence goes past it, so it is emptied instead,
+	 * as well as the tombstones that precede it.
+	 */
+	private void putTombstoneAt(int slot) {
+		final int mask = this.hashes.length - 1;
+		this.table[(slot << 1) + 1] = null;
+		if (this.table[((slot + 1) & mask) << 1] != null) {
+			this.table[slot << 1] = TOMBSTONE;
+			this.tombstones++;
+			return;
+		}
+		this.table[slot << 1] = null;
+		for (int i = (slot - 1) & mask; this.table[i << 1] == TOMBSTONE; i = (i - 1) & mask) {
+			this.table[i << 1] = null;
+			this.tombstones--;
+		}
+	}
+
+	/**
+	 * Compact some tombstones, if a compaction is in progress or if there are enough tombstones to start one.
+	 * Each call sweeps the next {@link #COMPACTED_SLOTS_PER_INSERTION} slots of the table, and removes their tombstones
+	 * by shifting back the entries that follow them, as if the tombstones were removed entries.
+	 * The compaction stops once the whole table has been swept.
+	 */
+	private void compactTombstonesIfNeeded() {
+		final int capacity = this.hashes.length;
+		if (this.compactionCursor < 0) {
+			if (this.tombstones < capacity * TOMBSTONE_COMPACTION_THRESHOLD) {
+				return;
+			}
+			this.compactionCursor = 0;
+		}
+		final int end = Math.min(this.compactionCursor + COMPACTED_SLOTS_PER_INSERTION, capacity);
+		for (int i = this.compactionCursor; i < end; i++) {
+			if (this.table[i << 1] == TOMBSTONE) {
+				this.table[i << 1] = null;
+				this.tombstones--;
+				shiftBackInto(i);
+			}
+		}
+		this.compactionCursor = end < capacity ? end : -1;
+	}
+
+	/**
+	 * Move into the given empty slot the first following entry of its cluster that can be moved there,
+	 * ie: the first entry whose ideal slot is not between the empty slot (excluded) and its current slot (included),
+	 * taking into account that the cluster can wrap around the end of the table.
+	 * The ideal slots are computed from the stored hashes. Tombstones are part of the cluster, but are not moved.
+	 *
+	 * @return the index of the slot that was emptied by the move, or -1 if no entry could be moved
+	 */
+	private int fillEntryIfPossible(int emptyIndex) {
+		final Object[] target = this.table;
+		final int[] hashes = this.hashes;
+		final int mask = hashes.length - 1;
+		int i = (emptyIndex + 1) & mask;
+		Object keyAtIndex;
+		while ((keyAtIndex = target[i << 1]) != null) {
+			final int desiredPosition = hashes[i] & mask;
+			if (keyAtIndex != TOMBSTONE && !isCyclicallyBetween(desiredPosition, emptyIndex, i)) {
+				target[emptyIndex << 1] = target[i << 1];
+				target[(emptyIndex << 1) + 1] = target[(i << 1) + 1];
+				hashes[emptyIndex] = hashes[i];
+				target[i << 1] = null;
+				target[(i << 1) + 1] = null;
 				return i;
 			}
-			i++;
+			i = (i + 1) & mask;
 		}
 		return -1;
 	}
 
+	/**
+	 * Check if the given index is between the lower bound (excluded) and the upper bound (included),
+	 * when going forward from the lower bound and wrapping around the end of the table.
+	 */
+	private static boolean isCyclicallyBetween(int index, int lowerBound, int upperBound) {
+		if (lowerBound <= upperBound) {
+			return lowerBound < index && index <= upperBound;
+		}
+		return lowerBound < index || index <= upperBound;
+	}
+
 	/**
 	 * Check if the threshold has been met to trigger a resize, and perform the resize if it was met.
-	 * The threshold is when the current load factor is more than the configured maximum load factor.
-	 * A new table will be created, with a size equal to the next power of two, and all the elements
-	 * of the current table will be copied to the new table.
-	 *
-	 * @param force if true, force resize even if the threshold is not reached
+	 * The threshold is when the current load factor is more than the configured maximum load factor,
+	 * or when the next insertion would fill the last empty slot of the table:
+	 * probe sequences rely on empty slots to stop. Tombstones count as used slots, as they do not stop probe sequences.
+	 * A new table will be created, with twice the capacity, and all the elements
+	 * of the current table will be moved to the new table.
+	 * If the table is mostly filled with tombstones, the new table has the same capacity instead,
+	 * so that a map whose entries are continuously removed and inserted does not keep on growing.
 	 */
-	@SuppressWarnings("unchecked")
-	private void resizeIfNeeded(boolean force) {
-		final float currentLoadFactor = this.size / (float)this.table.length;
-		if (currentLoadFactor < this.loadFactor && !force) {
+	private void resizeIfNeeded() {
+		final int capacity = this.table.length >> 1;
+		final int usedSlots = this.size + this.tombstones;
+		final float currentLoadFactor = usedSlots / (float) capacity;
+		if (currentLoadFactor < this.loadFactor && usedSlots + 1 < capacity) {
 			return;
 		}
-		final int nextPowerOfTwo = (32 - Integer.numberOfLeadingZeros(this.table.length - 1));
-		final int newCapacity = 1 << (nextPowerOfTwo + 1);
-		final Entry<K, V>[] newTable = (Entry<K, V>[]) new Entry[newCapacity];
-		for (Entry<K, V> entry : this.table) {
-			Entry<K, V> current = entry;
-			if (entry != null) {
-				putEntryForKey(newTable, current.key, current.value);
-			}
+		final int allowedSize = (int) Math.min(capacity * this.loadFactor, capacity - 1);
+		resize(this.tombstones > 0 && this.size < allowedSize / 2 ? capacity : capacity << 1);
+	}
+
+	/**
+	 * Put all the mappings of the given map, after growing the table once for all of them.
+	 */
+	private void putMapEntries(Map<? extends K, ? extends V> map) {
+		if (map.isEmpty()) {
+			return;
+		}
+		ensureCapacity(this.size + map.size());
+		for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+			put(entry.getKey(), entry.getValue());
 		}
-		this.table = newTable;
 	}
 
 	/**
-	 * Exception that will be thrown when a Hash Map is resized more than
-	 * a pre-defined count during an insertion.
-	 * This is needed in order to prevent the operation to cause a stack overflow
-	 * or out of memory error.
-	 * This should not happen in theory, as one resize is enough to handle most cases.
+	 * Return the capacity of a table that can hold the given number of entries without being resized.
+	 * The capacity is always greater than the number of entries, even when the load factor is greater than 1.
 	 */
-	public static class TooManyHashMapResizeException extends RuntimeException {
-		public TooManyHashMapResizeException(String message) {
-			super(message);
+	private int capacityFor(int expectedSize) {
+		return tableSizeFor((int) Math.min(Integer.MAX_VALUE, Math.max((long) (expectedSize / this.loadFactor), expectedSize + 1L) + 1));
+	}
+
+	/**
+	 * Grow the table so that it can hold the given number of entries without being resized.
+	 */
+	private void ensureCapacity(int expectedSize) {
+		final int capacity = capacityFor(expectedSize);
+		if (capacity > this.table.length >> 1) {
+			resize(capacity);
 		}
 	}
 
 	/**
-	 * Exception that is thrown when a resize is needed.
+	 * Move all the entries of the table to a new table with the given capacity.
+	 * As keys are distinct, each entry is put in the first empty slot of its probe sequence without comparing keys,
+	 * and the stored hashes are reused instead of hashing the keys again.
+	 * Tombstones are dropped.
+	 */
+	private void resize(int newCapacity) {
+		final Object[] newTable = new Object[newCapacity << 1];
+		final int[] newHashes = new int[newCapacity];
+		final int mask = newCapacity - 1;
+		final Object[] table = this.table;
+		final int[] hashes = this.hashes;
+		for (int j = 0; j < table.length; j += 2) {
+			if (isEntry(table[j])) {
+				final int hash = hashes[j >> 1];
+				int i = hash & mask;
+				while (newTable[i << 1] != null) {
+					i = (i + 1) & mask;
+				}
+				newTable[i << 1] = table[j];
+				newTable[(i << 1) + 1] = table[j + 1];
+				newHashes[i] = hash;
+			}
+		}
+		this.table = newTable;
+		this.hashes = newHashes;
+		this.tombstones = 0;
+		this.compactionCursor = -1;
+		this.modCount++;
+	}
+
+	/**
+	 * Return the smallest power of two that is greater or equal to the given capacity.
+	 * The capacity of the table must be a power of two, so that indexes can be computed with a mask.
 	 */
-	private static class HashMapNeedResizeException extends RuntimeException {
-		public HashMapNeedResizeException(String message) {
-			super(message);
+	private static int tableSizeFor(int capacity) {
+		if (capacity <= 1) {
+			return 1;
 		}
+		return 1 << (32 - Integer.numberOfLeadingZeros(capacity - 1));
 	}
 }
@@ -0,0 +1,356 @@
+package com.petitcl.collections;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Objects;
+import java.util.function.LongConsumer;
+
+/**
+ * Hash set of primitive longs,
+ * that uses the same algorithm as {@link PcLinearProbingHashMap}: linear probing that wraps around the end of the table,
+ * and removals that shift elements back instead of leaving tombstones.
+ * Elements are stored in a long array, so that nothing is boxed.
+ * A slot is empty when it holds 0. The element 0 itself is not stored in the table,
+ * but in a dedicated flag, so that all the long values can be elements.
+ * This class does not implement {@link java.util.Set}, as that would box the elements.
+ */
+public class PcLongHashSet {
+
+	public static final int DEFAULT_INITIAL_CAPACITY = 16;
+	public static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+	private long[] table;
+
+	/**
+	 * Number of elements of the set, including the element 0.
+	 */
+	private int size;
+	private boolean hasZero;
+	private final float loadFactor;
+
+	/**
+	 * Number of structural modifications of this set (insertions, removals and resizes),
+	 * used by {@link #forEach(LongConsumer)} to detect concurrent modifications.
+	 */
+	private int modCount;
+
+	public PcLongHashSet() {
+		this(DEFAULT_INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR);
+	}
+
+	public PcLongHashSet(int initialCapacity) {
+		this(initialCapacity, DEFAULT_LOAD_FACTOR);
+	}
+
+	public PcLongHashSet(int initialCapacity, float loadFactor) {
+		this.table = new long[tableSizeFor(Math.max(initialCapacity, 2))];
+		this.loadFactor = loadFactor;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public boolean contains(long element) {
+		if (element == 0) {
+			return this.hasZero;
+		}
+		return findSlot(this.table, element) >= 0;
+	}
+
+	/**
+	 * Add the given element to the set.
+	 *
+	 * @return true if the element was not already in the set
+	 */
+	public boolean add(long element) {
+		if (element == 0) {
+			if (this.hasZero) {
+				return false;
+			}
+			this.hasZero = true;
+			this.size++;
+			this.modCount++;
+			return true;
+		}
+		this.resizeIfNeeded();
+		final int slot = findSlot(this.table, element);
+		if (slot >= 0) {
+			return false;
+		}
+		this.table[-slot - 1] = element;
+		this.size++;
+		this.modCount++;
+		return true;
+	}
+
+	/**
+	 * Remove the given element from the set.
+	 *
+	 * @return true if the element was in the set
+	 */
+	public boolean remove(long element) {
+		if (element == 0) {
+			if (!this.hasZero) {
+				return false;
+			}
+			this.hasZero = false;
+			this.size--;
+			this.modCount++;
+			return true;
+		}
+		final int slot = findSlot(this.table, element);
+		if (slot < 0) {
+			return false;
+		}
+		removeElementAt(slot);
+		return true;
+	}
+
+	public void clear() {
+		this.modCount++;
+		this.size = 0;
+		this.hasZero = false;
+		Arrays.fill(this.table, 0);
+	}
+
+	/**
+	 * Perform the given action for each element of the set.
+	 * The action must not modify this set, otherwise a ConcurrentModificationException is thrown.
+	 */
+	public void forEach(LongConsumer action) {
+		Objects.requireNonNull(action);
+
+		final int expectedModCount = this.modCount;
+		if (this.hasZero) {
+			action.accept(0);
+		}
+		final long[] table = this.table;
+		for (int i = 0; i < table.length && this.modCount == expectedModCount; i++) {
+			if (table[i] != 0) {
+				action.accept(table[i]);
+			}
+		}
+		if (this.modCount != expectedModCount) {
+			throw new ConcurrentModificationException();
+		}
+	}
+
+	/**
+	 * Return the elements of the set, in no particular order.
+	 */
+	public long[] toArray() {
+		final long[] result = new long[this.size];
+		int index = 0;
+		if (this.hasZero) {
+			result[index++] = 0;
+		}
+		for (long element : this.table) {
+			if (element != 0) {
+				result[index++] = element;
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (other == this) {
+			return true;
+		}
+		if (!(other instanceof PcLongHashSet)) {
+			return false;
+		}
+		final PcLongHashSet that = (PcLongHashSet) other;
+		if (that.size() != size() || that.hasZero != this.hasZero) {
+			return false;
+		}
+		for (long element : this.table) {
+			if (element != 0 && findSlot(that.table, element) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Return the hash code of the set, computed as {@link java.util.Set#hashCode()} would for the boxed elements.
+	 */
+	@Override
+	public int hashCode() {
+		int hashCode = 0;
+		for (long element : this.table) {
+			hashCode += Long.hashCode(element);
+		}
+		return hashCode;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder result = new StringBuilder("[");
+		forEach(element -> {
+			if (result.length() > 1) {
+				result.append(", ");
+			}
+			result.append(element);
+		});
+		return result.append(']').toString();
+	}
+
+	/**
+	 * Return a string representing the layout of the underlying table.
+	 * Useful for debugging.
+	 */
+	public String getLayout() {
+		final int capacity = this.table.length;
+		if (size == 0) {
+			return "EMPTY (size=0, capacity=" + capacity + ", loadFactor=0)\n";
+		}
+		StringBuilder result = new StringBuilder();
+		result.append("NOT EMPTY (size=")
+				.append(size)
+				.append("), capacity=")
+				.append(capacity)
+				.append("), loadFactor=")
+				.append(size / (float) capacity)
+				.append(", zero=")
+				.append(this.hasZero)
+				.append("\n");
+		for (int i = 0; i < capacity; ++i) {
+			if (this.table[i] == 0) {
+				result.append("index ").append(i).append(" : NULL").append("\n");
+			} else {
+				result.append("index ").append(i).append(" : ").append(this.table[i]).append("\n");
+			}
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Compute the hash of the given element, by multiplying it by the golden ratio and folding its high bits,
+	 * so that consecutive elements are spread over the table.
+	 */
+	private static int hash(long element) {
+		final long hash = element * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	/**
+	 * Find the slot of the given non zero element in the given table.
+	 * The probe sequence starts at the index of the hash, and wraps around the end of the table.
+	 * It always stops, as the table always has at least one empty slot.
+	 *
+	 * @return the index of the slot of the element if the element is present,
+	 * otherwise (-(insertion index) - 1), where the insertion index is the first empty slot of the probe sequence.
+	 */
+	private static int findSlot(long[] target, long element) {
+		final int mask = target.length - 1;
+		int i = hash(element) & mask;
+		long elementAtIndex;
+		while ((elementAtIndex = target[i]) != 0) {
+			if (elementAtIndex == element) {
+				return i;
+			}
+			i = (i + 1) & mask;
+		}
+		return -i - 1;
+	}
+
+	/**
+	 * Remove the element at the given slot.
+	 * The elements of the cluster that follows the slot are shifted back to fill the emptied slot,
+	 * so that they remain reachable from their ideal slot without using tombstones.
+	 */
+	private void removeElementAt(int slot) {
+		this.table[slot] = 0;
+		int emptiedIndex = slot;
+		do {
+			emptiedIndex = fillElementIfPossible(this.table, emptiedIndex);
+		} while (emptiedIndex != -1);
+		this.size--;
+		this.modCount++;
+	}
+
+	/**
+	 * Move into the given empty slot the first following element of its cluster that can be moved there,
+	 * ie: the first element whose ideal slot is not between the empty slot (excluded) and its current slot (included),
+	 * taking into account that the cluster can wrap around the end of the table.
+	 *
+	 * @return the index of the slot that was emptied by the move, or -1 if no element could be moved
+	 */
+	private static int fillElementIfPossible(long[] target, int emptyIndex) {
+		final int mask = target.length - 1;
+		int i = (emptyIndex + 1) & mask;
+		while (target[i] != 0) {
+			final int desiredPosition = hash(target[i]) & mask;
+			if (!isCyclicallyBetween(desiredPosition, emptyIndex, i)) {
+				target[emptyIndex] = target[i];
+				target[i] = 0;
+				return i;
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Check if the given index is between the lower bound (excluded) and the upper bound (included),
+	 * when going forward from the lower bound and wrapping around the end of the table.
+	 */
+	private static boolean isCyclicallyBetween(int index, int lowerBound, int upperBound) {
+		if (lowerBound <= upperBound) {
+			return lowerBound < index && index <= upperBound;
+		}
+		return lowerBound < index || index <= upperBound;
+	}
+
+	/**
+	 * Check if the threshold has been met to trigger a resize, and perform the resize if it was met.
+	 * The threshold is when the current load factor is more than the configured maximum load factor,
+	 * or when the next insertion would fill the last empty slot of the table:
+	 * probe sequences rely on empty slots to stop.
+	 */
+	private void resizeIfNeeded() {
+		final int capacity = this.table.length;
+		final float currentLoadFactor = this.size / (float) capacity;
+		if (currentLoadFactor < this.loadFactor && this.size + 1 < capacity) {
+			return;
+		}
+		resize(capacity << 1);
+	}
+
+	/**
+	 * Move all the elements of the table to a new table with the given capacity.
+	 * As elements are distinct, each one is put in the first empty slot of its probe sequence without comparing them.
+	 */
+	private void resize(int newCapacity) {
+		final long[] newTable = new long[newCapacity];
+		final int mask = newCapacity - 1;
+		for (long element : this.table) {
+			if (element != 0) {
+				int i = hash(element) & mask;
+				while (newTable[i] != 0) {
+					i = (i + 1) & mask;
+				}
+				newTable[i] = element;
+			}
+		}
+		this.table = newTable;
+		this.modCount++;
+	}
+
+	/**
+	 * Return the smallest power of two that is greater or equal to the given capacity.
+	 * The capacity of the table must be a power of two, so that indexes can be computed with a mask.
+	 */
+	private static int tableSizeFor(int capacity) {
+		if (capacity <= 1) {
+			return 1;
+		}
+		return 1 << (32 - Integer.numberOfLeadingZeros(capacity - 1));
+	}
+}
@@ -0,0 +1,447 @@
+package com.petitcl.collections;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Objects;
+
+/**
+ * Hash map from primitive long keys to primitive long values,
+ * that uses the same algorithm as {@link PcLinearProbingHashMap}: linear probing that wraps around the end of the table,
+ * and removals that shift entries back instead of leaving tombstones.
+ * Keys and values are stored next to each other in a single long array (the key of a slot at index 2 * slot,
+ * and its value at index 2 * slot + 1), so that nothing is boxed, and probing reads contiguous memory.
+ * A slot is empty when its key is 0. The key 0 itself is not stored in the table,
+ * but in a dedicated field, so that all the long values can be used as keys.
+ * As values are primitives, methods return 0 for absent keys: use {@link #containsKey(long)} to tell them apart.
+ * This class does not implement {@link java.util.Map}, as that would box the keys and values.
+ */
+public class PcLongLongHashMap {
+
+	public static final int DEFAULT_INITIAL_CAPACITY = 16;
+	public static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+	/**
+	 * Operation that accepts a key and a value of the map.
+	 */
+	@FunctionalInterface
+	public interface LongLongConsumer {
+		void accept(long key, long value);
+	}
+
+	private long[] table;
+
+	/**
+	 * Number of entries of the map, including the entry of the key 0.
+	 */
+	private int size;
+	private boolean hasZeroKey;
+	private long zeroKeyValue;
+	private final float loadFactor;
+
+	/**
+	 * Number of structural modifications of this map (insertions, removals and resizes),
+	 * used by {@link #forEach(LongLongConsumer)} to detect concurrent modifications.
+	 */
+	private int modCount;
+
+	public PcLongLongHashMap() {
+		this(DEFAULT_INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR);
+	}
+
+	public PcLongLongHashMap(int initialCapacity) {
+		this(initialCapacity, DEFAULT_LOAD_FACTOR);
+	}
+
+	public PcLongLongHashMap(int initialCapacity, float loadFactor) {
+		this.table = new long[tableSizeFor(Math.max(initialCapacity, 2)) << 1];
+		this.loadFactor = loadFactor;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public boolean containsKey(long key) {
+		if (key == 0) {
+			return this.hasZeroKey;
+		}
+		return findSlot(this.table, key) >= 0;
+	}
+
+	/**
+	 * Return the value of the given key, or 0 if the key is absent.
+	 */
+	public long get(long key) {
+		return getOrDefault(key, 0);
+	}
+
+	public long getOrDefault(long key, long defaultValue) {
+		if (key == 0) {
+			return this.hasZeroKey ? this.zeroKeyValue : defaultValue;
+		}
+		final int slot = findSlot(this.table, key);
+		return slot >= 0 ? this.table[(slot << 1) + 1] : defaultValue;
+	}
+
+	/**
+	 * Associate the given value to the given key.
+	 *
+	 * @return the previous value of the key, or 0 if the key was absent
+	 */
+	public long put(long key, long value) {
+		if (key == 0) {
+			return putZeroKey(value, false);
+		}
+		this.resizeIfNeeded();
+		final int slot = findSlot(this.table, key);
+		if (slot >= 0) {
+			// if the key is present, replace its value
+			final long oldValue = this.table[(slot << 1) + 1];
+			this.table[(slot << 1) + 1] = value;
+			return oldValue;
+		}
+		insertEntry(slot, key, value);
+		return 0;
+	}
+
+	/**
+	 * Add the given increment to the value of the given key, an absent key being considered as having the value 0.
+	 * This is the equivalent of {@code merge(key, increment, Long::sum)}, without boxing.
+	 *
+	 * @return the previous value of the key, or 0 if the key was absent
+	 */
+	public long addTo(long key, long increment) {
+		if (key == 0) {
+			return putZeroKey(increment, true);
+		}
+		this.resizeIfNeeded();
+		final int slot = findSlot(this.table, key);
+		if (slot >= 0) {
+			final long oldValue = this.table[(slot << 1) + 1];
+			this.table[(slot << 1) + 1] = oldValue + increment;
+			return oldValue;
+		}
+		insertEntry(slot, key, increment);
+		return 0;
+	}
+
+	/**
+	 * Remove the given key.
+	 *
+	 * @return the value of the key, or 0 if the key was absent
+	 */
+	public long remove(long key) {
+		if (key == 0) {
+			if (!this.hasZeroKey) {
+				return 0;
+			}
+			final long oldValue = this.zeroKeyValue;
+			this.hasZeroKey = false;
+			this.zeroKeyValue = 0;
+			this.size--;
+			this.modCount++;
+			return oldValue;
+		}
+		final int slot = findSlot(this.table, key);
+		if (slot < 0) {
+			// if no entry was found, the key was not there
+			return 0;
+		}
+		final long oldValue = this.table[(slot << 1) + 1];
+		removeEntryAt(slot);
+		return oldValue;
+	}
+
+	public void clear() {
+		this.modCount++;
+		this.size = 0;
+		this.hasZeroKey = false;
+		this.zeroKeyValue = 0;
+		Arrays.fill(this.table, 0);
+	}
+
+	/**
+	 * Perform the given action for each entry of the map.
+	 * The action must not modify this map, otherwise a ConcurrentModificationException is thrown.
+	 */
+	public void forEach(LongLongConsumer action) {
+		Objects.requireNonNull(action);
+
+		final int expectedModCount = this.modCount;
+		if (this.hasZeroKey) {
+			action.accept(0, this.zeroKeyValue);
+		}
+		final long[] table = this.table;
+		for (int i = 0; i < table.length && this.modCount == expectedModCount; i += 2) {
+			if (table[i] != 0) {
+				action.accept(table[i], table[i + 1]);
+			}
+		}
+		if (this.modCount != expectedModCount) {
+			throw new ConcurrentModificationException();
+		}
+	}
+
+	/**
+	 * Return the keys of the map, in no particular order.
+	 */
+	public long[] keys() {
+		final long[] keys = new long[this.size];
+		int index = 0;
+		if (this.hasZeroKey) {
+			keys[index++] = 0;
+		}
+		for (int i = 0; i < this.table.length; i += 2) {
+			if (this.table[i] != 0) {
+				keys[index++] = this.table[i];
+			}
+		}
+		return keys;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (other == this) {
+			return true;
+		}
+		if (!(other instanceof PcLongLongHashMap)) {
+			return false;
+		}
+		final PcLongLongHashMap that = (PcLongLongHashMap) other;
+		if (that.size() != size()) {
+			return false;
+		}
+		if (this.hasZeroKey && (!that.hasZeroKey || that.zeroKeyValue != this.zeroKeyValue)) {
+			return false;
+		}
+		for (int i = 0; i < this.table.length; i += 2) {
+			if (this.table[i] != 0) {
+				final int slot = findSlot(that.table, this.table[i]);
+				if (slot < 0 || that.table[(slot << 1) + 1] != this.table[i + 1]) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Return the hash code of the map, computed as {@link java.util.Map#hashCode()} would for the boxed entries.
+	 */
+	@Override
+	public int hashCode() {
+		int hashCode = this.hasZeroKey ? Long.hashCode(this.zeroKeyValue) : 0;
+		for (int i = 0; i < this.table.length; i += 2) {
+			if (this.table[i] != 0) {
+				hashCode += Long.hashCode(this.table[i]) ^ Long.hashCode(this.table[i + 1]);
+			}
+		}
+		return hashCode;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder result = new StringBuilder("{");
+		forEach((key, value) -> {
+			if (result.length() > 1) {
+				result.append(", ");
+			}
+			result.append(key).append('=').append(value);
+		});
+		return result.append('}').toString();
+	}
+
+	/**
+	 * Return a string representing the layout of the underlying table.
+	 * Useful for debugging.
+	 */
+	public String getLayout() {
+		final int capacity = this.table.length >> 1;
+		if (size == 0) {
+			return "EMPTY (size=0, capacity=" + capacity + ", loadFactor=0)\n";
+		}
+		StringBuilder result = new StringBuilder();
+		result.append("NOT EMPTY (size=")
+				.append(size)
+				.append("), capacity=")
+				.append(capacity)
+				.append("), loadFactor=")
+				.append(size / (float) capacity)
+				.append(", zeroKey=")
+				.append(this.hasZeroKey ? String.valueOf(this.zeroKeyValue) : "NULL")
+				.append("\n");
+		for (int i = 0; i < capacity; ++i) {
+			if (this.table[i << 1] == 0) {
+				result.append("index ").append(i).append(" : NULL").append("\n");
+			} else {
+				result.append("index ").append(i).append(" : ")
+						.append("(key=")
+						.append(this.table[i << 1])
+						.append(",value=")
+						.append(this.table[(i << 1) + 1])
+						.append(")")
+						.append("\n");
+			}
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Put or add the value of the key 0, which is stored out of the table.
+	 */
+	private long putZeroKey(long value, boolean add) {
+		final long oldValue = this.zeroKeyValue;
+		if (!this.hasZeroKey) {
+			this.hasZeroKey = true;
+			this.size++;
+			this.modCount++;
+		}
+		this.zeroKeyValue = add ? oldValue + value : value;
+		return oldValue;
+	}
+
+	/**
+	 * Compute the hash of the given key, by multiplying it by the golden ratio and folding its high bits,
+	 * so that consecutive keys are spread over the table.
+	 */
+	private static int hash(long key) {
+		final long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	/**
+	 * Find the slot of the given non zero key in the given table.
+	 * The probe sequence starts at the index of the hash, and wraps around the end of the table.
+	 * It always stops, as the table always has at least one empty slot.
+	 *
+	 * @return the index of the slot of the key if the key is present,
+	 * otherwise (-(insertion index) - 1), where the insertion index is the first empty slot of the probe sequence.
+	 */
+	private static int findSlot(long[] target, long key) {
+		final int mask = (target.length >> 1) - 1;
+		int i = hash(key) & mask;
+		long keyAtIndex;
+		while ((keyAtIndex = target[i << 1]) != 0) {
+			if (keyAtIndex == key) {
+				return i;
+			}
+			i = (i + 1) & mask;
+		}
+		return -i - 1;
+	}
+
+	/**
+	 * Insert a new entry for a key that is known to be absent from the table,
+	 * at the insertion index returned by {@link #findSlot(long[], long)}.
+	 */
+	private void insertEntry(int slot, long key, long value) {
+		final int index = (-slot - 1) << 1;
+		this.table[index] = key;
+		this.table[index + 1] = value;
+		this.size++;
+		this.modCount++;
+	}
+
+	/**
+	 * Remove the entry at the given slot.
+	 * The entries of the cluster that follows the slot are shifted back to fill the emptied slot,
+	 * so that they remain reachable from their ideal slot without using tombstones.
+	 */
+	private void removeEntryAt(int slot) {
+		this.table[slot << 1] = 0;
+		this.table[(slot << 1) + 1] = 0;
+		int emptiedIndex = slot;
+		do {
+			emptiedIndex = fillEntryIfPossible(this.table, emptiedIndex);
+		} while (emptiedIndex != -1);
+		this.size--;
+		this.modCount++;
+	}
+
+	/**
+	 * Move into the given empty slot the first following entry of its cluster that can be moved there,
+	 * ie: the first entry whose ideal slot is not between the empty slot (excluded) and its current slot (included),
+	 * taking into account that the cluster can wrap around the end of the table.
+	 *
+	 * @return the index of the slot that was emptied by the move, or -1 if no entry could be moved
+	 */
+	private static int fillEntryIfPossible(long[] target, int emptyIndex) {
+		final int mask = (target.length >> 1) - 1;
+		int i = (emptyIndex + 1) & mask;
+		while (target[i << 1] != 0) {
+			final int desiredPosition = hash(target[i << 1]) & mask;
+			if (!isCyclicallyBetween(desiredPosition, emptyIndex, i)) {
+				target[emptyIndex << 1] = target[i << 1];
+				target[(emptyIndex << 1) + 1] = target[(i << 1) + 1];
+				target[i << 1] = 0;
+				target[(i << 1) + 1] = 0;
+				return i;
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Check if the given index is between the lower bound (excluded) and the upper bound (included),
+	 * when going forward from the lower bound and wrapping around the end of the table.
+	 */
+	private static boolean isCyclicallyBetween(int index, int lowerBound, int upperBound) {
+		if (lowerBound <= upperBound) {
+			return lowerBound < index && index <= upperBound;
+		}
+		return lowerBound < index || index <= upperBound;
+	}
+
+	/**
+	 * Check if the threshold has been met to trigger a resize, and perform the resize if it was met.
+	 * The threshold is when the current load factor is more than the configured maximum load factor,
+	 * or when the next insertion would fill the last empty slot of the table:
+	 * probe sequences rely on empty slots to stop.
+	 */
+	private void resizeIfNeeded() {
+		final int capacity = this.table.length >> 1;
+		final float currentLoadFactor = this.size / (float) capacity;
+		if (currentLoadFactor < this.loadFactor && this.size + 1 < capacity) {
+			return;
+		}
+		resize(capacity << 1);
+	}
+
+	/**
+	 * Move all the entries of the table to a new table with the given capacity.
+	 * As keys are distinct, each entry is put in the first empty slot of its probe sequence without comparing keys.
+	 */
+	private void resize(int newCapacity) {
+		final long[] newTable = new long[newCapacity << 1];
+		final int mask = newCapacity - 1;
+		final long[] table = this.table;
+		for (int j = 0; j < table.length; j += 2) {
+			if (table[j] != 0) {
+				int i = hash(table[j]) & mask;
+				while (newTable[i << 1] != 0) {
+					i = (i + 1) & mask;
+				}
+				newTable[i << 1] = table[j];
+				newTable[(i << 1) + 1] = table[j + 1];
+			}
+		}
+		this.table = newTable;
+		this.modCount++;
+	}
+
+	/**
+	 * Return the smallest power of two that is greater or equal to the given capacity.
+	 * The capacity of the table must be a power of two, so that indexes can be computed with a mask.
+	 */
+	private static int tableSizeFor(int capacity) {
+		if (capacity <= 1) {
+			return 1;
+		}
+		return 1 << (32 - Integer.numberOfLeadingZeros(capacity - 1));
+	}
+}
@@ -0,0 +1,38 @@
+package com.petitcl.collections;
+
+import java.util.Map;
+
+/**
+ * Bounded cache that evicts the least recently used entry when it is full,
+ * built on a {@link PcDeterministicHashMap} ordered by access.
+ * A hit replaces the entry with a tombstone and appends it to the end of the data table,
+ * so the least recently used entry is always the first entry of the data table, and it is evicted in O(1) amortized:
+ * tombstones are dropped in place when the data table is full, instead of maintaining a linked list of entries
+ * as {@link java.util.LinkedHashMap} does.
+ * Like any access ordered map, getting a value is a structural modification:
+ * it must not happen while iterating on the cache.
+ */
+public class PcLruCache<K, V> extends PcDeterministicHashMap<K, V> {
+
+	private final int maximumSize;
+
+	public PcLruCache(int maximumSize) {
+		super(DEFAULT_INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR, true);
+		if (maximumSize <= 0) {
+			throw new IllegalArgumentException("Maximum size must be positive: " + maximumSize);
+		}
+		this.maximumSize = maximumSize;
+	}
+
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
+	/**
+	 * Evict the least recently used entry once the cache holds more entries than its maximum size.
+	 */
+	@Override
+	protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+		return size() > this.maximumSize;
+	}
+}
@@ -0,0 +1,1003 @@
+package com.petitcl.collections;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Implementation of {@link Map} that is backed by a hash table
+ * and that uses quadratic probing to handle collisions.
+ * The probe sequence visits the slots at triangular offsets from the ideal slot (1, 3, 6, 10...),
+ * which visits every slot of a table whose capacity is a power of two.
+ * Keys with close hashes, such as consecutive ids, do not form the long primary clusters of linear probing.
+ * As entries cannot be shifted back on deletion, a deleted entry is replaced by a tombstone,
+ * which lookups skip and insertions reuse.
+ * Tombstones are cleaned up when the table is rebuilt: when the used slots (entries and tombstones) reach the load factor,
+ * the table is rebuilt with the same capacity if tombstones take most of the slots, or with twice the capacity otherwise.
+ *
+ * @param <K> type of the key
+ * @param <V> type of the value
+ */
+public class PcQuadraticProbingHashMap<K, V> extends AbstractMap<K, V> {
+
+	public static final int DEFAULT_INITIAL_CAPACITY = 16;
+	public static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+	/**
+	 * Entry left in the slot of a deleted entry, so that the probe sequences that went through the slot are not broken.
+	 */
+	private static final Entry<?, ?> TOMBSTONE = new Entry<>(null, null);
+
+	public static class Entry<K, V> implements Map.Entry<K, V> {
+		private final K key;
+		private V value;
+
+		public Entry(K key, V value) {
+			this.key = key;
+			this.value = value;
+		}
+
+		@Override
+		public K getKey() {
+			return key;
+		}
+
+		@Override
+		public V getValue() {
+			return value;
+		}
+
+		@Override
+		public V setValue(V value) {
+			Objects.requireNonNull(value);
+
+			final V oldValue = this.value;
+			this.value = value;
+			return oldValue;
+		}
+
+		@Override
+		public final int hashCode() {
+			return Objects.hashCode(key) ^ Objects.hashCode(value);
+		}
+
+		@Override
+		public final boolean equals(Object other) {
+			if (other == this) {
+				return true;
+			}
+			if (other == null) {
+				return false;
+			}
+			if ((other instanceof Map.Entry)) {
+				final Map.Entry that = (Map.Entry) other;
+				return Objects.equals(key, that.getKey()) &&
+						Objects.equals(value, that.getValue());
+			}
+			return false;
+		}
+
+		public final String toString() {
+			return key + "=" + value;
+		}
+
+		/**
+		 * Return true if this entry is a tombstone.
+		 * Tombstones never match any key, as keys cannot be null.
+		 */
+		public boolean isTombstone() {
+			return this.key == null;
+		}
+	}
+
+	private Entry<K, V>[] table;
+	private int size;
+	private int tombstones;
+	private final float loadFactor;
+
+	/**
+	 * Number of structural modifications of this map (insertions, removals and resizes),
+	 * used by iterators and spliterators to detect concurrent modifications.
+	 */
+	private int modCount;
+
+	private EntrySet entrySet;
+	private KeySet keySet;
+	private Values values;
+
+	@SuppressWarnings("unchecked")
+	public PcQuadraticProbingHashMap() {
+		this.table = (Entry<K, V>[]) new Entry[DEFAULT_INITIAL_CAPACITY];
+		this.loadFactor = DEFAULT_LOAD_FACTOR;
+		this.size = 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	public PcQuadraticProbingHashMap(int initialCapacity, float loadFactor) {
+		this.table = (Entry<K, V>[]) new Entry[tableSizeFor(Math.max(initialCapacity, 2))];
+		this.loadFactor = loadFactor;
+		this.size = 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	public PcQuadraticProbingHashMap(int initialCapacity) {
+		this.table = (Entry<K, V>[]) new Entry[tableSizeFor(Math.max(initialCapacity, 2))];
+		this.loadFactor = DEFAULT_LOAD_FACTOR;
+		this.size = 0;
+	}
+
+	/**
+	 * Create a map with the same mappings as the given map.
+	 * If the given map is also a {@link PcQuadraticProbingHashMap}, its load factor is kept,
+	 * and its table is copied slot by slot, tombstones included, without hashing or comparing keys again.
+	 */
+	@SuppressWarnings("unchecked")
+	public PcQuadraticProbingHashMap(Map<? extends K, ? extends V> map) {
+		Objects.requireNonNull(map);
+
+		if (map instanceof PcQuadraticProbingHashMap) {
+			final PcQuadraticProbingHashMap<? extends K, ? extends V> other = (PcQuadraticProbingHashMap<? extends K, ? extends V>) map;
+			this.loadFactor = other.loadFactor;
+			this.table = (Entry<K, V>[]) new Entry[other.table.length];
+			for (int i = 0; i < other.table.length; i++) {
+				final Entry<? extends K, ? extends V> entry = other.table[i];
+				if (entry != null) {
+					this.table[i] = entry.isTombstone() ? tombstone() : new Entry<>(entry.key, entry.value);
+				}
+			}
+			this.size = other.size;
+			this.tombstones = other.tombstones;
+		} else {
+			this.loadFactor = DEFAULT_LOAD_FACTOR;
+			this.table = (Entry<K, V>[]) new Entry[Math.max(DEFAULT_INITIAL_CAPACITY, capacityFor(map.size()))];
+			this.size = 0;
+			putMapEntries(map);
+		}
+	}
+
+	/**
+	 * Create a map from the given entries.
+	 * The table is sized upfront for the number of entries, so that it is not resized while the entries are added.
+	 * If several entries have the same key, the last one wins.
+	 */
+	public static <K, V> PcQuadraticProbingHashMap<K, V> fromEntries(Collection<? extends Map.Entry<? extends K, ? extends V>> entries) {
+		Objects.requireNonNull(entries);
+
+		final PcQuadraticProbingHashMap<K, V> map = new PcQuadraticProbingHashMap<>();
+		map.ensureCapacity(entries.size());
+		for (Map.Entry<? extends K, ? extends V> entry : entries) {
+			map.put(entry.getKey(), entry.getValue());
+		}
+		return map;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		Objects.requireNonNull(key);
+
+		final Entry<K, V> foundEntry = getEntryForKey(key);
+		return foundEntry != null;
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		Objects.requireNonNull(value);
+
+		final ValuesIterator iterator = new ValuesIterator();
+		while (iterator.hasNext()) {
+			final V nextValue = iterator.next();
+			if (nextValue.equals(value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public V get(Object key) {
+		Objects.requireNonNull(key);
+
+		final Entry<K, V> foundEntry = getEntryForKey(key);
+		return foundEntry != null ? foundEntry.value : null;
+	}
+
+	@Override
+	public V put(K key, V value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		return putEntryForKey(key, value);
+	}
+
+	@Override
+	public void putAll(Map<? extends K, ? extends V> map) {
+		Objects.requireNonNull(map);
+
+		putMapEntries(map);
+	}
+
+	@Override
+	public V remove(Object key) {
+		Objects.requireNonNull(key);
+
+		final Entry<K, V> removedEntry = removeEntryForKey(key);
+		return removedEntry != null ? removedEntry.value : null;
+	}
+
+	/*
+	 * The following methods look up the key only once: its slot is found by probing the table,
+	 * then the entry is updated in place, removed, or inserted in the first free slot of the probe sequence.
+	 * The functions given to these methods must not modify this map,
+	 * otherwise a ConcurrentModificationException is thrown.
+	 */
+
+	@Override
+	public V getOrDefault(Object key, V defaultValue) {
+		Objects.requireNonNull(key);
+
+		final Entry<K, V> foundEntry = getEntryForKey(key);
+		return foundEntry != null ? foundEntry.value : defaultValue;
+	}
+
+	@Override
+	public V putIfAbsent(K key, V value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		this.resizeIfNeeded();
+		final int slot = findSlot(this.table, hash(key), key);
+		if (slot >= 0) {
+			return this.table[slot].value;
+		}
+		insertEntry(slot, key, value);
+		return null;
+	}
+
+	@Override
+	public boolean remove(Object key, Object value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		final int slot = findSlot(this.table, hash(key), key);
+		if (slot < 0 || !this.table[slot].value.equals(value)) {
+			return false;
+		}
+		removeEntryAt(slot);
+		return true;
+	}
+
+	@Override
+	public boolean replace(K key, V oldValue, V newValue) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(oldValue);
+		Objects.requireNonNull(newValue);
+
+		final int slot = findSlot(this.table, hash(key), key);
+		if (slot < 0 || !this.table[slot].value.equals(oldValue)) {
+			return false;
+		}
+		this.table[slot].value = newValue;
+		return true;
+	}
+
+	@Override
+	public V replace(K key, V value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		final int slot = findSlot(this.table, hash(key), key);
+		return slot >= 0 ? this.table[slot].setValue(value) : null;
+	}
+
+	@Override
+	public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(mappingFunction);
+
+		this.resizeIfNeeded();
+		final int slot = findSlot(this.table, hash(key), key);
+		if (slot >= 0) {
+			return this.table[slot].value;
+		}
+		final int expectedModCount = this.modCount;
+		final V newValue = mappingFunction.apply(key);
+		checkForComodification(expectedModCount);
+		if (newValue != null) {
+			insertEntry(slot, key, newValue);
+		}
+		return newValue;
+	}
+
+	@Override
+	public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(remappingFunction);
+
+		final int slot = findSlot(this.table, hash(key), key);
+		if (slot < 0) {
+			return null;
+		}
+		final int expectedModCount = this.modCount;
+		final V newValue = remappingFunction.apply(key, this.table[slot].value);
+		checkForComodification(expectedModCount);
+		updateOrRemoveEntryAt(slot, newValue);
+		return newValue;
+	}
+
+	@Override
+	public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(remappingFunction);
+
+		this.resizeIfNeeded();
+		final int slot = findSlot(this.table, hash(key), key);
+		final int expectedModCount = this.modCount;
+		final V newValue = remappingFunction.apply(key, slot >= 0 ? this.table[slot].value : null);
+		checkForComodification(expectedModCount);
+		if (slot >= 0) {
+			updateOrRemoveEntryAt(slot, newValue);
+		} else if (newValue != null) {
+			insertEntry(slot, key, newValue);
+		}
+		return newValue;
+	}
+
+	@Override
+	public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+		Objects.requireNonNull(remappingFunction);
+
+		this.resizeIfNeeded();
+		final int slot = findSlot(this.table, hash(key), key);
+		if (slot < 0) {
+			insertEntry(slot, key, value);
+			return value;
+		}
+		final int expectedModCount = this.modCount;
+		final V newValue = remappingFunction.apply(this.table[slot].value, value);
+		checkForComodification(expectedModCount);
+		updateOrRemoveEntryAt(slot, newValue);
+		return newValue;
+	}
+
+	@Override
+	public void forEach(BiConsumer<? super K, ? super V> action) {
+		Objects.requireNonNull(action);
+
+		final Entry<K, V>[] table = this.table;
+		final int expectedModCount = this.modCount;
+		for (int i = 0; i < table.length && this.modCount == expectedModCount; i++) {
+			final Entry<K, V> entry = table[i];
+			if (entry != null && !entry.isTombstone()) {
+				action.accept(entry.key, entry.value);
+			}
+		}
+		checkForComodification(expectedModCount);
+	}
+
+	@Override
+	public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+		Objects.requireNonNull(function);
+
+		final Entry<K, V>[] table = this.table;
+		final int expectedModCount = this.modCount;
+		for (int i = 0; i < table.length && this.modCount == expectedModCount; i++) {
+			final Entry<K, V> entry = table[i];
+			if (entry != null && !entry.isTombstone()) {
+				entry.value = Objects.requireNonNull(function.apply(entry.key, entry.value));
+			}
+		}
+		checkForComodification(expectedModCount);
+	}
+
+	@Override
+	public void clear() {
+		this.modCount++;
+		this.size = 0;
+		this.tombstones = 0;
+		Arrays.fill(this.table, null);
+	}
+
+	@Override
+	public Set<Map.Entry<K, V>> entrySet() {
+		if (this.entrySet == null) {
+			this.entrySet = new EntrySet();
+		}
+		return this.entrySet;
+	}
+
+	public class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+
+		@Override
+		public Iterator<Map.Entry<K, V>> iterator() {
+			return new EntrySetIterator();
+		}
+
+		@Override
+		public Spliterator<Map.Entry<K, V>> spliterator() {
+			return new EntrySetSpliterator(null, 0, -1, 0, 0);
+		}
+
+		@Override
+		public int size() {
+			return PcQuadraticProbingHashMap.this.size;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return size() == 0;
+		}
+
+		@Override
+		public void clear() {
+			PcQuadraticProbingHashMap.this.clear();
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			if (o instanceof Map.Entry) {
+				final Map.Entry entry = (Map.Entry)o;
+				final V removed = PcQuadraticProbingHashMap.this.remove(entry.getKey());
+				return removed != null;
+			}
+			return false;
+		}
+
+	}
+
+	public class EntrySetIterator extends BaseIterator implements Iterator<Map.Entry<K, V>> {
+
+		@Override
+		public Map.Entry<K, V> next() {
+			return nextEntry();
+		}
+
+	}
+
+	@Override
+	public Set<K> keySet() {
+		if (this.keySet == null) {
+			this.keySet = new KeySet();
+		}
+		return this.keySet;
+	}
+
+	public class KeySet extends AbstractSet<K> {
+
+		@Override
+		public Iterator<K> iterator() {
+			return new KeysIterator();
+		}
+
+		@Override
+		public Spliterator<K> spliterator() {
+			return new KeysSpliterator(null, 0, -1, 0, 0);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return size() == 0;
+		}
+
+		@Override
+		public void clear() {
+			PcQuadraticProbingHashMap.this.clear();
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			final V removed = PcQuadraticProbingHashMap.this.remove(o);
+			return removed != null;
+		}
+
+	}
+
+	public class KeysIterator extends BaseIterator implements Iterator<K> {
+
+		@Override
+		public K next() {
+			return nextEntry().getKey();
+		}
+
+	}
+
+	@Override
+	public Collection<V> values() {
+		if (this.values == null) {
+			this.values = new Values();
+		}
+		return this.values;
+	}
+
+	public class Values extends AbstractCollection<V> {
+
+		@Override
+		public Iterator<V> iterator() {
+			return new ValuesIterator();
+		}
+
+		@Override
+		public Spliterator<V> spliterator() {
+			return new ValuesSpliterator(null, 0, -1, 0, 0);
+		}
+
+		@Override
+		public int size() {
+			return PcQuadraticProbingHashMap.this.size;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return size() == 0;
+		}
+
+		@Override
+		public void clear() {
+			PcQuadraticProbingHashMap.this.clear();
+		}
+
+	}
+
+	public class ValuesIterator extends BaseIterator implements Iterator<V> {
+
+		@Override
+		public V next() {
+			return nextEntry().getValue();
+		}
+
+	}
+
+	public abstract class BaseIterator {
+
+		private int indexInTable;
+		private Entry<K, V> nextEntry;
+		private int currentIndex;
+		private int expectedModCount;
+
+		public BaseIterator() {
+			this.currentIndex = -1;
+			this.expectedModCount = modCount;
+			// initially advance to first entry
+			advanceFrom(0);
+		}
+
+		public boolean hasNext() {
+			return this.nextEntry != null;
+		}
+
+		protected Entry<K, V> nextEntry() {
+			checkForComodification(this.expectedModCount);
+			if (this.nextEntry == null) {
+				throw new NoSuchElementException();
+			}
+			final Entry<K, V> entry = this.nextEntry;
+			this.currentIndex = this.indexInTable;
+			advanceFrom(this.indexInTable + 1);
+			return entry;
+		}
+
+		public void remove() {
+			if (this.currentIndex == -1) {
+				throw new IllegalStateException("next() has not been called yet, cannot use remove()");
+			}
+			checkForComodification(this.expectedModCount);
+			// the removed entry is replaced by a tombstone, so no other entry is moved
+			removeEntryAt(this.currentIndex);
+			this.currentIndex = -1;
+			this.expectedModCount = modCount;
+		}
+
+		/**
+		 * Advance nextEntry to the first entry of the table at or after the given index,
+		 * or to the end of the table.
+		 */
+		private void advanceFrom(int index) {
+			final Entry<K, V>[] table = PcQuadraticProbingHashMap.this.table;
+			this.indexInTable = index;
+			this.nextEntry = null;
+			while (this.nextEntry == null && this.indexInTable < table.length) {
+				final Entry<K, V> entry = table[this.indexInTable];
+				if (entry != null && !entry.isTombstone()) {
+					this.nextEntry = entry;
+				} else {
+					this.indexInTable++;
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * Base spliterator, that traverses a range of slots of the table.
+	 * Splitting a spliterator splits its range of slots in two halves.
+	 * The top level spliterator is bound to the table on first use, and is the only one to report {@link Spliterator#SIZED},
+	 * as the number of entries in a range of slots is not known.
+	 */
+	public abstract class BaseSpliterator<T> implements Spliterator<T> {
+
+		private Entry<K, V>[] table;
+		private int indexInTable;
+		private int fence;
+		private int estimatedSize;
+		private int expectedModCount;
+
+		protected BaseSpliterator(Entry<K, V>[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			this.table = table;
+			this.indexInTable = origin;
+			this.fence = fence;
+			this.estimatedSize = estimatedSize;
+			this.expectedModCount = expectedModCount;
+		}
+
+		protected abstract T extract(Entry<K, V> entry);
+
+		protected abstract BaseSpliterator<T> createSplit(Entry<K, V>[] table, int origin, int fence, int estimatedSize, int expectedModCount);
+
+		private int getFence() {
+			if (this.fence < 0) {
+				this.table = PcQuadraticProbingHashMap.this.table;
+				this.estimatedSize = size;
+				this.expectedModCount = modCount;
+				this.fence = this.table.length;
+			}
+			return this.fence;
+		}
+
+		@Override
+		public Spliterator<T> trySplit() {
+			final int high = getFence();
+			final int low = this.indexInTable;
+			final int middle = (low + high) >>> 1;
+			if (low >= middle) {
+				return null;
+			}
+			this.indexInTable = middle;
+			this.estimatedSize >>>= 1;
+			return createSplit(this.table, low, middle, this.estimatedSize, this.expectedModCount);
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super T> action) {
+			Objects.requireNonNull(action);
+
+			final int high = getFence();
+			while (this.indexInTable < high) {
+				final Entry<K, V> entry = this.table[this.indexInTable++];
+				if (entry != null && !entry.isTombstone()) {
+					action.accept(extract(entry));
+					checkForComodification(this.expectedModCount);
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super T> action) {
+			Objects.requireNonNull(action);
+
+			final int high = getFence();
+			while (this.indexInTable < high) {
+				final Entry<K, V> entry = this.table[this.indexInTable++];
+				if (entry != null && !entry.isTombstone()) {
+					action.accept(extract(entry));
+				}
+			}
+			checkForComodification(this.expectedModCount);
+		}
+
+		@Override
+		public long estimateSize() {
+			getFence();
+			return this.estimatedSize;
+		}
+
+		@Override
+		public int characteristics() {
+			return (this.fence < 0 || this.estimatedSize == size ? Spliterator.SIZED : 0)
+					| Spliterator.DISTINCT
+					| Spliterator.NONNULL;
+		}
+	}
+
+	public class EntrySetSpliterator extends BaseSpliterator<Map.Entry<K, V>> {
+
+		public EntrySetSpliterator(Entry<K, V>[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			super(table, origin, fence, estimatedSize, expectedModCount);
+		}
+
+		@Override
+		protected Map.Entry<K, V> extract(Entry<K, V> entry) {
+			return entry;
+		}
+
+		@Override
+		protected EntrySetSpliterator createSplit(Entry<K, V>[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			return new EntrySetSpliterator(table, origin, fence, estimatedSize, expectedModCount);
+		}
+	}
+
+	public class KeysSpliterator extends BaseSpliterator<K> {
+
+		public KeysSpliterator(Entry<K, V>[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			super(table, origin, fence, estimatedSize, expectedModCount);
+		}
+
+		@Override
+		protected K extract(Entry<K, V> entry) {
+			return entry.getKey();
+		}
+
+		@Override
+		protected KeysSpliterator createSplit(Entry<K, V>[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			return new KeysSpliterator(table, origin, fence, estimatedSize, expectedModCount);
+		}
+	}
+
+	public class ValuesSpliterator extends BaseSpliterator<V> {
+
+		public ValuesSpliterator(Entry<K, V>[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			super(table, origin, fence, estimatedSize, expectedModCount);
+		}
+
+		@Override
+		protected V extract(Entry<K, V> entry) {
+			return entry.getValue();
+		}
+
+		@Override
+		protected ValuesSpliterator createSplit(Entry<K, V>[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			return new ValuesSpliterator(table, origin, fence, estimatedSize, expectedModCount);
+		}
+	}
+
+	/**
+	 * Return a string representing the layout of the underlying table.
+	 * Useful for debugging.
+	 */
+	public String getLayout() {
+		if (size == 0 && tombstones == 0) {
+			return "EMPTY (size=0, capacity=" + this.table.length + ", loadFactor=0)\n";
+		}
+		StringBuilder result = new StringBuilder();
+		result.append("NOT EMPTY (size=")
+				.append(size)
+				.append("), capacity=")
+				.append(this.table.length)
+				.append("), loadFactor=")
+				.append(size / (float) this.table.length)
+				.append(", tombstones=")
+				.append(tombstones)
+				.append("\n");
+		for (int i = 0; i < table.length; ++i) {
+			Entry<K, V> entry = table[i];
+			if (entry == null) {
+				result.append("index ").append(i).append(" : NULL").append("\n");
+			} else if (entry.isTombstone()) {
+				result.append("index ").append(i).append(" : TOMBSTONE").append("\n");
+			} else {
+				result.append("index ").append(i).append(" : ")
+						.append("(key=")
+						.append(entry.key)
+						.append(",value=")
+						.append(entry.value)
+						.append(")")
+						.append("\n");
+			}
+		}
+		return result.toString();
+	}
+
+	private void checkForComodification(int expectedModCount) {
+		if (this.modCount != expectedModCount) {
+			throw new ConcurrentModificationException();
+		}
+	}
+
+	private int hash(Object key) {
+		final int hashCode = key.hashCode();
+		return hashCode ^ (hashCode >>> 16);
+	}
+
+	private V putEntryForKey(K key, V value) {
+		this.resizeIfNeeded();
+		final int slot = findSlot(this.table, hash(key), key);
+		if (slot >= 0) {
+			// if the key is present, replace its value
+			return this.table[slot].setValue(value);
+		}
+		insertEntry(slot, key, value);
+		return null;
+	}
+
+	private Entry<K, V> getEntryForKey(Object key) {
+		final int slot = findSlot(this.table, hash(key), key);
+		return slot >= 0 ? this.table[slot] : null;
+	}
+
+	/**
+	 * Find the slot of the given key in the given table.
+	 * The probe sequence starts at the index of the hash, and moves by 1, 2, 3... slots at each step.
+	 * It always stops, as it visits every slot and the table always has at least one empty slot.
+	 * Tombstones do not stop the probe sequence, but the first one can be reused to insert the key.
+	 *
+	 * @return the index of the slot of the key if the key is present,
+	 * otherwise (-(insertion index) - 1), where the insertion index is the first tombstone or empty slot of the probe sequence.
+	 */
+	private int findSlot(Entry<K, V>[] target, int hash, Object key) {
+		final int mask = target.length - 1;
+		int i = hash & mask;
+		int firstTombstone = -1;
+		for (int step = 1; target[i] != null; step++) {
+			final Entry<K, V> entry = target[i];
+			if (entry.isTombstone()) {
+				if (firstTombstone == -1) {
+					firstTombstone = i;
+				}
+			} else if (Objects.equals(key, entry.key)) {
+				return i;
+			}
+			i = (i + step) & mask;
+		}
+		// if no entry was found, the key is not present
+		return -(firstTombstone != -1 ? firstTombstone : i) - 1;
+	}
+
+	/**
+	 * Insert a new entry for a key that is known to be absent from the table,
+	 * at the insertion index returned by {@link #findSlot(Entry[], int, Object)}.
+	 */
+	private void insertEntry(int slot, K key, V value) {
+		final int index = -slot - 1;
+		if (this.table[index] != null) {
+			// reuse the tombstone
+			this.tombstones--;
+		}
+		this.table[index] = new Entry<>(key, value);
+		this.size++;
+		this.modCount++;
+	}
+
+	/**
+	 * Set the value of the entry at the given slot, or remove the entry if the new value is null.
+	 */
+	private void updateOrRemoveEntryAt(int slot, V newValue) {
+		if (newValue != null) {
+			this.table[slot].value = newValue;
+		} else {
+			removeEntryAt(slot);
+		}
+	}
+
+	private Entry<K, V> removeEntryForKey(Object key) {
+		final int slot = findSlot(this.table, hash(key), key);
+		if (slot < 0) {
+			// if no entry was found, the key was not there
+			return null;
+		}
+		final Entry<K, V> removedEntry = this.table[slot];
+		removeEntryAt(slot);
+		return removedEntry;
+	}
+
+	/**
+	 * Remove the entry at the given slot, by replacing it with a tombstone.
+	 */
+	private void removeEntryAt(int slot) {
+		this.table[slot] = tombstone();
+		this.tombstones++;
+		this.size--;
+		this.modCount++;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <K, V> Entry<K, V> tombstone() {
+		return (Entry<K, V>) TOMBSTONE;
+	}
+
+	/**
+	 * Check if the threshold has been met to trigger a rebuild of the table, and perform the rebuild if it was met.
+	 * The threshold is when the used slots (entries and tombstones) reach the configured maximum load factor,
+	 * or when the next insertion would fill the last empty slot of the table:
+	 * probe sequences rely on empty slots to stop.
+	 * If the entries alone take less than half of the allowed slots, the table is rebuilt with the same capacity,
+	 * which only drops the tombstones. Otherwise, the capacity is doubled.
+	 * Either way, half of the allowed slots are free after the rebuild, so rebuilds are amortized over the next operations.
+	 */
+	private void resizeIfNeeded() {
+		final int usedSlots = this.size + this.tombstones;
+		final float currentLoadFactor = usedSlots / (float)this.table.length;
+		if (currentLoadFactor < this.loadFactor && usedSlots + 1 < this.table.length) {
+			return;
+		}
+		final float allowedSlots = Math.min(this.table.length * this.loadFactor, this.table.length - 1);
+		if (this.size < allowedSlots / 2) {
+			resize(this.table.length);
+		} else {
+			resize(this.table.length << 1);
+		}
+	}
+
+	/**
+	 * Put all the mappings of the given map, after growing the table once for all of them.
+	 */
+	private void putMapEntries(Map<? extends K, ? extends V> map) {
+		if (map.isEmpty()) {
+			return;
+		}
+		ensureCapacity(this.size + map.size());
+		for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+			put(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Return the capacity of a table that can hold the given number of entries without being resized.
+	 * The capacity is always greater than the number of entries, even when the load factor is greater than 1.
+	 */
+	private int capacityFor(int expectedSize) {
+		return tableSizeFor((int) Math.min(Integer.MAX_VALUE, Math.max((long) (expectedSize / this.loadFactor), expectedSize + 1L) + 1));
+	}
+
+	/**
+	 * Grow the table so that it can hold the given number of entries without being resized.
+	 */
+	private void ensureCapacity(int expectedSize) {
+		final int capacity = capacityFor(expectedSize + this.tombstones);
+		if (capacity > this.table.length) {
+			resize(capacity);
+		}
+	}
+
+	/**
+	 * Move all the entries of the table to a new table with the given capacity, dropping the tombstones.
+	 * As keys are distinct, each entry is put in the first empty slot of its probe sequence without comparing keys.
+	 */
+	@SuppressWarnings("unchecked")
+	private void resize(int newCapacity) {
+		final Entry<K, V>[] newTable = (Entry<K, V>[]) new Entry[newCapacity];
+		final int mask = newCapacity - 1;
+		for (Entry<K, V> entry : this.table) {
+			if (entry != null && !entry.isTombstone()) {
+				int i = hash(entry.key) & mask;
+				for (int step = 1; newTable[i] != null; step++) {
+					i = (i + step) & mask;
+				}
+				newTable[i] = entry;
+			}
+		}
+		this.table = newTable;
+		this.tombstones = 0;
+		this.modCount++;
+	}
+
+	/**
+	 * Return the smallest power of two that is greater or equal to the given capacity.
+	 * The capacity of the table must be a power of two, so that indexes can be computed with a mask,
+	 * and so that the triangular probe sequence visits every slot.
+	 */
+	private static int tableSizeFor(int capacity) {
+		if (capacity <= 1) {
+			return 1;
+		}
+		return 1 << (32 - Integer.numberOfLeadingZeros(capacity - 1));
+	}
+}
@@ -0,0 +1,1056 @@
+package com.petitcl.collections;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Implementation of {@link Map} that is backed by a hash table
+ * and that uses Robin Hood hashing to handle collisions.
+ * Like linear probing, an entry is stored in the first available slot after its ideal slot,
+ * but an insertion takes the slot of any entry that is closer to its own ideal slot ("takes from the rich"),
+ * and moves that entry further.
+ * This keeps the probe distances of all the entries close to each other, so the variance of the probe length is low,
+ * and lookups can stop as soon as they meet an entry closer to its ideal slot than the searched key would be.
+ * This makes misses cheap even at high load factors.
+ * Each entry caches its hash, from which its probe distance is computed.
+ * Probe sequences wrap around the end of the table, and the table always keeps at least one empty slot.
+ * This implementation does not use any tombstones: if an element is deleted,
+ * the following entries of its cluster are shifted back by one slot.
+ *
+ * @param <K> type of the key
+ * @param <V> type of the value
+ */
+public class PcRobinHoodHashMap<K, V> extends AbstractMap<K, V> {
+
+	public static final int DEFAULT_INITIAL_CAPACITY = 16;
+	/**
+	 * Default load factor, higher than the one of linear probing,
+	 * as Robin Hood hashing keeps probe sequences short on nearly full tables.
+	 */
+	public static final float DEFAULT_LOAD_FACTOR = 0.9f;
+
+	public static class Entry<K, V> implements Map.Entry<K, V> {
+		private final int hash;
+		private final K key;
+		private V value;
+
+		public Entry(int hash, K key, V value) {
+			this.hash = hash;
+			this.key = key;
+			this.value = value;
+		}
+
+		@Override
+		public K getKey() {
+			return key;
+		}
+
+		@Override
+		public V getValue() {
+			return value;
+		}
+
+		@Override
+		public V setValue(V value) {
+			Objects.requireNonNull(value);
+
+			final V oldValue = this.value;
+			this.value = value;
+			return oldValue;
+		}
+
+		@Override
+		public final int hashCode() {
+			return Objects.hashCode(key) ^ Objects.hashCode(value);
+		}
+
+		@Override
+		public final boolean equals(Object other) {
+			if (other == this) {
+				return true;
+			}
+			if (other == null) {
+				return false;
+			}
+			if ((other instanceof Map.Entry)) {
+				final Map.Entry that = (Map.Entry) other;
+				return Objects.equals(key, that.getKey()) &&
+						Objects.equals(value, that.getValue());
+			}
+			return false;
+		}
+
+		public final String toString() {
+			return key + "=" + value;
+		}
+	}
+
+	private Entry<K, V>[] table;
+	private int size;
+	private final float loadFactor;
+
+	/**
+	 * Number of structural modifications of this map (insertions, removals and resizes),
+	 * used by iterators and spliterators to detect concurrent modifications.
+	 */
+	private int modCount;
+
+	private EntrySet entrySet;
+	private KeySet keySet;
+	private Values values;
+
+	@SuppressWarnings("unchecked")
+	public PcRobinHoodHashMap() {
+		this.table = (Entry<K, V>[]) new Entry[DEFAULT_INITIAL_CAPACITY];
+		this.loadFactor = DEFAULT_LOAD_FACTOR;
+		this.size = 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	public PcRobinHoodHashMap(int initialCapacity, float loadFactor) {
+		this.table = (Entry<K, V>[]) new Entry[tableSizeFor(Math.max(initialCapacity, 2))];
+		this.loadFactor = loadFactor;
+		this.size = 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	public PcRobinHoodHashMap(int initialCapacity) {
+		this.table = (Entry<K, V>[]) new Entry[tableSizeFor(Math.max(initialCapacity, 2))];
+		this.loadFactor = DEFAULT_LOAD_FACTOR;
+		this.size = 0;
+	}
+
+	/**
+	 * Create a map with the same mappings as the given map.
+	 * If the given map is also a {@link PcRobinHoodHashMap}, its load factor is kept,
+	 * and its table is copied slot by slot, without hashing or comparing keys again.
+	 */
+	@SuppressWarnings("unchecked")
+	public PcRobinHoodHashMap(Map<? extends K, ? extends V> map) {
+		Objects.requireNonNull(map);
+
+		if (map instanceof PcRobinHoodHashMap) {
+			final PcRobinHoodHashMap<? extends K, ? extends V> other = (PcRobinHoodHashMap<? extends K, ? extends V>) map;
+			this.loadFactor = other.loadFactor;
+			this.table = (Entry<K, V>[]) new Entry[other.table.length];
+			for (int i = 0; i < other.table.length; i++) {
+				final Entry<? extends K, ? extends V> entry = other.table[i];
+				if (entry != null) {
+					this.table[i] = new Entry<>(entry.hash, entry.key, entry.value);
+				}
+			}
+			this.size = other.size;
+		} else {
+			this.loadFactor = DEFAULT_LOAD_FACTOR;
+			this.table = (Entry<K, V>[]) new Entry[Math.max(DEFAULT_INITIAL_CAPACITY, capacityFor(map.size()))];
+			this.size = 0;
+			putMapEntries(map);
+		}
+	}
+
+	/**
+	 * Create a map from the given entries.
+	 * The table is sized upfront for the number of entries, so that it is not resized while the entries are added.
+	 * If several entries have the same key, the last one wins.
+	 */
+	public static <K, V> PcRobinHoodHashMap<K, V> fromEntries(Collection<? extends Map.Entry<? extends K, ? extends V>> entries) {
+		Objects.requireNonNull(entries);
+
+		final PcRobinHoodHashMap<K, V> map = new PcRobinHoodHashMap<>();
+		map.ensureCapacity(entries.size());
+		for (Map.Entry<? extends K, ? extends V> entry : entries) {
+			map.put(entry.getKey(), entry.getValue());
+		}
+		return map;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		Objects.requireNonNull(key);
+
+		final Entry<K, V> foundEntry = getEntryForKey(key);
+		return foundEntry != null;
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		Objects.requireNonNull(value);
+
+		final ValuesIterator iterator = new ValuesIterator();
+		while (iterator.hasNext()) {
+			final V nextValue = iterator.next();
+			if (nextValue.equals(value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public V get(Object key) {
+		Objects.requireNonNull(key);
+
+		final Entry<K, V> foundEntry = getEntryForKey(key);
+		return foundEntry != null ? foundEntry.value : null;
+	}
+
+	@Override
+	public V put(K key, V value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		return putEntryForKey(key, value);
+	}
+
+	@Override
+	public void putAll(Map<? extends K, ? extends V> map) {
+		Objects.requireNonNull(map);
+
+		putMapEntries(map);
+	}
+
+	@Override
+	public V remove(Object key) {
+		Objects.requireNonNull(key);
+
+		final Entry<K, V> removedEntry = removeEntryForKey(key);
+		return removedEntry != null ? removedEntry.value : null;
+	}
+
+	/*
+	 * The following methods look up the key only once: its slot is found by probing the table,
+	 * then the entry is updated in place, removed, or inserted at the point where the probe sequence stopped.
+	 * The functions given to these methods must not modify this map,
+	 * otherwise a ConcurrentModificationException is thrown.
+	 */
+
+	@Override
+	public V getOrDefault(Object key, V defaultValue) {
+		Objects.requireNonNull(key);
+
+		final Entry<K, V> foundEntry = getEntryForKey(key);
+		return foundEntry != null ? foundEntry.value : defaultValue;
+	}
+
+	@Override
+	public V putIfAbsent(K key, V value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		this.resizeIfNeeded();
+		final int hash = hash(key);
+		final int slot = findSlot(this.table, hash, key);
+		if (slot >= 0) {
+			return this.table[slot].value;
+		}
+		insertEntry(slot, hash, key, value);
+		return null;
+	}
+
+	@Override
+	public boolean remove(Object key, Object value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		final int slot = findSlot(this.table, hash(key), key);
+		if (slot < 0 || !this.table[slot].value.equals(value)) {
+			return false;
+		}
+		removeEntryAt(slot);
+		return true;
+	}
+
+	@Override
+	public boolean replace(K key, V oldValue, V newValue) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(oldValue);
+		Objects.requireNonNull(newValue);
+
+		final int slot = findSlot(this.table, hash(key), key);
+		if (slot < 0 || !this.table[slot].value.equals(oldValue)) {
+			return false;
+		}
+		this.table[slot].value = newValue;
+		return true;
+	}
+
+	@Override
+	public V replace(K key, V value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		final int slot = findSlot(this.table, hash(key), key);
+		return slot >= 0 ? this.table[slot].setValue(value) : null;
+	}
+
+	@Override
+	public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(mappingFunction);
+
+		this.resizeIfNeeded();
+		final int hash = hash(key);
+		final int slot = findSlot(this.table, hash, key);
+		if (slot >= 0) {
+			return this.table[slot].value;
+		}
+		final int expectedModCount = this.modCount;
+		final V newValue = mappingFunction.apply(key);
+		checkForComodification(expectedModCount);
+		if (newValue != null) {
+			insertEntry(slot, hash, key, newValue);
+		}
+		return newValue;
+	}
+
+	@Override
+	public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(remappingFunction);
+
+		final int slot = findSlot(this.table, hash(key), key);
+		if (slot < 0) {
+			return null;
+		}
+		final int expectedModCount = this.modCount;
+		final V newValue = remappingFunction.apply(key, this.table[slot].value);
+		checkForComodification(expectedModCount);
+		updateOrRemoveEntryAt(slot, newValue);
+		return newValue;
+	}
+
+	@Override
+	public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(remappingFunction);
+
+		this.resizeIfNeeded();
+		final int hash = hash(key);
+		final int slot = findSlot(this.table, hash, key);
+		final int expectedModCount = this.modCount;
+		final V newValue = remappingFunction.apply(key, slot >= 0 ? this.table[slot].value : null);
+		checkForComodification(expectedModCount);
+		if (slot >= 0) {
+			updateOrRemoveEntryAt(slot, newValue);
+		} else if (newValue != null) {
+			insertEntry(slot, hash, key, newValue);
+		}
+		return newValue;
+	}
+
+	@Override
+	public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+		Objects.requireNonNull(remappingFunction);
+
+		this.resizeIfNeeded();
+		final int hash = hash(key);
+		final int slot = findSlot(this.table, hash, key);
+		if (slot < 0) {
+			insertEntry(slot, hash, key, value);
+			return value;
+		}
+		final int expectedModCount = this.modCount;
+		final V newValue = remappingFunction.apply(this.table[slot].value, value);
+		checkForComodification(expectedModCount);
+		updateOrRemoveEntryAt(slot, newValue);
+		return newValue;
+	}
+
+	@Override
+	public void forEach(BiConsumer<? super K, ? super V> action) {
+		Objects.requireNonNull(action);
+
+		final Entry<K, V>[] table = this.table;
+		final int expectedModCount = this.modCount;
+		for (int i = 0; i < table.length && this.modCount == expectedModCount; i++) {
+			final Entry<K, V> entry = table[i];
+			if (entry != null) {
+				action.accept(entry.key, entry.value);
+			}
+		}
+		checkForComodification(expectedModCount);
+	}
+
+	@Override
+	public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+		Objects.requireNonNull(function);
+
+		final Entry<K, V>[] table = this.table;
+		final int expectedModCount = this.modCount;
+		for (int i = 0; i < table.length && this.modCount == expectedModCount; i++) {
+			final Entry<K, V> entry = table[i];
+			if (entry != null) {
+				entry.value = Objects.requireNonNull(function.apply(entry.key, entry.value));
+			}
+		}
+		checkForComodification(expectedModCount);
+	}
+
+	@Override
+	public void clear() {
+		this.modCount++;
+		this.size = 0;
+		Arrays.fill(this.table, null);
+	}
+
+	@Override
+	public Set<Map.Entry<K, V>> entrySet() {
+		if (this.entrySet == null) {
+			this.entrySet = new EntrySet();
+		}
+		return this.entrySet;
+	}
+
+	public class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+
+		@Override
+		public Iterator<Map.Entry<K, V>> iterator() {
+			return new EntrySetIterator();
+		}
+
+		@Override
+		public Spliterator<Map.Entry<K, V>> spliterator() {
+			return new EntrySetSpliterator(null, 0, -1, 0, 0);
+		}
+
+		@Override
+		public int size() {
+			return PcRobinHoodHashMap.this.size;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return size() == 0;
+		}
+
+		@Override
+		public void clear() {
+			PcRobinHoodHashMap.this.clear();
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			if (o instanceof Map.Entry) {
+				final Map.Entry entry = (Map.Entry)o;
+				final V removed = PcRobinHoodHashMap.this.remove(entry.getKey());
+				return removed != null;
+			}
+			return false;
+		}
+
+	}
+
+	public class EntrySetIterator extends BaseIterator implements Iterator<Map.Entry<K, V>> {
+
+		@Override
+		public Map.Entry<K, V> next() {
+			return nextEntry();
+		}
+
+	}
+
+	@Override
+	public Set<K> keySet() {
+		if (this.keySet == null) {
+			this.keySet = new KeySet();
+		}
+		return this.keySet;
+	}
+
+	public class KeySet extends AbstractSet<K> {
+
+		@Override
+		public Iterator<K> iterator() {
+			return new KeysIterator();
+		}
+
+		@Override
+		public Spliterator<K> spliterator() {
+			return new KeysSpliterator(null, 0, -1, 0, 0);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return size() == 0;
+		}
+
+		@Override
+		public void clear() {
+			PcRobinHoodHashMap.this.clear();
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			final V removed = PcRobinHoodHashMap.this.remove(o);
+			return removed != null;
+		}
+
+	}
+
+	public class KeysIterator extends BaseIterator implements Iterator<K> {
+
+		@Override
+		public K next() {
+			return nextEntry().getKey();
+		}
+
+	}
+
+	@Override
+	public Collection<V> values() {
+		if (this.values == null) {
+			this.values = new Values();
+		}
+		return this.values;
+	}
+
+	public class Values extends AbstractCollection<V> {
+
+		@Override
+		public Iterator<V> iterator() {
+			return new ValuesIterator();
+		}
+
+		@Override
+		public Spliterator<V> spliterator() {
+			return new ValuesSpliterator(null, 0, -1, 0, 0);
+		}
+
+		@Override
+		public int size() {
+			return PcRobinHoodHashMap.this.size;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return size() == 0;
+		}
+
+		@Override
+		public void clear() {
+			PcRobinHoodHashMap.this.clear();
+		}
+
+	}
+
+	public class ValuesIterator extends BaseIterator implements Iterator<V> {
+
+		@Override
+		public V next() {
+			return nextEntry().getValue();
+		}
+
+	}
+
+	/**
+	 * Base iterator, that traverses the table once, starting from an empty slot and wrapping around the end of the table.
+	 * As clusters never span over an empty slot, the entries that are shifted back when an entry is removed
+	 * are always moved to slots that have not been visited yet.
+	 */
+	public abstract class BaseIterator {
+
+		private final int startIndex;
+		private int offset;
+		private Entry<K, V> nextEntry;
+		private int currentOffset;
+		private int expectedModCount;
+
+		public BaseIterator() {
+			this.startIndex = findEmptySlot();
+			this.currentOffset = -1;
+			this.expectedModCount = modCount;
+			// initially advance to first entry
+			advanceFrom(0);
+		}
+
+		public boolean hasNext() {
+			return this.nextEntry != null;
+		}
+
+		protected Entry<K, V> nextEntry() {
+			checkForComodification(this.expectedModCount);
+			if (this.nextEntry == null) {
+				throw new NoSuchElementException();
+			}
+			final Entry<K, V> entry = this.nextEntry;
+			this.currentOffset = this.offset;
+			advanceFrom(this.offset + 1);
+			return entry;
+		}
+
+		public void remove() {
+			if (this.currentOffset == -1) {
+				throw new IllegalStateException("next() has not been called yet, cannot use remove()");
+			}
+			checkForComodification(this.expectedModCount);
+			removeEntryAt(slotAt(this.currentOffset));
+			// the backward shift may have moved entries that were not visited yet
+			// into the emptied slot, so iteration resumes from that slot
+			advanceFrom(this.currentOffset);
+			this.currentOffset = -1;
+			this.expectedModCount = modCount;
+		}
+
+		/**
+		 * Advance nextEntry to the first entry of the table at or after the given offset from the start slot,
+		 * or to the end of the iteration.
+		 */
+		private void advanceFrom(int offset) {
+			final Entry<K, V>[] table = PcRobinHoodHashMap.this.table;
+			this.offset = offset;
+			this.nextEntry = null;
+			while (this.nextEntry == null && this.offset < table.length) {
+				this.nextEntry = table[slotAt(this.offset)];
+				if (this.nextEntry == null) {
+					this.offset++;
+				}
+			}
+		}
+
+		private int slotAt(int offset) {
+			return (this.startIndex + offset) & (table.length - 1);
+		}
+
+		private int findEmptySlot() {
+			int i = 0;
+			while (table[i] != null) {
+				i++;
+			}
+			return i;
+		}
+
+	}
+
+	/**
+	 * Base spliterator, that traverses a range of slots of the table.
+	 * Splitting a spliterator splits its range of slots in two halves.
+	 * The top level spliterator is bound to the table on first use, and is the only one to report {@link Spliterator#SIZED},
+	 * as the number of entries in a range of slots is not known.
+	 */
+	public abstract class BaseSpliterator<T> implements Spliterator<T> {
+
+		private Entry<K, V>[] table;
+		private int indexInTable;
+		private int fence;
+		private int estimatedSize;
+		private int expectedModCount;
+
+		protected BaseSpliterator(Entry<K, V>[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			this.table = table;
+			this.indexInTable = origin;
+			this.fence = fence;
+			this.estimatedSize = estimatedSize;
+			this.expectedModCount = expectedModCount;
+		}
+
+		protected abstract T extract(Entry<K, V> entry);
+
+		protected abstract BaseSpliterator<T> createSplit(Entry<K, V>[] table, int origin, int fence, int estimatedSize, int expectedModCount);
+
+		private int getFence() {
+			if (this.fence < 0) {
+				this.table = PcRobinHoodHashMap.this.table;
+				this.estimatedSize = size;
+				this.expectedModCount = modCount;
+				this.fence = this.table.length;
+			}
+			return this.fence;
+		}
+
+		@Override
+		public Spliterator<T> trySplit() {
+			final int high = getFence();
+			final int low = this.indexInTable;
+			final int middle = (low + high) >>> 1;
+			if (low >= middle) {
+				return null;
+			}
+			this.indexInTable = middle;
+			this.estimatedSize >>>= 1;
+			return createSplit(this.table, low, middle, this.estimatedSize, this.expectedModCount);
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super T> action) {
+			Objects.requireNonNull(action);
+
+			final int high = getFence();
+			while (this.indexInTable < high) {
+				final Entry<K, V> entry = this.table[this.indexInTable++];
+				if (entry != null) {
+					action.accept(extract(entry));
+					checkForComodification(this.expectedModCount);
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super T> action) {
+			Objects.requireNonNull(action);
+
+			final int high = getFence();
+			while (this.indexInTable < high) {
+				final Entry<K, V> entry = this.table[this.indexInTable++];
+				if (entry != null) {
+					action.accept(extract(entry));
+				}
+			}
+			checkForComodification(this.expectedModCount);
+		}
+
+		@Override
+		public long estimateSize() {
+			getFence();
+			return this.estimatedSize;
+		}
+
+		@Override
+		public int characteristics() {
+			return (this.fence < 0 || this.estimatedSize == size ? Spliterator.SIZED : 0)
+					| Spliterator.DISTINCT
+					| Spliterator.NONNULL;
+		}
+	}
+
+	public class EntrySetSpliterator extends BaseSpliterator<Map.Entry<K, V>> {
+
+		public EntrySetSpliterator(Entry<K, V>[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			super(table, origin, fence, estimatedSize, expectedModCount);
+		}
+
+		@Override
+		protected Map.Entry<K, V> extract(Entry<K, V> entry) {
+			return entry;
+		}
+
+		@Override
+		protected EntrySetSpliterator createSplit(Entry<K, V>[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			return new EntrySetSpliterator(table, origin, fence, estimatedSize, expectedModCount);
+		}
+	}
+
+	public class KeysSpliterator extends BaseSpliterator<K> {
+
+		public KeysSpliterator(Entry<K, V>[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			super(table, origin, fence, estimatedSize, expectedModCount);
+		}
+
+		@Override
+		protected K extract(Entry<K, V> entry) {
+			return entry.getKey();
+		}
+
+		@Override
+		protected KeysSpliterator createSplit(Entry<K, V>[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			return new KeysSpliterator(table, origin, fence, estimatedSize, expectedModCount);
+		}
+	}
+
+	public class ValuesSpliterator extends BaseSpliterator<V> {
+
+		public ValuesSpliterator(Entry<K, V>[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			super(table, origin, fence, estimatedSize, expectedModCount);
+		}
+
+		@Override
+		protected V extract(Entry<K, V> entry) {
+			return entry.getValue();
+		}
+
+		@Override
+		protected ValuesSpliterator createSplit(Entry<K, V>[] table, int origin, int fence, int estimatedSize, int expectedModCount) {
+			return new ValuesSpliterator(table, origin, fence, estimatedSize, expectedModCount);
+		}
+	}
+
+	/**
+	 * Return a string representing the layout of the underlying table.
+	 * Useful for debugging.
+	 */
+	public String getLayout() {
+		if (size == 0) {
+			return "EMPTY (size=0, capacity=" + this.table.length + ", loadFactor=0)\n";
+		}
+		StringBuilder result = new StringBuilder();
+		result.append("NOT EMPTY (size=")
+				.append(size)
+				.append("), capacity=")
+				.append(this.table.length)
+				.append("), loadFactor=")
+				.append(size / (float) this.table.length)
+				.append(", maxProbeDistance=")
+				.append(getMaxProbeDistance())
+				.append("\n");
+		for (int i = 0; i < table.length; ++i) {
+			Entry<K, V> entry = table[i];
+			if (entry == null) {
+				result.append("index ").append(i).append(" : NULL").append("\n");
+			} else {
+				result.append("index ").append(i).append(" : ")
+						.append("(key=")
+						.append(entry.key)
+						.append(",value=")
+						.append(entry.value)
+						.append(",distance=")
+						.append(probeDistance(entry, i, table.length - 1))
+						.append(")")
+						.append("\n");
+			}
+		}
+		return result.toString();
+	}
+
+	private void checkForComodification(int expectedModCount) {
+		if (this.modCount != expectedModCount) {
+			throw new ConcurrentModificationException();
+		}
+	}
+
+	private int hash(Object key) {
+		final int hashCode = key.hashCode();
+		return hashCode ^ (hashCode >>> 16);
+	}
+
+	private V putEntryForKey(K key, V value) {
+		this.resizeIfNeeded();
+		final int hash = hash(key);
+		final int slot = findSlot(this.table, hash, key);
+		if (slot >= 0) {
+			// if the key is present, replace its value
+			return this.table[slot].setValue(value);
+		}
+		insertEntry(slot, hash, key, value);
+		return null;
+	}
+
+	private Entry<K, V> getEntryForKey(Object key) {
+		final int slot = findSlot(this.table, hash(key), key);
+		return slot >= 0 ? this.table[slot] : null;
+	}
+
+	/**
+	 * Find the slot of the given key in the given table.
+	 * The probe sequence starts at the index of the hash, and wraps around the end of the table.
+	 * It stops at the first empty slot, or at the first entry that is closer to its ideal slot
+	 * than the key would be: as entries are ordered by probe distance within a cluster, the key cannot be further.
+	 * Keys are only compared when the cached hashes are equal.
+	 *
+	 * @return the index of the slot of the key if the key is present,
+	 * otherwise (-(insertion index) - 1), where the insertion index is the slot where the probe sequence stopped.
+	 */
+	private int findSlot(Entry<K, V>[] target, int hash, Object key) {
+		final int mask = target.length - 1;
+		int i = hash & mask;
+		int distance = 0;
+		while (target[i] != null) {
+			final Entry<K, V> entry = target[i];
+			if (probeDistance(entry, i, mask) < distance) {
+				// the key would have taken the slot of this entry, so it is not present
+				break;
+			}
+			if (entry.hash == hash && Objects.equals(key, entry.key)) {
+				return i;
+			}
+			i = (i + 1) & mask;
+			distance++;
+		}
+		return -i - 1;
+	}
+
+	/**
+	 * Insert a new entry for a key that is known to be absent from the table,
+	 * at the insertion index returned by {@link #findSlot(Entry[], int, Object)}.
+	 */
+	private void insertEntry(int slot, int hash, K key, V value) {
+		placeEntry(this.table, -slot - 1, new Entry<>(hash, key, value));
+		this.size++;
+		this.modCount++;
+	}
+
+	/**
+	 * Put the given entry at the given index of the given table, which must be on the probe sequence of the entry,
+	 * at or before the first slot whose entry is closer to its ideal slot.
+	 * The entry that occupied the slot, if any, is carried forward and takes in turn the slot of the first entry
+	 * closer to its ideal slot than itself, until an empty slot is found.
+	 */
+	private void placeEntry(Entry<K, V>[] target, int index, Entry<K, V> entry) {
+		final int mask = target.length - 1;
+		Entry<K, V> carriedEntry = entry;
+		int distance = probeDistance(carriedEntry, index, mask);
+		int i = index;
+		while (target[i] != null) {
+			final int residentDistance = probeDistance(target[i], i, mask);
+			if (residentDistance < distance) {
+				// the resident entry is richer than the carried entry: swap them
+				final Entry<K, V> residentEntry = target[i];
+				target[i] = carriedEntry;
+				carriedEntry = residentEntry;
+				distance = residentDistance;
+			}
+			i = (i + 1) & mask;
+			distance++;
+		}
+		target[i] = carriedEntry;
+	}
+
+	/**
+	 * Set the value of the entry at the given slot, or remove the entry if the new value is null.
+	 */
+	private void updateOrRemoveEntryAt(int slot, V newValue) {
+		if (newValue != null) {
+			this.table[slot].value = newValue;
+		} else {
+			removeEntryAt(slot);
+		}
+	}
+
+	private Entry<K, V> removeEntryForKey(Object key) {
+		final int slot = findSlot(this.table, hash(key), key);
+		if (slot < 0) {
+			// if no entry was found, the key was not there
+			return null;
+		}
+		final Entry<K, V> removedEntry = this.table[slot];
+		removeEntryAt(slot);
+		return removedEntry;
+	}
+
+	/**
+	 * Remove the entry at the given slot.
+	 * The following entries of the cluster are shifted back by one slot, until an empty slot
+	 * or an entry that is already in its ideal slot, so that no tombstone is needed.
+	 */
+	private void removeEntryAt(int slot) {
+		final Entry<K, V>[] table = this.table;
+		final int mask = table.length - 1;
+		int emptyIndex = slot;
+		int i = (slot + 1) & mask;
+		while (table[i] != null && probeDistance(table[i], i, mask) > 0) {
+			table[emptyIndex] = table[i];
+			emptyIndex = i;
+			i = (i + 1) & mask;
+		}
+		table[emptyIndex] = null;
+		this.size--;
+		this.modCount++;
+	}
+
+	/**
+	 * Return the number of slots between the ideal slot of the given entry and the given slot.
+	 */
+	private static int probeDistance(Entry<?, ?> entry, int slot, int mask) {
+		return (slot - (entry.hash & mask)) & mask;
+	}
+
+	/**
+	 * Return the highest probe distance of the entries of the table.
+	 * Useful for debugging.
+	 */
+	public int getMaxProbeDistance() {
+		final int mask = this.table.length - 1;
+		int maxProbeDistance = 0;
+		for (int i = 0; i < this.table.length; i++) {
+			if (this.table[i] != null) {
+				maxProbeDistance = Math.max(maxProbeDistance, probeDistance(this.table[i], i, mask));
+			}
+		}
+		return maxProbeDistance;
+	}
+
+	/**
+	 * Check if the threshold has been met to trigger a resize, and perform the resize if it was met.
+	 * The threshold is when the current load factor is more than the configured maximum load factor,
+	 * or when the next insertion would fill the last empty slot of the table:
+	 * probe sequences rely on empty slots to stop.
+	 * A new table will be created, with twice the capacity, and all the elements
+	 * of the current table will be moved to the new table.
+	 */
+	private void resizeIfNeeded() {
+		final float currentLoadFactor = this.size / (float)this.table.length;
+		if (currentLoadFactor < this.loadFactor && this.size + 1 < this.table.length) {
+			return;
+		}
+		resize(this.table.length << 1);
+	}
+
+	/**
+	 * Put all the mappings of the given map, after growing the table once for all of them.
+	 */
+	private void putMapEntries(Map<? extends K, ? extends V> map) {
+		if (map.isEmpty()) {
+			return;
+		}
+		ensureCapacity(this.size + map.size());
+		for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+			put(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Return the capacity of a table that can hold the given number of entries without being resized.
+	 * The capacity is always greater than the number of entries, even when the load factor is greater than 1.
+	 */
+	private int capacityFor(int expectedSize) {
+		return tableSizeFor((int) Math.min(Integer.MAX_VALUE, Math.max((long) (expectedSize / this.loadFactor), expectedSize + 1L) + 1));
+	}
+
+	/**
+	 * Grow the table so that it can hold the given number of entries without being resized.
+	 */
+	private void ensureCapacity(int expectedSize) {
+		final int capacity = capacityFor(expectedSize);
+		if (capacity > this.table.length) {
+			resize(capacity);
+		}
+	}
+
+	/**
+	 * Move all the entries of the table to a new table with the given capacity.
+	 * As keys are distinct, entries are placed from their ideal slot using their cached hash, without comparing keys.
+	 */
+	@SuppressWarnings("unchecked")
+	private void resize(int newCapacity) {
+		final Entry<K, V>[] newTable = (Entry<K, V>[]) new Entry[newCapacity];
+		final int mask = newCapacity - 1;
+		for (Entry<K, V> entry : this.table) {
+			if (entry != null) {
+				placeEntry(newTable, entry.hash & mask, entry);
+			}
+		}
+		this.table = newTable;
+		this.modCount++;
+	}
+
+	/**
+	 * Return the smallest power of two that is greater or equal to the given capacity.
+	 * The capacity of the table must be a power of two, so that indexes can be computed with a mask.
+	 */
+	private static int tableSizeFor(int capacity) {
+		if (capacity <= 1) {
+			return 1;
+		}
+		return 1 << (32 - Integer.numberOfLeadingZeros(capacity - 1));
+	}
+}
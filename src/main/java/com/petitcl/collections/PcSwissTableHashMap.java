@@ -0,0 +1,1121 @@
+package com.petitcl.collections;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Implementation of {@link Map} that is backed by an open addressing hash table,
+ * modeled after SwissTable (Abseil) and F14 (Folly).
+ * Next to the keys and values, the table keeps one control byte per slot, that tells if the slot is empty,
+ * deleted (a tombstone), or full, in which case it holds 7 bits of the hash of its key (H2).
+ * Slots are probed by groups of 8: the control bytes of a group are read as a single long,
+ * and compared to H2 all at once with bitwise operations (SWAR, SIMD within a register).
+ * Keys are only compared for the slots whose control byte matches, so a lookup rarely reads a key that does not match.
+ * The group of a key is chosen by the other bits of its hash (H1),
+ * and groups are probed at triangular offsets (1, 3, 6, 10... groups).
+ * A removed entry leaves a tombstone only if its group is full, otherwise its slot is marked as empty again,
+ * as probe sequences never go past a group that has an empty slot.
+ *
+ * @param <K> type of the key
+ * @param <V> type of the value
+ */
+public class PcSwissTableHashMap<K, V> extends AbstractMap<K, V> {
+
+	public static final int DEFAULT_INITIAL_CAPACITY = 16;
+	public static final float DEFAULT_LOAD_FACTOR = 0.875f;
+
+	/**
+	 * Number of slots in a group, ie: the number of control bytes that fit in a long.
+	 */
+	public static final int GROUP_WIDTH = 8;
+
+	private static final byte EMPTY = (byte) 0b1000_0000;
+	private static final byte DELETED = (byte) 0b1111_1110;
+
+	private static final long LSBS = 0x0101_0101_0101_0101L;
+	private static final long MSBS = 0x8080_8080_8080_8080L;
+
+	private static final VarHandle GROUP = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+	/**
+	 * View of a mapping of the map, created when iterating on the entry set.
+	 * Setting the value of the entry writes through to the map while the key is still present.
+	 */
+	public class Entry implements Map.Entry<K, V> {
+		private final K key;
+		private V value;
+		private int slot;
+
+		public Entry(int slot) {
+			this.key = keyAt(slot);
+			this.value = valueAt(slot);
+			this.slot = slot;
+		}
+
+		@Override
+		public K getKey() {
+			return key;
+		}
+
+		@Override
+		public V getValue() {
+			if (locate()) {
+				this.value = valueAt(this.slot);
+			}
+			return value;
+		}
+
+		@Override
+		public V setValue(V value) {
+			Objects.requireNonNull(value);
+
+			final V oldValue = getValue();
+			this.value = value;
+			if (locate()) {
+				valueSlots[this.slot] = value;
+			}
+			return oldValue;
+		}
+
+		/**
+		 * Find the current slot of the key, which may have moved since the entry was created.
+		 *
+		 * @return true if the key is still present in the map
+		 */
+		private boolean locate() {
+			if (this.slot >= 0 && this.slot < keySlots.length && keySlots[this.slot] == this.key && isFull(ctrl[this.slot])) {
+				return true;
+			}
+			this.slot = findSlot(hash(this.key), this.key);
+			return this.slot >= 0;
+		}
+
+		@Override
+		public final int hashCode() {
+			return Objects.hashCode(key) ^ Objects.hashCode(getValue());
+		}
+
+		@Override
+		public final boolean equals(Object other) {
+			if (other == this) {
+				return true;
+			}
+			if (other == null) {
+				return false;
+			}
+			if ((other instanceof Map.Entry)) {
+				final Map.Entry that = (Map.Entry) other;
+				return Objects.equals(key, that.getKey()) &&
+						Objects.equals(getValue(), that.getValue());
+			}
+			return false;
+		}
+
+		public final String toString() {
+			return key + "=" + getValue();
+		}
+	}
+
+	/**
+	 * Control bytes: {@link #EMPTY}, {@link #DELETED}, or the 7 low bits of the hash of the key of the slot.
+	 */
+	private byte[] ctrl;
+	private Object[] keySlots;
+	private Object[] valueSlots;
+	private int size;
+	private int tombstones;
+	private final float loadFactor;
+
+	/**
+	 * Number of structural modifications of this map (insertions, removals and resizes),
+	 * used by iterators and spliterators to detect concurrent modifications.
+	 */
+	private int modCount;
+
+	private EntrySet entrySet;
+	private KeySet keySet;
+	private Values values;
+
+	public PcSwissTableHashMap() {
+		this(DEFAULT_INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR);
+	}
+
+	public PcSwissTableHashMap(int initialCapacity) {
+		this(initialCapacity, DEFAULT_LOAD_FACTOR);
+	}
+
+	public PcSwissTableHashMap(int initialCapacity, float loadFactor) {
+		this.loadFactor = loadFactor;
+		allocate(tableSizeFor(initialCapacity));
+	}
+
+	/**
+	 * Create a map with the same mappings as the given map.
+	 * If the given map is also a {@link PcSwissTableHashMap}, its load factor is kept,
+	 * and its tables are copied as is, without hashing or comparing keys again.
+	 */
+	public PcSwissTableHashMap(Map<? extends K, ? extends V> map) {
+		Objects.requireNonNull(map);
+
+		if (map instanceof PcSwissTableHashMap) {
+			final PcSwissTableHashMap<? extends K, ? extends V> other = (PcSwissTableHashMap<? extends K, ? extends V>) map;
+			this.loadFactor = other.loadFactor;
+			this.ctrl = other.ctrl.clone();
+			this.keySlots = other.keySlots.clone();
+			this.valueSlots = other.valueSlots.clone();
+			this.size = other.size;
+			this.tombstones = other.tombstones;
+		} else {
+			this.loadFactor = DEFAULT_LOAD_FACTOR;
+			allocate(Math.max(DEFAULT_INITIAL_CAPACITY, capacityFor(map.size())));
+			putMapEntries(map);
+		}
+	}
+
+	/**
+	 * Create a map from the given entries.
+	 * The table is sized upfront for the number of entries, so that it is not resized while the entries are added.
+	 * If several entries have the same key, the last one wins.
+	 */
+	public static <K, V> PcSwissTableHashMap<K, V> fromEntries(Collection<? extends Map.Entry<? extends K, ? extends V>> entries) {
+		Objects.requireNonNull(entries);
+
+		final PcSwissTableHashMap<K, V> map = new PcSwissTableHashMap<>();
+		map.ensureCapacity(entries.size());
+		for (Map.Entry<? extends K, ? extends V> entry : entries) {
+			map.put(entry.getKey(), entry.getValue());
+		}
+		return map;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		Objects.requireNonNull(key);
+
+		return findSlot(hash(key), key) >= 0;
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		Objects.requireNonNull(value);
+
+		for (int i = 0; i < this.ctrl.length; i++) {
+			if (isFull(this.ctrl[i]) && this.valueSlots[i].equals(value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public V get(Object key) {
+		Objects.requireNonNull(key);
+
+		final int slot = findSlot(hash(key), key);
+		return slot >= 0 ? valueAt(slot) : null;
+	}
+
+	@Override
+	public V put(K key, V value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		this.resizeIfNeeded();
+		final int hash = hash(key);
+		final int slot = findSlot(hash, key);
+		if (slot >= 0) {
+			// if the key is present, replace its value
+			return setValueAt(slot, value);
+		}
+		insertEntry(hash, key, value);
+		return null;
+	}
+
+	@Override
+	public void putAll(Map<? extends K, ? extends V> map) {
+		Objects.requireNonNull(map);
+
+		putMapEntries(map);
+	}
+
+	@Override
+	public V remove(Object key) {
+		Objects.requireNonNull(key);
+
+		final int slot = findSlot(hash(key), key);
+		if (slot < 0) {
+			// if no entry was found, the key was not there
+			return null;
+		}
+		final V removedValue = valueAt(slot);
+		removeEntryAt(slot);
+		return removedValue;
+	}
+
+	/*
+	 * The following methods look up the key only once: its slot is found by probing the table,
+	 * then the value is updated in place, removed, or inserted in the first free slot of the probe sequence.
+	 * The functions given to these methods must not modify this map,
+	 * otherwise a ConcurrentModificationException is thrown.
+	 */
+
+	@Override
+	public V getOrDefault(Object key, V defaultValue) {
+		Objects.requireNonNull(key);
+
+		final int slot = findSlot(hash(key), key);
+		return slot >= 0 ? valueAt(slot) : defaultValue;
+	}
+
+	@Override
+	public V putIfAbsent(K key, V value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		this.resizeIfNeeded();
+		final int hash = hash(key);
+		final int slot = findSlot(hash, key);
+		if (slot >= 0) {
+			return valueAt(slot);
+		}
+		insertEntry(hash, key, value);
+		return null;
+	}
+
+	@Override
+	public boolean remove(Object key, Object value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		final int slot = findSlot(hash(key), key);
+		if (slot < 0 || !valueAt(slot).equals(value)) {
+			return false;
+		}
+		removeEntryAt(slot);
+		return true;
+	}
+
+	@Override
+	public boolean replace(K key, V oldValue, V newValue) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(oldValue);
+		Objects.requireNonNull(newValue);
+
+		final int slot = findSlot(hash(key), key);
+		if (slot < 0 || !valueAt(slot).equals(oldValue)) {
+			return false;
+		}
+		setValueAt(slot, newValue);
+		return true;
+	}
+
+	@Override
+	public V replace(K key, V value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		final int slot = findSlot(hash(key), key);
+		return slot >= 0 ? setValueAt(slot, value) : null;
+	}
+
+	@Override
+	public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(mappingFunction);
+
+		this.resizeIfNeeded();
+		final int hash = hash(key);
+		final int slot = findSlot(hash, key);
+		if (slot >= 0) {
+			return valueAt(slot);
+		}
+		final int expectedModCount = this.modCount;
+		final V newValue = mappingFunction.apply(key);
+		checkForComodification(expectedModCount);
+		if (newValue != null) {
+			insertEntry(hash, key, newValue);
+		}
+		return newValue;
+	}
+
+	@Override
+	public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(remappingFunction);
+
+		final int slot = findSlot(hash(key), key);
+		if (slot < 0) {
+			return null;
+		}
+		final int expectedModCount = this.modCount;
+		final V newValue = remappingFunction.apply(key, valueAt(slot));
+		checkForComodification(expectedModCount);
+		updateOrRemoveEntryAt(slot, newValue);
+		return newValue;
+	}
+
+	@Override
+	public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(remappingFunction);
+
+		this.resizeIfNeeded();
+		final int hash = hash(key);
+		final int slot = findSlot(hash, key);
+		final int expectedModCount = this.modCount;
+		final V newValue = remappingFunction.apply(key, slot >= 0 ? valueAt(slot) : null);
+		checkForComodification(expectedModCount);
+		if (slot >= 0) {
+			updateOrRemoveEntryAt(slot, newValue);
+		} else if (newValue != null) {
+			insertEntry(hash, key, newValue);
+		}
+		return newValue;
+	}
+
+	@Override
+	public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+		Objects.requireNonNull(remappingFunction);
+
+		this.resizeIfNeeded();
+		final int hash = hash(key);
+		final int slot = findSlot(hash, key);
+		if (slot < 0) {
+			insertEntry(hash, key, value);
+			return value;
+		}
+		final int expectedModCount = this.modCount;
+		final V newValue = remappingFunction.apply(valueAt(slot), value);
+		checkForComodification(expectedModCount);
+		updateOrRemoveEntryAt(slot, newValue);
+		return newValue;
+	}
+
+	@Override
+	public void forEach(BiConsumer<? super K, ? super V> action) {
+		Objects.requireNonNull(action);
+
+		final byte[] ctrl = this.ctrl;
+		final int expectedModCount = this.modCount;
+		for (int i = 0; i < ctrl.length && this.modCount == expectedModCount; i++) {
+			if (isFull(ctrl[i])) {
+				action.accept(keyAt(i), valueAt(i));
+			}
+		}
+		checkForComodification(expectedModCount);
+	}
+
+	@Override
+	public void replaceAll(BiFunction<? super K, ? super V, ? extends V> function) {
+		Objects.requireNonNull(function);
+
+		final byte[] ctrl = this.ctrl;
+		final int expectedModCount = this.modCount;
+		for (int i = 0; i < ctrl.length && this.modCount == expectedModCount; i++) {
+			if (isFull(ctrl[i])) {
+				this.valueSlots[i] = Objects.requireNonNull(function.apply(keyAt(i), valueAt(i)));
+			}
+		}
+		checkForComodification(expectedModCount);
+	}
+
+	@Override
+	public void clear() {
+		this.modCount++;
+		this.size = 0;
+		this.tombstones = 0;
+		Arrays.fill(this.ctrl, EMPTY);
+		Arrays.fill(this.keySlots, null);
+		Arrays.fill(this.valueSlots, null);
+	}
+
+	@Override
+	public Set<Map.Entry<K, V>> entrySet() {
+		if (this.entrySet == null) {
+			this.entrySet = new EntrySet();
+		}
+		return this.entrySet;
+	}
+
+	public class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+
+		@Override
+		public Iterator<Map.Entry<K, V>> iterator() {
+			return new EntrySetIterator();
+		}
+
+		@Override
+		public Spliterator<Map.Entry<K, V>> spliterator() {
+			return new EntrySetSpliterator(null, 0, -1, 0, 0);
+		}
+
+		@Override
+		public int size() {
+			return PcSwissTableHashMap.this.size;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return size() == 0;
+		}
+
+		@Override
+		public void clear() {
+			PcSwissTableHashMap.this.clear();
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			if (o instanceof Map.Entry) {
+				final Map.Entry entry = (Map.Entry)o;
+				final V removed = PcSwissTableHashMap.this.remove(entry.getKey());
+				return removed != null;
+			}
+			return false;
+		}
+
+	}
+
+	public class EntrySetIterator extends BaseIterator implements Iterator<Map.Entry<K, V>> {
+
+		@Override
+		public Map.Entry<K, V> next() {
+			return new Entry(nextSlot());
+		}
+
+	}
+
+	@Override
+	public Set<K> keySet() {
+		if (this.keySet == null) {
+			this.keySet = new KeySet();
+		}
+		return this.keySet;
+	}
+
+	public class KeySet extends AbstractSet<K> {
+
+		@Override
+		public Iterator<K> iterator() {
+			return new KeysIterator();
+		}
+
+		@Override
+		public Spliterator<K> spliterator() {
+			return new KeysSpliterator(null, 0, -1, 0, 0);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return size() == 0;
+		}
+
+		@Override
+		public void clear() {
+			PcSwissTableHashMap.this.clear();
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			final V removed = PcSwissTableHashMap.this.remove(o);
+			return removed != null;
+		}
+
+	}
+
+	public class KeysIterator extends BaseIterator implements Iterator<K> {
+
+		@Override
+		public K next() {
+			return keyAt(nextSlot());
+		}
+
+	}
+
+	@Override
+	public Collection<V> values() {
+		if (this.values == null) {
+			this.values = new Values();
+		}
+		return this.values;
+	}
+
+	public class Values extends AbstractCollection<V> {
+
+		@Override
+		public Iterator<V> iterator() {
+			return new ValuesIterator();
+		}
+
+		@Override
+		public Spliterator<V> spliterator() {
+			return new ValuesSpliterator(null, 0, -1, 0, 0);
+		}
+
+		@Override
+		public int size() {
+			return PcSwissTableHashMap.this.size;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return size() == 0;
+		}
+
+		@Override
+		public void clear() {
+			PcSwissTableHashMap.this.clear();
+		}
+
+	}
+
+	public class ValuesIterator extends BaseIterator implements Iterator<V> {
+
+		@Override
+		public V next() {
+			return valueAt(nextSlot());
+		}
+
+	}
+
+	public abstract class BaseIterator {
+
+		private int nextSlot;
+		private int currentSlot;
+		private int expectedModCount;
+
+		public BaseIterator() {
+			this.currentSlot = -1;
+			this.expectedModCount = modCount;
+			// initially advance to first entry
+			advanceFrom(0);
+		}
+
+		public boolean hasNext() {
+			return this.nextSlot != -1;
+		}
+
+		/**
+		 * Return the slot of the next entry, and advance to the following entry.
+		 */
+		protected int nextSlot() {
+			checkForComodification(this.expectedModCount);
+			if (this.nextSlot == -1) {
+				throw new NoSuchElementException();
+			}
+			this.currentSlot = this.nextSlot;
+			advanceFrom(this.nextSlot + 1);
+			return this.currentSlot;
+		}
+
+		public void remove() {
+			if (this.currentSlot == -1) {
+				throw new IllegalStateException("next() has not been called yet, cannot use remove()");
+			}
+			checkForComodification(this.expectedModCount);
+			// entries never move on removal, so the iteration is not affected
+			removeEntryAt(this.currentSlot);
+			this.currentSlot = -1;
+			this.expectedModCount = modCount;
+		}
+
+		/**
+		 * Advance nextSlot to the first full slot at or after the given slot, or to -1 at the end of the table.
+		 */
+		private void advanceFrom(int slot) {
+			final byte[] ctrl = PcSwissTableHashMap.this.ctrl;
+			for (int i = slot; i < ctrl.length; i++) {
+				if (isFull(ctrl[i])) {
+					this.nextSlot = i;
+					return;
+				}
+			}
+			this.nextSlot = -1;
+		}
+
+	}
+
+	/**
+	 * Base spliterator, that traverses a range of slots of the table.
+	 * Splitting a spliterator splits its range of slots in two halves.
+	 * The top level spliterator is bound to the table on first use, and is the only one to report {@link Spliterator#SIZED},
+	 * as the number of entries in a range of slots is not known.
+	 */
+	public abstract class BaseSpliterator<T> implements Spliterator<T> {
+
+		private byte[] ctrl;
+		private int slot;
+		private int fence;
+		private int estimatedSize;
+		private int expectedModCount;
+
+		protected BaseSpliterator(byte[] ctrl, int origin, int fence, int estimatedSize, int expectedModCount) {
+			this.ctrl = ctrl;
+			this.slot = origin;
+			this.fence = fence;
+			this.estimatedSize = estimatedSize;
+			this.expectedModCount = expectedModCount;
+		}
+
+		protected abstract T extract(int slot);
+
+		protected abstract BaseSpliterator<T> createSplit(byte[] ctrl, int origin, int fence, int estimatedSize, int expectedModCount);
+
+		private int getFence() {
+			if (this.fence < 0) {
+				this.ctrl = PcSwissTableHashMap.this.ctrl;
+				this.estimatedSize = size;
+				this.expectedModCount = modCount;
+				this.fence = this.ctrl.length;
+			}
+			return this.fence;
+		}
+
+		@Override
+		public Spliterator<T> trySplit() {
+			final int high = getFence();
+			final int low = this.slot;
+			final int middle = (low + high) >>> 1;
+			if (low >= middle) {
+				return null;
+			}
+			this.slot = middle;
+			this.estimatedSize >>>= 1;
+			return createSplit(this.ctrl, low, middle, this.estimatedSize, this.expectedModCount);
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super T> action) {
+			Objects.requireNonNull(action);
+
+			final int high = getFence();
+			while (this.slot < high) {
+				final int slot = this.slot++;
+				if (isFull(this.ctrl[slot])) {
+					action.accept(extract(slot));
+					checkForComodification(this.expectedModCount);
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super T> action) {
+			Objects.requireNonNull(action);
+
+			final int high = getFence();
+			while (this.slot < high) {
+				final int slot = this.slot++;
+				if (isFull(this.ctrl[slot])) {
+					action.accept(extract(slot));
+				}
+			}
+			checkForComodification(this.expectedModCount);
+		}
+
+		@Override
+		public long estimateSize() {
+			getFence();
+			return this.estimatedSize;
+		}
+
+		@Override
+		public int characteristics() {
+			return (this.fence < 0 || this.estimatedSize == size ? Spliterator.SIZED : 0)
+					| Spliterator.DISTINCT
+					| Spliterator.NONNULL;
+		}
+	}
+
+	public class EntrySetSpliterator extends BaseSpliterator<Map.Entry<K, V>> {
+
+		public EntrySetSpliterator(byte[] ctrl, int origin, int fence, int estimatedSize, int expectedModCount) {
+			super(ctrl, origin, fence, estimatedSize, expectedModCount);
+		}
+
+		@Override
+		protected Map.Entry<K, V> extract(int slot) {
+			return new Entry(slot);
+		}
+
+		@Override
+		protected EntrySetSpliterator createSplit(byte[] ctrl, int origin, int fence, int estimatedSize, int expectedModCount) {
+			return new EntrySetSpliterator(ctrl, origin, fence, estimatedSize, expectedModCount);
+		}
+	}
+
+	public class KeysSpliterator extends BaseSpliterator<K> {
+
+		public KeysSpliterator(byte[] ctrl, int origin, int fence, int estimatedSize, int expectedModCount) {
+			super(ctrl, origin, fence, estimatedSize, expectedModCount);
+		}
+
+		@Override
+		protected K extract(int slot) {
+			return keyAt(slot);
+		}
+
+		@Override
+		protected KeysSpliterator createSplit(byte[] ctrl, int origin, int fence, int estimatedSize, int expectedModCount) {
+			return new KeysSpliterator(ctrl, origin, fence, estimatedSize, expectedModCount);
+		}
+	}
+
+	public class ValuesSpliterator extends BaseSpliterator<V> {
+
+		public ValuesSpliterator(byte[] ctrl, int origin, int fence, int estimatedSize, int expectedModCount) {
+			super(ctrl, origin, fence, estimatedSize, expectedModCount);
+		}
+
+		@Override
+		protected V extract(int slot) {
+			return valueAt(slot);
+		}
+
+		@Override
+		protected ValuesSpliterator createSplit(byte[] ctrl, int origin, int fence, int estimatedSize, int expectedModCount) {
+			return new ValuesSpliterator(ctrl, origin, fence, estimatedSize, expectedModCount);
+		}
+	}
+
+	/**
+	 * Return a string representing the layout of the underlying table.
+	 * Useful for debugging.
+	 */
+	public String getLayout() {
+		if (size == 0 && tombstones == 0) {
+			return "EMPTY (size=0, capacity=" + this.ctrl.length + ", loadFactor=0)\n";
+		}
+		StringBuilder result = new StringBuilder();
+		result.append("NOT EMPTY (size=")
+				.append(size)
+				.append("), capacity=")
+				.append(this.ctrl.length)
+				.append("), loadFactor=")
+				.append(size / (float) this.ctrl.length)
+				.append(", tombstones=")
+				.append(tombstones)
+				.append("\n");
+		for (int i = 0; i < ctrl.length; ++i) {
+			if (i % GROUP_WIDTH == 0) {
+				result.append("group ").append(i / GROUP_WIDTH).append("\n");
+			}
+			if (ctrl[i] == EMPTY) {
+				result.append("index ").append(i).append(" : NULL").append("\n");
+			} else if (ctrl[i] == DELETED) {
+				result.append("index ").append(i).append(" : TOMBSTONE").append("\n");
+			} else {
+				result.append("index ").append(i).append(" : ")
+						.append("(h2=")
+						.append(ctrl[i])
+						.append(",key=")
+						.append(keySlots[i])
+						.append(",value=")
+						.append(valueSlots[i])
+						.append(")")
+						.append("\n");
+			}
+		}
+		return result.toString();
+	}
+
+	private void checkForComodification(int expectedModCount) {
+		if (this.modCount != expectedModCount) {
+			throw new ConcurrentModificationException();
+		}
+	}
+
+	/**
+	 * Compute the hash of the given key.
+	 * A multiplication only carries bits upward, so the low 7 bits stored in the control bytes (H2)
+	 * and the low bits that select the group (H1) would only depend on the low bits of the hash code.
+	 * The high bits of the hash code are folded into its low bits before multiplying it by the golden ratio,
+	 * and the high bits of the product, that depend on all the bits of the hash code, are folded back into its low bits.
+	 */
+	private static int hash(Object key) {
+		final int hashCode = key.hashCode();
+		final int product = (hashCode ^ (hashCode >>> 16)) * 0x9E3779B9;
+		return product ^ (product >>> 16);
+	}
+
+	private static int h1(int hash) {
+		return hash >>> 7;
+	}
+
+	private static byte h2(int hash) {
+		return (byte) (hash & 0x7F);
+	}
+
+	private static boolean isFull(byte control) {
+		return control >= 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	private K keyAt(int slot) {
+		return (K) this.keySlots[slot];
+	}
+
+	@SuppressWarnings("unchecked")
+	private V valueAt(int slot) {
+		return (V) this.valueSlots[slot];
+	}
+
+	/**
+	 * Set the value of the entry at the given slot, and return its previous value.
+	 */
+	private V setValueAt(int slot, V value) {
+		final V oldValue = valueAt(slot);
+		this.valueSlots[slot] = value;
+		return oldValue;
+	}
+
+	/**
+	 * Read the control bytes of the given group as a long, the first slot of the group being the lowest byte.
+	 */
+	private static long readGroup(byte[] ctrl, int group) {
+		return (long) GROUP.get(ctrl, group * GROUP_WIDTH);
+	}
+
+	/**
+	 * Return a long that has the high bit of each byte set where the control byte of the group is equal to the given H2.
+	 * This is the classic "has zero byte" trick applied to the group xor H2:
+	 * it can report a false positive above a true match, which is filtered out when comparing keys.
+	 */
+	private static long matchH2(long group, byte h2) {
+		final long x = group ^ (LSBS * h2);
+		return (x - LSBS) & ~x & MSBS;
+	}
+
+	/**
+	 * Return a long that has the high bit of each byte set where the control byte of the group is {@link #EMPTY}.
+	 * Only {@link #EMPTY} (0x80) and {@link #DELETED} (0xFE) have their high bit set, and they differ by their bit 1:
+	 * shifting the group left by 6 moves the bit 1 of each byte to its high bit, so that it can be tested to be cleared.
+	 */
+	private static long matchEmpty(long group) {
+		return group & ~(group << 6) & MSBS;
+	}
+
+	/**
+	 * Return a long that has the high bit of each byte set
+	 * where the control byte of the group is {@link #EMPTY} or {@link #DELETED}.
+	 */
+	private static long matchEmptyOrDeleted(long group) {
+		return group & MSBS;
+	}
+
+	/**
+	 * Return the index within its group of the lowest slot reported in the given match.
+	 */
+	private static int lowestMatch(long match) {
+		return Long.numberOfTrailingZeros(match) >>> 3;
+	}
+
+	/**
+	 * Find the slot of the given key.
+	 * Groups are probed from the group of H1, at triangular offsets, until a group that has an empty slot:
+	 * as insertions use the first free slot of the probe sequence, the key cannot be further.
+	 * It always stops, as the probe sequence visits every group and the table always has at least one empty slot.
+	 *
+	 * @return the index of the slot of the key if the key is present, otherwise -1
+	 */
+	private int findSlot(int hash, Object key) {
+		final byte h2 = h2(hash);
+		final int groupMask = (this.ctrl.length / GROUP_WIDTH) - 1;
+		int group = h1(hash) & groupMask;
+		for (int step = 1; ; step++) {
+			final long controls = readGroup(this.ctrl, group);
+			for (long match = matchH2(controls, h2); match != 0; match &= match - 1) {
+				final int slot = group * GROUP_WIDTH + lowestMatch(match);
+				final Object keyAtSlot = this.keySlots[slot];
+				if (this.ctrl[slot] == h2 && (keyAtSlot == key || key.equals(keyAtSlot))) {
+					return slot;
+				}
+			}
+			if (matchEmpty(controls) != 0) {
+				return -1;
+			}
+			group = (group + step) & groupMask;
+		}
+	}
+
+	/**
+	 * Return the first empty or deleted slot of the probe sequence of the given hash.
+	 */
+	private static int findFreeSlot(byte[] ctrl, int hash) {
+		final int groupMask = (ctrl.length / GROUP_WIDTH) - 1;
+		int group = h1(hash) & groupMask;
+		for (int step = 1; ; step++) {
+			final long match = matchEmptyOrDeleted(readGroup(ctrl, group));
+			if (match != 0) {
+				return group * GROUP_WIDTH + lowestMatch(match);
+			}
+			group = (group + step) & groupMask;
+		}
+	}
+
+	/**
+	 * Insert a new entry for a key that is known to be absent from the table,
+	 * in the first free slot of its probe sequence.
+	 */
+	private void insertEntry(int hash, K key, V value) {
+		final int slot = findFreeSlot(this.ctrl, hash);
+		if (this.ctrl[slot] == DELETED) {
+			// reuse the tombstone
+			this.tombstones--;
+		}
+		this.ctrl[slot] = h2(hash);
+		this.keySlots[slot] = key;
+		this.valueSlots[slot] = value;
+		this.size++;
+		this.modCount++;
+	}
+
+	/**
+	 * Set the value of the entry at the given slot, or remove the entry if the new value is null.
+	 */
+	private void updateOrRemoveEntryAt(int slot, V newValue) {
+		if (newValue != null) {
+			setValueAt(slot, newValue);
+		} else {
+			removeEntryAt(slot);
+		}
+	}
+
+	/**
+	 * Remove the entry at the given slot.
+	 * If the group of the slot has an empty slot, probe sequences never go past this group,
+	 * so the slot can be marked as empty. Otherwise, it is marked as deleted.
+	 */
+	private void removeEntryAt(int slot) {
+		final int group = slot / GROUP_WIDTH;
+		if (matchEmpty(readGroup(this.ctrl, group)) != 0) {
+			this.ctrl[slot] = EMPTY;
+		} else {
+			this.ctrl[slot] = DELETED;
+			this.tombstones++;
+		}
+		this.keySlots[slot] = null;
+		this.valueSlots[slot] = null;
+		this.size--;
+		this.modCount++;
+	}
+
+	/**
+	 * Check if the threshold has been met to trigger a rebuild of the table, and perform the rebuild if it was met.
+	 * The threshold is when the used slots (entries and tombstones) reach the configured maximum load factor,
+	 * or when the next insertion would fill the last empty slot of the table:
+	 * probe sequences rely on empty slots to stop.
+	 * If the entries alone take less than half of the allowed slots, the table is rebuilt with the same capacity,
+	 * which only drops the tombstones. Otherwise, the capacity is doubled.
+	 */
+	private void resizeIfNeeded() {
+		final int capacity = this.ctrl.length;
+		final int usedSlots = this.size + this.tombstones;
+		final float currentLoadFactor = usedSlots / (float) capacity;
+		if (currentLoadFactor < this.loadFactor && usedSlots + 1 < capacity) {
+			return;
+		}
+		final float allowedSlots = Math.min(capacity * this.loadFactor, capacity - 1);
+		if (this.size < allowedSlots / 2) {
+			resize(capacity);
+		} else {
+			resize(capacity << 1);
+		}
+	}
+
+	/**
+	 * Put all the mappings of the given map, after growing the table once for all of them.
+	 */
+	private void putMapEntries(Map<? extends K, ? extends V> map) {
+		if (map.isEmpty()) {
+			return;
+		}
+		ensureCapacity(this.size + map.size());
+		for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+			put(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Return the capacity of a table that can hold the given number of entries without being resized.
+	 * The capacity is always greater than the number of entries, even when the load factor is greater than 1.
+	 */
+	private int capacityFor(int expectedSize) {
+		return tableSizeFor((int) Math.min(Integer.MAX_VALUE, Math.max((long) (expectedSize / this.loadFactor), expectedSize + 1L) + 1));
+	}
+
+	/**
+	 * Grow the table so that it can hold the given number of entries without being resized.
+	 */
+	private void ensureCapacity(int expectedSize) {
+		final int capacity = capacityFor(expectedSize + this.tombstones);
+		if (capacity > this.ctrl.length) {
+			resize(capacity);
+		}
+	}
+
+	private void allocate(int capacity) {
+		this.ctrl = new byte[capacity];
+		Arrays.fill(this.ctrl, EMPTY);
+		this.keySlots = new Object[capacity];
+		this.valueSlots = new Object[capacity];
+		this.tombstones = 0;
+	}
+
+	/**
+	 * Move all the entries of the table to a new table with the given capacity, dropping the tombstones.
+	 * As keys are distinct, each entry is put in the first free slot of its probe sequence without comparing keys.
+	 */
+	private void resize(int newCapacity) {
+		final byte[] oldCtrl = this.ctrl;
+		final Object[] oldKeys = this.keySlots;
+		final Object[] oldValues = this.valueSlots;
+		allocate(newCapacity);
+		for (int i = 0; i < oldCtrl.length; i++) {
+			if (isFull(oldCtrl[i])) {
+				final int hash = hash(oldKeys[i]);
+				final int slot = findFreeSlot(this.ctrl, hash);
+				this.ctrl[slot] = h2(hash);
+				this.keySlots[slot] = oldKeys[i];
+				this.valueSlots[slot] = oldValues[i];
+			}
+		}
+		this.modCount++;
+	}
+
+	/**
+	 * Return the smallest power of two that is greater or equal to the given capacity, and to the size of a group.
+	 * The number of groups must be a power of two, so that the group of a hash can be computed with a mask,
+	 * and so that the triangular probe sequence visits every group.
+	 */
+	private static int tableSizeFor(int capacity) {
+		if (capacity <= GROUP_WIDTH) {
+			return GROUP_WIDTH;
+		}
+		return 1 << (32 - Integer.numberOfLeadingZeros(capacity - 1));
+	}
+}
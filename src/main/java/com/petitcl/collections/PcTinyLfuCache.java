@@ -0,0 +1,209 @@
+package com.petitcl.collections;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bounded cache that uses the <a href="https://arxiv.org/abs/1512.00727">W-TinyLFU</a> policy:
+ * it keeps the entries that are accessed the most often, instead of only the most recently accessed ones,
+ * so that a scan of keys that are accessed once does not evict the hot entries, as it would with {@link PcLruCache}.
+ *
+ * The cache is split in 3 regions, each one being a {@link PcDeterministicHashMap} ordered by access:
+ * - a small admission window (1% of the cache), where new entries are inserted, that evicts in LRU order.
+ * It lets bursts of new keys build up their frequency before competing with the main region.
+ * - a probation region, that holds the entries of the main region that were not accessed since they were admitted.
+ * - a protected region (80% of the main region), that holds the entries that were accessed again in probation.
+ * When it is full, its least recently used entry is demoted back to probation.
+ *
+ * When the window is full, its least recently used entry is a candidate for the main region.
+ * If the main region is full too, the candidate is only admitted if its frequency is greater than the frequency
+ * of the victim, ie: the least recently used entry of probation. Otherwise, the candidate is evicted.
+ * Frequencies are estimated by a {@link PcFrequencySketch} that counts the hits and the writes of the cache,
+ * so it also remembers the keys that were evicted, or that were not admitted.
+ *
+ * This class does not implement {@link Map}, as reads move entries between regions.
+ * Getting a value is a structural modification of the regions, like in any access ordered map.
+ */
+public class PcTinyLfuCache<K, V> {
+
+	/**
+	 * Part of the cache used by the admission window.
+	 */
+	public static final float WINDOW_RATIO = 0.01f;
+
+	/**
+	 * Part of the main region used by the protected region.
+	 */
+	public static final float PROTECTED_RATIO = 0.8f;
+
+	private final int maximumSize;
+	private final int maximumWindowSize;
+	private final int maximumMainSize;
+	private final int maximumProtectedSize;
+
+	private final PcDeterministicHashMap<K, V> window;
+	private final PcDeterministicHashMap<K, V> probation;
+	private final PcDeterministicHashMap<K, V> protectedRegion;
+	private final PcFrequencySketch sketch;
+
+	public PcTinyLfuCache(int maximumSize) {
+		if (maximumSize <= 0) {
+			throw new IllegalArgumentException("Maximum size must be positive: " + maximumSize);
+		}
+		this.maximumSize = maximumSize;
+		this.maximumWindowSize = Math.max(1, (int) (maximumSize * WINDOW_RATIO));
+		this.maximumMainSize = maximumSize - this.maximumWindowSize;
+		this.maximumProtectedSize = (int) (this.maximumMainSize * PROTECTED_RATIO);
+		this.window = createRegion();
+		this.probation = createRegion();
+		this.protectedRegion = createRegion();
+		this.sketch = new PcFrequencySketch(maximumSize);
+	}
+
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
+	public int size() {
+		return this.window.size() + this.probation.size() + this.protectedRegion.size();
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Check if the given key is in the cache.
+	 * This is not an access: it neither counts the key nor moves its entry.
+	 */
+	public boolean containsKey(Object key) {
+		Objects.requireNonNull(key);
+
+		return this.window.containsKey(key) || this.probation.containsKey(key) || this.protectedRegion.containsKey(key);
+	}
+
+	/**
+	 * Return the value of the given key, or null if the key is not in the cache.
+	 * A hit is counted, and its entry is moved to the end of its region, or promoted from probation to protected.
+	 * A miss is not counted, as the value is expected to be put in the cache next, which counts the key.
+	 */
+	public V get(K key) {
+		Objects.requireNonNull(key);
+
+		V value = this.window.get(key);
+		if (value == null) {
+			value = this.protectedRegion.get(key);
+		}
+		if (value == null) {
+			value = this.probation.remove(key);
+			if (value == null) {
+				return null;
+			}
+			promote(key, value);
+		}
+		this.sketch.increment(key);
+		return value;
+	}
+
+	/**
+	 * Put the given value for the given key, and return the previous value of the key, or null if it was not in the cache.
+	 * Updating the value of a key is an access. A new key is inserted in the window,
+	 * and an entry may be evicted from the cache (possibly the new entry itself, once it leaves the window).
+	 */
+	public V put(K key, V value) {
+		Objects.requireNonNull(key);
+		Objects.requireNonNull(value);
+
+		this.sketch.increment(key);
+		V oldValue = this.window.replace(key, value);
+		if (oldValue != null) {
+			return oldValue;
+		}
+		oldValue = this.protectedRegion.replace(key, value);
+		if (oldValue != null) {
+			return oldValue;
+		}
+		oldValue = this.probation.remove(key);
+		if (oldValue != null) {
+			promote(key, value);
+			return oldValue;
+		}
+		this.window.put(key, value);
+		if (this.window.size() > this.maximumWindowSize) {
+			final Map.Entry<K, V> candidate = this.window.pollFirstEntry();
+			admit(candidate.getKey(), candidate.getValue());
+		}
+		return null;
+	}
+
+	/**
+	 * Remove the given key from the cache, and return its value, or null if it was not in the cache.
+	 */
+	public V remove(Object key) {
+		Objects.requireNonNull(key);
+
+		V value = this.window.remove(key);
+		if (value == null) {
+			value = this.probation.remove(key);
+		}
+		if (value == null) {
+			value = this.protectedRegion.remove(key);
+		}
+		return value;
+	}
+
+	/**
+	 * Remove all the entries of the cache, and forget the frequencies of the keys.
+	 */
+	public void clear() {
+		this.window.clear();
+		this.probation.clear();
+		this.protectedRegion.clear();
+		this.sketch.clear();
+	}
+
+	/**
+	 * Return a string representing the keys of each region, from the least to the most recently used.
+	 * Useful for debugging.
+	 */
+	public String getLayout() {
+		return "window=" + this.window.keySet() + "\n"
+				+ "probation=" + this.probation.keySet() + "\n"
+				+ "protected=" + this.protectedRegion.keySet() + "\n";
+	}
+
+	private static <K, V> PcDeterministicHashMap<K, V> createRegion() {
+		return new PcDeterministicHashMap<>(PcDeterministicHashMap.DEFAULT_INITIAL_CAPACITY, PcDeterministicHashMap.DEFAULT_LOAD_FACTOR, true);
+	}
+
+	/**
+	 * Move an entry that was accessed in probation to the protected region,
+	 * and demote the least recently used entry of the protected region to probation if it is full.
+	 */
+	private void promote(K key, V value) {
+		this.protectedRegion.put(key, value);
+		if (this.protectedRegion.size() > this.maximumProtectedSize) {
+			final Map.Entry<K, V> demoted = this.protectedRegion.pollFirstEntry();
+			this.probation.put(demoted.getKey(), demoted.getValue());
+		}
+	}
+
+	/**
+	 * Admit the given candidate, evicted from the window, to the main region if it has room for it,
+	 * or if the candidate is used more often than the victim of the main region, that is then evicted.
+	 */
+	private void admit(K key, V value) {
+		if (this.probation.size() + this.protectedRegion.size() < this.maximumMainSize) {
+			this.probation.put(key, value);
+			return;
+		}
+		final PcDeterministicHashMap<K, V> victimRegion = this.probation.isEmpty() ? this.protectedRegion : this.probation;
+		final Map.Entry<K, V> victim = victimRegion.firstEntry();
+		if (victim == null || this.sketch.frequency(key) <= this.sketch.frequency(victim.getKey())) {
+			// the candidate is evicted
+			return;
+		}
+		victimRegion.remove(victim.getKey());
+		this.probation.put(key, value);
+	}
+}
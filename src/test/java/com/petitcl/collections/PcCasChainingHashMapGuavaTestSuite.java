@@ -0,0 +1,50 @@
+package com.petitcl.collections;
+
+import com.google.common.collect.testing.ConcurrentMapTestSuiteBuilder;
+import com.google.common.collect.testing.features.CollectionFeature;
+import com.google.common.collect.testing.features.CollectionSize;
+import com.google.common.collect.testing.features.MapFeature;
+import com.petitcl.collections.models.Person;
+import com.petitcl.collections.utils.AbstractPersonMapTestGenerator;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.AllTests;
+
+import java.util.Map;
+
+@RunWith(AllTests.class)
+public class PcCasChainingHashMapGuavaTestSuite extends TestCase {
+
+	@Test
+	public static TestSuite suite() {
+		return ConcurrentMapTestSuiteBuilder
+				.using(new PersonPcCasChainingHashMapTestGenerator())
+				.named("Guava testlib - Test PcCasChainingHashMap")
+				.withFeatures(
+						CollectionSize.ANY,
+						MapFeature.SUPPORTS_PUT,
+						MapFeature.SUPPORTS_REMOVE,
+						CollectionFeature.SUPPORTS_ITERATOR_REMOVE
+				)
+				.createTestSuite();
+	}
+
+	public static class PersonPcCasChainingHashMapTestGenerator extends AbstractPersonMapTestGenerator {
+
+		@SuppressWarnings("unchecked")
+		public Map<String, Person> create(Object... elements) {
+			final PcCasChainingHashMap<String, Person> map = new PcCasChainingHashMap<>();
+			if (elements.length == 0) {
+				return map;
+			}
+			for (Object e : elements) {
+				final Map.Entry<String, Person> entry = (Map.Entry<String, Person>)e;
+				map.put(entry.getKey(), entry.getValue());
+			}
+			return map;
+		}
+
+	}
+}
@@ -0,0 +1,110 @@
+package com.petitcl.collections;
+
+import com.petitcl.collections.models.Person;
+import com.petitcl.collections.utils.AbstractPersonMapTestSuite;
+import com.petitcl.collections.utils.ConcurrentMapTestSuite;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PcCasChainingHashMapTest {
+
+	@Test
+	public void testLoad() {
+		new PcCasChainingHashPersonMapTestSuite()
+				.withStartDataSetSize(1)
+				.withEndDataSetSize(15)
+				.runAllTests();
+	}
+
+	@Test
+	public void testConcurrentPutsAndRemoves() throws Exception {
+		new ConcurrentMapTestSuite(() -> new PcCasChainingHashMap<>(2)).testConcurrentPutsAndRemoves();
+	}
+
+	@Test
+	public void testConcurrentUpdatesOfSameKeys() throws Exception {
+		new ConcurrentMapTestSuite(PcCasChainingHashMap::new).testConcurrentUpdatesOfSameKeys();
+	}
+
+	@Test
+	public void testReadersDuringTransfers() throws Exception {
+		final int pinnedKeys = 1_000;
+		final int writers = ConcurrentMapTestSuite.THREADS / 2;
+		final PcCasChainingHashMap<Integer, Integer> map = new PcCasChainingHashMap<>(2);
+		for (int key = -pinnedKeys; key < 0; key++) {
+			map.put(key, key);
+		}
+		final AtomicInteger finishedWriters = new AtomicInteger();
+		ConcurrentMapTestSuite.runInThreads(thread -> {
+			if (thread < writers) {
+				// writers grow the map from a tiny table, so that transfers keep forwarding buckets
+				for (int i = 0; i < ConcurrentMapTestSuite.KEYS_PER_THREAD; i++) {
+					map.put(thread * ConcurrentMapTestSuite.KEYS_PER_THREAD + i, i);
+				}
+				finishedWriters.incrementAndGet();
+				return;
+			}
+			// readers must always find the pinned keys, whether their bucket was moved or not
+			while (finishedWriters.get() < writers) {
+				for (int key = -pinnedKeys; key < 0; key++) {
+					Assert.assertEquals(Integer.valueOf(key), map.get(key));
+				}
+				// weakly consistent iterators still return the entries that are present during the whole iteration
+				final long iteratedPinnedKeys = map.keySet().stream().filter(key -> key < 0).count();
+				Assert.assertEquals(pinnedKeys, iteratedPinnedKeys);
+			}
+		});
+		Assert.assertEquals(pinnedKeys + writers * ConcurrentMapTestSuite.KEYS_PER_THREAD, map.size());
+	}
+
+	@Test
+	public void testClearDuringTransfers() throws Exception {
+		final PcCasChainingHashMap<Integer, Integer> map = new PcCasChainingHashMap<>(2);
+		final AtomicInteger finishedWriters = new AtomicInteger();
+		ConcurrentMapTestSuite.runInThreads(thread -> {
+			if (thread == 0) {
+				// clear helps with the transfers in progress, and must not lose track of the count
+				while (finishedWriters.get() < ConcurrentMapTestSuite.THREADS - 1) {
+					map.clear();
+				}
+				return;
+			}
+			for (int i = 0; i < ConcurrentMapTestSuite.KEYS_PER_THREAD; i++) {
+				final int key = thread * ConcurrentMapTestSuite.KEYS_PER_THREAD + i;
+				map.put(key, key);
+			}
+			finishedWriters.incrementAndGet();
+		});
+		Assert.assertEquals(map.size(), map.entrySet().stream().count());
+		for (Map.Entry<Integer, Integer> entry : map.entrySet()) {
+			Assert.assertEquals(entry.getValue(), map.get(entry.getKey()));
+		}
+		map.clear();
+		Assert.assertEquals(0, map.size());
+		Assert.assertTrue(map.isEmpty());
+		Assert.assertEquals(0, map.entrySet().stream().count());
+		map.put(1, 1);
+		Assert.assertEquals(1, map.size());
+	}
+
+	public static class PcCasChainingHashPersonMapTestSuite extends AbstractPersonMapTestSuite {
+
+		@Override
+		protected Map<String, Person> createEmptyMap() {
+			return new PcCasChainingHashMap<>();
+		}
+
+		@Override
+		protected Map<String, Person> createEmptyMap(float loadFactor) {
+			return new PcCasChainingHashMap<>(PcCasChainingHashMap.DEFAULT_INITIAL_CAPACITY, loadFactor);
+		}
+
+		@Override
+		protected void printMapLayout(Map<String, Person> map) {
+			System.err.println(((PcCasChainingHashMap<String, Person>)map).getLayout());
+		}
+	}
+}
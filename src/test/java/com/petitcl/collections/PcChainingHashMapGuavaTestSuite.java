@@ -26,6 +26,7 @@ public class PcChainingHashMapGuavaTestSuite extends TestCase {
 						CollectionSize.ANY,
 						MapFeature.SUPPORTS_PUT,
 						MapFeature.SUPPORTS_REMOVE,
+						MapFeature.FAILS_FAST_ON_CONCURRENT_MODIFICATION,
 						CollectionFeature.SUPPORTS_ITERATOR_REMOVE
 				)
 				.createTestSuite();
@@ -1,9 +1,15 @@
 package com.petitcl.collections;
 
+import com.petitcl.collections.models.HashCollider;
 import com.petitcl.collections.models.Person;
+import com.petitcl.collections.utils.AbstractIntegerMapTestSuite;
 import com.petitcl.collections.utils.AbstractPersonMapTestSuite;
+import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -18,6 +24,159 @@ public class PcChainingHashMapTest {
 				.runAllTests();
 	}
 
+	@Test
+	public void testLoadIncrementalResize() {
+		new PcChainingHashIncrementalResizePersonMapTestSuite()
+				.withStartDataSetSize(1)
+				.withEndDataSetSize(15)
+				.runAllTests();
+	}
+
+	@Test
+	public void testIncrementalResize() {
+		final PcChainingHashMap<Integer, String> map = new PcChainingHashMap<>(
+				16, PcChainingHashMap.DEFAULT_LOAD_FACTOR, PcChainingHashMap.ResizeStrategy.INCREMENTAL);
+		final Map<Integer, String> referenceMap = new HashMap<>();
+		for (int i = 0; i < 10_000; i++) {
+			Assert.assertNull(map.put(i, "value" + i));
+			referenceMap.put(i, "value" + i);
+			// entries must be visible whether their bucket was migrated or not
+			Assert.assertEquals(referenceMap.get(i / 2), map.get(i / 2));
+			if (i % 3 == 0) {
+				Assert.assertEquals(referenceMap.remove(i / 3), map.remove(i / 3));
+			}
+			Assert.assertEquals(referenceMap.size(), map.size());
+		}
+		Assert.assertEquals(referenceMap, map);
+	}
+
+	@Test
+	public void testTreeBins() {
+		final PcChainingHashMap<HashCollider, String> map = new PcChainingHashMap<>(16);
+		final Map<HashCollider, String> referenceMap = new HashMap<>();
+		// all keys collide, so they all end up in the same bin
+		for (int i = 0; i < 100; i++) {
+			final HashCollider key = HashCollider.of("key" + i, 42);
+			Assert.assertNull(map.put(key, "value" + i));
+			referenceMap.put(key, "value" + i);
+		}
+		Assert.assertTrue(map.getLayout().contains("tree"));
+		Assert.assertEquals(referenceMap, map);
+		for (int i = 0; i < 100; i++) {
+			Assert.assertEquals("value" + i, map.get(HashCollider.of("key" + i, 42)));
+		}
+		Assert.assertNull(map.get(HashCollider.of("missing", 42)));
+
+		// remove most keys, the bin should be converted back to a chain
+		for (int i = 0; i < 98; i++) {
+			Assert.assertEquals("value" + i, map.remove(HashCollider.of("key" + i, 42)));
+			referenceMap.remove(HashCollider.of("key" + i, 42));
+			Assert.assertEquals(referenceMap, map);
+		}
+		Assert.assertFalse(map.getLayout().contains("tree"));
+	}
+
+	@Test
+	public void testTreeBinsCompute() {
+		final PcChainingHashMap<HashCollider, Integer> map = new PcChainingHashMap<>(16);
+		final Map<HashCollider, Integer> referenceMap = new HashMap<>();
+		// all keys collide, so the bin goes back and forth between a chain and a tree
+		for (int i = 0; i < 1_000; i++) {
+			final HashCollider key = HashCollider.of("key" + (i % 37), 42);
+			Assert.assertEquals(referenceMap.merge(key, 1, Integer::sum), map.merge(key, 1, Integer::sum));
+			final HashCollider otherKey = HashCollider.of("key" + (i % 23), 42);
+			Assert.assertEquals(
+					referenceMap.compute(otherKey, PcChainingHashMapTest::incrementOrRemove),
+					map.compute(otherKey, PcChainingHashMapTest::incrementOrRemove));
+			Assert.assertEquals(referenceMap.size(), map.size());
+		}
+		Assert.assertEquals(referenceMap, map);
+	}
+
+	@Test
+	public void testTreeifyAfterLookup() {
+		// insertions after a missed lookup reuse the length of the chain counted by the lookup
+		final PcChainingHashMap<HashCollider, Integer> map = new PcChainingHashMap<>(16);
+		for (int i = 0; i < PcChainingHashMap.TREEIFY_THRESHOLD - 1; i++) {
+			final int value = i;
+			Assert.assertEquals(Integer.valueOf(value), map.computeIfAbsent(HashCollider.of("key" + i, 42), key -> value));
+			Assert.assertFalse(map.getLayout().contains("tree"));
+		}
+		Assert.assertEquals(Integer.valueOf(1), map.merge(HashCollider.of("last", 42), 1, Integer::sum));
+		Assert.assertTrue(map.getLayout().contains("tree"));
+		Assert.assertEquals(PcChainingHashMap.TREEIFY_THRESHOLD, map.size());
+	}
+
+	private static Integer incrementOrRemove(HashCollider key, Integer value) {
+		if (value == null) {
+			return 1;
+		}
+		return value % 5 == 0 ? null : value + 1;
+	}
+
+	@Test
+	public void testTreeBinsIteratorRemove() {
+		final PcChainingHashMap<HashCollider, String> map = new PcChainingHashMap<>(16);
+		for (int i = 0; i < 50; i++) {
+			map.put(HashCollider.of("key" + i, i % 2), "value" + i);
+		}
+		int count = 0;
+		for (Iterator<Map.Entry<HashCollider, String>> it = map.entrySet().iterator(); it.hasNext();) {
+			it.next();
+			it.remove();
+			count++;
+		}
+		Assert.assertEquals(50, count);
+		Assert.assertTrue(map.isEmpty());
+	}
+
+	@Test
+	public void testParallelStreams() {
+		new PcChainingHashIncrementalResizeIntegerMapTestSuite().testParallelStreams();
+	}
+
+	@Test
+	public void testFailFastIterators() {
+		new PcChainingHashIntegerMapTestSuite().testFailFastIterators();
+	}
+
+	@Test
+	public void testBulkBuild() {
+		final Map<Integer, String> referenceMap = new HashMap<>();
+		for (int i = 0; i < 10_000; i++) {
+			referenceMap.put(i, "value" + i);
+		}
+
+		// the table is sized once for all the entries
+		final PcChainingHashMap<Integer, String> map = new PcChainingHashMap<>();
+		map.putAll(referenceMap);
+		Assert.assertTrue(map.getLayout().contains("capacity=16384)"));
+		Assert.assertEquals(referenceMap, map);
+		Assert.assertEquals(referenceMap, new PcChainingHashMap<>(referenceMap));
+		Assert.assertEquals(referenceMap, PcChainingHashMap.fromEntries(referenceMap.entrySet()));
+
+		// copying a map of the same type keeps its structure, including tree bins
+		final PcChainingHashMap<HashCollider, String> collisions = new PcChainingHashMap<>();
+		for (int i = 0; i < 20; i++) {
+			collisions.put(HashCollider.of("key" + i, 42), "value" + i);
+		}
+		final PcChainingHashMap<HashCollider, String> collisionsCopy = new PcChainingHashMap<>(collisions);
+		Assert.assertEquals(collisions, collisionsCopy);
+		Assert.assertTrue(collisionsCopy.getLayout().contains("tree"));
+		collisionsCopy.remove(HashCollider.of("key0", 42));
+		Assert.assertEquals(20, collisions.size());
+		Assert.assertEquals(19, collisionsCopy.size());
+
+		final PcChainingHashMap<Integer, String> copy = new PcChainingHashMap<>(map);
+		Assert.assertEquals(map.getLayout(), copy.getLayout());
+		final PcChainingHashMap<Integer, String> otherMap = new PcChainingHashMap<>();
+		otherMap.put(1, "other");
+		otherMap.put(-100, "other");
+		otherMap.putAll(map);
+		referenceMap.put(-100, "other");
+		Assert.assertEquals(referenceMap, otherMap);
+	}
+
 	public static class PcChainingHashPersonMapTestSuite extends AbstractPersonMapTestSuite {
 
 		@Override
@@ -35,4 +194,56 @@ public class PcChainingHashMapTest {
 			System.err.println(((PcChainingHashMap<String, Person>)map).getLayout());
 		}
 	}
+
+	public static class PcChainingHashIncrementalResizePersonMapTestSuite extends PcChainingHashPersonMapTestSuite {
+
+		@Override
+		protected Map<String, Person> createEmptyMap() {
+			return new PcChainingHashMap<>(
+					PcChainingHashMap.DEFAULT_INITIAL_CAPACITY,
+					PcChainingHashMap.DEFAULT_LOAD_FACTOR,
+					PcChainingHashMap.ResizeStrategy.INCREMENTAL
+			);
+		}
+
+		@Override
+		protected Map<String, Person> createEmptyMap(float loadFactor) {
+			return new PcChainingHashMap<>(
+					PcChainingHashMap.DEFAULT_INITIAL_CAPACITY,
+					loadFactor,
+					PcChainingHashMap.ResizeStrategy.INCREMENTAL
+			);
+		}
+	}
+
+	public static class PcChainingHashIntegerMapTestSuite extends AbstractIntegerMapTestSuite {
+
+		@Override
+		protected Map<Integer, String> createEmptyMap() {
+			return new PcChainingHashMap<>();
+		}
+
+		@Override
+		protected Map<Integer, String> copyMap(Map<Integer, String> map) {
+			return new PcChainingHashMap<>(map);
+		}
+
+		@Override
+		protected Map<Integer, String> createMapFromEntries(Collection<Map.Entry<Integer, String>> entries) {
+			return PcChainingHashMap.fromEntries(entries);
+		}
+
+		@Override
+		protected String getLayout(Map<Integer, String> map) {
+			return ((PcChainingHashMap<Integer, String>) map).getLayout();
+		}
+	}
+
+	public static class PcChainingHashIncrementalResizeIntegerMapTestSuite extends PcChainingHashIntegerMapTestSuite {
+
+		@Override
+		protected Map<Integer, String> createEmptyMap() {
+			return new PcChainingHashMap<>(16, PcChainingHashMap.DEFAULT_LOAD_FACTOR, PcChainingHashMap.ResizeStrategy.INCREMENTAL);
+		}
+	}
 }
@@ -0,0 +1,47 @@
+package com.petitcl.collections;
+
+import com.petitcl.collections.models.Person;
+import com.petitcl.collections.utils.AbstractPersonMapTestSuite;
+import com.petitcl.collections.utils.ConcurrentMapTestSuite;
+import org.junit.Test;
+
+import java.util.Map;
+
+public class PcConcurrentChainingHashMapTest {
+
+	@Test
+	public void testLoad() {
+		new PcConcurrentChainingHashPersonMapTestSuite()
+				.withStartDataSetSize(1)
+				.withEndDataSetSize(15)
+				.runAllTests();
+	}
+
+	@Test
+	public void testConcurrentPutsAndRemoves() throws Exception {
+		new ConcurrentMapTestSuite(() -> new PcConcurrentChainingHashMap<>(2)).testConcurrentPutsAndRemoves();
+	}
+
+	@Test
+	public void testConcurrentUpdatesOfSameKeys() throws Exception {
+		new ConcurrentMapTestSuite(PcConcurrentChainingHashMap::new).testConcurrentUpdatesOfSameKeys();
+	}
+
+	public static class PcConcurrentChainingHashPersonMapTestSuite extends AbstractPersonMapTestSuite {
+
+		@Override
+		protected Map<String, Person> createEmptyMap() {
+			return new PcConcurrentChainingHashMap<>();
+		}
+
+		@Override
+		protected Map<String, Person> createEmptyMap(float loadFactor) {
+			return new PcConcurrentChainingHashMap<>(PcConcurrentChainingHashMap.DEFAULT_INITIAL_CAPACITY, loadFactor);
+		}
+
+		@Override
+		protected void printMapLayout(Map<String, Person> map) {
+			System.err.println(((PcConcurrentChainingHashMap<String, Person>)map).getLayout());
+		}
+	}
+}
@@ -0,0 +1,175 @@
+package com.petitcl.collections;
+
+import com.petitcl.collections.models.HashCollider;
+import com.petitcl.collections.models.Person;
+import com.petitcl.collections.utils.AbstractIntegerMapTestSuite;
+import com.petitcl.collections.utils.AbstractPersonMapTestSuite;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class PcCuckooHashMapTest {
+
+	private static final Pattern BUCKET_PATTERN = Pattern.compile("index \\d+ : \\(.*,bucket=[12]\\)");
+	private static final Pattern STASH_PATTERN = Pattern.compile("stash=(\\d+)");
+
+	@Test
+	public void testLoad() {
+		new PcCuckooHashPersonMapTestSuite()
+				.withStartDataSetSize(0)
+				.withEndDataSetSize(15)
+				.runAllTests();
+	}
+
+
+	@Test
+	public void testParallelStreams() {
+		new PcCuckooHashIntegerMapTestSuite().testParallelStreams();
+	}
+
+	@Test
+	public void testFailFastIterators() {
+		new PcCuckooHashIntegerMapTestSuite().testFailFastIterators();
+	}
+
+	@Test
+	public void testTwoBuckets() {
+		final PcCuckooHashMap<Integer, Integer> map = new PcCuckooHashMap<>(1024);
+		final Map<Integer, Integer> referenceMap = new HashMap<>();
+		final Random random = new Random(42);
+		// fill the table up to its load factor
+		while (referenceMap.size() < 900) {
+			final int key = random.nextInt();
+			map.put(key, key);
+			referenceMap.put(key, key);
+		}
+		Assert.assertEquals(referenceMap, map);
+		for (Integer key : referenceMap.keySet()) {
+			Assert.assertEquals(key, map.get(key));
+		}
+		// every entry is in one of its two buckets, or in the stash
+		final String layout = map.getLayout();
+		final Matcher matcher = BUCKET_PATTERN.matcher(layout);
+		int entries = 0;
+		while (matcher.find()) {
+			entries++;
+		}
+		final Matcher stashMatcher = STASH_PATTERN.matcher(layout);
+		Assert.assertTrue(stashMatcher.find());
+		final int stashSize = Integer.parseInt(stashMatcher.group(1));
+		Assert.assertTrue(stashSize <= PcCuckooHashMap.STASH_SIZE);
+		Assert.assertEquals(map.size(), entries + stashSize);
+	}
+
+	@Test
+	public void testTooManyCollisions() {
+		final PcCuckooHashMap<HashCollider, Integer> map = new PcCuckooHashMap<>(16);
+		final Map<HashCollider, Integer> referenceMap = new HashMap<>();
+		// keys that share a hash share their two buckets, the ones that do not fit go to the stash
+		final int maxCollisions = 2 * PcCuckooHashMap.BUCKET_SIZE + PcCuckooHashMap.STASH_SIZE;
+		for (int i = 0; i < maxCollisions; i++) {
+			final HashCollider key = HashCollider.of("key" + i, 7);
+			map.put(key, i);
+			referenceMap.put(key, i);
+		}
+		Assert.assertTrue(map.getLayout().contains("stash=" + PcCuckooHashMap.STASH_SIZE));
+		Assert.assertEquals(referenceMap, map);
+
+		// rebuilding the table does not help, the map is left unchanged
+		final String layout = map.getLayout();
+		Assert.assertThrows(PcCuckooHashMap.TooManyHashMapResizeException.class,
+				() -> map.put(HashCollider.of("other", 7), -1));
+		Assert.assertThrows(PcCuckooHashMap.TooManyHashMapResizeException.class,
+				() -> map.computeIfAbsent(HashCollider.of("other", 7), key -> -1));
+		Assert.assertEquals(layout, map.getLayout());
+		Assert.assertEquals(referenceMap, map);
+
+		// once a key is removed, there is room again
+		Assert.assertEquals(Integer.valueOf(0), map.remove(HashCollider.of("key0", 7)));
+		map.put(HashCollider.of("other", 7), -1);
+		referenceMap.remove(HashCollider.of("key0", 7));
+		referenceMap.put(HashCollider.of("other", 7), -1);
+		Assert.assertEquals(referenceMap, map);
+	}
+
+	@Test
+	public void testIteratorRemove() {
+		final PcCuckooHashMap<HashCollider, Integer> map = new PcCuckooHashMap<>(128);
+		final Map<HashCollider, Integer> referenceMap = new HashMap<>();
+		// keys share few hashes, but not more than the buckets and the stash can hold
+		for (int i = 0; i < 60; i++) {
+			final HashCollider key = HashCollider.of("key" + i, (i % 30) * 8);
+			map.put(key, i);
+			referenceMap.put(key, i);
+		}
+		final Set<HashCollider> visitedKeys = new HashSet<>();
+		for (Iterator<Map.Entry<HashCollider, Integer>> it = map.entrySet().iterator(); it.hasNext();) {
+			final Map.Entry<HashCollider, Integer> entry = it.next();
+			Assert.assertTrue("Entry visited twice: " + entry, visitedKeys.add(entry.getKey()));
+			if (entry.getValue() % 3 != 0) {
+				it.remove();
+				referenceMap.remove(entry.getKey());
+			}
+		}
+		Assert.assertEquals(60, visitedKeys.size());
+		Assert.assertEquals(referenceMap, map);
+		for (HashCollider key : referenceMap.keySet()) {
+			Assert.assertEquals(referenceMap.get(key), map.get(key));
+		}
+	}
+
+	@Test
+	public void testBulkBuild() {
+		new PcCuckooHashIntegerMapTestSuite().testBulkBuild();
+	}
+
+	public static class PcCuckooHashPersonMapTestSuite extends AbstractPersonMapTestSuite {
+
+		@Override
+		protected Map<String, Person> createEmptyMap() {
+			return new PcCuckooHashMap<>();
+		}
+
+		@Override
+		protected Map<String, Person> createEmptyMap(float loadFactor) {
+			return new PcCuckooHashMap<>(PcCuckooHashMap.DEFAULT_INITIAL_CAPACITY, loadFactor);
+		}
+
+		@Override
+		protected void printMapLayout(Map<String, Person> map) {
+			System.err.println(((PcCuckooHashMap<String, Person>)map).getLayout());
+		}
+	}
+
+	public static class PcCuckooHashIntegerMapTestSuite extends AbstractIntegerMapTestSuite {
+
+		@Override
+		protected Map<Integer, String> createEmptyMap() {
+			return new PcCuckooHashMap<>();
+		}
+
+		@Override
+		protected Map<Integer, String> copyMap(Map<Integer, String> map) {
+			return new PcCuckooHashMap<>(map);
+		}
+
+		@Override
+		protected Map<Integer, String> createMapFromEntries(Collection<Map.Entry<Integer, String>> entries) {
+			return PcCuckooHashMap.fromEntries(entries);
+		}
+
+		@Override
+		protected String getLayout(Map<Integer, String> map) {
+			return ((PcCuckooHashMap<Integer, String>) map).getLayout();
+		}
+	}
+}
@@ -2,11 +2,22 @@ package com.petitcl.collections;
 
 import com.petitcl.collections.models.HashCollider;
 import com.petitcl.collections.models.Person;
+import com.petitcl.collections.utils.AbstractIntegerMapTestSuite;
 import com.petitcl.collections.utils.AbstractPersonMapTestSuite;
+import org.junit.Assert;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
 
 public class PcDeterministicHashMapTest {
 
@@ -43,6 +54,245 @@ public class PcDeterministicHashMapTest {
 		System.err.println(map.getLayout());
 	}
 
+
+	@Test
+	public void testParallelStreams() {
+		new PcDeterministicHashIntegerMapTestSuite().testParallelStreams();
+	}
+
+	@Test
+	public void testParallelStreamsKeepInsertionOrder() {
+		final PcDeterministicHashMap<Integer, String> map = new PcDeterministicHashMap<>();
+		map.put(-1, "cleared");
+		map.clear();
+		final List<Integer> expectedKeys = new ArrayList<>();
+		for (int i = 1_000; i > 0; i--) {
+			map.put(i, "value" + i);
+			if (i % 7 == 0) {
+				map.remove(i);
+			} else {
+				expectedKeys.add(i);
+			}
+		}
+		Assert.assertTrue(map.keySet().spliterator().hasCharacteristics(Spliterator.ORDERED));
+		Assert.assertEquals(expectedKeys, map.keySet().parallelStream().collect(Collectors.toList()));
+	}
+
+	@Test
+	public void testFailFastIterators() {
+		new PcDeterministicHashIntegerMapTestSuite().testFailFastIterators();
+	}
+
+	@Test
+	public void testBulkBuild() {
+		final Map<Integer, String> referenceMap = new LinkedHashMap<>();
+		for (int i = 10_000; i > 0; i--) {
+			referenceMap.put(i, "value" + i);
+		}
+		final List<Integer> expectedKeys = new ArrayList<>(referenceMap.keySet());
+
+		final PcDeterministicHashMap<Integer, String> map = new PcDeterministicHashMap<>();
+		map.putAll(referenceMap);
+		Assert.assertEquals(referenceMap, map);
+		Assert.assertEquals(expectedKeys, new ArrayList<>(map.keySet()));
+		Assert.assertEquals(expectedKeys, new ArrayList<>(new PcDeterministicHashMap<>(referenceMap).keySet()));
+		Assert.assertEquals(expectedKeys, new ArrayList<>(PcDeterministicHashMap.fromEntries(referenceMap.entrySet()).keySet()));
+
+		// copying a map of the same type keeps its order, without its tombstones
+		for (int i = 1; i <= 10_000; i += 2) {
+			map.remove(i);
+			referenceMap.remove(i);
+		}
+		final PcDeterministicHashMap<Integer, String> copy = new PcDeterministicHashMap<>(map);
+		Assert.assertEquals(referenceMap, copy);
+		Assert.assertEquals(new ArrayList<>(referenceMap.keySet()), new ArrayList<>(copy.keySet()));
+
+		final PcDeterministicHashMap<Integer, String> otherMap = new PcDeterministicHashMap<>();
+		otherMap.put(2, "other");
+		otherMap.put(-100, "other");
+		otherMap.putAll(map);
+		final Map<Integer, String> expectedMap = new LinkedHashMap<>();
+		expectedMap.put(2, "other");
+		expectedMap.put(-100, "other");
+		expectedMap.putAll(referenceMap);
+		Assert.assertEquals(new ArrayList<>(expectedMap.entrySet()), new ArrayList<>(otherMap.entrySet()));
+	}
+
+	@Test
+	public void testChainsOfIndexes() {
+		final PcDeterministicHashMap<HashCollider, Integer> map = new PcDeterministicHashMap<>(16);
+		final Map<HashCollider, Integer> referenceMap = new LinkedHashMap<>();
+		// keys share few hashes, so chains go through many entries, and through tombstones once entries are removed
+		for (int i = 0; i < 200; i++) {
+			final HashCollider key = HashCollider.of("key" + i, (i % 5) * 16);
+			map.put(key, i);
+			referenceMap.put(key, i);
+		}
+		for (Iterator<Map.Entry<HashCollider, Integer>> it = map.entrySet().iterator(); it.hasNext();) {
+			final Map.Entry<HashCollider, Integer> entry = it.next();
+			if (entry.getValue() % 3 == 0) {
+				it.remove();
+				referenceMap.remove(entry.getKey());
+			}
+		}
+		for (int i = 0; i < 200; i++) {
+			Assert.assertEquals(referenceMap.get(HashCollider.of("key" + i, (i % 5) * 16)), map.get(HashCollider.of("key" + i, (i % 5) * 16)));
+		}
+		Assert.assertEquals(new ArrayList<>(referenceMap.entrySet()), new ArrayList<>(map.entrySet()));
+	}
+
+	@Test
+	public void testEntriesWriteThrough() {
+		final PcDeterministicHashMap<Integer, String> map = new PcDeterministicHashMap<>();
+		for (int i = 0; i < 10; i++) {
+			map.put(i, "value" + i);
+		}
+		final List<Map.Entry<Integer, String>> entries = new ArrayList<>(map.entrySet());
+		for (Map.Entry<Integer, String> entry : entries) {
+			Assert.assertEquals("value" + entry.getKey(), entry.setValue("updated" + entry.getKey()));
+		}
+		for (int i = 0; i < 10; i++) {
+			Assert.assertEquals("updated" + i, map.get(i));
+		}
+
+		// entries find their key again after the tables were rebuilt
+		map.remove(0);
+		for (int i = 10; i < 1_000; i++) {
+			map.put(i, "value" + i);
+		}
+		for (Map.Entry<Integer, String> entry : entries) {
+			entry.setValue("moved" + entry.getKey());
+		}
+		Assert.assertNull(map.get(0));
+		for (int i = 1; i < 10; i++) {
+			Assert.assertEquals("moved" + i, map.get(i));
+		}
+		map.put(5, "put");
+		Assert.assertEquals("put", entries.get(5).getValue());
+	}
+
+	@Test
+	public void testAccessOrder() {
+		final PcDeterministicHashMap<Integer, Integer> map = new PcDeterministicHashMap<>(
+				PcDeterministicHashMap.DEFAULT_INITIAL_CAPACITY, PcDeterministicHashMap.DEFAULT_LOAD_FACTOR, true);
+		final Map<Integer, Integer> referenceMap = new LinkedHashMap<>(16, 0.75f, true);
+		final Random random = new Random(42);
+		for (int i = 0; i < 20_000; i++) {
+			final int key = random.nextInt(200);
+			switch (random.nextInt(8)) {
+				case 0:
+				case 1:
+					Assert.assertEquals(referenceMap.get(key), map.get(key));
+					break;
+				case 2:
+					Assert.assertEquals(referenceMap.put(key, i), map.put(key, i));
+					break;
+				case 3:
+					Assert.assertEquals(referenceMap.remove(key), map.remove(key));
+					break;
+				case 4:
+					Assert.assertEquals(referenceMap.getOrDefault(key, -1), map.getOrDefault(key, -1));
+					break;
+				case 5:
+					Assert.assertEquals(referenceMap.merge(key, i, Integer::sum), map.merge(key, i, Integer::sum));
+					break;
+				case 6:
+					Assert.assertEquals(referenceMap.computeIfAbsent(key, k -> k), map.computeIfAbsent(key, k -> k));
+					break;
+				default:
+					Assert.assertEquals(referenceMap.replace(key, i), map.replace(key, i));
+					break;
+			}
+			Assert.assertEquals(referenceMap.size(), map.size());
+		}
+		Assert.assertEquals(new ArrayList<>(referenceMap.entrySet()), new ArrayList<>(map.entrySet()));
+
+		// getting a value is a structural modification in access order
+		final Iterator<Integer> iterator = map.keySet().iterator();
+		map.get(iterator.next());
+		Assert.assertThrows(ConcurrentModificationException.class, iterator::next);
+	}
+
+	@Test
+	public void testRemoveEldestEntry() {
+		final List<Integer> evictedKeys = new ArrayList<>();
+		final PcDeterministicHashMap<Integer, String> map = new PcDeterministicHashMap<>() {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+				if (size() > 3) {
+					evictedKeys.add(eldest.getKey());
+					return true;
+				}
+				return false;
+			}
+		};
+		for (int i = 0; i < 5; i++) {
+			map.put(i, "value" + i);
+		}
+		// updates are not insertions, so they do not evict
+		map.put(3, "updated");
+		Assert.assertEquals(List.of(0, 1), evictedKeys);
+		Assert.assertEquals(List.of(2, 3, 4), new ArrayList<>(map.keySet()));
+
+		map.putAll(Map.of(5, "value5"));
+		map.computeIfAbsent(6, key -> "value6");
+		Assert.assertEquals(List.of(0, 1, 2, 3), evictedKeys);
+		Assert.assertEquals(List.of(4, 5, 6), new ArrayList<>(map.keySet()));
+	}
+
+	@Test
+	public void testCompactionUnderChurn() {
+		final PcDeterministicHashMap<Integer, String> map = new PcDeterministicHashMap<>();
+		final Map<Integer, String> referenceMap = new LinkedHashMap<>();
+		map.put(-1, "pinned");
+		referenceMap.put(-1, "pinned");
+		for (int i = 0; i < 1_000; i++) {
+			map.put(i, "value" + i);
+			referenceMap.put(i, "value" + i);
+		}
+		Assert.assertTrue(map.getLayout().contains("capacity=2048)"));
+		final Map.Entry<Integer, String> pinnedEntry = map.entrySet().iterator().next();
+		// a window of keys slides over the map: the number of entries stays the same, but tombstones keep on piling up
+		for (int i = 1_000; i < 100_000; i++) {
+			map.put(i, "value" + i);
+			referenceMap.put(i, "value" + i);
+			map.remove(i - 1_000);
+			referenceMap.remove(i - 1_000);
+		}
+		// tombstones are dropped in place, so the capacity stays the same, and the nodes are kept
+		Assert.assertTrue(map.getLayout().contains("capacity=2048)"));
+		Assert.assertEquals(new ArrayList<>(referenceMap.entrySet()), new ArrayList<>(map.entrySet()));
+		pinnedEntry.setValue("updated");
+		Assert.assertEquals("updated", map.get(-1));
+		for (Integer key : referenceMap.keySet()) {
+			Assert.assertNotNull(map.get(key));
+		}
+	}
+
+	@Test
+	public void testShrinkWhenMostlyTombstones() {
+		final PcDeterministicHashMap<Integer, String> map = new PcDeterministicHashMap<>();
+		final Map<Integer, String> referenceMap = new LinkedHashMap<>();
+		for (int i = 0; i < 1_000; i++) {
+			map.put(i, "value" + i);
+			referenceMap.put(i, "value" + i);
+		}
+		Assert.assertTrue(map.getLayout().contains("capacity=2048)"));
+		for (int i = 0; i < 990; i++) {
+			map.remove(i);
+			referenceMap.remove(i);
+		}
+		// once the data table is full, it is rebuilt with a capacity fitted to the remaining entries
+		for (int i = 1_000; i < 3_000; i++) {
+			map.put(i, "value" + i);
+			referenceMap.put(i, "value" + i);
+			map.remove(i - 10);
+			referenceMap.remove(i - 10);
+		}
+		Assert.assertTrue(map.getLayout().contains("capacity=32)"));
+		Assert.assertEquals(new ArrayList<>(referenceMap.entrySet()), new ArrayList<>(map.entrySet()));
+	}
+
 	public static class PcDeterministicHashPersonMapTestSuite extends AbstractPersonMapTestSuite {
 
 		@Override
@@ -60,4 +310,27 @@ public class PcDeterministicHashMapTest {
 			System.err.println(((PcDeterministicHashMap<String, Person>)map).getLayout());
 		}
 	}
+
+	public static class PcDeterministicHashIntegerMapTestSuite extends AbstractIntegerMapTestSuite {
+
+		@Override
+		protected Map<Integer, String> createEmptyMap() {
+			return new PcDeterministicHashMap<>();
+		}
+
+		@Override
+		protected Map<Integer, String> copyMap(Map<Integer, String> map) {
+			return new PcDeterministicHashMap<>(map);
+		}
+
+		@Override
+		protected Map<Integer, String> createMapFromEntries(Collection<Map.Entry<Integer, String>> entries) {
+			return PcDeterministicHashMap.fromEntries(entries);
+		}
+
+		@Override
+		protected String getLayout(Map<Integer, String> map) {
+			return ((PcDeterministicHashMap<Integer, String>) map).getLayout();
+		}
+	}
 }
@@ -0,0 +1,259 @@
+package com.petitcl.collections;
+
+import com.petitcl.collections.PcExpiringCache.ExpirationPolicy;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class PcExpiringCacheTest {
+
+	private static final long SECOND = Duration.ofSeconds(1).toNanos();
+
+	/**
+	 * Ticker that only advances when the test advances it.
+	 */
+	private static class FakeTicker {
+		private long time;
+
+		private FakeTicker(long time) {
+			this.time = time;
+		}
+
+		private long read() {
+			return time;
+		}
+
+		private void advance(Duration duration) {
+			time += duration.toNanos();
+		}
+	}
+
+	@Test
+	public void testOperations() {
+		final FakeTicker ticker = new FakeTicker(0);
+		final PcExpiringCache<Integer, String> cache = new PcExpiringCache<>(ExpirationPolicy.AFTER_WRITE, Duration.ofMinutes(1), ticker::read);
+		Assert.assertTrue(cache.isEmpty());
+		Assert.assertNull(cache.put(1, "one"));
+		Assert.assertEquals("one", cache.put(1, "uno"));
+		Assert.assertEquals("uno", cache.get(1));
+		Assert.assertTrue(cache.containsKey(1));
+		Assert.assertNull(cache.get(2));
+		Assert.assertEquals(1, cache.size());
+		Assert.assertEquals("uno", cache.remove(1));
+		Assert.assertNull(cache.remove(1));
+		Assert.assertTrue(cache.isEmpty());
+
+		for (int i = 0; i < 5; i++) {
+			cache.put(i, "value" + i);
+		}
+		cache.clear();
+		Assert.assertEquals(0, cache.size());
+		Assert.assertFalse(cache.containsKey(0));
+		Assert.assertEquals(ExpirationPolicy.AFTER_WRITE, cache.getPolicy());
+
+		Assert.assertThrows(IllegalArgumentException.class, () -> new PcExpiringCache<>(ExpirationPolicy.AFTER_WRITE, Duration.ZERO));
+		Assert.assertThrows(IllegalArgumentException.class, () -> new PcExpiringCache<>(ExpirationPolicy.VARIABLE, Duration.ofSeconds(-1)));
+		Assert.assertThrows(NullPointerException.class, () -> cache.put(null, "value"));
+		Assert.assertThrows(NullPointerException.class, () -> cache.put(1, null));
+		Assert.assertThrows(UnsupportedOperationException.class, () -> cache.put(1, "one", Duration.ofSeconds(1)));
+	}
+
+	@Test
+	public void testExpireAfterWrite() {
+		final FakeTicker ticker = new FakeTicker(0);
+		final PcExpiringCache<Integer, String> cache = new PcExpiringCache<>(ExpirationPolicy.AFTER_WRITE, Duration.ofSeconds(10), ticker::read);
+		cache.put(1, "one");
+		ticker.advance(Duration.ofSeconds(5));
+		cache.put(2, "two");
+		ticker.advance(Duration.ofSeconds(4));
+		// reads do not extend the expiration
+		Assert.assertEquals("one", cache.get(1));
+		ticker.advance(Duration.ofSeconds(1));
+		Assert.assertFalse(cache.containsKey(1));
+		Assert.assertNull(cache.get(1));
+		Assert.assertEquals("two", cache.get(2));
+		Assert.assertEquals(1, cache.size());
+
+		// writes extend the expiration
+		ticker.advance(Duration.ofSeconds(4));
+		Assert.assertEquals("two", cache.put(2, "deux"));
+		ticker.advance(Duration.ofSeconds(9));
+		Assert.assertEquals("deux", cache.get(2));
+		ticker.advance(Duration.ofSeconds(1));
+		Assert.assertNull(cache.put(2, "zwei"));
+		Assert.assertEquals("zwei", cache.get(2));
+	}
+
+	@Test
+	public void testExpireAfterAccess() {
+		final FakeTicker ticker = new FakeTicker(0);
+		final PcExpiringCache<Integer, String> cache = new PcExpiringCache<>(ExpirationPolicy.AFTER_ACCESS, Duration.ofSeconds(10), ticker::read);
+		cache.put(1, "one");
+		cache.put(2, "two");
+		for (int i = 0; i < 5; i++) {
+			ticker.advance(Duration.ofSeconds(9));
+			Assert.assertEquals("one", cache.get(1));
+		}
+		// the expired entry was the first one of the data table, so a read reclaimed it
+		Assert.assertFalse(cache.containsKey(2));
+		Assert.assertEquals(1, cache.size());
+		// containsKey is not an access
+		ticker.advance(Duration.ofSeconds(9));
+		Assert.assertTrue(cache.containsKey(1));
+		ticker.advance(Duration.ofSeconds(1));
+		Assert.assertFalse(cache.containsKey(1));
+		Assert.assertEquals(1, cache.size());
+		Assert.assertEquals(1, cache.cleanUp());
+		Assert.assertNull(cache.get(1));
+		Assert.assertTrue(cache.isEmpty());
+	}
+
+	@Test
+	public void testVariableExpiration() {
+		final FakeTicker ticker = new FakeTicker(0);
+		final PcExpiringCache<String, String> cache = new PcExpiringCache<>(ExpirationPolicy.VARIABLE, Duration.ofMinutes(5), ticker::read);
+		final Map<String, Duration> timesToLive = new HashMap<>();
+		timesToLive.put("second", Duration.ofSeconds(1));
+		timesToLive.put("minute", Duration.ofMinutes(1));
+		timesToLive.put("hour", Duration.ofHours(1));
+		timesToLive.put("day", Duration.ofDays(1));
+		timesToLive.put("month", Duration.ofDays(30));
+		timesToLive.put("years", Duration.ofDays(1_000));
+		for (Map.Entry<String, Duration> entry : timesToLive.entrySet()) {
+			cache.put(entry.getKey(), entry.getKey(), entry.getValue());
+		}
+		cache.put("default", "default");
+		timesToLive.put("default", Duration.ofMinutes(5));
+		final String layout = cache.getLayout();
+		Assert.assertTrue(layout, layout.contains("level 0, bucket 0 : [second]\n"));
+		Assert.assertTrue(layout, layout.contains("level 0, bucket 55 : [minute]\n"));
+		Assert.assertTrue(layout, layout.contains("level 1, bucket 4 : [default]\n"));
+		Assert.assertTrue(layout, layout.contains("level 1, bucket 52 : [hour]\n"));
+		Assert.assertTrue(layout, layout.contains("level 4, bucket 0 : ["));
+
+		// advance by steps that grow with the elapsed time, and check that each entry
+		// is reclaimed less than 2 buckets of the first level after it expires
+		long elapsed = 0;
+		while (!cache.isEmpty()) {
+			final long step;
+			if (elapsed < Duration.ofMinutes(2).toNanos()) {
+				step = SECOND;
+			} else if (elapsed < Duration.ofHours(2).toNanos()) {
+				step = 60 * SECOND;
+			} else if (elapsed < Duration.ofDays(2).toNanos()) {
+				step = 3_600 * SECOND;
+			} else {
+				step = 86_400 * SECOND;
+			}
+			ticker.advance(Duration.ofNanos(step));
+			elapsed += step;
+			cache.cleanUp();
+			for (Map.Entry<String, Duration> entry : timesToLive.entrySet()) {
+				final long timeToLive = entry.getValue().toNanos();
+				Assert.assertEquals(entry.getKey(), elapsed < timeToLive, cache.containsKey(entry.getKey()));
+				if (elapsed >= timeToLive + step + 2 * (1L << 30)) {
+					Assert.assertFalse(entry.getKey() + " was not reclaimed:\n" + cache.getLayout(), cache.getLayout().contains(entry.getKey()));
+				}
+			}
+			Assert.assertTrue(elapsed <= Duration.ofDays(1_001).toNanos());
+		}
+	}
+
+	@Test
+	public void testCleanUpIsBounded() {
+		final FakeTicker ticker = new FakeTicker(0);
+		for (ExpirationPolicy policy : ExpirationPolicy.values()) {
+			final PcExpiringCache<Integer, Integer> cache = new PcExpiringCache<>(policy, Duration.ofSeconds(10), ticker::read);
+			for (int i = 0; i < 5_000; i++) {
+				cache.put(i, i);
+			}
+			ticker.advance(Duration.ofMinutes(1));
+			int cleanUps = 0;
+			while (!cache.isEmpty()) {
+				final int size = cache.size();
+				final int expired = cache.cleanUp();
+				Assert.assertTrue(expired <= PcExpiringCache.CLEANUP_WORK);
+				Assert.assertEquals(size - expired, cache.size());
+				cleanUps++;
+			}
+			Assert.assertEquals(policy.toString(), 5, cleanUps);
+		}
+	}
+
+	@Test
+	public void testReadsAndWritesReclaimExpiredEntries() {
+		final FakeTicker ticker = new FakeTicker(0);
+		for (ExpirationPolicy policy : ExpirationPolicy.values()) {
+			final PcExpiringCache<Integer, Integer> cache = new PcExpiringCache<>(policy, Duration.ofSeconds(10), ticker::read);
+			// 100 new keys per second, that are read once and never written again
+			for (int i = 0; i < 100_000; i++) {
+				cache.put(i, i);
+				cache.get(i);
+				if (i % 100 == 99) {
+					ticker.advance(Duration.ofSeconds(1));
+				}
+				Assert.assertTrue(policy + " " + cache.size(), cache.size() <= 1_300);
+			}
+		}
+	}
+
+	@Test
+	public void testSameReadsAsModel() {
+		final Random random = new Random(42);
+		for (ExpirationPolicy policy : ExpirationPolicy.values()) {
+			// start close to a change of sign, as System.nanoTime() can be negative
+			final FakeTicker ticker = new FakeTicker(-Duration.ofMinutes(30).toNanos());
+			final PcExpiringCache<Integer, Integer> cache = new PcExpiringCache<>(policy, Duration.ofMinutes(1), ticker::read);
+			final Map<Integer, Integer> values = new HashMap<>();
+			final Map<Integer, Long> expirationTimes = new HashMap<>();
+			for (int i = 0; i < 200_000; i++) {
+				final int key = random.nextInt(2_000);
+				final long now = ticker.read();
+				final Long expirationTime = expirationTimes.get(key);
+				final Integer expected = expirationTime != null && now < expirationTime ? values.get(key) : null;
+				switch (random.nextInt(6)) {
+					case 0:
+					case 1:
+						Assert.assertEquals(expected, cache.get(key));
+						if (expected != null && policy == ExpirationPolicy.AFTER_ACCESS) {
+							expirationTimes.put(key, now + Duration.ofMinutes(1).toNanos());
+						}
+						break;
+					case 2: {
+						Duration timeToLive = Duration.ofMinutes(1);
+						if (policy == ExpirationPolicy.VARIABLE) {
+							timeToLive = Duration.ofMillis(1 + random.nextInt(3_600_000));
+							Assert.assertEquals(expected, cache.put(key, i, timeToLive));
+						} else {
+							Assert.assertEquals(expected, cache.put(key, i));
+						}
+						values.put(key, i);
+						expirationTimes.put(key, now + timeToLive.toNanos());
+						break;
+					}
+					case 3:
+						Assert.assertEquals(expected, cache.remove(key));
+						values.remove(key);
+						expirationTimes.remove(key);
+						break;
+					case 4:
+						Assert.assertEquals(expected != null, cache.containsKey(key));
+						break;
+					default:
+						ticker.advance(Duration.ofMillis(random.nextInt(100)));
+						break;
+				}
+			}
+			// once everything expired, everything is reclaimed
+			ticker.advance(Duration.ofHours(2));
+			for (int i = 0; i < 10 && !cache.isEmpty(); i++) {
+				cache.cleanUp();
+			}
+			Assert.assertTrue(policy.toString(), cache.isEmpty());
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package com.petitcl.collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PcFrequencySketchTest {
+
+	@Test
+	public void testFrequency() {
+		final PcFrequencySketch sketch = new PcFrequencySketch(1_000);
+		for (int i = 0; i < 5; i++) {
+			sketch.increment("hot");
+		}
+		sketch.increment("warm");
+		Assert.assertEquals(5, sketch.frequency("hot"));
+		Assert.assertEquals(1, sketch.frequency("warm"));
+		Assert.assertEquals(0, sketch.frequency("cold"));
+
+		// counters saturate instead of overflowing
+		for (int i = 0; i < 100; i++) {
+			sketch.increment("hot");
+		}
+		Assert.assertEquals(PcFrequencySketch.MAXIMUM_FREQUENCY, sketch.frequency("hot"));
+
+		sketch.clear();
+		Assert.assertEquals(0, sketch.frequency("hot"));
+	}
+
+	@Test
+	public void testCollisionsOnlyOverestimate() {
+		final PcFrequencySketch sketch = new PcFrequencySketch(1_000);
+		// even keys are incremented 6 times, odd keys 2 times
+		for (int round = 0; round < 2; round++) {
+			for (int key = 0; key < 100; key++) {
+				for (int j = 0; j < (key % 2 == 0 ? 3 : 1); j++) {
+					sketch.increment(key);
+				}
+			}
+		}
+		int exact = 0;
+		for (int key = 0; key < 100; key++) {
+			final int expectedFrequency = key % 2 == 0 ? 6 : 2;
+			final int frequency = sketch.frequency(key);
+			Assert.assertTrue(frequency >= expectedFrequency);
+			if (frequency == expectedFrequency) {
+				exact++;
+			}
+		}
+		// with few keys per counter, the minimum of 4 counters is rarely affected by collisions
+		Assert.assertTrue("Exact frequencies: " + exact, exact > 90);
+	}
+
+	@Test
+	public void testAging() {
+		final PcFrequencySketch sketch = new PcFrequencySketch(1_000, 20);
+		for (int i = 0; i < 12; i++) {
+			sketch.increment("old");
+		}
+		for (int i = 0; i < 7; i++) {
+			sketch.increment("new");
+		}
+		Assert.assertEquals(12, sketch.frequency("old"));
+		Assert.assertEquals(7, sketch.frequency("new"));
+		// the 20th increment reaches the sample size, and halves all the counters
+		sketch.increment("new");
+		Assert.assertEquals(6, sketch.frequency("old"));
+		Assert.assertEquals(4, sketch.frequency("new"));
+
+		Assert.assertThrows(IllegalArgumentException.class, () -> new PcFrequencySketch(1_000, 0));
+	}
+}
@@ -0,0 +1,176 @@
+package com.petitcl.collections;
+
+import com.petitcl.collections.models.HashCollider;
+import com.petitcl.collections.models.Person;
+import com.petitcl.collections.utils.AbstractIntegerMapTestSuite;
+import com.petitcl.collections.utils.AbstractPersonMapTestSuite;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class PcHopscotchHashMapTest {
+
+	private static final Pattern DISTANCE_PATTERN = Pattern.compile("index \\d+ : \\(.*,distance=(\\d+)\\)");
+	private static final Pattern OVERFLOW_PATTERN = Pattern.compile("overflow=(\\d+)");
+
+	@Test
+	public void testLoad() {
+		new PcHopscotchHashPersonMapTestSuite()
+				.withStartDataSetSize(0)
+				.withEndDataSetSize(15)
+				.runAllTests();
+	}
+
+
+	@Test
+	public void testParallelStreams() {
+		new PcHopscotchHashIntegerMapTestSuite().testParallelStreams();
+	}
+
+	@Test
+	public void testFailFastIterators() {
+		new PcHopscotchHashIntegerMapTestSuite().testFailFastIterators();
+	}
+
+	@Test
+	public void testNeighborhoods() {
+		final PcHopscotchHashMap<Integer, Integer> map = new PcHopscotchHashMap<>(1024);
+		final Map<Integer, Integer> referenceMap = new HashMap<>();
+		// fill the table up to its load factor, with keys that all want the first slots of the table
+		for (int i = 0; i < 900; i++) {
+			final int key = i * 1024 + (i % 64);
+			map.put(key, i);
+			referenceMap.put(key, i);
+		}
+		Assert.assertEquals(referenceMap, map);
+		for (Integer key : referenceMap.keySet()) {
+			Assert.assertEquals(referenceMap.get(key), map.get(key));
+		}
+		// every entry of the table is in the neighborhood of its home slot
+		final Matcher matcher = DISTANCE_PATTERN.matcher(map.getLayout());
+		int entries = 0;
+		while (matcher.find()) {
+			Assert.assertTrue(Integer.parseInt(matcher.group(1)) < PcHopscotchHashMap.NEIGHBORHOOD_SIZE);
+			entries++;
+		}
+		final Matcher overflowMatcher = OVERFLOW_PATTERN.matcher(map.getLayout());
+		Assert.assertTrue(overflowMatcher.find());
+		Assert.assertEquals(map.size(), entries + Integer.parseInt(overflowMatcher.group(1)));
+	}
+
+	@Test
+	public void testOverflow() {
+		final PcHopscotchHashMap<HashCollider, Integer> map = new PcHopscotchHashMap<>(64);
+		final Map<HashCollider, Integer> referenceMap = new HashMap<>();
+		// keys that share a hash cannot all fit in a neighborhood, and doubling the table would not help
+		for (int i = 0; i < 40; i++) {
+			final HashCollider key = HashCollider.of("key" + i, 7);
+			map.put(key, i);
+			referenceMap.put(key, i);
+		}
+		Assert.assertTrue(map.getLayout().contains("capacity=64)"));
+		Assert.assertTrue(map.getLayout().contains("overflow=9"));
+		Assert.assertEquals(referenceMap, map);
+		for (int i = 0; i < 40; i++) {
+			Assert.assertEquals(Integer.valueOf(i), map.get(HashCollider.of("key" + i, 7)));
+		}
+
+		// removals from the overflow area leave holes, except at its end
+		Assert.assertEquals(Integer.valueOf(39), map.remove(HashCollider.of("key39", 7)));
+		Assert.assertEquals(Integer.valueOf(35), map.remove(HashCollider.of("key35", 7)));
+		referenceMap.remove(HashCollider.of("key39", 7));
+		referenceMap.remove(HashCollider.of("key35", 7));
+		Assert.assertTrue(map.getLayout().contains("overflow=8"));
+		Assert.assertEquals(referenceMap, map);
+
+		// the overflow area is cleaned up when the table is resized
+		for (int i = 0; i < 100; i++) {
+			map.put(HashCollider.of("other" + i, i), i);
+			referenceMap.put(HashCollider.of("other" + i, i), i);
+		}
+		final String layout = map.getLayout();
+		final Matcher overflowMatcher = OVERFLOW_PATTERN.matcher(layout);
+		Assert.assertTrue(overflowMatcher.find());
+		Assert.assertEquals(layout.split(",overflow\\)", -1).length - 1, Integer.parseInt(overflowMatcher.group(1)));
+		Assert.assertEquals(referenceMap, map);
+	}
+
+	@Test
+	public void testIteratorRemove() {
+		final PcHopscotchHashMap<HashCollider, Integer> map = new PcHopscotchHashMap<>(128);
+		final Map<HashCollider, Integer> referenceMap = new HashMap<>();
+		for (int i = 0; i < 60; i++) {
+			final HashCollider key = HashCollider.of("key" + i, (i % 6) * 8);
+			map.put(key, i);
+			referenceMap.put(key, i);
+		}
+		final Set<HashCollider> visitedKeys = new HashSet<>();
+		for (Iterator<Map.Entry<HashCollider, Integer>> it = map.entrySet().iterator(); it.hasNext();) {
+			final Map.Entry<HashCollider, Integer> entry = it.next();
+			Assert.assertTrue("Entry visited twice: " + entry, visitedKeys.add(entry.getKey()));
+			if (entry.getValue() % 3 != 0) {
+				it.remove();
+				referenceMap.remove(entry.getKey());
+			}
+		}
+		Assert.assertEquals(60, visitedKeys.size());
+		Assert.assertEquals(referenceMap, map);
+		for (HashCollider key : referenceMap.keySet()) {
+			Assert.assertEquals(referenceMap.get(key), map.get(key));
+		}
+	}
+
+	@Test
+	public void testBulkBuild() {
+		new PcHopscotchHashIntegerMapTestSuite().testBulkBuild();
+	}
+
+	public static class PcHopscotchHashPersonMapTestSuite extends AbstractPersonMapTestSuite {
+
+		@Override
+		protected Map<String, Person> createEmptyMap() {
+			return new PcHopscotchHashMap<>();
+		}
+
+		@Override
+		protected Map<String, Person> createEmptyMap(float loadFactor) {
+			return new PcHopscotchHashMap<>(PcHopscotchHashMap.DEFAULT_INITIAL_CAPACITY, loadFactor);
+		}
+
+		@Override
+		protected void printMapLayout(Map<String, Person> map) {
+			System.err.println(((PcHopscotchHashMap<String, Person>)map).getLayout());
+		}
+	}
+
+	public static class PcHopscotchHashIntegerMapTestSuite extends AbstractIntegerMapTestSuite {
+
+		@Override
+		protected Map<Integer, String> createEmptyMap() {
+			return new PcHopscotchHashMap<>();
+		}
+
+		@Override
+		protected Map<Integer, String> copyMap(Map<Integer, String> map) {
+			return new PcHopscotchHashMap<>(map);
+		}
+
+		@Override
+		protected Map<Integer, String> createMapFromEntries(Collection<Map.Entry<Integer, String>> entries) {
+			return PcHopscotchHashMap.fromEntries(entries);
+		}
+
+		@Override
+		protected String getLayout(Map<Integer, String> map) {
+			return ((PcHopscotchHashMap<Integer, String>) map).getLayout();
+		}
+	}
+}
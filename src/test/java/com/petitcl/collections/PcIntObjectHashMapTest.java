@@ -0,0 +1,99 @@
+package com.petitcl.collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class PcIntObjectHashMapTest {
+
+	@Test
+	public void testRandomOperations() {
+		final PcIntObjectHashMap<String> map = new PcIntObjectHashMap<>();
+		final Map<Integer, String> referenceMap = new HashMap<>();
+		final Random random = new Random(42);
+		// keys are taken in a small range, so that clusters form and are shifted back on removals
+		for (int i = 0; i < 100_000; i++) {
+			final int key = random.nextInt(2_000) - 1_000;
+			final String value = "value" + random.nextInt(100);
+			switch (random.nextInt(4)) {
+				case 0:
+					Assert.assertEquals(referenceMap.put(key, value), map.put(key, value));
+					break;
+				case 1:
+					Assert.assertEquals(referenceMap.computeIfAbsent(key, k -> value), map.computeIfAbsent(key, k -> value));
+					break;
+				case 2:
+					Assert.assertEquals(referenceMap.remove(key), map.remove(key));
+					break;
+				default:
+					Assert.assertEquals(referenceMap.containsKey(key), map.containsKey(key));
+					Assert.assertEquals(referenceMap.get(key), map.get(key));
+			}
+			Assert.assertEquals(referenceMap.size(), map.size());
+		}
+		final Map<Integer, String> visited = new HashMap<>();
+		map.forEach((key, value) -> Assert.assertNull(visited.put(key, value)));
+		Assert.assertEquals(referenceMap, visited);
+		Assert.assertEquals(referenceMap.hashCode(), map.hashCode());
+	}
+
+	@Test
+	public void testZeroKey() {
+		final PcIntObjectHashMap<String> map = new PcIntObjectHashMap<>();
+		Assert.assertFalse(map.containsKey(0));
+		Assert.assertNull(map.get(0));
+		Assert.assertEquals("default", map.getOrDefault(0, "default"));
+
+		// the key 0 is a regular key, even though empty slots have the key 0
+		Assert.assertNull(map.put(0, "zero"));
+		Assert.assertTrue(map.containsKey(0));
+		Assert.assertEquals(1, map.size());
+		Assert.assertEquals("zero", map.computeIfAbsent(0, key -> "other"));
+		Assert.assertEquals("{0=zero}", map.toString());
+		Assert.assertArrayEquals(new int[] {0}, map.keys());
+
+		Assert.assertEquals("zero", map.remove(0));
+		Assert.assertFalse(map.containsKey(0));
+		Assert.assertTrue(map.isEmpty());
+	}
+
+	@Test
+	public void testNullValues() {
+		final PcIntObjectHashMap<String> map = new PcIntObjectHashMap<>();
+		Assert.assertThrows(NullPointerException.class, () -> map.put(1, null));
+		Assert.assertNull(map.computeIfAbsent(1, key -> null));
+		Assert.assertFalse(map.containsKey(1));
+	}
+
+	@Test
+	public void testFailFast() {
+		final PcIntObjectHashMap<String> map = new PcIntObjectHashMap<>();
+		for (int i = 0; i < 100; i++) {
+			map.put(i, "value" + i);
+		}
+		Assert.assertThrows(ConcurrentModificationException.class, () -> map.forEach((key, value) -> map.remove(key)));
+		Assert.assertThrows(ConcurrentModificationException.class, () -> map.computeIfAbsent(1_000, key -> map.put(2_000, "value")));
+	}
+
+	@Test
+	public void testEquals() {
+		final PcIntObjectHashMap<String> map = new PcIntObjectHashMap<>();
+		final PcIntObjectHashMap<String> otherMap = new PcIntObjectHashMap<>(1024);
+		for (int i = 0; i < 100; i++) {
+			map.put(i, "value" + i);
+			otherMap.put(99 - i, "value" + (99 - i));
+		}
+		Assert.assertEquals(map, otherMap);
+		Assert.assertEquals(map.hashCode(), otherMap.hashCode());
+		otherMap.put(0, "other");
+		Assert.assertNotEquals(map, otherMap);
+		map.clear();
+		Assert.assertTrue(map.isEmpty());
+		Assert.assertEquals(new PcIntObjectHashMap<String>(), map);
+	}
+
+}
@@ -19,23 +19,35 @@ public class PcLinearProbingHashMapGuavaTestSuite extends TestCase {
 
 	@Test
 	public static TestSuite suite() {
-		return MapTestSuiteBuilder
-				.using(new PersonPcLinearProbingHashMapTestGenerator())
-				.named("Guava testlib - Test PcLinearProbingHashMap")
-				.withFeatures(
-						CollectionSize.ANY,
-						MapFeature.SUPPORTS_PUT,
-						MapFeature.SUPPORTS_REMOVE,
-						CollectionFeature.SUPPORTS_ITERATOR_REMOVE
-				)
-				.createTestSuite();
+		final TestSuite suite = new TestSuite("Guava testlib - Test PcLinearProbingHashMap");
+		for (PcLinearProbingHashMap.DeletionStrategy deletionStrategy : PcLinearProbingHashMap.DeletionStrategy.values()) {
+			suite.addTest(MapTestSuiteBuilder
+					.using(new PersonPcLinearProbingHashMapTestGenerator(deletionStrategy))
+					.named("Guava testlib - Test PcLinearProbingHashMap with " + deletionStrategy)
+					.withFeatures(
+							CollectionSize.ANY,
+							MapFeature.SUPPORTS_PUT,
+							MapFeature.SUPPORTS_REMOVE,
+							MapFeature.FAILS_FAST_ON_CONCURRENT_MODIFICATION,
+							CollectionFeature.SUPPORTS_ITERATOR_REMOVE
+					)
+					.createTestSuite());
+		}
+		return suite;
 	}
 
 	public static class PersonPcLinearProbingHashMapTestGenerator extends AbstractPersonMapTestGenerator {
 
+		private final PcLinearProbingHashMap.DeletionStrategy deletionStrategy;
+
+		public PersonPcLinearProbingHashMapTestGenerator(PcLinearProbingHashMap.DeletionStrategy deletionStrategy) {
+			this.deletionStrategy = deletionStrategy;
+		}
+
 		@SuppressWarnings("unchecked")
 		public Map<String, Person> create(Object... elements) {
-			final PcLinearProbingHashMap<String, Person> map = new PcLinearProbingHashMap<>();
+			final PcLinearProbingHashMap<String, Person> map = new PcLinearProbingHashMap<>(
+					PcLinearProbingHashMap.DEFAULT_INITIAL_CAPACITY, PcLinearProbingHashMap.DEFAULT_LOAD_FACTOR, this.deletionStrategy);
 			if (elements.length == 0) {
 				return map;
 			}
@@ -1,10 +1,20 @@
 package com.petitcl.collections;
 
+import com.petitcl.collections.models.HashCollider;
 import com.petitcl.collections.models.Person;
+import com.petitcl.collections.utils.AbstractIntegerMapTestSuite;
 import com.petitcl.collections.utils.AbstractPersonMapTestSuite;
+import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class PcLinearProbingHashMapTest {
 
@@ -16,6 +26,267 @@ public class PcLinearProbingHashMapTest {
 				.runAllTests();
 	}
 
+	@Test
+	public void testLoadWithTombstones() {
+		new PcLinearProbingHashTombstonesPersonMapTestSuite()
+				.withStartDataSetSize(0)
+				.withEndDataSetSize(15)
+				.runAllTests();
+	}
+
+	@Test
+	public void testParallelStreams() {
+		new PcLinearProbingHashIntegerMapTestSuite().testParallelStreams();
+	}
+
+	@Test
+	public void testFailFastIterators() {
+		new PcLinearProbingHashIntegerMapTestSuite().testFailFastIterators();
+	}
+
+	@Test
+	public void testIteratorRemoveWithBackwardShift() {
+		final PcLinearProbingHashMap<HashCollider, Integer> map = new PcLinearProbingHashMap<>(128);
+		final Map<HashCollider, Integer> referenceMap = new HashMap<>();
+		// keys share few hashes, so they form long runs of entries that are shifted back on removals
+		for (int i = 0; i < 60; i++) {
+			final HashCollider key = HashCollider.of("key" + i, (i % 6) * 8);
+			map.put(key, i);
+			referenceMap.put(key, i);
+		}
+		final Set<HashCollider> visitedKeys = new HashSet<>();
+		for (Iterator<Map.Entry<HashCollider, Integer>> it = map.entrySet().iterator(); it.hasNext();) {
+			final Map.Entry<HashCollider, Integer> entry = it.next();
+			Assert.assertTrue("Entry visited twice: " + entry, visitedKeys.add(entry.getKey()));
+			if (entry.getValue() % 3 != 0) {
+				it.remove();
+				referenceMap.remove(entry.getKey());
+			}
+		}
+		Assert.assertEquals(60, visitedKeys.size());
+		Assert.assertEquals(referenceMap, map);
+	}
+
+	@Test
+	public void testIteratorRemoveWithTombstones() {
+		final PcLinearProbingHashMap<HashCollider, Integer> map = new PcLinearProbingHashMap<>(
+				128, PcLinearProbingHashMap.DEFAULT_LOAD_FACTOR, PcLinearProbingHashMap.DeletionStrategy.TOMBSTONES);
+		final Map<HashCollider, Integer> referenceMap = new HashMap<>();
+		for (int i = 0; i < 60; i++) {
+			final HashCollider key = HashCollider.of("key" + i, (i % 6) * 8);
+			map.put(key, i);
+			referenceMap.put(key, i);
+		}
+		final Set<HashCollider> visitedKeys = new HashSet<>();
+		for (Iterator<Map.Entry<HashCollider, Integer>> it = map.entrySet().iterator(); it.hasNext();) {
+			final Map.Entry<HashCollider, Integer> entry = it.next();
+			Assert.assertTrue("Entry visited twice: " + entry, visitedKeys.add(entry.getKey()));
+			if (entry.getValue() % 3 != 0) {
+				it.remove();
+				referenceMap.remove(entry.getKey());
+			}
+		}
+		Assert.assertEquals(60, visitedKeys.size());
+		Assert.assertEquals(referenceMap, map);
+		Assert.assertFalse(map.getLayout().contains("tombstones=0"));
+		for (HashCollider key : referenceMap.keySet()) {
+			Assert.assertEquals(referenceMap.get(key), map.get(key));
+		}
+	}
+
+	@Test
+	public void testTombstones() {
+		final PcLinearProbingHashMap<HashCollider, Integer> map = new PcLinearProbingHashMap<>(
+				16, PcLinearProbingHashMap.DEFAULT_LOAD_FACTOR, PcLinearProbingHashMap.DeletionStrategy.TOMBSTONES);
+		// all keys want slot 3, so they occupy slots 3 to 7
+		for (int i = 0; i < 5; i++) {
+			map.put(HashCollider.of("key" + i, 3), i);
+		}
+
+		// removing an entry in the middle of the cluster leaves a tombstone, and does not move the other entries
+		Assert.assertEquals(Integer.valueOf(1), map.remove(HashCollider.of("key1", 3)));
+		Assert.assertTrue(map.getLayout().contains("tombstones=1\n"));
+		Assert.assertTrue(map.getLayout().contains("index 4 : TOMBSTONE\n"));
+		Assert.assertEquals(Integer.valueOf(4), map.get(HashCollider.of("key4", 3)));
+
+		// insertions reuse the first tombstone of the probe sequence
+		map.put(HashCollider.of("key5", 3), 5);
+		Assert.assertTrue(map.getLayout().contains("tombstones=0\n"));
+		Assert.assertTrue(map.getLayout().contains("index 4 : (key=HashCollider(name=key5,"));
+
+		Assert.assertEquals(Integer.valueOf(2), map.remove(HashCollider.of("key2", 3)));
+		Assert.assertEquals(Integer.valueOf(3), map.remove(HashCollider.of("key3", 3)));
+		Assert.assertTrue(map.getLayout().contains("tombstones=2\n"));
+
+		// removing the last entry of the cluster also empties the tombstones that precede it
+		Assert.assertEquals(Integer.valueOf(4), map.remove(HashCollider.of("key4", 3)));
+		Assert.assertTrue(map.getLayout().contains("tombstones=0\n"));
+		Assert.assertEquals(Map.of(HashCollider.of("key0", 3), 0, HashCollider.of("key5", 3), 5), map);
+	}
+
+	@Test
+	public void testTombstonesCompaction() {
+		final PcLinearProbingHashMap<Integer, Integer> map = new PcLinearProbingHashMap<>(
+				64, PcLinearProbingHashMap.DEFAULT_LOAD_FACTOR, PcLinearProbingHashMap.DeletionStrategy.TOMBSTONES);
+		final Map<Integer, Integer> referenceMap = new HashMap<>();
+		// small integers are their own hash, so keys 0 to 39 occupy slots 0 to 39
+		for (int i = 0; i < 40; i++) {
+			map.put(i, i);
+			referenceMap.put(i, i);
+		}
+		for (int i = 0; i < 20; i += 2) {
+			map.remove(i);
+			referenceMap.remove(i);
+		}
+		Assert.assertTrue(map.getLayout().contains("tombstones=10\n"));
+
+		// once tombstones reach the threshold, each insertion compacts the next slots of the table
+		map.put(100, 100);
+		referenceMap.put(100, 100);
+		Assert.assertTrue(map.getLayout().contains("tombstones=2\n"));
+		map.put(101, 101);
+		referenceMap.put(101, 101);
+		Assert.assertTrue(map.getLayout().contains("tombstones=0\n"));
+		Assert.assertTrue(map.getLayout().contains("capacity=64)"));
+		Assert.assertEquals(referenceMap, map);
+		for (Integer key : referenceMap.keySet()) {
+			Assert.assertEquals(key, map.get(key));
+		}
+	}
+
+	@Test
+	public void testSlidingWindowWithTombstones() {
+		final PcLinearProbingHashMap<Integer, Integer> map = new PcLinearProbingHashMap<>(
+				16, PcLinearProbingHashMap.DEFAULT_LOAD_FACTOR, PcLinearProbingHashMap.DeletionStrategy.TOMBSTONES);
+		final Map<Integer, Integer> referenceMap = new HashMap<>();
+		for (int i = 0; i < 100_000; i++) {
+			// scrambled keys, so that removals happen all over the table
+			final int key = i * 0x9E3779B9;
+			map.put(key, i);
+			referenceMap.put(key, i);
+			if (i >= 1_000) {
+				final int oldestKey = (i - 1_000) * 0x9E3779B9;
+				Assert.assertEquals(Integer.valueOf(i - 1_000), map.remove(oldestKey));
+				referenceMap.remove(oldestKey);
+			}
+		}
+		// tombstones are reused or compacted, so the table does not grow past the size of the window
+		Assert.assertTrue(map.getLayout().contains("capacity=2048)"));
+		Assert.assertEquals(referenceMap, map);
+	}
+
+	@Test
+	public void testWrapAroundProbing() {
+		final PcLinearProbingHashMap<HashCollider, Integer> map = new PcLinearProbingHashMap<>(16);
+		final Map<HashCollider, Integer> referenceMap = new HashMap<>();
+		// all keys want the last slot, so their run wraps around the end of the table
+		for (int i = 0; i < 10; i++) {
+			final HashCollider key = HashCollider.of("key" + i, 15);
+			map.put(key, i);
+			referenceMap.put(key, i);
+		}
+		// the table only grows when the load factor is reached
+		Assert.assertTrue(map.getLayout().contains("capacity=16)"));
+		Assert.assertEquals(referenceMap, map);
+
+		Assert.assertEquals(Integer.valueOf(0), map.remove(HashCollider.of("key0", 15)));
+		referenceMap.remove(HashCollider.of("key0", 15));
+		Assert.assertEquals(referenceMap, map);
+
+		final Set<HashCollider> visitedKeys = new HashSet<>();
+		for (Iterator<Map.Entry<HashCollider, Integer>> it = map.entrySet().iterator(); it.hasNext();) {
+			final Map.Entry<HashCollider, Integer> entry = it.next();
+			Assert.assertTrue("Entry visited twice: " + entry, visitedKeys.add(entry.getKey()));
+			if (entry.getValue() % 2 == 0) {
+				it.remove();
+				referenceMap.remove(entry.getKey());
+			}
+		}
+		Assert.assertEquals(9, visitedKeys.size());
+		Assert.assertEquals(referenceMap, map);
+		for (HashCollider key : referenceMap.keySet()) {
+			Assert.assertEquals(referenceMap.get(key), map.get(key));
+		}
+	}
+
+	@Test
+	public void testEntriesWriteThrough() {
+		final PcLinearProbingHashMap<Integer, String> map = new PcLinearProbingHashMap<>();
+		for (int i = 0; i < 10; i++) {
+			map.put(i, "value" + i);
+		}
+		final List<Map.Entry<Integer, String>> entries = new ArrayList<>(map.entrySet());
+		for (Map.Entry<Integer, String> entry : entries) {
+			Assert.assertEquals("value" + entry.getKey(), entry.setValue("updated" + entry.getKey()));
+		}
+		for (int i = 0; i < 10; i++) {
+			Assert.assertEquals("updated" + i, map.get(i));
+		}
+
+		// entries find their key again after it was moved by a resize or a removal
+		for (int i = 10; i < 1_000; i++) {
+			map.put(i, "value" + i);
+		}
+		map.remove(0);
+		for (Map.Entry<Integer, String> entry : entries) {
+			entry.setValue("moved" + entry.getKey());
+		}
+		Assert.assertNull(map.get(0));
+		for (int i = 1; i < 10; i++) {
+			Assert.assertEquals("moved" + i, map.get(i));
+		}
+		map.put(5, "put");
+		Assert.assertEquals("put", entries.get(5).getValue());
+	}
+
+	@Test
+	public void testStoredHashes() {
+		final PcLinearProbingHashMap<CountingKey, Integer> map = new PcLinearProbingHashMap<>();
+		CountingKey.hashCodeCalls = 0;
+		// resizes reuse the stored hashes
+		for (int i = 0; i < 1_000; i++) {
+			map.put(new CountingKey(i % 100 + (i / 100) * 100_000), i);
+		}
+		Assert.assertEquals(1_000, CountingKey.hashCodeCalls);
+		// removals shift entries back using the stored hashes
+		for (int i = 0; i < 1_000; i += 2) {
+			Assert.assertEquals(Integer.valueOf(i), map.remove(new CountingKey(i % 100 + (i / 100) * 100_000)));
+		}
+		Assert.assertEquals(1_500, CountingKey.hashCodeCalls);
+		for (int i = 1; i < 1_000; i += 2) {
+			Assert.assertEquals(Integer.valueOf(i), map.get(new CountingKey(i % 100 + (i / 100) * 100_000)));
+		}
+	}
+
+	@Test
+	public void testBulkBuild() {
+		new PcLinearProbingHashIntegerMapTestSuite().testBulkBuild();
+	}
+
+	/**
+	 * Key that counts the calls to its hash code.
+	 */
+	private static class CountingKey {
+		private static int hashCodeCalls;
+
+		private final int id;
+
+		private CountingKey(int id) {
+			this.id = id;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof CountingKey && ((CountingKey) other).id == this.id;
+		}
+
+		@Override
+		public int hashCode() {
+			hashCodeCalls++;
+			return this.id;
+		}
+	}
+
 	public static class PcLinearProbingHashPersonMapTestSuite extends AbstractPersonMapTestSuite {
 
 		@Override
@@ -34,4 +305,45 @@ public class PcLinearProbingHashMapTest {
 		}
 	}
 
+	public static class PcLinearProbingHashTombstonesPersonMapTestSuite extends AbstractPersonMapTestSuite {
+
+		@Override
+		protected Map<String, Person> createEmptyMap() {
+			return createEmptyMap(PcLinearProbingHashMap.DEFAULT_LOAD_FACTOR);
+		}
+
+		@Override
+		protected Map<String, Person> createEmptyMap(float loadFactor) {
+			return new PcLinearProbingHashMap<>(
+					PcLinearProbingHashMap.DEFAULT_INITIAL_CAPACITY, loadFactor, PcLinearProbingHashMap.DeletionStrategy.TOMBSTONES);
+		}
+
+		@Override
+		protected void printMapLayout(Map<String, Person> map) {
+			System.err.println(((PcLinearProbingHashMap<String, Person>)map).getLayout());
+		}
+	}
+
+	public static class PcLinearProbingHashIntegerMapTestSuite extends AbstractIntegerMapTestSuite {
+
+		@Override
+		protected Map<Integer, String> createEmptyMap() {
+			return new PcLinearProbingHashMap<>();
+		}
+
+		@Override
+		protected Map<Integer, String> copyMap(Map<Integer, String> map) {
+			return new PcLinearProbingHashMap<>(map);
+		}
+
+		@Override
+		protected Map<Integer, String> createMapFromEntries(Collection<Map.Entry<Integer, String>> entries) {
+			return PcLinearProbingHashMap.fromEntries(entries);
+		}
+
+		@Override
+		protected String getLayout(Map<Integer, String> map) {
+			return ((PcLinearProbingHashMap<Integer, String>) map).getLayout();
+		}
+	}
 }
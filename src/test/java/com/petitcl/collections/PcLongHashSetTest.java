@@ -0,0 +1,84 @@
+package com.petitcl.collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+public class PcLongHashSetTest {
+
+	@Test
+	public void testRandomOperations() {
+		final PcLongHashSet set = new PcLongHashSet();
+		final Set<Long> referenceSet = new HashSet<>();
+		final Random random = new Random(42);
+		// elements are taken in a small range, so that clusters form and are shifted back on removals
+		for (int i = 0; i < 100_000; i++) {
+			final long element = random.nextInt(2_000) - 1_000;
+			switch (random.nextInt(3)) {
+				case 0:
+					Assert.assertEquals(referenceSet.add(element), set.add(element));
+					break;
+				case 1:
+					Assert.assertEquals(referenceSet.remove(element), set.remove(element));
+					break;
+				default:
+					Assert.assertEquals(referenceSet.contains(element), set.contains(element));
+			}
+			Assert.assertEquals(referenceSet.size(), set.size());
+		}
+		final Set<Long> visited = new HashSet<>();
+		set.forEach(element -> Assert.assertTrue(visited.add(element)));
+		Assert.assertEquals(referenceSet, visited);
+		Assert.assertEquals(referenceSet.hashCode(), set.hashCode());
+		Assert.assertEquals(referenceSet.size(), set.toArray().length);
+	}
+
+	@Test
+	public void testZero() {
+		final PcLongHashSet set = new PcLongHashSet();
+		Assert.assertFalse(set.contains(0));
+
+		// 0 is a regular element, even though empty slots hold 0
+		Assert.assertTrue(set.add(0));
+		Assert.assertFalse(set.add(0));
+		Assert.assertTrue(set.contains(0));
+		Assert.assertEquals(1, set.size());
+		Assert.assertEquals("[0]", set.toString());
+		Assert.assertArrayEquals(new long[] {0}, set.toArray());
+
+		Assert.assertTrue(set.remove(0));
+		Assert.assertFalse(set.remove(0));
+		Assert.assertTrue(set.isEmpty());
+	}
+
+	@Test
+	public void testFailFast() {
+		final PcLongHashSet set = new PcLongHashSet();
+		for (long i = 0; i < 100; i++) {
+			set.add(i);
+		}
+		Assert.assertThrows(ConcurrentModificationException.class, () -> set.forEach(set::remove));
+	}
+
+	@Test
+	public void testEquals() {
+		final PcLongHashSet set = new PcLongHashSet();
+		final PcLongHashSet otherSet = new PcLongHashSet(1024);
+		for (long i = 0; i < 100; i++) {
+			set.add(i);
+			otherSet.add(99 - i);
+		}
+		Assert.assertEquals(set, otherSet);
+		Assert.assertEquals(set.hashCode(), otherSet.hashCode());
+		otherSet.remove(0);
+		Assert.assertNotEquals(set, otherSet);
+		set.clear();
+		Assert.assertTrue(set.isEmpty());
+		Assert.assertEquals(new PcLongHashSet(), set);
+	}
+
+}
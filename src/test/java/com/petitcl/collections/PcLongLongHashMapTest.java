@@ -0,0 +1,122 @@
+package com.petitcl.collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class PcLongLongHashMapTest {
+
+	@Test
+	public void testRandomOperations() {
+		final PcLongLongHashMap map = new PcLongLongHashMap();
+		final Map<Long, Long> referenceMap = new HashMap<>();
+		final Random random = new Random(42);
+		// keys are taken in a small range, so that clusters form and are shifted back on removals
+		for (int i = 0; i < 100_000; i++) {
+			final long key = random.nextInt(2_000) - 1_000;
+			final long value = random.nextLong();
+			switch (random.nextInt(4)) {
+				case 0:
+					Assert.assertEquals(referenceMap.getOrDefault(key, 0L).longValue(), map.put(key, value));
+					referenceMap.put(key, value);
+					break;
+				case 1:
+					Assert.assertEquals(referenceMap.getOrDefault(key, 0L).longValue(), map.addTo(key, value));
+					referenceMap.merge(key, value, Long::sum);
+					break;
+				case 2:
+					final Long removed = referenceMap.remove(key);
+					Assert.assertEquals(removed == null ? 0L : removed, map.remove(key));
+					break;
+				default:
+					Assert.assertEquals(referenceMap.containsKey(key), map.containsKey(key));
+					Assert.assertEquals(referenceMap.getOrDefault(key, -1L).longValue(), map.getOrDefault(key, -1));
+			}
+			Assert.assertEquals(referenceMap.size(), map.size());
+		}
+		assertSameEntries(referenceMap, map);
+		Assert.assertEquals(referenceMap.hashCode(), map.hashCode());
+	}
+
+	@Test
+	public void testZeroKey() {
+		final PcLongLongHashMap map = new PcLongLongHashMap();
+		Assert.assertFalse(map.containsKey(0));
+		Assert.assertEquals(0, map.get(0));
+		Assert.assertEquals(-1, map.getOrDefault(0, -1));
+
+		// the key 0 is a regular key, even though empty slots have the key 0
+		Assert.assertEquals(0, map.put(0, 0));
+		Assert.assertTrue(map.containsKey(0));
+		Assert.assertEquals(1, map.size());
+		Assert.assertEquals(0, map.addTo(0, 5));
+		Assert.assertEquals(5, map.addTo(0, 5));
+		Assert.assertEquals(10, map.get(0));
+		Assert.assertEquals("{0=10}", map.toString());
+		Assert.assertArrayEquals(new long[] {0}, map.keys());
+
+		Assert.assertEquals(10, map.remove(0));
+		Assert.assertFalse(map.containsKey(0));
+		Assert.assertTrue(map.isEmpty());
+	}
+
+	@Test
+	public void testAddTo() {
+		final PcLongLongHashMap map = new PcLongLongHashMap();
+		for (int i = 0; i < 10_000; i++) {
+			map.addTo(i % 100, 1);
+		}
+		Assert.assertEquals(100, map.size());
+		for (int i = 0; i < 100; i++) {
+			Assert.assertEquals(100, map.get(i));
+		}
+	}
+
+	@Test
+	public void testForEach() {
+		final PcLongLongHashMap map = new PcLongLongHashMap();
+		final Map<Long, Long> referenceMap = new HashMap<>();
+		for (long i = -50; i < 50; i++) {
+			map.put(i, i * i);
+			referenceMap.put(i, i * i);
+		}
+		final Map<Long, Long> visited = new HashMap<>();
+		map.forEach((key, value) -> Assert.assertNull(visited.put(key, value)));
+		Assert.assertEquals(referenceMap, visited);
+
+		Assert.assertThrows(ConcurrentModificationException.class, () -> map.forEach((key, value) -> map.remove(key)));
+	}
+
+	@Test
+	public void testEquals() {
+		final PcLongLongHashMap map = new PcLongLongHashMap();
+		final PcLongLongHashMap otherMap = new PcLongLongHashMap(1024);
+		for (long i = 0; i < 100; i++) {
+			map.put(i, i);
+			otherMap.put(99 - i, 99 - i);
+		}
+		Assert.assertEquals(map, otherMap);
+		Assert.assertEquals(map.hashCode(), otherMap.hashCode());
+		otherMap.addTo(0, 1);
+		Assert.assertNotEquals(map, otherMap);
+		map.clear();
+		Assert.assertTrue(map.isEmpty());
+		Assert.assertEquals(new PcLongLongHashMap(), map);
+	}
+
+	private static void assertSameEntries(Map<Long, Long> expected, PcLongLongHashMap actual) {
+		Assert.assertEquals(expected.size(), actual.size());
+		for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+			Assert.assertTrue(actual.containsKey(entry.getKey()));
+			Assert.assertEquals(entry.getValue().longValue(), actual.get(entry.getKey()));
+		}
+		final Map<Long, Long> visited = new HashMap<>();
+		actual.forEach(visited::put);
+		Assert.assertEquals(expected, visited);
+	}
+
+}
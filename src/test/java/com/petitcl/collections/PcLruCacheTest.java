@@ -0,0 +1,61 @@
+package com.petitcl.collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class PcLruCacheTest {
+
+	@Test
+	public void testEviction() {
+		final PcLruCache<Integer, String> cache = new PcLruCache<>(3);
+		cache.put(1, "one");
+		cache.put(2, "two");
+		cache.put(3, "three");
+		// a hit makes the entry the most recently used one
+		Assert.assertEquals("one", cache.get(1));
+		cache.put(4, "four");
+		Assert.assertEquals(List.of(3, 1, 4), new ArrayList<>(cache.keySet()));
+		Assert.assertNull(cache.get(2));
+		Assert.assertEquals(3, cache.size());
+		Assert.assertEquals(3, cache.getMaximumSize());
+
+		Assert.assertThrows(IllegalArgumentException.class, () -> new PcLruCache<>(0));
+	}
+
+	@Test
+	public void testSameEvictionsAsLinkedHashMap() {
+		final int maximumSize = 1_000;
+		final PcLruCache<Integer, Integer> cache = new PcLruCache<>(maximumSize);
+		final Map<Integer, Integer> referenceCache = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Integer> eldest) {
+				return size() > maximumSize;
+			}
+		};
+		final Random random = new Random(42);
+		int hits = 0;
+		for (int i = 0; i < 200_000; i++) {
+			// skewed keys, so that some keys are hot and stay in the cache
+			final int key = (int) Math.abs(random.nextGaussian() * 1_000);
+			final Integer value = cache.get(key);
+			Assert.assertEquals(referenceCache.get(key), value);
+			if (value != null) {
+				hits++;
+			} else {
+				cache.put(key, i);
+				referenceCache.put(key, i);
+			}
+			Assert.assertEquals(referenceCache.size(), cache.size());
+		}
+		Assert.assertTrue(hits > 0);
+		Assert.assertEquals(new ArrayList<>(referenceCache.entrySet()), new ArrayList<>(cache.entrySet()));
+		// tombstones left by hits and evictions are dropped in place, so the tables do not grow past the maximum size
+		Assert.assertTrue(cache.getLayout().contains("capacity=2048)"));
+	}
+}
@@ -0,0 +1,152 @@
+package com.petitcl.collections;
+
+import com.petitcl.collections.models.HashCollider;
+import com.petitcl.collections.models.Person;
+import com.petitcl.collections.utils.AbstractIntegerMapTestSuite;
+import com.petitcl.collections.utils.AbstractPersonMapTestSuite;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+public class PcQuadraticProbingHashMapTest {
+
+	@Test
+	public void testLoad() {
+		new PcQuadraticProbingHashPersonMapTestSuite()
+				.withStartDataSetSize(0)
+				.withEndDataSetSize(15)
+				.runAllTests();
+	}
+
+
+	@Test
+	public void testParallelStreams() {
+		new PcQuadraticProbingHashIntegerMapTestSuite().testParallelStreams();
+	}
+
+	@Test
+	public void testFailFastIterators() {
+		new PcQuadraticProbingHashIntegerMapTestSuite().testFailFastIterators();
+	}
+
+	@Test
+	public void testTombstones() {
+		final PcQuadraticProbingHashMap<HashCollider, Integer> map = new PcQuadraticProbingHashMap<>(64);
+		final Map<HashCollider, Integer> referenceMap = new HashMap<>();
+		// keys share few hashes, so removed entries leave tombstones in the middle of probe sequences
+		for (int i = 0; i < 40; i++) {
+			final HashCollider key = HashCollider.of("key" + i, i % 4);
+			map.put(key, i);
+			referenceMap.put(key, i);
+		}
+		for (int i = 0; i < 40; i += 2) {
+			final HashCollider key = HashCollider.of("key" + i, i % 4);
+			Assert.assertEquals(referenceMap.remove(key), map.remove(key));
+		}
+		Assert.assertTrue(map.getLayout().contains("tombstones=20"));
+		Assert.assertEquals(referenceMap, map);
+		for (int i = 1; i < 40; i += 2) {
+			Assert.assertEquals(Integer.valueOf(i), map.get(HashCollider.of("key" + i, i % 4)));
+		}
+
+		// inserted keys reuse the tombstones
+		map.put(HashCollider.of("key0", 0), 0);
+		referenceMap.put(HashCollider.of("key0", 0), 0);
+		Assert.assertTrue(map.getLayout().contains("tombstones=19"));
+		Assert.assertEquals(referenceMap, map);
+	}
+
+	@Test
+	public void testTombstonesCleanup() {
+		final PcQuadraticProbingHashMap<Integer, Integer> map = new PcQuadraticProbingHashMap<>(64);
+		final Map<Integer, Integer> referenceMap = new HashMap<>();
+		// a sliding window of keys keeps the size constant, the table is cleaned up but does not grow
+		for (int i = 0; i < 10_000; i++) {
+			map.put(i, i);
+			referenceMap.put(i, i);
+			if (i >= 16) {
+				Assert.assertEquals(referenceMap.remove(i - 16), map.remove(i - 16));
+			}
+			Assert.assertEquals(referenceMap.size(), map.size());
+		}
+		Assert.assertEquals(referenceMap, map);
+		Assert.assertTrue(map.getLayout().contains("capacity=64)"));
+	}
+
+	@Test
+	public void testIteratorRemove() {
+		final PcQuadraticProbingHashMap<HashCollider, Integer> map = new PcQuadraticProbingHashMap<>(128);
+		final Map<HashCollider, Integer> referenceMap = new HashMap<>();
+		for (int i = 0; i < 60; i++) {
+			final HashCollider key = HashCollider.of("key" + i, (i % 6) * 8);
+			map.put(key, i);
+			referenceMap.put(key, i);
+		}
+		final Set<HashCollider> visitedKeys = new HashSet<>();
+		for (Iterator<Map.Entry<HashCollider, Integer>> it = map.entrySet().iterator(); it.hasNext();) {
+			final Map.Entry<HashCollider, Integer> entry = it.next();
+			Assert.assertTrue("Entry visited twice: " + entry, visitedKeys.add(entry.getKey()));
+			if (entry.getValue() % 3 != 0) {
+				it.remove();
+				referenceMap.remove(entry.getKey());
+			}
+		}
+		Assert.assertEquals(60, visitedKeys.size());
+		Assert.assertEquals(referenceMap, map);
+		for (HashCollider key : referenceMap.keySet()) {
+			Assert.assertEquals(referenceMap.get(key), map.get(key));
+		}
+	}
+
+	@Test
+	public void testBulkBuild() {
+		new PcQuadraticProbingHashIntegerMapTestSuite().testBulkBuild();
+	}
+
+	public static class PcQuadraticProbingHashPersonMapTestSuite extends AbstractPersonMapTestSuite {
+
+		@Override
+		protected Map<String, Person> createEmptyMap() {
+			return new PcQuadraticProbingHashMap<>();
+		}
+
+		@Override
+		protected Map<String, Person> createEmptyMap(float loadFactor) {
+			return new PcQuadraticProbingHashMap<>(PcQuadraticProbingHashMap.DEFAULT_INITIAL_CAPACITY, loadFactor);
+		}
+
+		@Override
+		protected void printMapLayout(Map<String, Person> map) {
+			System.err.println(((PcQuadraticProbingHashMap<String, Person>)map).getLayout());
+		}
+	}
+
+	public static class PcQuadraticProbingHashIntegerMapTestSuite extends AbstractIntegerMapTestSuite {
+
+		@Override
+		protected Map<Integer, String> createEmptyMap() {
+			return new PcQuadraticProbingHashMap<>();
+		}
+
+		@Override
+		protected Map<Integer, String> copyMap(Map<Integer, String> map) {
+			return new PcQuadraticProbingHashMap<>(map);
+		}
+
+		@Override
+		protected Map<Integer, String> createMapFromEntries(Collection<Map.Entry<Integer, String>> entries) {
+			return PcQuadraticProbingHashMap.fromEntries(entries);
+		}
+
+		@Override
+		protected String getLayout(Map<Integer, String> map) {
+			return ((PcQuadraticProbingHashMap<Integer, String>) map).getLayout();
+		}
+	}
+}
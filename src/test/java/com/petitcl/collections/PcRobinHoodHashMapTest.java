@@ -0,0 +1,157 @@
+package com.petitcl.collections;
+
+import com.petitcl.collections.models.HashCollider;
+import com.petitcl.collections.models.Person;
+import com.petitcl.collections.utils.AbstractIntegerMapTestSuite;
+import com.petitcl.collections.utils.AbstractPersonMapTestSuite;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class PcRobinHoodHashMapTest {
+
+	private static final Pattern DISTANCE_PATTERN = Pattern.compile("index \\d+ : (?:NULL|\\(.*,distance=(\\d+)\\))");
+
+	@Test
+	public void testLoad() {
+		new PcRobinHoodHashPersonMapTestSuite()
+				.withStartDataSetSize(0)
+				.withEndDataSetSize(15)
+				.runAllTests();
+	}
+
+
+	@Test
+	public void testParallelStreams() {
+		new PcRobinHoodHashIntegerMapTestSuite().testParallelStreams();
+	}
+
+	@Test
+	public void testFailFastIterators() {
+		new PcRobinHoodHashIntegerMapTestSuite().testFailFastIterators();
+	}
+
+	@Test
+	public void testProbeDistances() {
+		final PcRobinHoodHashMap<HashCollider, Integer> map = new PcRobinHoodHashMap<>(64);
+		final Map<HashCollider, Integer> referenceMap = new HashMap<>();
+		// keys share few hashes, so they form long clusters in which entries are displaced
+		for (int i = 0; i < 50; i++) {
+			final HashCollider key = HashCollider.of("key" + i, i % 10);
+			map.put(key, i);
+			referenceMap.put(key, i);
+			assertProbeDistancesInvariant(map);
+		}
+		Assert.assertEquals(referenceMap, map);
+		// with 5 keys per hash over 10 consecutive hashes, no entry has to go past the whole cluster
+		Assert.assertTrue(map.getMaxProbeDistance() < 50);
+		Assert.assertNull(map.get(HashCollider.of("missing", 3)));
+		Assert.assertNull(map.get(HashCollider.of("missing", 20)));
+
+		for (int i = 0; i < 50; i += 3) {
+			final HashCollider key = HashCollider.of("key" + i, i % 10);
+			Assert.assertEquals(referenceMap.remove(key), map.remove(key));
+			assertProbeDistancesInvariant(map);
+		}
+		Assert.assertEquals(referenceMap, map);
+	}
+
+	/**
+	 * Check that, within a cluster, the probe distance increases by at most one from a slot to the next,
+	 * and that entries following an empty slot are in their ideal slot.
+	 */
+	private static void assertProbeDistancesInvariant(PcRobinHoodHashMap<?, ?> map) {
+		final Matcher matcher = DISTANCE_PATTERN.matcher(map.getLayout());
+		final List<Integer> distances = new ArrayList<>();
+		while (matcher.find()) {
+			distances.add(matcher.group(1) == null ? -1 : Integer.parseInt(matcher.group(1)));
+		}
+		Assert.assertFalse(distances.isEmpty());
+		for (int i = 0; i < distances.size(); i++) {
+			final int previousDistance = distances.get((i + distances.size() - 1) % distances.size());
+			Assert.assertTrue(map.getLayout(), distances.get(i) <= previousDistance + 1);
+		}
+	}
+
+	@Test
+	public void testIteratorRemoveWithBackwardShift() {
+		final PcRobinHoodHashMap<HashCollider, Integer> map = new PcRobinHoodHashMap<>(128);
+		final Map<HashCollider, Integer> referenceMap = new HashMap<>();
+		// keys share few hashes, so they form long runs of entries that are shifted back on removals
+		for (int i = 0; i < 100; i++) {
+			final HashCollider key = HashCollider.of("key" + i, (i % 6) * 8 + 120);
+			map.put(key, i);
+			referenceMap.put(key, i);
+		}
+		final Set<HashCollider> visitedKeys = new HashSet<>();
+		for (Iterator<Map.Entry<HashCollider, Integer>> it = map.entrySet().iterator(); it.hasNext();) {
+			final Map.Entry<HashCollider, Integer> entry = it.next();
+			Assert.assertTrue("Entry visited twice: " + entry, visitedKeys.add(entry.getKey()));
+			if (entry.getValue() % 3 != 0) {
+				it.remove();
+				referenceMap.remove(entry.getKey());
+			}
+		}
+		Assert.assertEquals(100, visitedKeys.size());
+		Assert.assertEquals(referenceMap, map);
+		for (HashCollider key : referenceMap.keySet()) {
+			Assert.assertEquals(referenceMap.get(key), map.get(key));
+		}
+	}
+
+	@Test
+	public void testBulkBuild() {
+		new PcRobinHoodHashIntegerMapTestSuite().testBulkBuild();
+	}
+
+	public static class PcRobinHoodHashPersonMapTestSuite extends AbstractPersonMapTestSuite {
+
+		@Override
+		protected Map<String, Person> createEmptyMap() {
+			return new PcRobinHoodHashMap<>();
+		}
+
+		@Override
+		protected Map<String, Person> createEmptyMap(float loadFactor) {
+			return new PcRobinHoodHashMap<>(PcRobinHoodHashMap.DEFAULT_INITIAL_CAPACITY, loadFactor);
+		}
+
+		@Override
+		protected void printMapLayout(Map<String, Person> map) {
+			System.err.println(((PcRobinHoodHashMap<String, Person>)map).getLayout());
+		}
+	}
+
+	public static class PcRobinHoodHashIntegerMapTestSuite extends AbstractIntegerMapTestSuite {
+
+		@Override
+		protected Map<Integer, String> createEmptyMap() {
+			return new PcRobinHoodHashMap<>();
+		}
+
+		@Override
+		protected Map<Integer, String> copyMap(Map<Integer, String> map) {
+			return new PcRobinHoodHashMap<>(map);
+		}
+
+		@Override
+		protected Map<Integer, String> createMapFromEntries(Collection<Map.Entry<Integer, String>> entries) {
+			return PcRobinHoodHashMap.fromEntries(entries);
+		}
+
+		@Override
+		protected String getLayout(Map<Integer, String> map) {
+			return ((PcRobinHoodHashMap<Integer, String>) map).getLayout();
+		}
+	}
+}
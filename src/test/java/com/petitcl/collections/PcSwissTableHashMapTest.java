@@ -0,0 +1,204 @@
+package com.petitcl.collections;
+
+import com.petitcl.collections.models.HashCollider;
+import com.petitcl.collections.models.Person;
+import com.petitcl.collections.utils.AbstractIntegerMapTestSuite;
+import com.petitcl.collections.utils.AbstractPersonMapTestSuite;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class PcSwissTableHashMapTest {
+
+	@Test
+	public void testLoad() {
+		new PcSwissTableHashPersonMapTestSuite()
+				.withStartDataSetSize(0)
+				.withEndDataSetSize(15)
+				.runAllTests();
+	}
+
+
+	@Test
+	public void testParallelStreams() {
+		new PcSwissTableHashIntegerMapTestSuite().testParallelStreams();
+	}
+
+	@Test
+	public void testFailFastIterators() {
+		new PcSwissTableHashIntegerMapTestSuite().testFailFastIterators();
+	}
+
+	@Test
+	public void testGroupProbing() {
+		final PcSwissTableHashMap<HashCollider, Integer> map = new PcSwissTableHashMap<>(64);
+		final Map<HashCollider, Integer> referenceMap = new HashMap<>();
+		// keys that share a hash have the same control byte, they are told apart by comparing the keys,
+		// and they overflow from their full group to the next groups of the probe sequence
+		for (int i = 0; i < 30; i++) {
+			final HashCollider key = HashCollider.of("key" + i, i % 2);
+			map.put(key, i);
+			referenceMap.put(key, i);
+		}
+		Assert.assertTrue(map.getLayout().contains("capacity=64)"));
+		Assert.assertEquals(referenceMap, map);
+		for (int i = 0; i < 30; i++) {
+			Assert.assertEquals(Integer.valueOf(i), map.get(HashCollider.of("key" + i, i % 2)));
+			Assert.assertNull(map.get(HashCollider.of("other" + i, i % 2)));
+		}
+	}
+
+	@Test
+	public void testControlBytesOfKeysThatDifferInHighBits() {
+		// the hash codes of small integral doubles only differ in their high bits
+		final PcSwissTableHashMap<Double, Integer> doubles = new PcSwissTableHashMap<>();
+		final PcSwissTableHashMap<HashCollider, Integer> shiftedHashes = new PcSwissTableHashMap<>();
+		for (int i = 0; i < 1_000; i++) {
+			doubles.put((double) i, i);
+			shiftedHashes.put(HashCollider.of("key" + i, i << 16), i);
+		}
+		Assert.assertTrue(countControlBytes(doubles.getLayout()) > 100);
+		Assert.assertTrue(countControlBytes(shiftedHashes.getLayout()) > 100);
+	}
+
+	/**
+	 * Return the number of distinct control bytes (H2) of the full slots in the given layout.
+	 */
+	private static int countControlBytes(String layout) {
+		final Set<String> controlBytes = new HashSet<>();
+		final Matcher matcher = Pattern.compile("\\(h2=(-?\\d+),").matcher(layout);
+		while (matcher.find()) {
+			controlBytes.add(matcher.group(1));
+		}
+		return controlBytes.size();
+	}
+
+	@Test
+	public void testTombstones() {
+		final PcSwissTableHashMap<HashCollider, Integer> map = new PcSwissTableHashMap<>(64);
+		final Map<HashCollider, Integer> referenceMap = new HashMap<>();
+		// the first 8 keys fill the group of their hash, the next ones go to the following group
+		for (int i = 0; i < 10; i++) {
+			final HashCollider key = HashCollider.of("key" + i, 0);
+			map.put(key, i);
+			referenceMap.put(key, i);
+		}
+
+		// removing from a full group leaves a tombstone, so that lookups keep probing the next group
+		Assert.assertEquals(Integer.valueOf(0), map.remove(HashCollider.of("key0", 0)));
+		referenceMap.remove(HashCollider.of("key0", 0));
+		Assert.assertTrue(map.getLayout().contains("tombstones=1"));
+		Assert.assertEquals(referenceMap, map);
+
+		// removing from a group that has an empty slot does not
+		Assert.assertEquals(Integer.valueOf(9), map.remove(HashCollider.of("key9", 0)));
+		referenceMap.remove(HashCollider.of("key9", 0));
+		Assert.assertTrue(map.getLayout().contains("tombstones=1"));
+		Assert.assertEquals(referenceMap, map);
+		for (int i = 1; i < 9; i++) {
+			Assert.assertEquals(Integer.valueOf(i), map.get(HashCollider.of("key" + i, 0)));
+		}
+
+		// inserted keys reuse the tombstones
+		map.put(HashCollider.of("key10", 0), 10);
+		referenceMap.put(HashCollider.of("key10", 0), 10);
+		Assert.assertTrue(map.getLayout().contains("tombstones=0"));
+		Assert.assertEquals(referenceMap, map);
+	}
+
+	@Test
+	public void testTombstonesCleanup() {
+		final PcSwissTableHashMap<Integer, Integer> map = new PcSwissTableHashMap<>(64);
+		final Map<Integer, Integer> referenceMap = new HashMap<>();
+		// a sliding window of keys keeps the size constant, the table is cleaned up but does not grow
+		for (int i = 0; i < 10_000; i++) {
+			map.put(i, i);
+			referenceMap.put(i, i);
+			if (i >= 16) {
+				Assert.assertEquals(referenceMap.remove(i - 16), map.remove(i - 16));
+			}
+			Assert.assertEquals(referenceMap.size(), map.size());
+		}
+		Assert.assertEquals(referenceMap, map);
+		Assert.assertTrue(map.getLayout().contains("capacity=64)"));
+	}
+
+	@Test
+	public void testIteratorRemove() {
+		final PcSwissTableHashMap<HashCollider, Integer> map = new PcSwissTableHashMap<>(128);
+		final Map<HashCollider, Integer> referenceMap = new HashMap<>();
+		for (int i = 0; i < 60; i++) {
+			final HashCollider key = HashCollider.of("key" + i, (i % 6) * 8);
+			map.put(key, i);
+			referenceMap.put(key, i);
+		}
+		final Set<HashCollider> visitedKeys = new HashSet<>();
+		for (Iterator<Map.Entry<HashCollider, Integer>> it = map.entrySet().iterator(); it.hasNext();) {
+			final Map.Entry<HashCollider, Integer> entry = it.next();
+			Assert.assertTrue("Entry visited twice: " + entry, visitedKeys.add(entry.getKey()));
+			if (entry.getValue() % 3 != 0) {
+				it.remove();
+				referenceMap.remove(entry.getKey());
+			}
+		}
+		Assert.assertEquals(60, visitedKeys.size());
+		Assert.assertEquals(referenceMap, map);
+		for (HashCollider key : referenceMap.keySet()) {
+			Assert.assertEquals(referenceMap.get(key), map.get(key));
+		}
+	}
+
+	@Test
+	public void testBulkBuild() {
+		new PcSwissTableHashIntegerMapTestSuite().testBulkBuild();
+	}
+
+	public static class PcSwissTableHashPersonMapTestSuite extends AbstractPersonMapTestSuite {
+
+		@Override
+		protected Map<String, Person> createEmptyMap() {
+			return new PcSwissTableHashMap<>();
+		}
+
+		@Override
+		protected Map<String, Person> createEmptyMap(float loadFactor) {
+			return new PcSwissTableHashMap<>(PcSwissTableHashMap.DEFAULT_INITIAL_CAPACITY, loadFactor);
+		}
+
+		@Override
+		protected void printMapLayout(Map<String, Person> map) {
+			System.err.println(((PcSwissTableHashMap<String, Person>)map).getLayout());
+		}
+	}
+
+	public static class PcSwissTableHashIntegerMapTestSuite extends AbstractIntegerMapTestSuite {
+
+		@Override
+		protected Map<Integer, String> createEmptyMap() {
+			return new PcSwissTableHashMap<>();
+		}
+
+		@Override
+		protected Map<Integer, String> copyMap(Map<Integer, String> map) {
+			return new PcSwissTableHashMap<>(map);
+		}
+
+		@Override
+		protected Map<Integer, String> createMapFromEntries(Collection<Map.Entry<Integer, String>> entries) {
+			return PcSwissTableHashMap.fromEntries(entries);
+		}
+
+		@Override
+		protected String getLayout(Map<Integer, String> map) {
+			return ((PcSwissTableHashMap<Integer, String>) map).getLayout();
+		}
+	}
+}
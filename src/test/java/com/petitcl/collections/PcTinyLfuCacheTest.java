@@ -0,0 +1,117 @@
+package com.petitcl.collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class PcTinyLfuCacheTest {
+
+	@Test
+	public void testOperations() {
+		final PcTinyLfuCache<Integer, String> cache = new PcTinyLfuCache<>(10);
+		Assert.assertTrue(cache.isEmpty());
+		Assert.assertNull(cache.put(1, "one"));
+		Assert.assertEquals("one", cache.put(1, "uno"));
+		Assert.assertEquals("uno", cache.get(1));
+		Assert.assertTrue(cache.containsKey(1));
+		Assert.assertNull(cache.get(2));
+		Assert.assertEquals(1, cache.size());
+		Assert.assertEquals("uno", cache.remove(1));
+		Assert.assertNull(cache.remove(1));
+		Assert.assertTrue(cache.isEmpty());
+
+		for (int i = 0; i < 5; i++) {
+			cache.put(i, "value" + i);
+		}
+		cache.clear();
+		Assert.assertEquals(0, cache.size());
+		Assert.assertFalse(cache.containsKey(0));
+		Assert.assertEquals(10, cache.getMaximumSize());
+
+		Assert.assertThrows(IllegalArgumentException.class, () -> new PcTinyLfuCache<>(0));
+		Assert.assertThrows(NullPointerException.class, () -> cache.put(null, "value"));
+		Assert.assertThrows(NullPointerException.class, () -> cache.put(1, null));
+	}
+
+	@Test
+	public void testRegions() {
+		final PcTinyLfuCache<Integer, String> cache = new PcTinyLfuCache<>(100);
+		// the window holds 1 entry, so the previous new entry moves to probation
+		cache.put(1, "one");
+		cache.put(2, "two");
+		Assert.assertEquals("window=[2]\nprobation=[1]\nprotected=[]\n", cache.getLayout());
+		// an access in probation promotes the entry to protected
+		cache.get(1);
+		Assert.assertEquals("window=[2]\nprobation=[]\nprotected=[1]\n", cache.getLayout());
+	}
+
+	@Test
+	public void testReadsMatchLatestWrites() {
+		final int maximumSize = 100;
+		final PcTinyLfuCache<Integer, Integer> cache = new PcTinyLfuCache<>(maximumSize);
+		final Map<Integer, Integer> latestValues = new HashMap<>();
+		final Random random = new Random(42);
+		for (int i = 0; i < 100_000; i++) {
+			final int key = random.nextInt(500);
+			switch (random.nextInt(4)) {
+				case 0:
+				case 1: {
+					final Integer value = cache.get(key);
+					Assert.assertTrue(value == null || value.equals(latestValues.get(key)));
+					Assert.assertEquals(value != null, cache.containsKey(key));
+					break;
+				}
+				case 2:
+					cache.put(key, i);
+					latestValues.put(key, i);
+					break;
+				default: {
+					final Integer value = cache.remove(key);
+					Assert.assertTrue(value == null || value.equals(latestValues.get(key)));
+					Assert.assertFalse(cache.containsKey(key));
+					break;
+				}
+			}
+			Assert.assertTrue(cache.size() <= maximumSize);
+		}
+	}
+
+	@Test
+	public void testScanResistance() {
+		final int maximumSize = 1_000;
+		final PcTinyLfuCache<Integer, Integer> cache = new PcTinyLfuCache<>(maximumSize);
+		final PcLruCache<Integer, Integer> lruCache = new PcLruCache<>(maximumSize);
+		// hot keys are accessed several times
+		for (int round = 0; round < 5; round++) {
+			for (int key = 0; key < 500; key++) {
+				if (cache.get(key) == null) {
+					cache.put(key, key);
+				}
+				if (lruCache.get(key) == null) {
+					lruCache.put(key, key);
+				}
+			}
+		}
+		// a scan accesses many keys once
+		for (int key = 1_000_000; key < 1_010_000; key++) {
+			if (cache.get(key) == null) {
+				cache.put(key, key);
+			}
+			if (lruCache.get(key) == null) {
+				lruCache.put(key, key);
+			}
+		}
+		int tinyLfuHotKeys = 0;
+		int lruHotKeys = 0;
+		for (int key = 0; key < 500; key++) {
+			tinyLfuHotKeys += cache.containsKey(key) ? 1 : 0;
+			lruHotKeys += lruCache.containsKey(key) ? 1 : 0;
+		}
+		Assert.assertEquals(0, lruHotKeys);
+		Assert.assertTrue("Hot keys kept: " + tinyLfuHotKeys, tinyLfuHotKeys > 450);
+		Assert.assertEquals(maximumSize, cache.size());
+	}
+}
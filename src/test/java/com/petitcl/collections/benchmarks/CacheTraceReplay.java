@@ -0,0 +1,154 @@
+package com.petitcl.collections.benchmarks;
+
+import com.petitcl.collections.PcLruCache;
+import com.petitcl.collections.PcTinyLfuCache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+/**
+ * Replays traces of keys against {@link PcLruCache} and {@link PcTinyLfuCache}, and prints the hit ratio
+ * and the throughput of each cache, for several cache sizes.
+ * Each key of a trace is read from the cache, and put in the cache on a miss.
+ * This is not a JMH benchmark, as the hit ratio depends on the whole trace:
+ * the throughput is only an indication, measured over a single replay after a warmup replay.
+ *
+ * Without arguments, synthetic traces are generated:
+ * - zipf: keys that follow a Zipf distribution, ie: a few keys are very popular.
+ * - zipf+scans: the same keys, interrupted by scans of keys that are accessed only once, like batch jobs do.
+ * - loop: keys accessed in a loop that is larger than the caches, where LRU never hits.
+ * Otherwise, each argument is the path of a trace file, that holds one integer key per line.
+ */
+public class CacheTraceReplay {
+
+	private static final int TRACE_LENGTH = 2_000_000;
+	private static final int DISTINCT_KEYS = 100_000;
+	private static final int[] CACHE_SIZES = {1_000, 5_000, 20_000};
+
+	public static void main(String[] args) throws IOException {
+		final Map<String, Long[]> traces = new LinkedHashMap<>();
+		if (args.length == 0) {
+			final Random random = new Random(42);
+			traces.put("zipf", zipfTrace(random, 0));
+			traces.put("zipf+scans", zipfTrace(random, 50_000));
+			traces.put("loop", loopTrace());
+		} else {
+			for (String path : args) {
+				traces.put(path, readTrace(Path.of(path)));
+			}
+		}
+
+		final Map<String, IntFunction<Predicate<Long>>> caches = new LinkedHashMap<>();
+		caches.put("PcLruCache", maximumSize -> {
+			final PcLruCache<Long, Long> cache = new PcLruCache<>(maximumSize);
+			return key -> {
+				if (cache.get(key) != null) {
+					return true;
+				}
+				cache.put(key, key);
+				return false;
+			};
+		});
+		caches.put("PcTinyLfuCache", maximumSize -> {
+			final PcTinyLfuCache<Long, Long> cache = new PcTinyLfuCache<>(maximumSize);
+			return key -> {
+				if (cache.get(key) != null) {
+					return true;
+				}
+				cache.put(key, key);
+				return false;
+			};
+		});
+
+		System.out.printf("%-12s %8s %-16s %10s %14s%n", "trace", "size", "cache", "hit ratio", "ops/s");
+		for (Map.Entry<String, Long[]> trace : traces.entrySet()) {
+			for (int cacheSize : CACHE_SIZES) {
+				for (Map.Entry<String, IntFunction<Predicate<Long>>> cache : caches.entrySet()) {
+					// warm up the JIT with a first replay on another cache
+					replay(cache.getValue().apply(cacheSize), trace.getValue());
+					final long start = System.nanoTime();
+					final long hits = replay(cache.getValue().apply(cacheSize), trace.getValue());
+					final long elapsedNanos = System.nanoTime() - start;
+					System.out.printf("%-12s %8d %-16s %9.2f%% %14.0f%n",
+							trace.getKey(),
+							cacheSize,
+							cache.getKey(),
+							100.0 * hits / trace.getValue().length,
+							trace.getValue().length * 1e9 / elapsedNanos);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Replay the trace against the cache, and return the number of hits.
+	 */
+	private static long replay(Predicate<Long> cache, Long[] trace) {
+		long hits = 0;
+		for (Long key : trace) {
+			if (cache.test(key)) {
+				hits++;
+			}
+		}
+		return hits;
+	}
+
+	/**
+	 * Generate keys that follow a Zipf distribution with an exponent of 1,
+	 * and insert a scan of distinct keys, that are never accessed again, every given number of keys (never if 0).
+	 */
+	private static Long[] zipfTrace(Random random, int scanInterval) {
+		final double[] cumulativeProbabilities = new double[DISTINCT_KEYS];
+		double sum = 0;
+		for (int i = 0; i < DISTINCT_KEYS; i++) {
+			sum += 1.0 / (i + 1);
+			cumulativeProbabilities[i] = sum;
+		}
+		// scramble the ranks, so that popular keys are not consecutive integers
+		final Long[] keys = new Long[DISTINCT_KEYS];
+		for (int i = 0; i < DISTINCT_KEYS; i++) {
+			keys[i] = i * 0x9E3779B97F4A7C15L;
+		}
+		final Long[] trace = new Long[TRACE_LENGTH];
+		long nextScanKey = -1;
+		for (int i = 0; i < TRACE_LENGTH; i++) {
+			if (scanInterval > 0 && i % scanInterval >= scanInterval - scanInterval / 5) {
+				// the last fifth of each interval is a scan
+				trace[i] = nextScanKey--;
+				continue;
+			}
+			int rank = Arrays.binarySearch(cumulativeProbabilities, random.nextDouble() * sum);
+			if (rank < 0) {
+				rank = -rank - 1;
+			}
+			trace[i] = keys[Math.min(rank, DISTINCT_KEYS - 1)];
+		}
+		return trace;
+	}
+
+	private static Long[] loopTrace() {
+		final int loopLength = CACHE_SIZES[CACHE_SIZES.length - 1] * 2;
+		final Long[] trace = new Long[TRACE_LENGTH];
+		for (int i = 0; i < TRACE_LENGTH; i++) {
+			trace[i] = (long) (i % loopLength);
+		}
+		return trace;
+	}
+
+	private static Long[] readTrace(Path path) throws IOException {
+		final List<String> lines = Files.readAllLines(path);
+		return lines.stream()
+				.map(String::trim)
+				.filter(line -> !line.isEmpty())
+				.map(Long::valueOf)
+				.toArray(Long[]::new);
+	}
+}
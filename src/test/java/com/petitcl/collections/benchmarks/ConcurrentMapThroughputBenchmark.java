@@ -0,0 +1,92 @@
+package com.petitcl.collections.benchmarks;
+
+import com.petitcl.collections.PcCasChainingHashMap;
+import com.petitcl.collections.PcChainingHashMap;
+import com.petitcl.collections.PcConcurrentChainingHashMap;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of concurrent maps under a mixed read/write workload.
+ * The {@link #main} method runs the benchmark with 1, 2, 4, 8 and 16 threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentMapThroughputBenchmark {
+
+	private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16};
+
+	@Param({"ConcurrentHashMap", "PcConcurrentChainingHashMap", "PcCasChainingHashMap", "SynchronizedPcChainingHashMap"})
+	public String mapType;
+
+	@Param({"1000000"})
+	public int keyCount;
+
+	/**
+	 * Percentage of operations that are writes (half puts, half removes):
+	 * read-mostly lookups, and write-heavy ingestion threads.
+	 */
+	@Param({"10", "50", "90"})
+	public int writePercentage;
+
+	private Map<Integer, Integer> map;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.map = createMap(mapType);
+		// fill half of the key space, so that puts and removes keep the size stable
+		for (int i = 0; i < keyCount; i += 2) {
+			map.put(i, i);
+		}
+	}
+
+	@Benchmark
+	public Integer mixed() {
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+		final int key = random.nextInt(keyCount);
+		final int operation = random.nextInt(100);
+		if (operation < writePercentage / 2) {
+			return map.put(key, key);
+		} else if (operation < writePercentage) {
+			return map.remove(key);
+		}
+		return map.get(key);
+	}
+
+	private static Map<Integer, Integer> createMap(String mapType) {
+		switch (mapType) {
+			case "ConcurrentHashMap":
+				return new ConcurrentHashMap<>();
+			case "PcConcurrentChainingHashMap":
+				return new PcConcurrentChainingHashMap<>();
+			case "PcCasChainingHashMap":
+				return new PcCasChainingHashMap<>();
+			case "SynchronizedPcChainingHashMap":
+				return Collections.synchronizedMap(new PcChainingHashMap<>());
+			default:
+				throw new IllegalArgumentException("Unknown map type " + mapType);
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		for (int threads : THREAD_COUNTS) {
+			new Runner(new OptionsBuilder()
+					.include(ConcurrentMapThroughputBenchmark.class.getSimpleName())
+					.threads(threads)
+					.build()
+			).run();
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package com.petitcl.collections.benchmarks;
+
+import com.petitcl.collections.PcChainingHashMap;
+import com.petitcl.collections.PcCuckooHashMap;
+import com.petitcl.collections.PcDeterministicHashMap;
+import com.petitcl.collections.PcHopscotchHashMap;
+import com.petitcl.collections.PcLinearProbingHashMap;
+import com.petitcl.collections.PcQuadraticProbingHashMap;
+import com.petitcl.collections.PcRobinHoodHashMap;
+import com.petitcl.collections.PcSwissTableHashMap;
+
+import java.lang.ref.Reference;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Measures the memory used per entry by each map, once it has reached a steady state:
+ * the map is filled, then keys are removed and inserted through a sliding window,
+ * so that the table carries the effects of removals (tombstones, shifted entries, resizes).
+ * This is not a JMH benchmark, as JMH does not measure retained memory:
+ * the heap is measured after a full garbage collection while the map is reachable, then once it is not anymore.
+ * Keys and values are allocated upfront so that only the structure of the map is accounted for.
+ * Keys are distinct integers spread over the whole int range.
+ * Run it with a fixed heap and a stop the world collector (for instance -XX:+UseSerialGC -Xms2g -Xmx2g)
+ * to get stable numbers.
+ */
+public class MapMemoryFootprint {
+
+	private static final int ENTRIES = 1_000_000;
+	private static final int CHURN = 4 * ENTRIES;
+
+	public static void main(String[] args) {
+		final Integer[] keys = new Integer[ENTRIES + CHURN];
+		for (int i = 0; i < keys.length; i++) {
+			// scramble the keys, as sequential keys form a single cluster in open addressing maps
+			keys[i] = i * 0x9E3779B9;
+		}
+
+		final Map<String, Supplier<Map<Integer, Integer>>> mapFactories = new LinkedHashMap<>();
+		mapFactories.put("HashMap", HashMap::new);
+		mapFactories.put("PcChainingHashMap", PcChainingHashMap::new);
+		mapFactories.put("PcLinearProbingHashMap", PcLinearProbingHashMap::new);
+		mapFactories.put("PcDeterministicHashMap", PcDeterministicHashMap::new);
+		mapFactories.put("PcRobinHoodHashMap", PcRobinHoodHashMap::new);
+		mapFactories.put("PcQuadraticProbingHashMap", PcQuadraticProbingHashMap::new);
+		mapFactories.put("PcSwissTableHashMap", PcSwissTableHashMap::new);
+		mapFactories.put("PcHopscotchHashMap", PcHopscotchHashMap::new);
+		mapFactories.put("PcCuckooHashMap", PcCuckooHashMap::new);
+
+		// the first round warms up the JVM, only the second one is reported
+		for (int round = 0; round < 2; round++) {
+			for (Map.Entry<String, Supplier<Map<Integer, Integer>>> mapFactory : mapFactories.entrySet()) {
+				final long withMap = fillAndMeasure(mapFactory.getValue(), keys);
+				final long withoutMap = usedMemory();
+				if (round == 1) {
+					System.out.printf("%-24s %8.2f bytes per entry (%d entries)%n",
+							mapFactory.getKey(), (withMap - withoutMap) / (double) ENTRIES, ENTRIES);
+				}
+			}
+		}
+	}
+
+	private static long fillAndMeasure(Supplier<Map<Integer, Integer>> mapFactory, Integer[] keys) {
+		final Map<Integer, Integer> map = mapFactory.get();
+		for (int i = 0; i < ENTRIES; i++) {
+			map.put(keys[i], keys[i]);
+		}
+		// slide the window of keys, so that the map size stays the same
+		for (int i = 0; i < CHURN; i++) {
+			map.remove(keys[i]);
+			map.put(keys[ENTRIES + i], keys[ENTRIES + i]);
+		}
+		final long usedMemory = usedMemory();
+		// keep the map reachable until the heap has been measured
+		Reference.reachabilityFence(map);
+		return usedMemory;
+	}
+
+	private static long usedMemory() {
+		final Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,122 @@
+package com.petitcl.collections.benchmarks;
+
+import com.petitcl.collections.PcCuckooHashMap;
+import com.petitcl.collections.PcHopscotchHashMap;
+import com.petitcl.collections.PcLinearProbingHashMap;
+import com.petitcl.collections.PcQuadraticProbingHashMap;
+import com.petitcl.collections.PcRobinHoodHashMap;
+import com.petitcl.collections.PcSwissTableHashMap;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of lookups in open addressing maps filled up to a high load factor.
+ * Lookups of absent keys (misses) are the worst case of open addressing,
+ * as the probe sequence has to reach the end of the cluster, unless the map can stop early.
+ * Keys are either random, or consecutive ids, whose close hashes form long clusters with linear probing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class OpenAddressingMapBenchmark {
+
+	@Param({"PcLinearProbingHashMap", "PcRobinHoodHashMap", "PcQuadraticProbingHashMap", "PcSwissTableHashMap", "PcHopscotchHashMap", "PcCuckooHashMap"})
+	public String mapType;
+
+	@Param({"RANDOM", "CONSECUTIVE"})
+	public String keyDistribution;
+
+	@Param({"1048576"})
+	public int capacity;
+
+	@Param({"0.9"})
+	public float loadFactor;
+
+	private Map<Integer, Integer> map;
+	private Integer[] presentKeys;
+	private Integer[] absentKeys;
+	private int index;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.map = createMap(mapType, capacity, loadFactor);
+		// fill the map just below its load factor, so that it is not resized
+		final int size = (int) (capacity * loadFactor) - 1;
+		this.presentKeys = new Integer[size];
+		this.absentKeys = new Integer[size];
+		if ("CONSECUTIVE".equals(keyDistribution)) {
+			for (int i = 0; i < size; i++) {
+				presentKeys[i] = i;
+				absentKeys[i] = size + i;
+			}
+		} else {
+			final Random random = new Random(42);
+			final Set<Integer> keys = new HashSet<>();
+			while (keys.size() < size) {
+				keys.add(random.nextInt());
+			}
+			keys.toArray(presentKeys);
+			for (int i = 0; i < size;) {
+				final int key = random.nextInt();
+				if (!keys.contains(key)) {
+					absentKeys[i++] = key;
+				}
+			}
+		}
+		for (Integer key : presentKeys) {
+			map.put(key, key);
+		}
+		this.index = 0;
+	}
+
+	@Benchmark
+	public Integer getHit() {
+		final Integer key = presentKeys[index];
+		index = (index + 1) % presentKeys.length;
+		return map.get(key);
+	}
+
+	@Benchmark
+	public Integer getMiss() {
+		final Integer key = absentKeys[index];
+		index = (index + 1) % absentKeys.length;
+		return map.get(key);
+	}
+
+	private static Map<Integer, Integer> createMap(String mapType, int capacity, float loadFactor) {
+		switch (mapType) {
+			case "PcLinearProbingHashMap":
+				return new PcLinearProbingHashMap<>(capacity, loadFactor);
+			case "PcRobinHoodHashMap":
+				return new PcRobinHoodHashMap<>(capacity, loadFactor);
+			case "PcQuadraticProbingHashMap":
+				return new PcQuadraticProbingHashMap<>(capacity, loadFactor);
+			case "PcSwissTableHashMap":
+				return new PcSwissTableHashMap<>(capacity, loadFactor);
+			case "PcHopscotchHashMap":
+				return new PcHopscotchHashMap<>(capacity, loadFactor);
+			case "PcCuckooHashMap":
+				return new PcCuckooHashMap<>(capacity, loadFactor);
+			default:
+				throw new IllegalArgumentException("Unknown map type " + mapType);
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(OpenAddressingMapBenchmark.class.getSimpleName())
+				.build()
+		).run();
+	}
+}
@@ -0,0 +1,52 @@
+package com.petitcl.collections.benchmarks;
+
+import com.petitcl.collections.PcChainingHashMap;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency distribution of {@link PcChainingHashMap#put(Object, Object)}
+ * while a map grows, with both resize strategies.
+ * The percentiles reported by JMH (p0.999 in particular) show the cost of resizes.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class PcChainingHashMapPutLatencyBenchmark {
+
+	@Param({"FULL", "INCREMENTAL"})
+	public PcChainingHashMap.ResizeStrategy resizeStrategy;
+
+	private PcChainingHashMap<Integer, Integer> map;
+	private int nextKey;
+
+	@Setup(Level.Iteration)
+	public void setUp() {
+		this.map = new PcChainingHashMap<>(
+				PcChainingHashMap.DEFAULT_INITIAL_CAPACITY,
+				PcChainingHashMap.DEFAULT_LOAD_FACTOR,
+				resizeStrategy
+		);
+		this.nextKey = 0;
+	}
+
+	@Benchmark
+	public Integer put() {
+		final int key = nextKey++;
+		return map.put(key, key);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(PcChainingHashMapPutLatencyBenchmark.class.getSimpleName())
+				.build()
+		).run();
+	}
+}
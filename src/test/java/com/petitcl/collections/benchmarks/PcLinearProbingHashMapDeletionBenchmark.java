@@ -0,0 +1,65 @@
+package com.petitcl.collections.benchmarks;
+
+import com.petitcl.collections.PcLinearProbingHashMap;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency distribution of a sliding window over a {@link PcLinearProbingHashMap}:
+ * each operation removes the oldest key of the window and inserts a new one, with both deletion strategies.
+ * The percentiles reported by JMH show the cost of long backward shifts, or of tombstone compactions.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class PcLinearProbingHashMapDeletionBenchmark {
+
+	@Param({"BACKWARD_SHIFT", "TOMBSTONES"})
+	public PcLinearProbingHashMap.DeletionStrategy deletionStrategy;
+
+	@Param({"0.5", "0.75", "0.9"})
+	public float loadFactor;
+
+	@Param({"100000"})
+	public int windowSize;
+
+	private PcLinearProbingHashMap<Integer, Integer> map;
+	private int nextKey;
+
+	@Setup(Level.Iteration)
+	public void setUp() {
+		// fill the window to the load factor, so that the table does not need to grow
+		this.map = new PcLinearProbingHashMap<>((int) (windowSize / loadFactor) + 1, loadFactor, deletionStrategy);
+		for (this.nextKey = 0; this.nextKey < windowSize; this.nextKey++) {
+			map.put(key(this.nextKey), this.nextKey);
+		}
+	}
+
+	@Benchmark
+	public Integer slideWindow() {
+		map.remove(key(nextKey - windowSize));
+		final int key = nextKey++;
+		return map.put(key(key), key);
+	}
+
+	/**
+	 * Scramble the sequence number of a key, so that removals and insertions happen all over the table.
+	 */
+	private static int key(int sequence) {
+		return sequence * 0x9E3779B9;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(PcLinearProbingHashMapDeletionBenchmark.class.getSimpleName())
+				.build()
+		).run();
+	}
+}
@@ -0,0 +1,86 @@
+package com.petitcl.collections.benchmarks;
+
+import com.petitcl.collections.PcLinearProbingHashMap;
+import com.petitcl.collections.PcLongLongHashMap;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a map of primitive longs with maps of boxed longs, on a counting workload
+ * (increment the counter of a key, then read counters back).
+ * Boxed maps allocate a Long per new value, and dereference a Long per probed key.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class PrimitiveMapBenchmark {
+
+	@Param({"HashMap", "PcLinearProbingHashMap", "PcLongLongHashMap"})
+	public String mapType;
+
+	@Param({"1000000"})
+	public int keyCount;
+
+	private Map<Long, Long> boxedMap;
+	private PcLongLongHashMap primitiveMap;
+	private long[] keys;
+	private int index;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		final Random random = new Random(42);
+		this.keys = new long[keyCount];
+		for (int i = 0; i < keyCount; i++) {
+			keys[i] = random.nextLong();
+		}
+		if ("PcLongLongHashMap".equals(mapType)) {
+			this.primitiveMap = new PcLongLongHashMap();
+			for (long key : keys) {
+				primitiveMap.addTo(key, 1);
+			}
+		} else {
+			this.boxedMap = "HashMap".equals(mapType) ? new HashMap<>() : new PcLinearProbingHashMap<>();
+			for (long key : keys) {
+				boxedMap.merge(key, 1L, Long::sum);
+			}
+		}
+		this.index = 0;
+	}
+
+	@Benchmark
+	public long addTo() {
+		final long key = keys[index];
+		index = (index + 1) % keys.length;
+		if (primitiveMap != null) {
+			return primitiveMap.addTo(key, 1);
+		}
+		return boxedMap.merge(key, 1L, Long::sum);
+	}
+
+	@Benchmark
+	public long get() {
+		final long key = keys[index];
+		index = (index + 1) % keys.length;
+		if (primitiveMap != null) {
+			return primitiveMap.get(key);
+		}
+		return boxedMap.get(key);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(PrimitiveMapBenchmark.class.getSimpleName())
+				.build()
+		).run();
+	}
+}
@@ -0,0 +1,117 @@
+package com.petitcl.collections.utils;
+
+import org.junit.Assert;
+
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+/**
+ * Tests shared by the single-threaded maps, on maps of integers to strings:
+ * spliterators and parallel streams, fail-fast views, and bulk builds.
+ * Each map provides its factories, like {@link AbstractPersonMapTestSuite}.
+ */
+public abstract class AbstractIntegerMapTestSuite {
+
+	public void testParallelStreams() {
+		final Map<Integer, String> map = createEmptyMap();
+		final Map<Integer, String> referenceMap = new HashMap<>();
+		for (int i = 0; i < 10_000; i++) {
+			map.put(i, "value" + i);
+			referenceMap.put(i, "value" + i);
+			if (i % 3 == 0) {
+				map.remove(i / 3);
+				referenceMap.remove(i / 3);
+			}
+		}
+		final Spliterator<Integer> spliterator = map.keySet().spliterator();
+		Assert.assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED));
+		Assert.assertTrue(spliterator.hasCharacteristics(Spliterator.DISTINCT));
+		Assert.assertEquals(referenceMap.size(), spliterator.estimateSize());
+
+		Assert.assertEquals(referenceMap.size(), map.keySet().parallelStream().count());
+		Assert.assertEquals(
+				referenceMap.keySet().stream().mapToLong(Integer::longValue).sum(),
+				map.keySet().parallelStream().mapToLong(Integer::longValue).sum());
+		Assert.assertEquals(
+				referenceMap.values().stream().collect(Collectors.toSet()),
+				map.values().parallelStream().collect(Collectors.toSet()));
+		Assert.assertEquals(
+				referenceMap,
+				map.entrySet().parallelStream().collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+	}
+
+	public void testFailFastIterators() {
+		final Map<Integer, String> map = createEmptyMap();
+		for (int i = 0; i < 100; i++) {
+			map.put(i, "value" + i);
+		}
+		// views are created once
+		Assert.assertSame(map.entrySet(), map.entrySet());
+		Assert.assertSame(map.keySet(), map.keySet());
+		Assert.assertSame(map.values(), map.values());
+
+		final Iterator<Integer> iterator = map.keySet().iterator();
+		iterator.next();
+		map.remove(50);
+		Assert.assertThrows(ConcurrentModificationException.class, iterator::next);
+
+		final Iterator<String> otherIterator = map.values().iterator();
+		otherIterator.next();
+		map.put(1_000, "value");
+		Assert.assertThrows(ConcurrentModificationException.class, otherIterator::remove);
+
+		Assert.assertThrows(ConcurrentModificationException.class, () -> map.forEach((key, value) -> map.remove(key)));
+		Assert.assertThrows(ConcurrentModificationException.class, () -> map.computeIfAbsent(2_000, key -> map.put(3_000, "value")));
+		Assert.assertThrows(ConcurrentModificationException.class, () -> map.keySet().spliterator().forEachRemaining(map::remove));
+	}
+
+	public void testBulkBuild() {
+		final Map<Integer, String> referenceMap = new HashMap<>();
+		for (int i = 0; i < 10_000; i++) {
+			referenceMap.put(i, "value" + i);
+		}
+
+		// the table is sized once for all the entries
+		final Map<Integer, String> map = createEmptyMap();
+		map.putAll(referenceMap);
+		Assert.assertTrue(getLayout(map).contains("capacity=16384)"));
+		Assert.assertEquals(referenceMap, map);
+		Assert.assertEquals(referenceMap, copyMap(referenceMap));
+		Assert.assertEquals(referenceMap, createMapFromEntries(referenceMap.entrySet()));
+
+		// copying a map of the same type keeps its structure
+		final Map<Integer, String> copy = copyMap(map);
+		Assert.assertEquals(getLayout(map), getLayout(copy));
+		copy.put(0, "updated");
+		Assert.assertEquals("value0", map.get(0));
+
+		final Map<Integer, String> otherMap = createEmptyMap();
+		otherMap.put(1, "other");
+		otherMap.put(-100, "other");
+		otherMap.putAll(map);
+		referenceMap.put(-100, "other");
+		Assert.assertEquals(referenceMap, otherMap);
+	}
+
+	protected abstract Map<Integer, String> createEmptyMap();
+
+	/**
+	 * Create a map with the copy constructor of the map under test.
+	 */
+	protected abstract Map<Integer, String> copyMap(Map<Integer, String> map);
+
+	/**
+	 * Create a map with the fromEntries factory of the map under test.
+	 */
+	protected abstract Map<Integer, String> createMapFromEntries(Collection<Map.Entry<Integer, String>> entries);
+
+	/**
+	 * Return the layout of the given map, which must have been created by this suite.
+	 */
+	protected abstract String getLayout(Map<Integer, String> map);
+}
@@ -24,6 +24,7 @@ public abstract class AbstractPersonMapTestSuite {
 	private boolean runScenarioOne = true;
 	private boolean runScenarioTwo = true;
 	private boolean runScenarioThree = true;
+	private boolean runScenarioFour = true;
 //	private long seed = 424242424242L;
 	private long seed = System.nanoTime();
 
@@ -89,6 +90,11 @@ public abstract class AbstractPersonMapTestSuite {
 		return this;
 	}
 
+	public AbstractPersonMapTestSuite withRunScenarioFour(boolean runScenarioFour) {
+		this.runScenarioFour = runScenarioFour;
+		return this;
+	}
+
 	public void runAllTests() {
 		random = new Random(seed);
 		System.out.println("Using seed " + seed);
@@ -125,6 +131,17 @@ public abstract class AbstractPersonMapTestSuite {
 				}
 			}
 		}
+		if (runScenarioFour) {
+			for (int i = startLoadFactor; i <= endLoadFactor; i += loadFactorStep) {
+				final float loadFactor = i / (float)100;
+				for (int j = startDataSetSize; j < endDataSetSize; j++) {
+					final int dataSetSize = Fibonnaci.fibonacci(j);
+					final Map<String, Person> map = createEmptyMap(1 / loadFactor);
+					System.out.println("Testing scenario four with loadFactor " + loadFactor + " and with " + dataSetSize + " elements");
+					runScenarioFour(map, dataSetSize);
+				}
+			}
+		}
 	}
 
 	/**
@@ -282,6 +299,92 @@ public abstract class AbstractPersonMapTestSuite {
 		assertMapEqualsReferenceMap(referenceMap, map);
 	}
 
+	/**
+	 * Scenario that will randomly call the conditional and compute methods of the map
+	 * (putIfAbsent, computeIfAbsent, computeIfPresent, compute, merge, replace, remove with a value, getOrDefault),
+	 * on a pool of keys of the desired size, so that both present and absent keys are used.
+	 */
+	private void runScenarioFour(Map<String, Person> map, int dataSetSize) {
+		final HashMap<String, Person> referenceMap = new HashMap<>();
+		assertMapEqualsReferenceMap(referenceMap, map);
+
+		final String[] keys = new String[Math.max(dataSetSize, 1)];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = RandomStringUtils.random(12, 0, 0, false, true, null, random);
+		}
+		final Person defaultPerson = new Person("default", "default", 0);
+
+		for (int i = 0; i < keys.length * 4; i++) {
+			final String key = keys[random.nextInt(keys.length)];
+			final Person person = new Person(key, key, random.nextInt(100));
+			final Person expected;
+			final Person actual;
+			switch (random.nextInt(9)) {
+				case 0:
+					expected = referenceMap.putIfAbsent(key, person);
+					actual = map.putIfAbsent(key, person);
+					break;
+				case 1:
+					// a null result must not create a mapping
+					final boolean computeNull = random.nextInt(4) == 0;
+					expected = referenceMap.computeIfAbsent(key, k -> computeNull ? null : person);
+					actual = map.computeIfAbsent(key, k -> computeNull ? null : person);
+					break;
+				case 2:
+					// a null result must remove the mapping
+					expected = referenceMap.computeIfPresent(key, (k, v) -> v.getAge() % 3 == 0 ? null : older(v));
+					actual = map.computeIfPresent(key, (k, v) -> v.getAge() % 3 == 0 ? null : older(v));
+					break;
+				case 3:
+					expected = referenceMap.compute(key, (k, v) -> v == null ? person : v.getAge() % 3 == 0 ? null : older(v));
+					actual = map.compute(key, (k, v) -> v == null ? person : v.getAge() % 3 == 0 ? null : older(v));
+					break;
+				case 4:
+					expected = referenceMap.merge(key, person, (v1, v2) -> v1.getAge() % 3 == 0 ? null : v2);
+					actual = map.merge(key, person, (v1, v2) -> v1.getAge() % 3 == 0 ? null : v2);
+					break;
+				case 5:
+					expected = referenceMap.replace(key, person);
+					actual = map.replace(key, person);
+					break;
+				case 6: {
+					final Person oldValue = random.nextBoolean() ? referenceMap.getOrDefault(key, defaultPerson) : defaultPerson;
+					Assert.assertEquals(
+							String.format("Replacing %s should be consistent - ", key),
+							referenceMap.replace(key, oldValue, person),
+							map.replace(key, oldValue, person)
+					);
+					expected = referenceMap.get(key);
+					actual = map.get(key);
+					break;
+				}
+				case 7: {
+					final Person value = random.nextBoolean() ? referenceMap.getOrDefault(key, defaultPerson) : defaultPerson;
+					Assert.assertEquals(
+							String.format("Removing %s - %s should be consistent - ", key, value),
+							referenceMap.remove(key, value),
+							map.remove(key, value)
+					);
+					expected = referenceMap.get(key);
+					actual = map.get(key);
+					break;
+				}
+				default:
+					expected = referenceMap.getOrDefault(key, defaultPerson);
+					actual = map.getOrDefault(key, defaultPerson);
+					break;
+			}
+			Assert.assertEquals(String.format("Result for %s should be %s - ", key, expected), expected, actual);
+			final int expectedSize = referenceMap.size();
+			Assert.assertEquals("Size should be " + expectedSize, expectedSize, map.size());
+		}
+		assertMapEqualsReferenceMap(referenceMap, map);
+	}
+
+	private static Person older(Person person) {
+		return new Person(person.getId(), person.getFirstName(), person.getAge() + 1);
+	}
+
 	private void assertMapEqualsReferenceMap(Map<String, Person> referenceMap, Map<String, Person> map) {
 		if (debugLayout) {
 			System.out.println("referenceMap=" + referenceMap);
@@ -0,0 +1,96 @@
+package com.petitcl.collections.utils;
+
+import org.junit.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Tests shared by the thread-safe maps, that run the same operations from several threads
+ * on maps created by the given factory, and check the content of the maps once all threads are done.
+ */
+public class ConcurrentMapTestSuite {
+
+	public static final int THREADS = 8;
+	public static final int KEYS_PER_THREAD = 20_000;
+
+	private final Supplier<ConcurrentMap<Integer, Integer>> mapFactory;
+
+	public ConcurrentMapTestSuite(Supplier<ConcurrentMap<Integer, Integer>> mapFactory) {
+		this.mapFactory = mapFactory;
+	}
+
+	/**
+	 * Each thread inserts its own keys, and removes the odd ones, while other threads are resizing the map.
+	 */
+	public void testConcurrentPutsAndRemoves() throws Exception {
+		final ConcurrentMap<Integer, Integer> map = this.mapFactory.get();
+		runInThreads(thread -> {
+			for (int i = 0; i < KEYS_PER_THREAD; i++) {
+				final int key = thread * KEYS_PER_THREAD + i;
+				Assert.assertNull(map.put(key, key));
+				Assert.assertEquals(Integer.valueOf(key), map.get(key));
+			}
+			for (int i = 1; i < KEYS_PER_THREAD; i += 2) {
+				final int key = thread * KEYS_PER_THREAD + i;
+				Assert.assertEquals(Integer.valueOf(key), map.remove(key));
+			}
+		});
+		Assert.assertEquals(THREADS * KEYS_PER_THREAD / 2, map.size());
+		for (int key = 0; key < THREADS * KEYS_PER_THREAD; key++) {
+			Assert.assertEquals(key % 2 == 0 ? Integer.valueOf(key) : null, map.get(key));
+		}
+		Assert.assertEquals(map.size(), map.entrySet().stream().count());
+	}
+
+	/**
+	 * All threads merge into the same keys, so no increment may be lost.
+	 */
+	public void testConcurrentUpdatesOfSameKeys() throws Exception {
+		final ConcurrentMap<Integer, Integer> map = this.mapFactory.get();
+		runInThreads(thread -> {
+			for (int i = 0; i < KEYS_PER_THREAD; i++) {
+				map.merge(i % 100, 1, Integer::sum);
+			}
+		});
+		for (int key = 0; key < 100; key++) {
+			Assert.assertEquals(Integer.valueOf(THREADS * KEYS_PER_THREAD / 100), map.get(key));
+		}
+	}
+
+	/**
+	 * Body of a test thread, that receives the index of the thread.
+	 */
+	public interface ThreadBody {
+		void run(int thread) throws Exception;
+	}
+
+	/**
+	 * Run the given body in {@link #THREADS} threads, and rethrow the first failure of a thread, if any.
+	 */
+	public static void runInThreads(ThreadBody body) throws Exception {
+		final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			final List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < THREADS; t++) {
+				final int thread = t;
+				futures.add(executor.submit(() -> {
+					body.run(thread);
+					return null;
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		}
+	}
+}